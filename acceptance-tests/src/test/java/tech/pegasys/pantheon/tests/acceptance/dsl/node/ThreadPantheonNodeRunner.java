@@ -20,6 +20,8 @@ import tech.pegasys.pantheon.cli.EthNetworkConfig;
 import tech.pegasys.pantheon.cli.PantheonControllerBuilder;
 import tech.pegasys.pantheon.controller.PantheonController;
 import tech.pegasys.pantheon.ethereum.eth.sync.SynchronizerConfiguration.Builder;
+import tech.pegasys.pantheon.ethereum.worldstate.WorldStateConfiguration;
+import tech.pegasys.pantheon.services.kvstore.RocksDbConfiguration;
 
 import java.io.IOException;
 import java.util.HashMap;
@@ -59,7 +61,10 @@ public class ThreadPantheonNodeRunner implements PantheonNodeRunner {
               ethNetworkConfig,
               false,
               node.getMiningParameters(),
-              true);
+              true,
+              RocksDbConfiguration.builder().build(),
+              WorldStateConfiguration.builder().build(),
+              false);
     } catch (final IOException e) {
       throw new RuntimeException("Error building PantheonController", e);
     }
@@ -92,5 +92,6 @@ public class LogSeries extends AbstractList<Log> {
   @Override
   public void clear() {
     series.clear();
+    bloomFilter.clear();
   }
 }
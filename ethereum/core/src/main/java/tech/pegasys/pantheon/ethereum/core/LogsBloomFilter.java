@@ -34,6 +34,7 @@ import java.util.Collection;
 public class LogsBloomFilter {
 
   public static final int BYTE_SIZE = 256;
+  public static final int BIT_SIZE = BYTE_SIZE * 8;
   private static final int LEAST_SIGNIFICANT_BYTE = 0xFF;
   private static final int LEAST_SIGNIFICANT_THREE_BITS = 0x7;
   private static final int BITS_IN_BYTE = 8;
@@ -73,6 +74,19 @@ public class LogsBloomFilter {
     return bloom;
   }
 
+  /**
+   * Creates a bloom filter with the bits of a single log address or topic set, for checking whether
+   * other bloom filters could contain it.
+   *
+   * @param value the address or topic.
+   * @return the newly created bloom filter populated with {@code value}.
+   */
+  public static LogsBloomFilter forValue(final BytesValue value) {
+    final LogsBloomFilter bloom = new LogsBloomFilter();
+    bloom.setBits(keccak256(value));
+    return bloom;
+  }
+
   /**
    * Creates a bloom filter from the given RLP-encoded input.
    *
@@ -133,12 +147,39 @@ public class LogsBloomFilter {
     }
   }
 
+  /**
+   * Whether every bit set in the given bloom filter is also set in this one, which is the case for
+   * any logs, addresses or topics that have been inserted into both.
+   *
+   * @param other the bloom filter to check.
+   * @return false if this bloom filter can not contain everything {@code other} contains.
+   */
+  public boolean couldContain(final LogsBloomFilter other) {
+    for (int i = 0; i < BYTE_SIZE; ++i) {
+      final byte otherByte = other.data.get(i);
+      if ((data.get(i) & otherByte) != otherByte) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public boolean isBitSet(final int index) {
+    final int byteIndex = BYTE_SIZE - 1 - index / 8;
+    final int bitIndex = index % 8;
+    return (data.get(byteIndex) & (1 << bitIndex)) != 0;
+  }
+
   private void setBit(final int index) {
     final int byteIndex = BYTE_SIZE - 1 - index / 8;
     final int bitIndex = index % 8;
     data.set(byteIndex, (byte) (data.get(byteIndex) | (1 << bitIndex)));
   }
 
+  public void clear() {
+    data.clear();
+  }
+
   public void digest(final LogsBloomFilter other) {
     for (int i = 0; i < data.size(); ++i) {
       data.set(i, (byte) ((data.get(i) | other.data.get(i)) & 0xff));
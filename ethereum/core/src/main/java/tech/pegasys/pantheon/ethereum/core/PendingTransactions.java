@@ -12,40 +12,57 @@
  */
 package tech.pegasys.pantheon.ethereum.core;
 
+import static java.util.Collections.emptyNavigableMap;
 import static java.util.Collections.newSetFromMap;
 import static java.util.Comparator.comparing;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.OptionalLong;
-import java.util.SortedMap;
-import java.util.SortedSet;
-import java.util.TreeMap;
-import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+
+import com.google.common.util.concurrent.Striped;
 
 /**
  * Holds the current set of pending transactions with the ability to iterate them based on priority
  * for mining or look-up by hash.
  *
- * <p>This class is safe for use across multiple threads.
+ * <p>Transactions are prioritized by whether they were submitted locally, then by gas price, then
+ * by how recently they arrived. When the pool is full the lowest priority transaction, and so the
+ * cheapest remote one, is dropped.
+ *
+ * <p>This class is safe for use across multiple threads. Changes to the transactions of one sender
+ * are serialized by a lock striped over senders, while lookups and iteration take no lock at all,
+ * so selecting transactions for a block never holds up transactions arriving from the network.
  */
 public class PendingTransactions {
   public static final int MAX_PENDING_TRANSACTIONS = 30_000;
+  private static final int SENDER_LOCK_STRIPES = 64;
+
+  private static final Comparator<TransactionInfo> PRIORITY_ORDER =
+      comparing(TransactionInfo::isReceivedFromLocalSource)
+          .thenComparing(TransactionInfo::getGasPrice)
+          .thenComparing(TransactionInfo::getSequence)
+          .reversed();
 
-  private final Map<Hash, TransactionInfo> pendingTransactions = new HashMap<>();
-  private final SortedSet<TransactionInfo> prioritizedTransactions =
-      new TreeSet<>(
-          comparing(TransactionInfo::isReceivedFromLocalSource)
-              .thenComparing(TransactionInfo::getSequence)
-              .reversed());
-  private final Map<Address, SortedMap<Long, TransactionInfo>> transactionsBySender =
-      new HashMap<>();
+  private final Map<Hash, TransactionInfo> pendingTransactions = new ConcurrentHashMap<>();
+  private final NavigableSet<TransactionInfo> prioritizedTransactions =
+      new ConcurrentSkipListSet<>(PRIORITY_ORDER);
+  private final Map<Address, NavigableMap<Long, TransactionInfo>> transactionsBySender =
+      new ConcurrentHashMap<>();
+  private final Striped<Lock> senderLocks = Striped.lock(SENDER_LOCK_STRIPES);
 
   private final Collection<PendingTransactionListener> listeners =
       newSetFromMap(new ConcurrentHashMap<>());
@@ -66,32 +83,27 @@ public class PendingTransactions {
   }
 
   public void removeTransaction(final Transaction transaction) {
-    synchronized (pendingTransactions) {
+    final Lock lock = senderLocks.get(transaction.getSender());
+    lock.lock();
+    try {
       final TransactionInfo removedTransactionInfo = pendingTransactions.remove(transaction.hash());
       if (removedTransactionInfo != null) {
-        prioritizedTransactions.remove(removedTransactionInfo);
-        Optional.ofNullable(transactionsBySender.get(transaction.getSender()))
-            .ifPresent(
-                transactionsForSender -> {
-                  transactionsForSender.remove(transaction.getNonce());
-                  if (transactionsForSender.isEmpty()) {
-                    transactionsBySender.remove(transaction.getSender());
-                  }
-                });
+        removeFromIndexes(removedTransactionInfo);
       }
+    } finally {
+      lock.unlock();
     }
   }
 
   /*
-   * The BlockTransaction selection process (part of block mining) requires synchronised access to
-   * all pendingTransactions - this allows it to iterate over the available transactions without
-   * releasing the lock in between items.
-   *
+   * The BlockTransaction selection process (part of block mining) iterates over a weakly consistent
+   * view of the pending transactions. Transactions keep arriving and leaving while it runs; those
+   * that arrive mid-selection may or may not be seen, and are otherwise left for the next block.
    */
   public void selectTransactions(final TransactionSelector selector) {
-    synchronized (pendingTransactions) {
-      final Map<Address, AccountTransactionOrder> accountTransactions = new HashMap<>();
-      final List<Transaction> transactionsToRemove = new ArrayList<>();
+    final Map<Address, AccountTransactionOrder> accountTransactions = new HashMap<>();
+    final List<Transaction> transactionsToRemove = new ArrayList<>();
+    try {
       for (final TransactionInfo transactionInfo : prioritizedTransactions) {
         final AccountTransactionOrder accountTransactionOrder =
             accountTransactions.computeIfAbsent(
@@ -114,17 +126,24 @@ public class PendingTransactions {
           }
         }
       }
+    } finally {
       transactionsToRemove.forEach(this::removeTransaction);
     }
   }
 
   private AccountTransactionOrder createSenderTransactionOrder(final Address address) {
     return new AccountTransactionOrder(
-        transactionsBySender.get(address).values().stream().map(TransactionInfo::getTransaction));
+        transactionsBySender
+            .getOrDefault(address, emptyNavigableMap())
+            .values()
+            .stream()
+            .map(TransactionInfo::getTransaction));
   }
 
   private boolean addTransaction(final TransactionInfo transactionInfo) {
-    synchronized (pendingTransactions) {
+    final Lock lock = senderLocks.get(transactionInfo.getSender());
+    lock.lock();
+    try {
       if (pendingTransactions.containsKey(transactionInfo.getHash())) {
         return false;
       }
@@ -134,38 +153,62 @@ public class PendingTransactions {
       }
       prioritizedTransactions.add(transactionInfo);
       pendingTransactions.put(transactionInfo.getHash(), transactionInfo);
-
-      notifyTransactionAdded(transactionInfo.getTransaction());
-      if (pendingTransactions.size() > maxPendingTransactions) {
-        final TransactionInfo toRemove = prioritizedTransactions.last();
-        removeTransaction(toRemove.getTransaction());
-      }
-      return true;
+    } finally {
+      lock.unlock();
     }
+
+    notifyTransactionAdded(transactionInfo.getTransaction());
+    // Evict outside the sender lock, as the evicted transaction may belong to any sender.
+    evictLowestPriorityTransactions();
+    return true;
   }
 
   private boolean addTransactionForSenderAndNonce(final TransactionInfo transactionInfo) {
-    final Map<Long, TransactionInfo> transactionsForSender =
-        transactionsBySender.computeIfAbsent(transactionInfo.getSender(), key -> new TreeMap<>());
+    final NavigableMap<Long, TransactionInfo> transactionsForSender =
+        transactionsBySender.computeIfAbsent(
+            transactionInfo.getSender(), key -> new ConcurrentSkipListMap<>());
     final TransactionInfo existingTransaction =
         transactionsForSender.get(transactionInfo.getNonce());
     if (existingTransaction != null) {
       if (!shouldReplace(existingTransaction, transactionInfo)) {
         return false;
       }
-      removeTransaction(existingTransaction.getTransaction());
+      pendingTransactions.remove(existingTransaction.getHash());
+      prioritizedTransactions.remove(existingTransaction);
     }
     transactionsForSender.put(transactionInfo.getNonce(), transactionInfo);
     return true;
   }
 
+  // Must be called while holding the lock for the transaction's sender.
+  private void removeFromIndexes(final TransactionInfo transactionInfo) {
+    prioritizedTransactions.remove(transactionInfo);
+    final NavigableMap<Long, TransactionInfo> transactionsForSender =
+        transactionsBySender.get(transactionInfo.getSender());
+    if (transactionsForSender != null) {
+      transactionsForSender.remove(transactionInfo.getNonce(), transactionInfo);
+      if (transactionsForSender.isEmpty()) {
+        transactionsBySender.remove(transactionInfo.getSender());
+      }
+    }
+  }
+
+  private void evictLowestPriorityTransactions() {
+    while (pendingTransactions.size() > maxPendingTransactions) {
+      final TransactionInfo toRemove;
+      try {
+        toRemove = prioritizedTransactions.last();
+      } catch (final NoSuchElementException e) {
+        // Emptied by concurrent removals.
+        return;
+      }
+      removeTransaction(toRemove.getTransaction());
+    }
+  }
+
   private boolean shouldReplace(
       final TransactionInfo existingTransaction, final TransactionInfo newTransaction) {
-    return newTransaction
-            .getTransaction()
-            .getGasPrice()
-            .compareTo(existingTransaction.getTransaction().getGasPrice())
-        > 0;
+    return newTransaction.getGasPrice().compareTo(existingTransaction.getGasPrice()) > 0;
   }
 
   private void notifyTransactionAdded(final Transaction transaction) {
@@ -173,16 +216,12 @@ public class PendingTransactions {
   }
 
   public int size() {
-    synchronized (pendingTransactions) {
-      return pendingTransactions.size();
-    }
+    return pendingTransactions.size();
   }
 
   public Optional<Transaction> getTransactionByHash(final Hash transactionHash) {
-    synchronized (pendingTransactions) {
-      return Optional.ofNullable(pendingTransactions.get(transactionHash))
-          .map(TransactionInfo::getTransaction);
-    }
+    return Optional.ofNullable(pendingTransactions.get(transactionHash))
+        .map(TransactionInfo::getTransaction);
   }
 
   public void addTransactionListener(final PendingTransactionListener listener) {
@@ -190,14 +229,16 @@ public class PendingTransactions {
   }
 
   public OptionalLong getNextNonceForSender(final Address sender) {
-    synchronized (pendingTransactions) {
-      final SortedMap<Long, TransactionInfo> transactionsForSender =
-          transactionsBySender.get(sender);
-      if (transactionsForSender == null) {
-        return OptionalLong.empty();
-      }
-      return OptionalLong.of(transactionsForSender.lastKey() + 1);
+    final NavigableMap<Long, TransactionInfo> transactionsForSender =
+        transactionsBySender.get(sender);
+    if (transactionsForSender == null) {
+      return OptionalLong.empty();
+    }
+    final Map.Entry<Long, TransactionInfo> lastEntry = transactionsForSender.lastEntry();
+    if (lastEntry == null) {
+      return OptionalLong.empty();
     }
+    return OptionalLong.of(lastEntry.getKey() + 1);
   }
 
   /**
@@ -229,6 +270,10 @@ public class PendingTransactions {
       return transaction.getNonce();
     }
 
+    public Wei getGasPrice() {
+      return transaction.getGasPrice();
+    }
+
     public Address getSender() {
       return transaction.getSender();
     }
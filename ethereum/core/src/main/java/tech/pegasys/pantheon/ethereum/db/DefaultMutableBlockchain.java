@@ -56,9 +56,16 @@ public class DefaultMutableBlockchain implements MutableBlockchain {
       final Block genesisBlock,
       final KeyValueStorage keyValueStorage,
       final BlockHashFunction blockHashFunction) {
-    checkArgument(genesisBlock != null, "Missing required KeyValueStorage");
-    this.blockchainStorage =
-        new KeyValueStoragePrefixedKeyBlockchainStorage(keyValueStorage, blockHashFunction);
+    this(
+        genesisBlock,
+        new KeyValueStoragePrefixedKeyBlockchainStorage(keyValueStorage, blockHashFunction));
+  }
+
+  public DefaultMutableBlockchain(
+      final Block genesisBlock, final BlockchainStorage blockchainStorage) {
+    checkArgument(genesisBlock != null, "Missing required genesis block");
+    checkArgument(blockchainStorage != null, "Missing required BlockchainStorage");
+    this.blockchainStorage = blockchainStorage;
     this.setGenesis(genesisBlock);
   }
 
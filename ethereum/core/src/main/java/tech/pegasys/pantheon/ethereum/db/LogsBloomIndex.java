@@ -0,0 +1,326 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.db;
+
+import tech.pegasys.pantheon.ethereum.chain.BlockAddedEvent;
+import tech.pegasys.pantheon.ethereum.chain.BlockAddedObserver;
+import tech.pegasys.pantheon.ethereum.chain.Blockchain;
+import tech.pegasys.pantheon.ethereum.core.BlockHeader;
+import tech.pegasys.pantheon.ethereum.core.Hash;
+import tech.pegasys.pantheon.ethereum.core.LogsBloomFilter;
+import tech.pegasys.pantheon.services.kvstore.KeyValueStorage;
+import tech.pegasys.pantheon.services.kvstore.KeyValueStorage.StorageException;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+import tech.pegasys.pantheon.util.bytes.BytesValues;
+
+import java.io.Closeable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.primitives.Longs;
+import com.google.common.primitives.Shorts;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A bit-sliced index of the logs blooms of canonical blocks, for finding the blocks of a wide range
+ * that could hold logs with given addresses or topics without reading every block.
+ *
+ * <p>Blocks are grouped into sections of 4096 blocks. Once the chain head is far enough past a
+ * section, the section's blooms are turned into one column per bloom bit, holding a bit per block,
+ * and stored. Looking up a value then takes a read of three columns per section. Sections are
+ * indexed in the background, catching up with the existing chain when the node starts and following
+ * it as it grows. Blocks in sections that have not been indexed yet, or that a reorg has replaced
+ * since, are checked against their headers instead.
+ */
+public class LogsBloomIndex implements BlockAddedObserver, Closeable {
+
+  private static final Logger LOG = LogManager.getLogger();
+
+  private static final int DEFAULT_SECTION_SIZE = 4096;
+  // Sections are only indexed once they are this many blocks below the chain head, so that
+  // ordinary reorgs don't replace indexed blocks.
+  private static final int DEFAULT_SECTION_CONFIRMATIONS = 256;
+
+  // Distinct from the prefixes of blockchain entries, which share the same storage.
+  private static final BytesValue PREFIX = BytesValue.of(0x20);
+  private static final BytesValue INDEXED_SECTIONS_KEY =
+      BytesValues.concatenate(
+          PREFIX, BytesValue.wrap("indexedSections".getBytes(StandardCharsets.UTF_8)));
+
+  private final Blockchain blockchain;
+  private final KeyValueStorage storage;
+  private final ExecutorService executor;
+  private final int sectionSize;
+  private final int sectionConfirmations;
+  private final AtomicBoolean indexing = new AtomicBoolean();
+  private volatile long indexedSections;
+  private long observerId = -1;
+
+  /**
+   * @param blockchain The chain whose blocks are indexed.
+   * @param storage The storage the index is kept in, which may be shared with the blockchain.
+   * @param executor The executor sections are indexed on.
+   */
+  public LogsBloomIndex(
+      final Blockchain blockchain, final KeyValueStorage storage, final ExecutorService executor) {
+    this(blockchain, storage, executor, DEFAULT_SECTION_SIZE, DEFAULT_SECTION_CONFIRMATIONS);
+  }
+
+  LogsBloomIndex(
+      final Blockchain blockchain,
+      final KeyValueStorage storage,
+      final ExecutorService executor,
+      final int sectionSize,
+      final int sectionConfirmations) {
+    this.blockchain = blockchain;
+    this.storage = storage;
+    this.executor = executor;
+    this.sectionSize = sectionSize;
+    this.sectionConfirmations = sectionConfirmations;
+    this.indexedSections =
+        storage.get(INDEXED_SECTIONS_KEY).map(BytesValues::extractLong).orElse(0L);
+  }
+
+  /** Starts indexing the sections of the existing chain, and those of blocks as they are added. */
+  public synchronized void start() {
+    observerId = blockchain.observeBlockAdded(this);
+    indexNewSections();
+  }
+
+  @Override
+  public void onBlockAdded(final BlockAddedEvent event, final Blockchain blockchain) {
+    if (event.isNewCanonicalHead()) {
+      indexNewSections();
+    }
+  }
+
+  /**
+   * Finds the blocks in the given range whose logs bloom could match the given criteria.
+   *
+   * @param fromBlockNumber The first block of the range.
+   * @param toBlockNumber The last block of the range.
+   * @param criteria Groups of bloom filters, where a block matches if, for every group, its bloom
+   *     contains at least one of the group's filters.
+   * @param couldMatch Whether a logs bloom matches the criteria, which blocks that are not indexed
+   *     are checked with.
+   * @return The numbers of the matching blocks, in ascending order.
+   */
+  public List<Long> matchingBlocks(
+      final long fromBlockNumber,
+      final long toBlockNumber,
+      final List<List<LogsBloomFilter>> criteria,
+      final Predicate<LogsBloomFilter> couldMatch) {
+    final List<Long> blocks = new ArrayList<>();
+    for (long section = fromBlockNumber / sectionSize;
+        section <= toBlockNumber / sectionSize;
+        section++) {
+      final long sectionStart = section * sectionSize;
+      final long first = Math.max(fromBlockNumber, sectionStart);
+      final long last = Math.min(toBlockNumber, sectionStart + sectionSize - 1);
+      if (isIndexed(section)) {
+        final BitSet matches = matchingSectionBlocks(section, criteria);
+        for (int i = matches.nextSetBit((int) (first - sectionStart));
+            i >= 0 && sectionStart + i <= last;
+            i = matches.nextSetBit(i + 1)) {
+          blocks.add(sectionStart + i);
+        }
+      } else {
+        for (long blockNumber = first; blockNumber <= last; blockNumber++) {
+          final Optional<BlockHeader> header = blockchain.getBlockHeader(blockNumber);
+          if (header.isPresent() && couldMatch.test(header.get().getLogsBloom())) {
+            blocks.add(blockNumber);
+          }
+        }
+      }
+    }
+    return blocks;
+  }
+
+  private BitSet matchingSectionBlocks(
+      final long section, final List<List<LogsBloomFilter>> criteria) {
+    final Map<Integer, BitSet> columns = new HashMap<>();
+    final BitSet matches = new BitSet(sectionSize);
+    matches.set(0, sectionSize);
+    for (final List<LogsBloomFilter> group : criteria) {
+      final BitSet groupMatches = new BitSet(sectionSize);
+      for (final LogsBloomFilter filter : group) {
+        final BitSet filterMatches = new BitSet(sectionSize);
+        filterMatches.set(0, sectionSize);
+        for (int bit = 0; bit < LogsBloomFilter.BIT_SIZE; bit++) {
+          if (filter.isBitSet(bit)) {
+            filterMatches.and(columns.computeIfAbsent(bit, b -> readColumn(section, b)));
+          }
+        }
+        groupMatches.or(filterMatches);
+      }
+      matches.and(groupMatches);
+    }
+    return matches;
+  }
+
+  private BitSet readColumn(final long section, final int bit) {
+    return storage
+        .get(columnKey(section, bit))
+        .map(column -> BitSet.valueOf(column.extractArray()))
+        .orElseGet(BitSet::new);
+  }
+
+  // A section is usable if it has been indexed and its last block is still canonical.
+  private boolean isIndexed(final long section) {
+    if (section >= indexedSections) {
+      return false;
+    }
+    final Optional<Hash> canonicalHead =
+        blockchain.getBlockHashByNumber(section * sectionSize + sectionSize - 1);
+    final Optional<BytesValue> indexedHead = storage.get(sectionHeadKey(section));
+    if (canonicalHead.isPresent() && canonicalHead.get().equals(indexedHead.orElse(null))) {
+      return true;
+    }
+    LOG.debug("Logs bloom index section {} was replaced by a reorg", section);
+    reindexFrom(section);
+    indexNewSections();
+    return false;
+  }
+
+  private synchronized void reindexFrom(final long section) {
+    if (section < indexedSections) {
+      final KeyValueStorage.Transaction transaction = storage.getStartTransaction();
+      transaction.put(INDEXED_SECTIONS_KEY, BytesValues.toMinimalBytes(section));
+      transaction.commit();
+      indexedSections = section;
+    }
+  }
+
+  @VisibleForTesting
+  long indexedSections() {
+    return indexedSections;
+  }
+
+  private long finalSections() {
+    final long finalBlocks = blockchain.getChainHeadBlockNumber() + 1 - sectionConfirmations;
+    return Math.max(0, finalBlocks / sectionSize);
+  }
+
+  private void indexNewSections() {
+    if (indexedSections >= finalSections() || !indexing.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      executor.execute(this::indexSections);
+    } catch (final RejectedExecutionException e) {
+      indexing.set(false);
+    }
+  }
+
+  private void indexSections() {
+    try {
+      long section;
+      while ((section = indexedSections) < finalSections()
+          && !Thread.currentThread().isInterrupted()) {
+        if (!indexSection(section)) {
+          break;
+        }
+        LOG.debug(
+            "Indexed logs blooms of blocks {} to {}",
+            section * sectionSize,
+            (section + 1) * sectionSize - 1);
+      }
+    } catch (final StorageException e) {
+      LOG.warn("Failed to index logs blooms", e);
+    } finally {
+      indexing.set(false);
+    }
+  }
+
+  private boolean indexSection(final long section) {
+    final BitSet[] columns = new BitSet[LogsBloomFilter.BIT_SIZE];
+    for (int bit = 0; bit < columns.length; bit++) {
+      columns[bit] = new BitSet(sectionSize);
+    }
+    Hash sectionHead = null;
+    for (int i = 0; i < sectionSize; i++) {
+      final Optional<BlockHeader> header = blockchain.getBlockHeader(section * sectionSize + i);
+      // Give up if a block is missing, or a reorg replaced blocks while the section was read.
+      if (Thread.currentThread().isInterrupted()
+          || !header.isPresent()
+          || (sectionHead != null && !header.get().getParentHash().equals(sectionHead))) {
+        return false;
+      }
+      final LogsBloomFilter bloom = header.get().getLogsBloom();
+      for (int bit = 0; bit < columns.length; bit++) {
+        if (bloom.isBitSet(bit)) {
+          columns[bit].set(i);
+        }
+      }
+      sectionHead = header.get().getHash();
+    }
+    return commitSection(section, sectionHead, columns);
+  }
+
+  private synchronized boolean commitSection(
+      final long section, final Hash sectionHead, final BitSet[] columns) {
+    if (section != indexedSections) {
+      return false;
+    }
+    final KeyValueStorage.Transaction transaction = storage.getStartTransaction();
+    for (int bit = 0; bit < columns.length; bit++) {
+      final BytesValue key = columnKey(section, bit);
+      if (columns[bit].isEmpty()) {
+        transaction.remove(key);
+      } else {
+        transaction.put(key, BytesValue.wrap(columns[bit].toByteArray()));
+      }
+    }
+    transaction.put(sectionHeadKey(section), sectionHead);
+    transaction.put(INDEXED_SECTIONS_KEY, BytesValues.toMinimalBytes(section + 1));
+    transaction.commit();
+    indexedSections = section + 1;
+    return true;
+  }
+
+  private static BytesValue sectionHeadKey(final long section) {
+    return BytesValues.concatenate(PREFIX, BytesValue.wrap(Longs.toByteArray(section)));
+  }
+
+  private static BytesValue columnKey(final long section, final int bit) {
+    return BytesValues.concatenate(
+        PREFIX,
+        BytesValue.wrap(Longs.toByteArray(section)),
+        BytesValue.wrap(Shorts.toByteArray((short) bit)));
+  }
+
+  @Override
+  public synchronized void close() {
+    if (observerId >= 0) {
+      blockchain.removeObserver(observerId);
+    }
+    executor.shutdownNow();
+    try {
+      executor.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -12,19 +12,42 @@
  */
 package tech.pegasys.pantheon.ethereum.db;
 
+import tech.pegasys.pantheon.ethereum.core.Address;
 import tech.pegasys.pantheon.ethereum.core.Hash;
 import tech.pegasys.pantheon.ethereum.core.MutableWorldState;
 import tech.pegasys.pantheon.ethereum.core.WorldState;
 import tech.pegasys.pantheon.ethereum.trie.MerklePatriciaTrie;
 import tech.pegasys.pantheon.ethereum.worldstate.DefaultMutableWorldState;
+import tech.pegasys.pantheon.ethereum.worldstate.WorldStatePrefetcher;
+import tech.pegasys.pantheon.ethereum.worldstate.WorldStateSnapshot;
 import tech.pegasys.pantheon.ethereum.worldstate.WorldStateStorage;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
 
 public class WorldStateArchive {
   private final WorldStateStorage storage;
+  private final Optional<WorldStatePrefetcher> prefetcher;
+  private final Optional<ForkJoinPool> hashingPool;
+  private final Optional<WorldStateSnapshot> snapshot;
   private static final Hash EMPTY_ROOT_HASH = Hash.wrap(MerklePatriciaTrie.EMPTY_TRIE_ROOT_HASH);
 
   public WorldStateArchive(final WorldStateStorage storage) {
+    this(storage, Optional.empty(), Optional.empty(), Optional.empty());
+  }
+
+  public WorldStateArchive(
+      final WorldStateStorage storage,
+      final Optional<WorldStatePrefetcher> prefetcher,
+      final Optional<ForkJoinPool> hashingPool,
+      final Optional<WorldStateSnapshot> snapshot) {
     this.storage = storage;
+    this.prefetcher = prefetcher;
+    this.hashingPool = hashingPool;
+    this.snapshot = snapshot;
   }
 
   public WorldState get(final Hash rootHash) {
@@ -32,7 +55,7 @@ public class WorldStateArchive {
   }
 
   public MutableWorldState getMutable(final Hash rootHash) {
-    return new DefaultMutableWorldState(rootHash, storage);
+    return new DefaultMutableWorldState(rootHash, storage, hashingPool, snapshot);
   }
 
   public WorldState get() {
@@ -42,4 +65,41 @@ public class WorldStateArchive {
   public MutableWorldState getMutable() {
     return getMutable(EMPTY_ROOT_HASH);
   }
+
+  /**
+   * Whether the world state with the given root is held in storage.
+   *
+   * @param rootHash The root of the world state.
+   * @return true if the root node of the world state is stored.
+   */
+  public boolean isWorldStateAvailable(final Hash rootHash) {
+    return rootHash.equals(EMPTY_ROOT_HASH)
+        || storage.getAccountStateTrieNode(rootHash).isPresent();
+  }
+
+  /** @return true if accounts passed to {@link #prefetch(Hash, Collection)} are read ahead. */
+  public boolean isPrefetchEnabled() {
+    return prefetcher.isPresent();
+  }
+
+  /**
+   * Starts reading accounts that are about to be used from the world state with the given root, if
+   * prefetching is enabled. Returns without waiting for the reads.
+   *
+   * @param rootHash The root of the world state the accounts will be read from.
+   * @param addresses The accounts expected to be used.
+   */
+  public void prefetch(final Hash rootHash, final Collection<Address> addresses) {
+    prefetcher.ifPresent(p -> p.prefetch(rootHash, addresses));
+  }
+
+  /**
+   * Looks up trie nodes and contract code by hash, for serving to peers.
+   *
+   * @param hashes The hashes of the requested nodes or code.
+   * @return The data found, keyed by hash. Hashes with no stored data are absent from the map.
+   */
+  public Map<Hash, BytesValue> getNodeData(final Collection<Hash> hashes) {
+    return storage.getNodeData(hashes);
+  }
 }
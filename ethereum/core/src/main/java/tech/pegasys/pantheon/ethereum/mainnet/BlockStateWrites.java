@@ -0,0 +1,72 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.mainnet;
+
+import tech.pegasys.pantheon.ethereum.core.Address;
+import tech.pegasys.pantheon.util.uint.UInt256;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The accounts and storage slots written by the transactions of a block that have been applied so
+ * far, used to decide whether a speculatively executed transaction observed stale state.
+ */
+final class BlockStateWrites {
+
+  private final Set<Address> accounts = new HashSet<>();
+  private final Set<Address> replacedStorage = new HashSet<>();
+  private final Map<Address, Set<UInt256>> storage = new HashMap<>();
+
+  /**
+   * Records that the nonce, balance, code or existence of an account changed.
+   *
+   * @param address the address of the account
+   */
+  void accountChanged(final Address address) {
+    accounts.add(address);
+  }
+
+  /**
+   * Records that an account was created, deleted or had its storage cleared, which changes all of
+   * its storage at once.
+   *
+   * @param address the address of the account
+   */
+  void accountReplaced(final Address address) {
+    accounts.add(address);
+    replacedStorage.add(address);
+  }
+
+  void storageChanged(final Address address, final UInt256 key) {
+    storage.computeIfAbsent(address, a -> new HashSet<>()).add(key);
+  }
+
+  boolean isAccountChanged(final Address address) {
+    return accounts.contains(address);
+  }
+
+  boolean isStorageChanged(final Address address, final UInt256 key) {
+    if (replacedStorage.contains(address)) {
+      return true;
+    }
+    final Set<UInt256> keys = storage.get(address);
+    return keys != null && keys.contains(key);
+  }
+
+  boolean isAnyStorageChanged(final Address address) {
+    return replacedStorage.contains(address) || storage.containsKey(address);
+  }
+}
@@ -13,17 +13,23 @@
 package tech.pegasys.pantheon.ethereum.mainnet;
 
 import static org.apache.logging.log4j.LogManager.getLogger;
+import static tech.pegasys.pantheon.ethereum.core.Address.contractAddress;
 
 import tech.pegasys.pantheon.ethereum.ProtocolContext;
 import tech.pegasys.pantheon.ethereum.chain.MutableBlockchain;
+import tech.pegasys.pantheon.ethereum.core.Address;
 import tech.pegasys.pantheon.ethereum.core.Block;
 import tech.pegasys.pantheon.ethereum.core.BlockHeader;
 import tech.pegasys.pantheon.ethereum.core.BlockImporter;
 import tech.pegasys.pantheon.ethereum.core.MutableWorldState;
+import tech.pegasys.pantheon.ethereum.core.Transaction;
 import tech.pegasys.pantheon.ethereum.core.TransactionReceipt;
+import tech.pegasys.pantheon.ethereum.db.WorldStateArchive;
 
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import org.apache.logging.log4j.Logger;
 
@@ -70,8 +76,11 @@ public class MainnetBlockImporter<C> implements BlockImporter<C> {
     }
 
     final MutableBlockchain blockchain = context.getBlockchain();
-    final MutableWorldState worldState =
-        context.getWorldStateArchive().getMutable(parentHeader.getStateRoot());
+    final WorldStateArchive worldStateArchive = context.getWorldStateArchive();
+    if (worldStateArchive.isPrefetchEnabled()) {
+      worldStateArchive.prefetch(parentHeader.getStateRoot(), touchedAccounts(block));
+    }
+    final MutableWorldState worldState = worldStateArchive.getMutable(parentHeader.getStateRoot());
     final BlockProcessor.Result result = blockProcessor.processBlock(blockchain, worldState, block);
     if (!result.isSuccessful()) {
       return false;
@@ -88,6 +97,29 @@ public class MainnetBlockImporter<C> implements BlockImporter<C> {
     return true;
   }
 
+  // Senders, recipients and beneficiaries are known before execution, and cover most of the
+  // accounts a block touches.
+  private static Set<Address> touchedAccounts(final Block block) {
+    final Set<Address> accounts = new LinkedHashSet<>();
+    for (final Transaction transaction : block.getBody().getTransactions()) {
+      transaction.getTo().ifPresent(accounts::add);
+      final Address sender;
+      try {
+        sender = transaction.getSender();
+      } catch (final IllegalStateException e) {
+        // The block is invalid, which processing it will report.
+        continue;
+      }
+      accounts.add(sender);
+      if (!transaction.getTo().isPresent()) {
+        accounts.add(contractAddress(sender, transaction.getNonce()));
+      }
+    }
+    accounts.add(block.getHeader().getCoinbase());
+    block.getBody().getOmmers().forEach(ommer -> accounts.add(ommer.getCoinbase()));
+    return accounts;
+  }
+
   @Override
   public boolean fastImportBlock(
       final ProtocolContext<C> context,
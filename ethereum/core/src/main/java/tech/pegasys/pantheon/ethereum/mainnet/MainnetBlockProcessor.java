@@ -26,7 +26,12 @@ import tech.pegasys.pantheon.ethereum.core.WorldUpdater;
 import tech.pegasys.pantheon.ethereum.vm.BlockHashLookup;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import com.google.common.collect.ImmutableList;
 import org.apache.logging.log4j.LogManager;
@@ -85,15 +90,48 @@ public class MainnetBlockProcessor implements BlockProcessor {
 
   private final MiningBeneficiaryCalculator miningBeneficiaryCalculator;
 
+  private final Optional<Executor> speculativeExecutor;
+
   public MainnetBlockProcessor(
       final TransactionProcessor transactionProcessor,
       final TransactionReceiptFactory transactionReceiptFactory,
       final Wei blockReward,
       final MiningBeneficiaryCalculator miningBeneficiaryCalculator) {
+    this(
+        transactionProcessor,
+        transactionReceiptFactory,
+        blockReward,
+        miningBeneficiaryCalculator,
+        Optional.empty());
+  }
+
+  /**
+   * Creates a block processor that may execute the transactions of a block in parallel.
+   *
+   * <p>When an executor is provided, all transactions of a block are first executed concurrently
+   * against the state the block starts from. Their results are then validated in block order: a
+   * transaction that read an account or storage slot written by a preceding transaction is executed
+   * again against the up-to-date state, while the updates of the others are applied as is. The
+   * resulting receipts and world state are identical to those of sequential execution.
+   *
+   * @param transactionProcessor the processor used to execute transactions
+   * @param transactionReceiptFactory the factory creating the receipt of each transaction
+   * @param blockReward the reward paid to the coinbase of each block
+   * @param miningBeneficiaryCalculator determines to whom mining proceeds are paid
+   * @param speculativeExecutor the executor on which to execute transactions speculatively, or
+   *     empty to always execute them sequentially
+   */
+  public MainnetBlockProcessor(
+      final TransactionProcessor transactionProcessor,
+      final TransactionReceiptFactory transactionReceiptFactory,
+      final Wei blockReward,
+      final MiningBeneficiaryCalculator miningBeneficiaryCalculator,
+      final Optional<Executor> speculativeExecutor) {
     this.transactionProcessor = transactionProcessor;
     this.transactionReceiptFactory = transactionReceiptFactory;
     this.blockReward = blockReward;
     this.miningBeneficiaryCalculator = miningBeneficiaryCalculator;
+    this.speculativeExecutor = speculativeExecutor;
   }
 
   @Override
@@ -103,6 +141,10 @@ public class MainnetBlockProcessor implements BlockProcessor {
       final BlockHeader blockHeader,
       final List<Transaction> transactions,
       final List<BlockHeader> ommers) {
+    if (speculativeExecutor.isPresent() && transactions.size() > 1) {
+      return processBlockSpeculatively(
+          speculativeExecutor.get(), blockchain, worldState, blockHeader, transactions, ommers);
+    }
 
     long gasUsed = 0;
     final List<TransactionReceipt> receipts = new ArrayList<>();
@@ -148,6 +190,138 @@ public class MainnetBlockProcessor implements BlockProcessor {
     return Result.successful(receipts);
   }
 
+  private Result processBlockSpeculatively(
+      final Executor executor,
+      final Blockchain blockchain,
+      final MutableWorldState worldState,
+      final BlockHeader blockHeader,
+      final List<Transaction> transactions,
+      final List<BlockHeader> ommers) {
+    final Address miningBeneficiary = miningBeneficiaryCalculator.calculateBeneficiary(blockHeader);
+
+    // Transactions whose sender already sent a preceding transaction of the block are bound to
+    // observe a stale nonce, so there is no point executing them ahead of time. Neither is there
+    // for transactions whose sender cannot be recovered, which are left to sequential execution to
+    // reject.
+    final Set<Address> senders = new HashSet<>();
+    final List<CompletableFuture<SpeculativeExecution>> speculativeExecutions =
+        new ArrayList<>(transactions.size());
+    for (final Transaction transaction : transactions) {
+      if (hasRecoverableSender(transaction) && senders.add(transaction.getSender())) {
+        speculativeExecutions.add(
+            CompletableFuture.supplyAsync(
+                () ->
+                    execute(
+                        blockchain,
+                        worldState,
+                        blockHeader,
+                        transaction,
+                        miningBeneficiary,
+                        transaction.getSender().equals(miningBeneficiary)
+                            ? Optional.empty()
+                            : Optional.of(miningBeneficiary)),
+                executor));
+      } else {
+        speculativeExecutions.add(CompletableFuture.completedFuture(null));
+      }
+    }
+
+    // All speculative executions read the world state, so they must be over before it is updated.
+    final List<SpeculativeExecution> executions = new ArrayList<>(transactions.size());
+    for (final CompletableFuture<SpeculativeExecution> speculativeExecution :
+        speculativeExecutions) {
+      executions.add(speculativeExecution.exceptionally(error -> null).join());
+    }
+
+    long gasUsed = 0;
+    final List<TransactionReceipt> receipts = new ArrayList<>();
+    final BlockStateWrites blockWrites = new BlockStateWrites();
+
+    for (int i = 0; i < transactions.size(); i++) {
+      final Transaction transaction = transactions.get(i);
+      final long remainingGasBudget = blockHeader.getGasLimit() - gasUsed;
+      if (Long.compareUnsigned(transaction.getGasLimit(), remainingGasBudget) > 0) {
+        LOG.warn(
+            "Transaction processing error: transaction gas limit {} exceeds available block budget remaining {}",
+            transaction.getGasLimit(),
+            remainingGasBudget);
+        return Result.failed();
+      }
+
+      SpeculativeExecution execution = executions.get(i);
+      if (execution == null
+          || execution.result.isInvalid()
+          || execution.updater.readsAnyOf(blockWrites)) {
+        execution =
+            execute(
+                blockchain,
+                worldState,
+                blockHeader,
+                transaction,
+                miningBeneficiary,
+                Optional.empty());
+        if (execution.result.isInvalid()) {
+          return Result.failed();
+        }
+      }
+
+      execution.updater.commit();
+      execution.updater.recordWritesIn(blockWrites);
+
+      gasUsed = transaction.getGasLimit() - execution.result.getGasRemaining() + gasUsed;
+      final TransactionReceipt transactionReceipt =
+          transactionReceiptFactory.create(execution.result, worldState, gasUsed);
+      receipts.add(transactionReceipt);
+    }
+
+    if (!rewardCoinbase(worldState, blockHeader, ommers)) {
+      return Result.failed();
+    }
+
+    worldState.persist();
+    return Result.successful(receipts);
+  }
+
+  private static boolean hasRecoverableSender(final Transaction transaction) {
+    try {
+      transaction.getSender();
+      return true;
+    } catch (final IllegalStateException e) {
+      return false;
+    }
+  }
+
+  private SpeculativeExecution execute(
+      final Blockchain blockchain,
+      final MutableWorldState worldState,
+      final BlockHeader blockHeader,
+      final Transaction transaction,
+      final Address miningBeneficiary,
+      final Optional<Address> deferredFeeRecipient) {
+    final SpeculativeWorldUpdater updater =
+        new SpeculativeWorldUpdater(worldState, deferredFeeRecipient);
+    final TransactionProcessor.Result result =
+        transactionProcessor.processTransaction(
+            blockchain,
+            updater,
+            blockHeader,
+            transaction,
+            miningBeneficiary,
+            new BlockHashLookup(blockHeader, blockchain));
+    return new SpeculativeExecution(updater, result);
+  }
+
+  private static class SpeculativeExecution {
+    private final SpeculativeWorldUpdater updater;
+    private final TransactionProcessor.Result result;
+
+    private SpeculativeExecution(
+        final SpeculativeWorldUpdater updater, final TransactionProcessor.Result result) {
+      this.updater = updater;
+      this.result = result;
+    }
+  }
+
   private boolean rewardCoinbase(
       final MutableWorldState worldState,
       final ProcessableBlockHeader header,
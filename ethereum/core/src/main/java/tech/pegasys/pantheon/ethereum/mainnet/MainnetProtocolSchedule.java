@@ -12,6 +12,10 @@
  */
 package tech.pegasys.pantheon.ethereum.mainnet;
 
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
 import io.vertx.core.json.JsonObject;
 
 /** Provides {@link ProtocolSpec} lookups for mainnet hard forks. */
@@ -46,29 +50,67 @@ public class MainnetProtocolSchedule {
       final long byzantiumBlockNumber,
       final long constantinopleBlockNumber,
       final int chainId) {
+    return create(
+        homesteadBlockNumber,
+        daoBlockNumber,
+        tangerineWhistleBlockNumber,
+        spuriousDragonBlockNumber,
+        byzantiumBlockNumber,
+        constantinopleBlockNumber,
+        chainId,
+        Optional.empty());
+  }
+
+  /**
+   * Creates a mainnet protocol schedule with milestones starting at the specified block numbers
+   *
+   * @param homesteadBlockNumber Block number at which to start the homestead fork
+   * @param daoBlockNumber Block number at which to start the dao fork
+   * @param tangerineWhistleBlockNumber Block number at which to start the tangerine whistle fork
+   * @param spuriousDragonBlockNumber Block number at which to start the spurious dragon fork
+   * @param byzantiumBlockNumber Block number at which to start the byzantium fork
+   * @param constantinopleBlockNumber Block number at which to start the constantinople fork
+   * @param chainId ID of the blockchain
+   * @param speculativeExecutor Executor on which to execute the transactions of each block in
+   *     parallel, or empty to execute them sequentially
+   * @return MainnetProtocolSchedule return newly instantiated protocol schedule
+   */
+  public static ProtocolSchedule<Void> create(
+      final long homesteadBlockNumber,
+      final long daoBlockNumber,
+      final long tangerineWhistleBlockNumber,
+      final long spuriousDragonBlockNumber,
+      final long byzantiumBlockNumber,
+      final long constantinopleBlockNumber,
+      final int chainId,
+      final Optional<Executor> speculativeExecutor) {
 
     final MutableProtocolSchedule<Void> protocolSchedule = new MutableProtocolSchedule<>();
-    protocolSchedule.putMilestone(0, MainnetProtocolSpecs.frontier(protocolSchedule));
-    final ProtocolSpec<Void> homestead = MainnetProtocolSpecs.homestead(protocolSchedule);
+    final Function<ProtocolSpecBuilder<Void>, ProtocolSpec<Void>> build =
+        definition -> definition.speculativeExecutor(speculativeExecutor).build(protocolSchedule);
+    protocolSchedule.putMilestone(0, build.apply(MainnetProtocolSpecs.frontierDefinition()));
+    final ProtocolSpec<Void> homestead = build.apply(MainnetProtocolSpecs.homesteadDefinition());
     protocolSchedule.putMilestone(homesteadBlockNumber, homestead);
     if (daoBlockNumber != 0) {
       protocolSchedule.putMilestone(
-          daoBlockNumber, MainnetProtocolSpecs.daoRecoveryInit(protocolSchedule));
+          daoBlockNumber, build.apply(MainnetProtocolSpecs.daoRecoveryInitDefinition()));
       protocolSchedule.putMilestone(
-          daoBlockNumber + 1, MainnetProtocolSpecs.daoRecoveryTransition(protocolSchedule));
+          daoBlockNumber + 1, build.apply(MainnetProtocolSpecs.daoRecoveryTransitionDefinition()));
       protocolSchedule.putMilestone(daoBlockNumber + 10, homestead);
     }
     protocolSchedule.putMilestone(
-        tangerineWhistleBlockNumber, MainnetProtocolSpecs.tangerineWhistle(protocolSchedule));
+        tangerineWhistleBlockNumber,
+        build.apply(MainnetProtocolSpecs.tangerineWhistleDefinition()));
     protocolSchedule.putMilestone(
-        spuriousDragonBlockNumber, MainnetProtocolSpecs.spuriousDragon(chainId, protocolSchedule));
+        spuriousDragonBlockNumber,
+        build.apply(MainnetProtocolSpecs.spuriousDragonDefinition(chainId)));
     protocolSchedule.putMilestone(
-        byzantiumBlockNumber, MainnetProtocolSpecs.byzantium(chainId, protocolSchedule));
+        byzantiumBlockNumber, build.apply(MainnetProtocolSpecs.byzantiumDefinition(chainId)));
 
     if (constantinopleBlockNumber >= 0) {
       protocolSchedule.putMilestone(
           constantinopleBlockNumber,
-          MainnetProtocolSpecs.constantinople(chainId, protocolSchedule));
+          build.apply(MainnetProtocolSpecs.constantinopleDefinition(chainId)));
     }
 
     return protocolSchedule;
@@ -93,6 +135,20 @@ public class MainnetProtocolSchedule {
    * @return A configured mainnet protocol schedule
    */
   public static ProtocolSchedule<Void> fromConfig(final JsonObject config) {
+    return fromConfig(config, Optional.empty());
+  }
+
+  /**
+   * Create a Mainnet protocol schedule from a config object
+   *
+   * @param config {@link JsonObject} containing the config options for the milestone starting
+   *     points
+   * @param speculativeExecutor Executor on which to execute the transactions of each block in
+   *     parallel, or empty to execute them sequentially
+   * @return A configured mainnet protocol schedule
+   */
+  public static ProtocolSchedule<Void> fromConfig(
+      final JsonObject config, final Optional<Executor> speculativeExecutor) {
     final long homesteadBlockNumber =
         config.getLong("homesteadBlock", DEFAULT_HOMESTEAD_BLOCK_NUMBER);
     final long daoBlockNumber = config.getLong("daoForkBlock", DEFAULT_DAO_BLOCK_NUMBER);
@@ -112,6 +168,7 @@ public class MainnetProtocolSchedule {
         spuriousDragonBlockNumber,
         byzantiumBlockNumber,
         constantinopleBlockNumber,
-        chainId);
+        chainId,
+        speculativeExecutor);
   }
 }
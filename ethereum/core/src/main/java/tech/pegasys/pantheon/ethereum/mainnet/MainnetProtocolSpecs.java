@@ -138,20 +138,22 @@ public abstract class MainnetProtocolSpecs {
     return daoRecoveryInitDefinition().build(protocolSchedule);
   }
 
-  private static ProtocolSpecBuilder<Void> daoRecoveryInitDefinition() {
+  static ProtocolSpecBuilder<Void> daoRecoveryInitDefinition() {
     return homesteadDefinition()
         .blockHeaderValidatorBuilder(MainnetBlockHeaderValidator::createDaoValidator)
         .blockProcessorBuilder(
             (transactionProcessor,
                 transactionReceiptFactory,
                 blockReward,
-                miningBeneficiaryCalculator) ->
+                miningBeneficiaryCalculator,
+                speculativeExecutor) ->
                 new DaoBlockProcessor(
                     new MainnetBlockProcessor(
                         transactionProcessor,
                         transactionReceiptFactory,
                         blockReward,
-                        miningBeneficiaryCalculator)))
+                        miningBeneficiaryCalculator,
+                        speculativeExecutor)))
         .name("DaoRecoveryInit");
   }
 
@@ -163,10 +165,13 @@ public abstract class MainnetProtocolSpecs {
    */
   public static ProtocolSpec<Void> daoRecoveryTransition(
       final ProtocolSchedule<Void> protocolSchedule) {
+    return daoRecoveryTransitionDefinition().build(protocolSchedule);
+  }
+
+  static ProtocolSpecBuilder<Void> daoRecoveryTransitionDefinition() {
     return daoRecoveryInitDefinition()
         .blockProcessorBuilder(MainnetBlockProcessor::new)
-        .name("DaoRecoveryTransition")
-        .build(protocolSchedule);
+        .name("DaoRecoveryTransition");
   }
 
   /**
@@ -263,13 +268,16 @@ public abstract class MainnetProtocolSpecs {
    */
   public static ProtocolSpec<Void> constantinople(
       final int chainId, final ProtocolSchedule<Void> protocolSchedule) {
+    return constantinopleDefinition(chainId).build(protocolSchedule);
+  }
+
+  public static ProtocolSpecBuilder<Void> constantinopleDefinition(final int chainId) {
     return byzantiumDefinition(chainId)
         .difficultyCalculator(MainnetDifficultyCalculators.CONSTANTINOPLE)
         .gasCalculator(ConstantinopleGasCalculator::new)
         .evmBuilder(MainnetEvmRegistries::constantinople)
         .blockReward(CONSTANTINOPLE_BLOCK_REWARD)
-        .name("Constantinople")
-        .build(protocolSchedule);
+        .name("Constantinople");
   }
 
   private static TransactionReceipt frontierTransactionReceiptFactory(
@@ -235,7 +235,7 @@ public class MainnetTransactionProcessor implements TransactionProcessor {
               .sender(senderAddress)
               .value(transaction.getValue())
               .apparentValue(transaction.getValue())
-              .code(new Code(contract != null ? contract.getCode() : BytesValue.EMPTY))
+              .code(Code.forAccount(contract))
               .blockHeader(blockHeader)
               .depth(0)
               .completer(c -> {})
@@ -281,15 +281,16 @@ public class MainnetTransactionProcessor implements TransactionProcessor {
       clearEmptyAccounts(worldState);
     }
 
-    if (initialFrame.getState() == MessageFrame.State.COMPLETED_SUCCESS) {
-      return Result.successful(
-          initialFrame.getLogs(),
-          refunded.toLong(),
-          initialFrame.getOutputData(),
-          validationResult);
-    } else {
-      return Result.failed(refunded.toLong(), validationResult);
-    }
+    final Result result =
+        initialFrame.getState() == MessageFrame.State.COMPLETED_SUCCESS
+            ? Result.successful(
+                initialFrame.getLogs(),
+                refunded.toLong(),
+                initialFrame.getOutputData(),
+                validationResult)
+            : Result.failed(refunded.toLong(), validationResult);
+    initialFrame.release();
+    return result;
   }
 
   private static void clearEmptyAccounts(final WorldUpdater worldState) {
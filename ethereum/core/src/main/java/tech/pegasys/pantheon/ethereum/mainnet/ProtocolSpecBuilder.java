@@ -21,6 +21,8 @@ import tech.pegasys.pantheon.ethereum.mainnet.MainnetBlockProcessor.TransactionR
 import tech.pegasys.pantheon.ethereum.vm.EVM;
 import tech.pegasys.pantheon.ethereum.vm.GasCalculator;
 
+import java.util.Optional;
+import java.util.concurrent.Executor;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.function.Supplier;
@@ -46,6 +48,7 @@ public class ProtocolSpecBuilder<T> {
   private TransactionReceiptType transactionReceiptType;
   private String name;
   private MiningBeneficiaryCalculator miningBeneficiaryCalculator;
+  private Optional<Executor> speculativeExecutor = Optional.empty();
 
   public ProtocolSpecBuilder<T> gasCalculator(final Supplier<GasCalculator> gasCalculatorBuilder) {
     this.gasCalculatorBuilder = gasCalculatorBuilder;
@@ -155,6 +158,18 @@ public class ProtocolSpecBuilder<T> {
     return this;
   }
 
+  /**
+   * Sets the executor on which block processors execute the transactions of a block in parallel.
+   * Transactions are executed sequentially unless one is provided.
+   *
+   * @param speculativeExecutor the executor for parallel transaction execution, if any
+   * @return this builder
+   */
+  public ProtocolSpecBuilder<T> speculativeExecutor(final Optional<Executor> speculativeExecutor) {
+    this.speculativeExecutor = speculativeExecutor;
+    return this;
+  }
+
   public ProtocolSpecBuilder<T> name(final String name) {
     this.name = name;
     return this;
@@ -185,6 +200,7 @@ public class ProtocolSpecBuilder<T> {
         .transactionReceiptFactory(transactionReceiptFactory)
         .transactionReceiptType(transactionReceiptType)
         .miningBeneficiaryCalculator(miningBeneficiaryCalculator)
+        .speculativeExecutor(speculativeExecutor)
         .name(name);
   }
 
@@ -207,6 +223,7 @@ public class ProtocolSpecBuilder<T> {
     checkNotNull(transactionReceiptType, "Missing transaction receipt type");
     checkNotNull(name, "Missing name");
     checkNotNull(miningBeneficiaryCalculator, "Missing Mining Beneficiary Calculator");
+    checkNotNull(speculativeExecutor, "Missing speculative executor");
     checkNotNull(protocolSchedule, "Missing protocol schedule");
 
     final GasCalculator gasCalculator = gasCalculatorBuilder.get();
@@ -233,7 +250,8 @@ public class ProtocolSpecBuilder<T> {
             transactionProcessor,
             transactionReceiptFactory,
             blockReward,
-            miningBeneficiaryCalculator);
+            miningBeneficiaryCalculator,
+            speculativeExecutor);
     final BlockImporter<T> blockImporter =
         blockImporterBuilder.apply(blockHeaderValidator, blockBodyValidator, blockProcessor);
     return new ProtocolSpec<>(
@@ -267,7 +285,8 @@ public class ProtocolSpecBuilder<T> {
         TransactionProcessor transactionProcessor,
         TransactionReceiptFactory transactionReceiptFactory,
         Wei blockReward,
-        MiningBeneficiaryCalculator miningBeneficiaryCalculator);
+        MiningBeneficiaryCalculator miningBeneficiaryCalculator,
+        Optional<Executor> speculativeExecutor);
   }
 
   public interface BlockImporterBuilder<T> {
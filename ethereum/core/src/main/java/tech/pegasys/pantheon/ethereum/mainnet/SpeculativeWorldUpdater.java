@@ -0,0 +1,321 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.mainnet;
+
+import tech.pegasys.pantheon.ethereum.core.AbstractWorldUpdater;
+import tech.pegasys.pantheon.ethereum.core.Account;
+import tech.pegasys.pantheon.ethereum.core.Address;
+import tech.pegasys.pantheon.ethereum.core.Hash;
+import tech.pegasys.pantheon.ethereum.core.MutableAccount;
+import tech.pegasys.pantheon.ethereum.core.MutableWorldView;
+import tech.pegasys.pantheon.ethereum.core.Wei;
+import tech.pegasys.pantheon.ethereum.core.WorldUpdater;
+import tech.pegasys.pantheon.ethereum.core.WorldView;
+import tech.pegasys.pantheon.util.bytes.Bytes32;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+import tech.pegasys.pantheon.util.uint.UInt256;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * A {@link WorldUpdater} for executing a single transaction speculatively, that is possibly against
+ * a world state that does not yet reflect the preceding transactions of its block.
+ *
+ * <p>The updater records every account and storage slot the transaction reads from the underlying
+ * world, so that the execution can later be validated against the writes of the transactions
+ * applied before it (see {@link #readsAnyOf(BlockStateWrites)}). Its updates are only committed to
+ * the underlying world once the execution is known to be valid, at which point that world may
+ * already include the updates of other transactions: {@link #commit()} replays this execution's
+ * updates onto the world as it is then, rather than overwriting it with what was read earlier.
+ *
+ * <p>Every transaction credits its fee to the mining beneficiary, which would otherwise make all
+ * transactions of a block conflict with each other. When a fee recipient is provided, and as long
+ * as the transaction doesn't otherwise read that account, its balance increase is thus applied as a
+ * delta rather than as an absolute value.
+ */
+class SpeculativeWorldUpdater
+    extends AbstractWorldUpdater<SpeculativeWorldUpdater.RecordingWorldView, Account> {
+
+  private final MutableWorldView world;
+  private final Optional<Address> feeRecipient;
+
+  private boolean inDirectAccess = false;
+  private boolean feeRecipientRead = false;
+
+  SpeculativeWorldUpdater(final MutableWorldView world, final Optional<Address> feeRecipient) {
+    super(new RecordingWorldView(world));
+    this.world = world;
+    this.feeRecipient = feeRecipient;
+  }
+
+  @Override
+  protected Account getForMutation(final Address address) {
+    recordAccess(address);
+    return wrappedWorldView().get(address);
+  }
+
+  @Override
+  public Account get(final Address address) {
+    recordAccess(address);
+    return super.get(address);
+  }
+
+  @Override
+  public MutableAccount getMutable(final Address address) {
+    // Accounts requested directly on this updater (rather than through the nested updaters of the
+    // executing code) are the sender and, once execution is over, the fee recipient.
+    inDirectAccess = true;
+    try {
+      return super.getMutable(address);
+    } finally {
+      inDirectAccess = false;
+    }
+  }
+
+  private void recordAccess(final Address address) {
+    if (!inDirectAccess && feeRecipient.map(address::equals).orElse(false)) {
+      feeRecipientRead = true;
+    }
+  }
+
+  @Override
+  public Collection<Account> getTouchedAccounts() {
+    return new ArrayList<>(updatedAccounts());
+  }
+
+  @Override
+  public void revert() {
+    deletedAccounts().clear();
+    updatedAccounts().clear();
+  }
+
+  @Override
+  public void commit() {
+    final WorldUpdater target = world.updater();
+    applyTo(target);
+    target.commit();
+  }
+
+  /**
+   * Returns whether this execution read any account or storage slot written by the given writes, in
+   * which case its result cannot be trusted.
+   *
+   * @param writes the writes of the transactions that precede this one
+   * @return {@code true} if this execution may have observed stale state
+   */
+  boolean readsAnyOf(final BlockStateWrites writes) {
+    final RecordingWorldView view = wrappedWorldView();
+    final Optional<Address> deferredFeeRecipient = deferredFeeRecipient();
+    for (final Address address : view.accountReads) {
+      if (writes.isAccountChanged(address)
+          && !deferredFeeRecipient.map(address::equals).orElse(false)) {
+        return true;
+      }
+    }
+    for (final Map.Entry<Address, Set<UInt256>> entry : view.storageReads.entrySet()) {
+      for (final UInt256 key : entry.getValue()) {
+        if (writes.isStorageChanged(entry.getKey(), key)) {
+          return true;
+        }
+      }
+    }
+    for (final Address address : view.storageScans) {
+      if (writes.isAnyStorageChanged(address)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Records the accounts and storage slots this execution modified.
+   *
+   * @param writes the writes to add this execution's writes to
+   */
+  void recordWritesIn(final BlockStateWrites writes) {
+    final Optional<Address> deferredFeeRecipient = deferredFeeRecipient();
+    deletedAccounts().forEach(writes::accountReplaced);
+    for (final UpdateTrackingAccount<Account> updated : updatedAccounts()) {
+      final Address address = updated.getAddress();
+      final Account original = updated.getWrappedAccount();
+      if (deferredFeeRecipient.map(address::equals).orElse(false)) {
+        writes.accountChanged(address);
+      } else if (original == null || updated.getStorageWasCleared()) {
+        writes.accountReplaced(address);
+      } else if (updated.getNonce() != original.getNonce()
+          || !updated.getBalance().equals(original.getBalance())
+          || updated.codeWasUpdated()) {
+        writes.accountChanged(address);
+      }
+      updated.getUpdatedStorage().keySet().forEach(key -> writes.storageChanged(address, key));
+    }
+  }
+
+  /**
+   * Replays the updates of this execution on the provided updater.
+   *
+   * @param target the updater to apply this execution's updates to
+   */
+  private void applyTo(final WorldUpdater target) {
+    final Optional<Address> deferredFeeRecipient = deferredFeeRecipient();
+    deletedAccounts().forEach(target::deleteAccount);
+    for (final UpdateTrackingAccount<Account> updated : updatedAccounts()) {
+      final Address address = updated.getAddress();
+      if (deferredFeeRecipient.map(address::equals).orElse(false)) {
+        target.getOrCreate(address).incrementBalance(feeRecipientBalanceIncrease(updated));
+        continue;
+      }
+
+      final MutableAccount account =
+          updated.getWrappedAccount() == null
+              ? target.createAccount(address)
+              : target.getMutable(address);
+      account.setNonce(updated.getNonce());
+      account.setBalance(updated.getBalance());
+      if (updated.codeWasUpdated()) {
+        account.setCode(updated.getCode());
+      }
+      if (updated.getStorageWasCleared()) {
+        account.clearStorage();
+      }
+      updated.getUpdatedStorage().forEach(account::setStorageValue);
+    }
+  }
+
+  /**
+   * Returns the fee recipient if its only update was to have its balance increased, in which case
+   * that increase can be applied on top of whatever the preceding transactions did to the account.
+   */
+  private Optional<Address> deferredFeeRecipient() {
+    if (feeRecipientRead || !feeRecipient.isPresent()) {
+      return Optional.empty();
+    }
+    final Address address = feeRecipient.get();
+    if (deletedAccounts().contains(address)) {
+      return Optional.empty();
+    }
+    for (final UpdateTrackingAccount<Account> updated : updatedAccounts()) {
+      if (updated.getAddress().equals(address)) {
+        final Account original = updated.getWrappedAccount();
+        final long originalNonce = original == null ? 0L : original.getNonce();
+        final boolean onlyBalanceIncreased =
+            updated.getNonce() == originalNonce
+                && !updated.getStorageWasCleared()
+                && updated.getUpdatedStorage().isEmpty()
+                && (original == null ? !updated.hasCode() : !updated.codeWasUpdated())
+                && feeRecipientBalanceIncrease(updated).compareTo(Wei.ZERO) > 0;
+        return onlyBalanceIncreased ? feeRecipient : Optional.empty();
+      }
+    }
+    return Optional.empty();
+  }
+
+  private static Wei feeRecipientBalanceIncrease(final UpdateTrackingAccount<Account> updated) {
+    final Account original = updated.getWrappedAccount();
+    final Wei originalBalance = original == null ? Wei.ZERO : original.getBalance();
+    return updated.getBalance().compareTo(originalBalance) > 0
+        ? updated.getBalance().minus(originalBalance)
+        : Wei.ZERO;
+  }
+
+  /** A {@link WorldView} that records which accounts and storage slots are read through it. */
+  static class RecordingWorldView implements WorldView {
+
+    private final WorldView world;
+
+    private final Set<Address> accountReads = new HashSet<>();
+    private final Map<Address, Set<UInt256>> storageReads = new HashMap<>();
+    private final Set<Address> storageScans = new HashSet<>();
+
+    private RecordingWorldView(final WorldView world) {
+      this.world = world;
+    }
+
+    @Override
+    public Account get(final Address address) {
+      accountReads.add(address);
+      final Account account = world.get(address);
+      return account == null ? null : new RecordingAccount(account);
+    }
+
+    private class RecordingAccount implements Account {
+
+      private final Account account;
+
+      private RecordingAccount(final Account account) {
+        this.account = account;
+      }
+
+      @Override
+      public Address getAddress() {
+        return account.getAddress();
+      }
+
+      @Override
+      public Hash getAddressHash() {
+        return account.getAddressHash();
+      }
+
+      @Override
+      public long getNonce() {
+        return account.getNonce();
+      }
+
+      @Override
+      public Wei getBalance() {
+        return account.getBalance();
+      }
+
+      @Override
+      public BytesValue getCode() {
+        return account.getCode();
+      }
+
+      @Override
+      public Hash getCodeHash() {
+        return account.getCodeHash();
+      }
+
+      @Override
+      public boolean hasCode() {
+        return account.hasCode();
+      }
+
+      @Override
+      public UInt256 getStorageValue(final UInt256 key) {
+        storageReads.computeIfAbsent(account.getAddress(), a -> new HashSet<>()).add(key);
+        return account.getStorageValue(key);
+      }
+
+      @Override
+      public UInt256 getOriginalStorageValue(final UInt256 key) {
+        storageReads.computeIfAbsent(account.getAddress(), a -> new HashSet<>()).add(key);
+        return account.getOriginalStorageValue(key);
+      }
+
+      @Override
+      public NavigableMap<Bytes32, UInt256> storageEntriesFrom(
+          final Bytes32 startKeyHash, final int limit) {
+        storageScans.add(account.getAddress());
+        return account.storageEntriesFrom(startKeyHash, limit);
+      }
+    }
+  }
+}
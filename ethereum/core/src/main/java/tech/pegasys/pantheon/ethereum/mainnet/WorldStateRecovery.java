@@ -0,0 +1,101 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.mainnet;
+
+import tech.pegasys.pantheon.ethereum.ProtocolContext;
+import tech.pegasys.pantheon.ethereum.chain.MutableBlockchain;
+import tech.pegasys.pantheon.ethereum.core.Block;
+import tech.pegasys.pantheon.ethereum.core.BlockBody;
+import tech.pegasys.pantheon.ethereum.core.BlockHeader;
+import tech.pegasys.pantheon.ethereum.core.MutableWorldState;
+import tech.pegasys.pantheon.ethereum.db.WorldStateArchive;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Restores the world state of the chain head after an unclean shutdown.
+ *
+ * <p>Blockchain data is stored as each block is imported, but world state may be held in memory
+ * for a few blocks before it is written, so the stored chain head can be ahead of the stored world
+ * state. The blocks between the most recent block whose world state is stored and the chain head
+ * are then processed again.
+ */
+public class WorldStateRecovery {
+
+  private static final Logger LOG = LogManager.getLogger();
+
+  private WorldStateRecovery() {}
+
+  /**
+   * Processes the canonical blocks whose world state is missing, if any. Must not be called while a
+   * fast sync is in progress, as the blocks imported by fast sync have no world state at all.
+   *
+   * @param protocolSchedule The protocol schedule used to process the blocks.
+   * @param protocolContext The context holding the blockchain and world state archive.
+   * @param <C> the consensus algorithm context
+   * @throws IllegalStateException If a block can not be processed to the state root in its header.
+   */
+  public static <C> void recoverChainHeadWorldState(
+      final ProtocolSchedule<C> protocolSchedule, final ProtocolContext<C> protocolContext) {
+    final MutableBlockchain blockchain = protocolContext.getBlockchain();
+    final WorldStateArchive worldStateArchive = protocolContext.getWorldStateArchive();
+
+    final Deque<BlockHeader> missing = new ArrayDeque<>();
+    BlockHeader header = blockchain.getChainHeadHeader();
+    while (!worldStateArchive.isWorldStateAvailable(header.getStateRoot())) {
+      missing.push(header);
+      header =
+          blockchain
+              .getBlockHeader(header.getParentHash())
+              .orElseThrow(
+                  () ->
+                      new IllegalStateException(
+                          "No stored world state to recover the chain head world state from"));
+    }
+    if (missing.isEmpty()) {
+      return;
+    }
+
+    LOG.info(
+        "World state of the chain head is missing, processing blocks {} to {} again.",
+        missing.peek().getNumber(),
+        blockchain.getChainHeadBlockNumber());
+    BlockHeader parentHeader = header;
+    while (!missing.isEmpty()) {
+      final BlockHeader blockHeader = missing.pop();
+      final BlockBody body =
+          blockchain
+              .getBlockBody(blockHeader.getHash())
+              .orElseThrow(
+                  () ->
+                      new IllegalStateException("Missing body of block " + blockHeader.getHash()));
+      final MutableWorldState worldState =
+          worldStateArchive.getMutable(parentHeader.getStateRoot());
+      final BlockProcessor.Result result =
+          protocolSchedule
+              .getByBlockNumber(blockHeader.getNumber())
+              .getBlockProcessor()
+              .processBlock(blockchain, worldState, new Block(blockHeader, body));
+      if (!result.isSuccessful() || !worldState.rootHash().equals(blockHeader.getStateRoot())) {
+        throw new IllegalStateException(
+            "Failed to recover the world state of block " + blockHeader.getNumber());
+      }
+      parentHeader = blockHeader;
+    }
+    LOG.info("Recovered world state of chain head {}.", parentHeader.getNumber());
+  }
+}
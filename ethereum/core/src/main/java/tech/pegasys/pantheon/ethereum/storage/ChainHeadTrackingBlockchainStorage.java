@@ -0,0 +1,164 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.storage;
+
+import tech.pegasys.pantheon.ethereum.chain.TransactionLocation;
+import tech.pegasys.pantheon.ethereum.core.BlockBody;
+import tech.pegasys.pantheon.ethereum.core.BlockHeader;
+import tech.pegasys.pantheon.ethereum.core.Hash;
+import tech.pegasys.pantheon.ethereum.core.TransactionReceipt;
+import tech.pegasys.pantheon.ethereum.db.BlockchainStorage;
+import tech.pegasys.pantheon.util.bytes.Bytes32;
+import tech.pegasys.pantheon.util.uint.UInt256;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Forwards the state root of every committed chain head to a listener, so that world state
+ * checkpoints and pruning follow the canonical chain rather than every processed block.
+ */
+class ChainHeadTrackingBlockchainStorage implements BlockchainStorage {
+
+  private final BlockchainStorage storage;
+  private final Consumer<Bytes32> stateRootListener;
+
+  ChainHeadTrackingBlockchainStorage(
+      final BlockchainStorage storage, final Consumer<Bytes32> stateRootListener) {
+    this.storage = storage;
+    this.stateRootListener = stateRootListener;
+  }
+
+  @Override
+  public Optional<Hash> getChainHead() {
+    return storage.getChainHead();
+  }
+
+  @Override
+  public Collection<Hash> getForkHeads() {
+    return storage.getForkHeads();
+  }
+
+  @Override
+  public Optional<BlockHeader> getBlockHeader(final Hash blockHash) {
+    return storage.getBlockHeader(blockHash);
+  }
+
+  @Override
+  public Optional<BlockBody> getBlockBody(final Hash blockHash) {
+    return storage.getBlockBody(blockHash);
+  }
+
+  @Override
+  public Optional<List<TransactionReceipt>> getTransactionReceipts(final Hash blockHash) {
+    return storage.getTransactionReceipts(blockHash);
+  }
+
+  @Override
+  public Optional<Hash> getBlockHash(final long blockNumber) {
+    return storage.getBlockHash(blockNumber);
+  }
+
+  @Override
+  public Optional<UInt256> getTotalDifficulty(final Hash blockHash) {
+    return storage.getTotalDifficulty(blockHash);
+  }
+
+  @Override
+  public Optional<TransactionLocation> getTransactionLocation(final Hash transactionHash) {
+    return storage.getTransactionLocation(transactionHash);
+  }
+
+  @Override
+  public BlockchainStorage.Updater updater() {
+    return new Updater(storage.updater());
+  }
+
+  private class Updater implements BlockchainStorage.Updater {
+
+    private final BlockchainStorage.Updater updater;
+    private Optional<Hash> chainHead = Optional.empty();
+
+    Updater(final BlockchainStorage.Updater updater) {
+      this.updater = updater;
+    }
+
+    @Override
+    public void putBlockHeader(final Hash blockHash, final BlockHeader blockHeader) {
+      updater.putBlockHeader(blockHash, blockHeader);
+    }
+
+    @Override
+    public void putBlockBody(final Hash blockHash, final BlockBody blockBody) {
+      updater.putBlockBody(blockHash, blockBody);
+    }
+
+    @Override
+    public void putTransactionLocation(
+        final Hash transactionHash, final TransactionLocation transactionLocation) {
+      updater.putTransactionLocation(transactionHash, transactionLocation);
+    }
+
+    @Override
+    public void putTransactionReceipts(
+        final Hash blockHash, final List<TransactionReceipt> transactionReceipts) {
+      updater.putTransactionReceipts(blockHash, transactionReceipts);
+    }
+
+    @Override
+    public void putBlockHash(final long blockNumber, final Hash blockHash) {
+      updater.putBlockHash(blockNumber, blockHash);
+    }
+
+    @Override
+    public void putTotalDifficulty(final Hash blockHash, final UInt256 totalDifficulty) {
+      updater.putTotalDifficulty(blockHash, totalDifficulty);
+    }
+
+    @Override
+    public void setChainHead(final Hash blockHash) {
+      updater.setChainHead(blockHash);
+      chainHead = Optional.of(blockHash);
+    }
+
+    @Override
+    public void setForkHeads(final Collection<Hash> forkHeadHashes) {
+      updater.setForkHeads(forkHeadHashes);
+    }
+
+    @Override
+    public void removeBlockHash(final long blockNumber) {
+      updater.removeBlockHash(blockNumber);
+    }
+
+    @Override
+    public void removeTransactionLocation(final Hash transactionHash) {
+      updater.removeTransactionLocation(transactionHash);
+    }
+
+    @Override
+    public void commit() {
+      updater.commit();
+      chainHead
+          .flatMap(storage::getBlockHeader)
+          .ifPresent(header -> stateRootListener.accept(header.getStateRoot()));
+    }
+
+    @Override
+    public void rollback() {
+      updater.rollback();
+    }
+  }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.storage;
+
+import tech.pegasys.pantheon.services.kvstore.KeyValueStorage;
+import tech.pegasys.pantheon.services.kvstore.KeyValueStorage.StorageException;
+
+/**
+ * Manages the storage for the progress of fast sync, which only exists from the start of a fast
+ * sync until it completes.
+ */
+public interface FastSyncStorageFactory {
+
+  /** @return true if the storage has been created and not deleted since. */
+  boolean exists();
+
+  /**
+   * Opens the storage, creating it if it does not exist. The storage stays open until it is
+   * deleted or the factory is closed, and each call returns the same storage in the meantime.
+   *
+   * @return The fast sync storage.
+   */
+  KeyValueStorage open() throws StorageException;
+
+  /** Closes the storage if it is open, and deletes it. */
+  void delete() throws StorageException;
+
+  /** Closes the storage if it is open. */
+  void close();
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.storage;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import tech.pegasys.pantheon.ethereum.chain.Blockchain;
+import tech.pegasys.pantheon.ethereum.core.BlockHashFunction;
+import tech.pegasys.pantheon.ethereum.db.BlockchainStorage;
+import tech.pegasys.pantheon.ethereum.db.KeyValueStoragePrefixedKeyBlockchainStorage;
+import tech.pegasys.pantheon.ethereum.db.LogsBloomIndex;
+import tech.pegasys.pantheon.ethereum.db.WorldStateArchive;
+import tech.pegasys.pantheon.ethereum.worldstate.CachingWorldStateStorage;
+import tech.pegasys.pantheon.ethereum.worldstate.KeyValueStorageWorldStateStorage;
+import tech.pegasys.pantheon.ethereum.worldstate.MarkSweepPruner;
+import tech.pegasys.pantheon.ethereum.worldstate.WorldStateConfiguration;
+import tech.pegasys.pantheon.ethereum.worldstate.WorldStatePrefetcher;
+import tech.pegasys.pantheon.ethereum.worldstate.WorldStateSnapshot;
+import tech.pegasys.pantheon.ethereum.worldstate.WorldStateStorage;
+import tech.pegasys.pantheon.ethereum.worldstate.WriteBackWorldStateStorage;
+import tech.pegasys.pantheon.ethereum.worldstate.WriteTrackingWorldStateStorage;
+import tech.pegasys.pantheon.services.kvstore.InMemoryKeyValueStorage;
+import tech.pegasys.pantheon.services.kvstore.KeyValueStorage;
+import tech.pegasys.pantheon.services.kvstore.KeyValueStorage.StorageException;
+import tech.pegasys.pantheon.util.bytes.Bytes32;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+public class KeyValueStorageProvider implements StorageProvider {
+
+  private static final int PREFETCH_QUEUE_SIZE = 1024;
+  // How often storage that must be synced to survive a crash is synced when world state is written
+  // every block rather than at write-back checkpoints.
+  private static final int DEFAULT_SYNC_INTERVAL = 1000;
+
+  private final KeyValueStorage blockchainStorage;
+  private final FastSyncStorageFactory fastSyncStorageFactory;
+  private final WorldStateConfiguration worldStateConfiguration;
+  private final Closeable resources;
+  private final WorldStateStorage diskWorldStateStorage;
+  private final WorldStateStorage worldStateStorage;
+  private final Optional<ExecutorService> flushExecutor;
+  private final Optional<WriteBackWorldStateStorage> writeBackStorage;
+  private final Optional<MarkSweepPruner> pruner;
+  private final Optional<ExecutorService> prefetchExecutor;
+  private final Optional<ForkJoinPool> hashingPool;
+  private final Optional<WorldStateSnapshot> snapshot;
+  private final List<Consumer<Bytes32>> stateRootListeners = new ArrayList<>();
+  private final List<LogsBloomIndex> logsBloomIndexes = new ArrayList<>();
+
+  /**
+   * Creates a provider keeping blockchain and world state data in the given storage. Fast sync
+   * progress is only kept in memory.
+   *
+   * @param keyValueStorage The storage for blockchain and world state data.
+   */
+  public KeyValueStorageProvider(final KeyValueStorage keyValueStorage) {
+    this(
+        keyValueStorage,
+        keyValueStorage,
+        new InMemoryFastSyncStorageFactory(),
+        WorldStateConfiguration.builder().build(),
+        false,
+        () -> {});
+  }
+
+  /**
+   * @param blockchainStorage The storage for blockchain data.
+   * @param worldStateStorage The storage for world state data.
+   * @param fastSyncStorageFactory Manages the storage for fast sync progress, which is closed
+   *     along with the provider.
+   * @param worldStateConfiguration The options for world state caching, write-back and pruning.
+   * @param syncAtCheckpoints Whether blockchain and world state storage only keep synced changes
+   *     across a crash, in which case they are synced at each world state checkpoint.
+   * @param resources Released when the provider is closed.
+   */
+  public KeyValueStorageProvider(
+      final KeyValueStorage blockchainStorage,
+      final KeyValueStorage worldStateStorage,
+      final FastSyncStorageFactory fastSyncStorageFactory,
+      final WorldStateConfiguration worldStateConfiguration,
+      final boolean syncAtCheckpoints,
+      final Closeable resources) {
+    this.blockchainStorage = blockchainStorage;
+    this.fastSyncStorageFactory = fastSyncStorageFactory;
+    this.worldStateConfiguration = worldStateConfiguration;
+    this.resources = resources;
+
+    final boolean pruningEnabled = worldStateConfiguration.pruningRetainedStates() > 0;
+    // The pruner sweeps every entry keyed by a hash, which must only be trie nodes and code.
+    checkArgument(
+        !pruningEnabled || worldStateStorage != blockchainStorage,
+        "World state pruning requires world state to be stored apart from blockchain data");
+    final Optional<WriteTrackingWorldStateStorage> trackingStorage =
+        pruningEnabled
+            ? Optional.of(new WriteTrackingWorldStateStorage(worldStateStorage))
+            : Optional.empty();
+    this.diskWorldStateStorage =
+        trackingStorage.isPresent()
+            ? trackingStorage.get()
+            : new KeyValueStorageWorldStateStorage(worldStateStorage);
+
+    // Storage that skips its write-ahead log only keeps what has been synced across a crash.
+    final Runnable syncStorage =
+        () -> {
+          if (syncAtCheckpoints) {
+            worldStateStorage.sync();
+            blockchainStorage.sync();
+          }
+        };
+    final int writeBackBlocks = worldStateConfiguration.writeBackBlocks();
+    this.flushExecutor =
+        writeBackBlocks > 0
+            ? Optional.of(
+                Executors.newSingleThreadExecutor(
+                    new ThreadFactoryBuilder()
+                        .setNameFormat(WriteBackWorldStateStorage.class.getSimpleName())
+                        .setDaemon(true)
+                        .build()))
+            : Optional.empty();
+    this.writeBackStorage =
+        flushExecutor.map(
+            executor ->
+                new WriteBackWorldStateStorage(
+                    diskWorldStateStorage, writeBackBlocks, executor, syncStorage));
+    this.worldStateStorage =
+        writeBackStorage.isPresent() ? writeBackStorage.get() : diskWorldStateStorage;
+
+    this.pruner =
+        trackingStorage.map(
+            storage ->
+                new MarkSweepPruner(
+                    this.worldStateStorage,
+                    storage,
+                    worldStateConfiguration.pruningRetainedStates(),
+                    worldStateConfiguration.pruningInterval(),
+                    Executors.newSingleThreadExecutor(
+                        new ThreadFactoryBuilder()
+                            .setNameFormat(MarkSweepPruner.class.getSimpleName())
+                            .setDaemon(true)
+                            .build())));
+
+    final int prefetchThreads = worldStateConfiguration.prefetchThreads();
+    // Prefetching is best effort. When it falls behind import, the reads queued for blocks that
+    // have already been processed are dropped first.
+    this.prefetchExecutor =
+        prefetchThreads > 0
+            ? Optional.of(
+                new ThreadPoolExecutor(
+                    prefetchThreads,
+                    prefetchThreads,
+                    0L,
+                    TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(PREFETCH_QUEUE_SIZE),
+                    new ThreadFactoryBuilder()
+                        .setNameFormat(WorldStatePrefetcher.class.getSimpleName() + "-%d")
+                        .setDaemon(true)
+                        .build(),
+                    new ThreadPoolExecutor.DiscardOldestPolicy()))
+            : Optional.empty();
+    final int hashingThreads = worldStateConfiguration.hashingThreads();
+    this.hashingPool =
+        hashingThreads > 0 ? Optional.of(new ForkJoinPool(hashingThreads)) : Optional.empty();
+
+    final int snapshotLayers = worldStateConfiguration.snapshotLayers();
+    this.snapshot =
+        snapshotLayers > 0
+            ? Optional.of(
+                WorldStateSnapshot.open(
+                    worldStateStorage,
+                    this.worldStateStorage,
+                    snapshotLayers,
+                    Executors.newSingleThreadExecutor(
+                        new ThreadFactoryBuilder()
+                            .setNameFormat(WorldStateSnapshot.class.getSimpleName())
+                            .setDaemon(true)
+                            .build())))
+            : Optional.empty();
+
+    writeBackStorage.ifPresent(storage -> stateRootListeners.add(storage::onChainHeadUpdated));
+    pruner.ifPresent(p -> stateRootListeners.add(p::onChainHeadUpdated));
+    snapshot.ifPresent(s -> stateRootListeners.add(s::onChainHeadUpdated));
+    if (syncAtCheckpoints && !writeBackStorage.isPresent()) {
+      // Without write-back there are no checkpoints, so storage is synced at a fixed interval.
+      final AtomicLong chainHeadUpdates = new AtomicLong();
+      stateRootListeners.add(
+          stateRoot -> {
+            if (chainHeadUpdates.incrementAndGet() % DEFAULT_SYNC_INTERVAL == 0) {
+              syncStorage.run();
+            }
+          });
+    }
+  }
+
+  @Override
+  public BlockchainStorage createBlockchainStorage(final BlockHashFunction blockHashFunction) {
+    final BlockchainStorage storage =
+        new KeyValueStoragePrefixedKeyBlockchainStorage(blockchainStorage, blockHashFunction);
+    if (stateRootListeners.isEmpty()) {
+      return storage;
+    }
+    return new ChainHeadTrackingBlockchainStorage(
+        storage, stateRoot -> stateRootListeners.forEach(listener -> listener.accept(stateRoot)));
+  }
+
+  @Override
+  public LogsBloomIndex createLogsBloomIndex(final Blockchain blockchain) {
+    final LogsBloomIndex index =
+        new LogsBloomIndex(
+            blockchain,
+            blockchainStorage,
+            Executors.newSingleThreadExecutor(
+                new ThreadFactoryBuilder()
+                    .setNameFormat(LogsBloomIndex.class.getSimpleName())
+                    .setDaemon(true)
+                    .build()));
+    logsBloomIndexes.add(index);
+    index.start();
+    return index;
+  }
+
+  @Override
+  public WorldStateStorage createWorldStateStorage() {
+    final long trieNodeCacheSize = worldStateConfiguration.trieNodeCacheSize();
+    return trieNodeCacheSize > 0
+        ? new CachingWorldStateStorage(worldStateStorage, trieNodeCacheSize)
+        : worldStateStorage;
+  }
+
+  @Override
+  public WorldStateArchive createWorldStateArchive() {
+    final WorldStateStorage storage = createWorldStateStorage();
+    return new WorldStateArchive(
+        storage,
+        prefetchExecutor.map(executor -> new WorldStatePrefetcher(storage, executor)),
+        hashingPool,
+        snapshot);
+  }
+
+  @Override
+  public WorldStateStorage createFastSyncWorldStateStorage() {
+    return diskWorldStateStorage;
+  }
+
+  @Override
+  public KeyValueStorage createFastSyncStorage() {
+    return fastSyncStorageFactory.open();
+  }
+
+  @Override
+  public boolean fastSyncStorageExists() {
+    return fastSyncStorageFactory.exists();
+  }
+
+  @Override
+  public void deleteFastSyncStorage() {
+    fastSyncStorageFactory.delete();
+  }
+
+  @Override
+  public void close() {
+    logsBloomIndexes.forEach(LogsBloomIndex::close);
+    pruner.ifPresent(MarkSweepPruner::close);
+    prefetchExecutor.ifPresent(ExecutorService::shutdownNow);
+    hashingPool.ifPresent(ForkJoinPool::shutdownNow);
+    flushExecutor.ifPresent(ExecutorService::shutdown);
+    // The final flush waits for one already running in the background.
+    writeBackStorage.ifPresent(WriteBackWorldStateStorage::flush);
+    snapshot.ifPresent(WorldStateSnapshot::close);
+    fastSyncStorageFactory.close();
+    try {
+      resources.close();
+    } catch (final IOException e) {
+      throw new StorageException(e);
+    }
+  }
+
+  private static class InMemoryFastSyncStorageFactory implements FastSyncStorageFactory {
+
+    private Optional<KeyValueStorage> storage = Optional.empty();
+
+    @Override
+    public synchronized boolean exists() {
+      return storage.isPresent();
+    }
+
+    @Override
+    public synchronized KeyValueStorage open() {
+      if (!storage.isPresent()) {
+        storage = Optional.of(new InMemoryKeyValueStorage());
+      }
+      return storage.get();
+    }
+
+    @Override
+    public synchronized void delete() {
+      storage = Optional.empty();
+    }
+
+    @Override
+    public void close() {}
+  }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.storage;
+
+import tech.pegasys.pantheon.ethereum.worldstate.WorldStateConfiguration;
+import tech.pegasys.pantheon.services.kvstore.ColumnarRocksDbKeyValueStorage;
+import tech.pegasys.pantheon.services.kvstore.KeyValueStorage;
+import tech.pegasys.pantheon.services.kvstore.KeyValueStorage.StorageException;
+import tech.pegasys.pantheon.services.kvstore.KeyValueStorageWriter;
+import tech.pegasys.pantheon.services.kvstore.RocksDbConfiguration;
+import tech.pegasys.pantheon.services.kvstore.RocksDbKeyValueStorage;
+import tech.pegasys.pantheon.services.kvstore.RocksDbSegment;
+import tech.pegasys.pantheon.services.kvstore.RocksDbSegment.Profile;
+import tech.pegasys.pantheon.services.kvstore.WriteBehindKeyValueStorage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+
+public class RocksDbStorageProvider {
+
+  // Chain data is mostly appended and read back in bulk, while trie nodes are read by hash all
+  // over the keyspace, so the node lookups get the bigger share of the cache.
+  public static final RocksDbSegment BLOCKCHAIN_SEGMENT =
+      RocksDbSegment.create("blockchain", Profile.APPEND_MOSTLY, 0.25);
+  public static final RocksDbSegment WORLD_STATE_SEGMENT =
+      RocksDbSegment.create("world-state", Profile.POINT_LOOKUP, 0.75);
+
+  private static final List<RocksDbSegment> SEGMENTS =
+      Arrays.asList(BLOCKCHAIN_SEGMENT, WORLD_STATE_SEGMENT);
+
+  // Fast sync progress is small and short lived, so it lives in its own database rather than
+  // sharing the keyspace, and the tuning, of the chain data. The database is only created when a
+  // fast sync starts, and deleted once it completes.
+  private static final String FAST_SYNC_DIRECTORY = "fast-sync";
+  private static final RocksDbConfiguration FAST_SYNC_CONFIGURATION =
+      RocksDbConfiguration.builder().cacheCapacity(16 * 1024 * 1024).build();
+
+  private RocksDbStorageProvider() {}
+
+  /**
+   * Opens, or creates, the RocksDB database in the given directory.
+   *
+   * @param databaseDir The directory holding the database.
+   * @param configuration The tuning options for the database, including whether blockchain and
+   *     world state data are kept in separate column families.
+   * @return A provider for storage backed by the database.
+   * @throws IOException If the database directory can not be created.
+   */
+  public static StorageProvider create(
+      final Path databaseDir, final RocksDbConfiguration configuration) throws IOException {
+    return create(databaseDir, configuration, WorldStateConfiguration.builder().build());
+  }
+
+  /**
+   * Opens, or creates, the RocksDB database in the given directory.
+   *
+   * @param databaseDir The directory holding the database.
+   * @param configuration The tuning options for the database, including whether blockchain and
+   *     world state data are kept in separate column families.
+   * @param worldStateConfiguration The options for world state caching, write-back and pruning.
+   * @return A provider for storage backed by the database.
+   * @throws IOException If the database directory can not be created.
+   */
+  public static StorageProvider create(
+      final Path databaseDir,
+      final RocksDbConfiguration configuration,
+      final WorldStateConfiguration worldStateConfiguration)
+      throws IOException {
+    final FastSyncStorageFactory fastSyncStorageFactory =
+        new RocksDbFastSyncStorageFactory(databaseDir.resolve(FAST_SYNC_DIRECTORY));
+    // The writer is closed before the databases so that pending writes reach them first.
+    final Optional<KeyValueStorageWriter> writer =
+        configuration.isAsyncWrites() ? Optional.of(new KeyValueStorageWriter()) : Optional.empty();
+    final Closeable closeWriter = () -> writer.ifPresent(KeyValueStorageWriter::close);
+    if (configuration.isSegmented()) {
+      final ColumnarRocksDbKeyValueStorage storage =
+          ColumnarRocksDbKeyValueStorage.create(databaseDir, SEGMENTS, configuration);
+      return new KeyValueStorageProvider(
+          writeBehind(storage.getSegment(BLOCKCHAIN_SEGMENT), writer),
+          writeBehind(storage.getSegment(WORLD_STATE_SEGMENT), writer),
+          fastSyncStorageFactory,
+          worldStateConfiguration,
+          configuration.isWalDisabled(),
+          closeAll(closeWriter, storage));
+    }
+    final RocksDbKeyValueStorage rocksDbStorage =
+        RocksDbKeyValueStorage.create(databaseDir, configuration);
+    final KeyValueStorage storage = writeBehind(rocksDbStorage, writer);
+    return new KeyValueStorageProvider(
+        storage,
+        storage,
+        fastSyncStorageFactory,
+        worldStateConfiguration,
+        configuration.isWalDisabled(),
+        closeAll(closeWriter, rocksDbStorage));
+  }
+
+  // Both segments share one writer, so world state and the blocks referring to it are written in
+  // the order they were committed.
+  private static KeyValueStorage writeBehind(
+      final KeyValueStorage storage, final Optional<KeyValueStorageWriter> writer) {
+    return writer
+        .<KeyValueStorage>map(w -> new WriteBehindKeyValueStorage(storage, w))
+        .orElse(storage);
+  }
+
+  private static Closeable closeAll(final Closeable... resources) {
+    return () -> {
+      for (final Closeable resource : resources) {
+        resource.close();
+      }
+    };
+  }
+
+  private static class RocksDbFastSyncStorageFactory implements FastSyncStorageFactory {
+
+    private final Path directory;
+    private Optional<RocksDbKeyValueStorage> storage = Optional.empty();
+
+    RocksDbFastSyncStorageFactory(final Path directory) {
+      this.directory = directory;
+    }
+
+    @Override
+    public synchronized boolean exists() {
+      return storage.isPresent() || Files.exists(directory);
+    }
+
+    @Override
+    public synchronized KeyValueStorage open() {
+      if (!storage.isPresent()) {
+        try {
+          Files.createDirectories(directory);
+        } catch (final IOException e) {
+          throw new StorageException(e);
+        }
+        storage = Optional.of(RocksDbKeyValueStorage.create(directory, FAST_SYNC_CONFIGURATION));
+      }
+      return storage.get();
+    }
+
+    @Override
+    public synchronized void delete() {
+      close();
+      try {
+        if (Files.exists(directory)) {
+          MoreFiles.deleteRecursively(directory, RecursiveDeleteOption.ALLOW_INSECURE);
+        }
+      } catch (final IOException e) {
+        throw new StorageException(e);
+      }
+    }
+
+    @Override
+    public synchronized void close() {
+      storage.ifPresent(RocksDbKeyValueStorage::close);
+      storage = Optional.empty();
+    }
+  }
+}
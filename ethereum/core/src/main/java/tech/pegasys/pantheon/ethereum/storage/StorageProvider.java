@@ -0,0 +1,92 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.storage;
+
+import tech.pegasys.pantheon.ethereum.chain.Blockchain;
+import tech.pegasys.pantheon.ethereum.core.BlockHashFunction;
+import tech.pegasys.pantheon.ethereum.db.BlockchainStorage;
+import tech.pegasys.pantheon.ethereum.db.LogsBloomIndex;
+import tech.pegasys.pantheon.ethereum.db.WorldStateArchive;
+import tech.pegasys.pantheon.ethereum.worldstate.WorldStateStorage;
+import tech.pegasys.pantheon.services.kvstore.KeyValueStorage;
+
+import java.io.Closeable;
+
+/** Creates the storage used by a node and owns the underlying resources. */
+public interface StorageProvider extends Closeable {
+
+  /**
+   * @param blockHashFunction The function used to compute the hash of stored block headers.
+   * @return Storage for blocks, receipts and chain metadata.
+   */
+  BlockchainStorage createBlockchainStorage(BlockHashFunction blockHashFunction);
+
+  /**
+   * Creates and starts the index of the logs blooms of the given chain. A node should create a
+   * single index, which is stopped when the provider is closed.
+   *
+   * @param blockchain The chain to index, held in storage created by {@link
+   *     #createBlockchainStorage(BlockHashFunction)}.
+   * @return The logs bloom index.
+   */
+  LogsBloomIndex createLogsBloomIndex(Blockchain blockchain);
+
+  /**
+   * Each call returns independent storage, including any in-memory caches, so a node should share a
+   * single instance between all its world states.
+   *
+   * @return Storage for world state trie nodes and contract code.
+   */
+  WorldStateStorage createWorldStateStorage();
+
+  /**
+   * Like {@link #createWorldStateStorage()}, a node should share a single instance.
+   *
+   * @return An archive of the world states held in storage created by {@link
+   *     #createWorldStateStorage()}, set up to prefetch accounts if that is enabled.
+   */
+  WorldStateArchive createWorldStateArchive();
+
+  /**
+   * World state downloaded from peers is not the result of processing any block, so it bypasses
+   * write-back buffering and is written directly to disk.
+   *
+   * @return Storage for world state trie nodes and contract code fetched during fast sync.
+   */
+  WorldStateStorage createFastSyncWorldStateStorage();
+
+  /**
+   * Creates the storage for the progress of fast sync if it does not exist yet. Each call returns
+   * the same storage until it is deleted.
+   *
+   * @return Storage for the progress of fast sync, so that it can resume after a restart. Kept
+   *     apart from blockchain and world state data.
+   */
+  KeyValueStorage createFastSyncStorage();
+
+  /**
+   * @return true if storage for the progress of fast sync has been created by {@link
+   *     #createFastSyncStorage()}, possibly before a restart, and not deleted since.
+   */
+  boolean fastSyncStorageExists();
+
+  /**
+   * Deletes the storage for the progress of fast sync, once fast sync has completed or is to start
+   * over. Storage previously returned by {@link #createFastSyncStorage()} must not be used after.
+   */
+  void deleteFastSyncStorage();
+
+  /** Releases the underlying storage. Storage created by this provider must not be used after. */
+  @Override
+  void close();
+}
@@ -177,7 +177,7 @@ public abstract class AbstractCallOperation extends AbstractOperation {
             .sender(sender(frame))
             .value(value(frame))
             .apparentValue(apparentValue(frame))
-            .code(new Code(contract != null ? contract.getCode() : BytesValue.EMPTY))
+            .code(Code.forAccount(contract))
             .blockHeader(frame.getBlockHeader())
             .depth(frame.getMessageStackDepth() + 1)
             .isStatic(isStatic(frame))
@@ -215,5 +215,6 @@ public abstract class AbstractCallOperation extends AbstractOperation {
 
     final int currentPC = frame.getPC();
     frame.setPC(currentPC + 1);
+    childFrame.release();
   }
 }
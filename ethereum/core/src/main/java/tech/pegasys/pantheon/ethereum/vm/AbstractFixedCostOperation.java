@@ -0,0 +1,61 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.vm;
+
+import tech.pegasys.pantheon.ethereum.core.Gas;
+
+import java.util.EnumSet;
+import java.util.Optional;
+
+/**
+ * Base class for operations whose gas cost never depends on the message frame and that can only
+ * halt by running out of gas or stack. The EVM checks and charges runs of these operations once per
+ * basic block rather than once per instruction.
+ *
+ * <p>Operations that read the remaining gas must not extend this class, since gas for the whole
+ * block is charged before the block executes.
+ */
+public abstract class AbstractFixedCostOperation extends AbstractOperation {
+
+  private final Gas fixedCost;
+
+  public AbstractFixedCostOperation(
+      final int opcode,
+      final String name,
+      final int stackItemsConsumed,
+      final int stackItemsProduced,
+      final int opSize,
+      final GasCalculator gasCalculator,
+      final Gas fixedCost) {
+    super(opcode, name, stackItemsConsumed, stackItemsProduced, false, opSize, gasCalculator);
+    this.fixedCost = fixedCost;
+  }
+
+  @Override
+  public final Gas cost(final MessageFrame frame) {
+    return fixedCost;
+  }
+
+  @Override
+  public final Optional<Gas> getFixedCost() {
+    return Optional.of(fixedCost);
+  }
+
+  @Override
+  public final Optional<ExceptionalHaltReason> exceptionalHaltCondition(
+      final MessageFrame frame,
+      final EnumSet<ExceptionalHaltReason> previousReasons,
+      final EVM evm) {
+    return Optional.empty();
+  }
+}
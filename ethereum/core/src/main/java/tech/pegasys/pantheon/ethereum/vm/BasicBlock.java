@@ -0,0 +1,102 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.vm;
+
+import tech.pegasys.pantheon.ethereum.core.Gas;
+
+/**
+ * A run of consecutive fixed-cost operations that is always entered at its first instruction.
+ * Because none of the operations can halt other than by running out of gas or stack, checking the
+ * summed gas cost and the stack bounds once on entry proves the whole block executes.
+ */
+final class BasicBlock {
+
+  private final int start;
+  private final int end;
+  private final long gasCost;
+  private final int minimumStackSize;
+  private final int maximumStackGrowth;
+
+  private BasicBlock(
+      final int start,
+      final int end,
+      final long gasCost,
+      final int minimumStackSize,
+      final int maximumStackGrowth) {
+    this.start = start;
+    this.end = end;
+    this.gasCost = gasCost;
+    this.minimumStackSize = minimumStackSize;
+    this.maximumStackGrowth = maximumStackGrowth;
+  }
+
+  /** @return The offset of the first instruction in the block. */
+  int getStart() {
+    return start;
+  }
+
+  /** @return The offset just past the last instruction in the block. */
+  int getEnd() {
+    return end;
+  }
+
+  /** @return The total gas cost of every operation in the block. */
+  long getGasCost() {
+    return gasCost;
+  }
+
+  /** @return The number of stack items the block needs on entry to avoid an underflow. */
+  int getMinimumStackSize() {
+    return minimumStackSize;
+  }
+
+  /** @return The largest amount the stack grows by at any point within the block. */
+  int getMaximumStackGrowth() {
+    return maximumStackGrowth;
+  }
+
+  static class Builder {
+    private final int start;
+    private int end;
+    private long gasCost;
+    private int stackChange;
+    private int minimumStackSize;
+    private int maximumStackGrowth;
+
+    Builder(final int start) {
+      this.start = start;
+      this.end = start;
+    }
+
+    int getStart() {
+      return start;
+    }
+
+    void add(final Operation operation, final Gas cost) {
+      try {
+        gasCost = Math.addExact(gasCost, cost.toLong());
+      } catch (final ArithmeticException e) {
+        gasCost = Long.MAX_VALUE;
+      }
+      minimumStackSize =
+          Math.max(minimumStackSize, operation.getStackItemsConsumed() - stackChange);
+      stackChange += operation.getStackSizeChange();
+      maximumStackGrowth = Math.max(maximumStackGrowth, stackChange);
+      end += operation.getOpSize();
+    }
+
+    BasicBlock build() {
+      return new BasicBlock(start, end, gasCost, minimumStackSize, maximumStackGrowth);
+    }
+  }
+}
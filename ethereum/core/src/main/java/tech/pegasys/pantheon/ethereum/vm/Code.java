@@ -12,22 +12,30 @@
  */
 package tech.pegasys.pantheon.ethereum.vm;
 
-import tech.pegasys.pantheon.ethereum.vm.operations.JumpDestOperation;
+import tech.pegasys.pantheon.ethereum.core.Account;
+import tech.pegasys.pantheon.ethereum.core.Hash;
+import tech.pegasys.pantheon.util.bytes.Bytes32;
 import tech.pegasys.pantheon.util.bytes.BytesValue;
 import tech.pegasys.pantheon.util.uint.UInt256;
 
-import java.util.BitSet;
+import java.util.function.Supplier;
 
 import com.google.common.base.MoreObjects;
 
 /** Represents EVM code associated with an account. */
 public class Code {
 
-  /** The bytes representing the code. */
-  private final BytesValue bytes;
+  /** The hash of the code if known, used to share the code's analysis. */
+  private final Hash codeHash;
 
-  /** Used to cache valid jump destinations. */
-  private BitSet validJumpDestinations;
+  /** Reads the bytes of the code if they are needed and not yet known. */
+  private final Supplier<BytesValue> bytesLoader;
+
+  /** The bytes representing the code, loaded on first use. */
+  private volatile BytesValue bytes;
+
+  /** The decoded form of the code, for the EVM that last executed it. */
+  private volatile CodeAnalysis analysis;
 
   /**
    * Public constructor.
@@ -35,13 +43,37 @@ public class Code {
    * @param bytes The byte representation of the code.
    */
   public Code(final BytesValue bytes) {
+    this.codeHash = null;
+    this.bytesLoader = null;
     this.bytes = bytes;
   }
 
+  /**
+   * Creates code identified by its hash, whose bytes are only read if the EVM has not already
+   * analysed code with the same hash.
+   *
+   * @param codeHash The hash of the code.
+   * @param bytesLoader Reads the byte representation of the code.
+   */
+  public Code(final Hash codeHash, final Supplier<BytesValue> bytesLoader) {
+    this.codeHash = codeHash;
+    this.bytesLoader = bytesLoader;
+  }
+
   public Code() {
     this(BytesValue.EMPTY);
   }
 
+  /**
+   * Creates the code of an account, which may not exist.
+   *
+   * @param account The account, or null if it doesn't exist.
+   * @return The code of the account, or empty code if it doesn't exist.
+   */
+  public static Code forAccount(final Account account) {
+    return account != null ? new Code(account.getCodeHash(), account::getCode) : new Code();
+  }
+
   /**
    * Returns true if the object is equal to this; otherwise false.
    *
@@ -55,17 +87,17 @@ public class Code {
     if (!(other instanceof Code)) return false;
 
     final Code that = (Code) other;
-    return this.bytes.equals(that.bytes);
+    return this.getBytes().equals(that.getBytes());
   }
 
   @Override
   public int hashCode() {
-    return bytes.hashCode();
+    return getBytes().hashCode();
   }
 
   /** @return The number of bytes in the code. */
   public int getSize() {
-    return bytes.size();
+    return getBytes().size();
   }
 
   /**
@@ -81,26 +113,50 @@ public class Code {
     final int jumpDestination = destination.toInt();
     if (jumpDestination > getSize()) return false;
 
-    if (validJumpDestinations == null) {
-      // Calculate valid jump destinations
-      validJumpDestinations = new BitSet(getSize());
-      evm.forEachOperation(
-          this,
-          (final Operation op, final Integer offset) -> {
-            if (op.getOpcode() == JumpDestOperation.OPCODE) {
-              validJumpDestinations.set(offset);
-            }
-          });
+    return getAnalysis(evm).isJumpDestination(jumpDestination);
+  }
+
+  /**
+   * Returns the value pushed by the PUSH instruction at the given offset.
+   *
+   * @param pc The offset of a PUSH instruction.
+   * @return The value the instruction pushes onto the stack.
+   */
+  public Bytes32 getPushImmediate(final int pc) {
+    final CodeAnalysis current = analysis;
+    if (current != null) {
+      final Bytes32 immediate = current.pushImmediateAt(pc);
+      if (immediate != null) {
+        return immediate;
+      }
+    }
+    final BytesValue code = getBytes();
+    return CodeAnalysis.decodePushImmediate(code, pc, (code.get(pc) & 0xff) - 0x5f);
+  }
+
+  CodeAnalysis getAnalysis(final EVM evm) {
+    CodeAnalysis current = analysis;
+    if (current == null || !current.isFor(evm)) {
+      current = codeHash != null ? evm.analyze(codeHash, this::getBytes) : evm.analyze(getBytes());
+      if (bytes == null) {
+        bytes = current.getBytes();
+      }
+      analysis = current;
     }
-    return validJumpDestinations.get(jumpDestination);
+    return current;
   }
 
   public BytesValue getBytes() {
-    return bytes;
+    BytesValue current = bytes;
+    if (current == null) {
+      current = bytesLoader.get();
+      bytes = current;
+    }
+    return current;
   }
 
   @Override
   public String toString() {
-    return MoreObjects.toStringHelper(this).add("bytes", bytes).toString();
+    return MoreObjects.toStringHelper(this).add("bytes", getBytes()).toString();
   }
 }
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.vm;
+
+import tech.pegasys.pantheon.ethereum.core.Gas;
+import tech.pegasys.pantheon.ethereum.vm.operations.JumpDestOperation;
+import tech.pegasys.pantheon.util.bytes.Bytes32;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+import tech.pegasys.pantheon.util.bytes.MutableBytes32;
+
+import java.util.BitSet;
+import java.util.Optional;
+
+/**
+ * Contract bytecode decoded once for a particular {@link EVM}: the operation at every offset, the
+ * padded immediate of every PUSH instruction, the set of valid jump destinations and the basic
+ * blocks of fixed-cost operations.
+ *
+ * <p>Analyses are immutable, so a single analysis is shared by every frame executing the same code.
+ */
+final class CodeAnalysis {
+
+  private static final int PUSH1_OPCODE = 0x60;
+  private static final int PUSH32_OPCODE = 0x7f;
+
+  // Rough per-entry cost of the analysis object, its arrays and the cache's own bookkeeping.
+  private static final int ENTRY_OVERHEAD = 256;
+  // Each byte of code has an operation, a push immediate and a basic block reference.
+  private static final int BYTES_PER_CODE_BYTE = 1 + 3 * 8;
+
+  private final EVM evm;
+  private final BytesValue bytes;
+  private final Operation[] operations;
+  private final Bytes32[] pushImmediates;
+  private final BitSet jumpDestinations;
+  private final BasicBlock[] basicBlocks;
+
+  CodeAnalysis(final EVM evm, final BytesValue bytes) {
+    this.evm = evm;
+    this.bytes = bytes;
+    final int size = bytes.size();
+    this.operations = new Operation[size];
+    this.pushImmediates = new Bytes32[size];
+    this.jumpDestinations = new BitSet(size);
+    this.basicBlocks = new BasicBlock[size];
+
+    // Decode every offset, not just instruction boundaries, so that lookups behave exactly like
+    // decoding the byte at the program counter.
+    for (int offset = 0; offset < size; offset++) {
+      operations[offset] = evm.operationForOpcode(bytes.get(offset));
+    }
+    BasicBlock.Builder block = null;
+    int pc = 0;
+    while (pc < size) {
+      final Operation operation = operations[pc];
+      final int opcode = operation.getOpcode();
+      if (opcode == JumpDestOperation.OPCODE) {
+        jumpDestinations.set(pc);
+        // Jumps land here, so a new block starts even within a run of fixed-cost operations.
+        block = closeBlock(block);
+      } else if (opcode >= PUSH1_OPCODE && opcode <= PUSH32_OPCODE) {
+        pushImmediates[pc] = decodePushImmediate(bytes, pc, opcode - PUSH1_OPCODE + 1);
+      }
+
+      final Optional<Gas> fixedCost = operation.getFixedCost();
+      if (fixedCost.isPresent()) {
+        if (block == null) {
+          block = new BasicBlock.Builder(pc);
+        }
+        block.add(operation, fixedCost.get());
+      } else {
+        block = closeBlock(block);
+      }
+      pc += operation.getOpSize();
+    }
+    closeBlock(block);
+  }
+
+  private BasicBlock.Builder closeBlock(final BasicBlock.Builder block) {
+    if (block != null) {
+      basicBlocks[block.getStart()] = block.build();
+    }
+    return null;
+  }
+
+  /**
+   * Reads the immediate of a PUSH instruction, zero-padding any bytes past the end of the code.
+   *
+   * @param code the code containing the instruction
+   * @param pc the offset of the PUSH instruction
+   * @param length the number of bytes pushed
+   * @return the value pushed onto the stack
+   */
+  static Bytes32 decodePushImmediate(final BytesValue code, final int pc, final int length) {
+    final int copyLength = Math.min(length, code.size() - pc - 1);
+    final byte[] immediate = new byte[Bytes32.SIZE];
+    code.slice(pc + 1, copyLength).copyTo(MutableBytes32.wrap(immediate), Bytes32.SIZE - length);
+    // Immutable, as the same value is pushed every time the instruction executes.
+    return Bytes32.wrap(immediate);
+  }
+
+  boolean isFor(final EVM evm) {
+    return this.evm == evm;
+  }
+
+  BytesValue getBytes() {
+    return bytes;
+  }
+
+  Operation operationAt(final int pc) {
+    if (pc >= operations.length) {
+      return evm.stopOperation();
+    }
+    return operations[pc];
+  }
+
+  Bytes32 pushImmediateAt(final int pc) {
+    return pushImmediates[pc];
+  }
+
+  /**
+   * Returns the basic block of fixed-cost operations starting at the given offset.
+   *
+   * @param pc The program counter.
+   * @return The block starting at {@code pc}, or null if no block starts there.
+   */
+  BasicBlock basicBlockAt(final int pc) {
+    return pc < basicBlocks.length ? basicBlocks[pc] : null;
+  }
+
+  boolean isJumpDestination(final int offset) {
+    return jumpDestinations.get(offset);
+  }
+
+  long estimatedSize() {
+    return ENTRY_OVERHEAD + (long) bytes.size() * BYTES_PER_CODE_BYTE;
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.vm;
+
+import tech.pegasys.pantheon.ethereum.core.Hash;
+
+import java.util.function.Supplier;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Analysed contract code keyed by code hash. The code for a given hash never changes, so entries
+ * never go stale and the cache is shared by every message an {@link EVM} executes, across
+ * transactions and blocks. Frequently called contracts are therefore read from storage and decoded
+ * once rather than on every call.
+ *
+ * <p>The cache is bounded by the approximate memory its analyses use rather than by entry count,
+ * since contracts range from a few bytes to 24 KiB.
+ */
+class CodeCache {
+
+  static final long DEFAULT_MAX_CACHE_SIZE = 64L * 1024 * 1024;
+
+  private final Cache<Hash, CodeAnalysis> analyses;
+
+  CodeCache(final long maxCacheSize) {
+    this.analyses =
+        CacheBuilder.newBuilder()
+            .maximumWeight(maxCacheSize)
+            .weigher(
+                (final Hash key, final CodeAnalysis value) ->
+                    (int) Math.min(Integer.MAX_VALUE, value.estimatedSize()))
+            .concurrencyLevel(Runtime.getRuntime().availableProcessors())
+            .build();
+  }
+
+  CodeAnalysis getOrAnalyze(final Hash codeHash, final Supplier<CodeAnalysis> analyzer) {
+    final CodeAnalysis cached = analyses.getIfPresent(codeHash);
+    if (cached != null) {
+      return cached;
+    }
+    final CodeAnalysis analysis = analyzer.get();
+    analyses.put(codeHash, analysis);
+    return analysis;
+  }
+}
@@ -14,8 +14,10 @@ package tech.pegasys.pantheon.ethereum.vm;
 
 import static org.apache.logging.log4j.LogManager.getLogger;
 import static tech.pegasys.pantheon.ethereum.vm.ExceptionalHaltReason.INSUFFICIENT_STACK_ITEMS;
+import static tech.pegasys.pantheon.ethereum.vm.ehalt.StackOverflowExceptionalHaltPredicate.MAX_STACK_SIZE;
 
 import tech.pegasys.pantheon.ethereum.core.Gas;
+import tech.pegasys.pantheon.ethereum.core.Hash;
 import tech.pegasys.pantheon.ethereum.vm.MessageFrame.State;
 import tech.pegasys.pantheon.ethereum.vm.ehalt.ExceptionalHaltException;
 import tech.pegasys.pantheon.ethereum.vm.ehalt.ExceptionalHaltManager;
@@ -24,6 +26,7 @@ import tech.pegasys.pantheon.util.bytes.BytesValue;
 import java.util.EnumSet;
 import java.util.Optional;
 import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 
 import org.apache.logging.log4j.Logger;
 
@@ -31,18 +34,40 @@ public class EVM {
   private static final Logger LOG = getLogger();
 
   private static final int STOP_OPCODE = 0x00;
+  private static final int INVALID_OPCODE = 0xfe;
+  // Gas costs are never negative, so this marks an operation the untraced path can't execute.
+  private static final long NOT_EXECUTABLE = -1L;
   private final OperationRegistry operations;
   private final Operation invalidOperation;
+  private final CodeCache codeCache;
 
   public EVM(final OperationRegistry operations, final Operation invalidOperation) {
+    this(operations, invalidOperation, CodeCache.DEFAULT_MAX_CACHE_SIZE);
+  }
+
+  public EVM(
+      final OperationRegistry operations,
+      final Operation invalidOperation,
+      final long maxCodeCacheSize) {
     this.operations = operations;
     this.invalidOperation = invalidOperation;
+    this.codeCache = new CodeCache(maxCodeCacheSize);
   }
 
   public void runToHalt(final MessageFrame frame, final OperationTracer operationTracer)
       throws ExceptionalHaltException {
-    while (frame.getState() == MessageFrame.State.CODE_EXECUTING) {
-      executeNextOperation(frame, operationTracer);
+    if (operationTracer == OperationTracer.NO_TRACING && !LOG.isTraceEnabled()) {
+      while (frame.getState() == MessageFrame.State.CODE_EXECUTING) {
+        executeNextBlockOrOperation(frame);
+      }
+    } else if (operationTracer == OperationTracer.NO_TRACING) {
+      while (frame.getState() == MessageFrame.State.CODE_EXECUTING) {
+        executeNextOperationUntraced(frame);
+      }
+    } else {
+      while (frame.getState() == MessageFrame.State.CODE_EXECUTING) {
+        executeNextOperation(frame, operationTracer);
+      }
     }
   }
 
@@ -68,13 +93,95 @@ public class EVM {
         currentGasCost,
         () -> {
           checkForExceptionalHalt(frame);
-          logState(frame, currentGasCost);
+          logState(frame, currentGasCost.map(Gas::toLong).orElse(NOT_EXECUTABLE));
           decrementRemainingGas(frame, currentGasCost);
           frame.getCurrentOperation().execute(frame);
           incrementProgramCounter(frame);
         });
   }
 
+  /**
+   * Executes the basic block starting at the program counter if its gas and stack requirements are
+   * met on entry, or otherwise just the next operation. Gas for the whole block is charged up
+   * front, which is only observable through GAS, CALL and CREATE, none of which are in a block.
+   */
+  private void executeNextBlockOrOperation(final MessageFrame frame)
+      throws ExceptionalHaltException {
+    final CodeAnalysis analysis = frame.getCode().getAnalysis(this);
+    final BasicBlock block = analysis.basicBlockAt(frame.getPC());
+    if (block == null || !canExecuteBlock(frame, block)) {
+      executeNextOperationUntraced(frame);
+      return;
+    }
+    frame.decrementRemainingGas(block.getGasCost());
+    int pc = block.getStart();
+    final int end = block.getEnd();
+    while (pc < end) {
+      final Operation operation = analysis.operationAt(pc);
+      frame.setCurrentOperation(operation);
+      operation.execute(frame);
+      pc += operation.getOpSize();
+      frame.setPC(pc);
+    }
+  }
+
+  private static boolean canExecuteBlock(final MessageFrame frame, final BasicBlock block) {
+    final int stackSize = frame.stackSize();
+    return stackSize >= block.getMinimumStackSize()
+        && stackSize + block.getMaximumStackGrowth() <= MAX_STACK_SIZE
+        && frame.getRemainingGasAsLong() >= block.getGasCost();
+  }
+
+  /**
+   * Executes the next operation without allocating when nothing is traced and the operation doesn't
+   * halt. Stack bounds are checked against the operation's static stack metadata and gas is
+   * compared as a primitive; if any check fails the operation is re-evaluated by {@link
+   * #executeNextOperation} so the reported halt reasons are identical in both modes.
+   */
+  private void executeNextOperationUntraced(final MessageFrame frame)
+      throws ExceptionalHaltException {
+    final Operation operation = operationAtOffset(frame.getCode(), frame.getPC());
+    frame.setCurrentOperation(operation);
+    final long cost = costIfExecutable(frame, operation);
+    if (cost == NOT_EXECUTABLE) {
+      executeNextOperation(frame, OperationTracer.NO_TRACING);
+      return;
+    }
+    logState(frame, cost);
+    frame.decrementRemainingGas(cost);
+    operation.execute(frame);
+    incrementProgramCounter(frame);
+  }
+
+  /**
+   * @return the cost of the operation if it can execute without halting, otherwise {@link
+   *     #NOT_EXECUTABLE}
+   */
+  private long costIfExecutable(final MessageFrame frame, final Operation operation) {
+    final int stackSize = frame.stackSize();
+    if (operation.getOpcode() == INVALID_OPCODE
+        || stackSize < operation.getStackItemsConsumed()
+        || stackSize + operation.getStackSizeChange() > MAX_STACK_SIZE) {
+      return NOT_EXECUTABLE;
+    }
+    if (operation
+        .exceptionalHaltCondition(frame, frame.getExceptionalHaltReasons(), this)
+        .isPresent()) {
+      return NOT_EXECUTABLE;
+    }
+    final Gas cost;
+    try {
+      cost = operation.cost(frame);
+    } catch (final IllegalArgumentException e) {
+      return NOT_EXECUTABLE;
+    }
+    if (cost == null) {
+      return NOT_EXECUTABLE;
+    }
+    final long gasCost = cost.toLong();
+    return frame.getRemainingGasAsLong() < gasCost ? NOT_EXECUTABLE : gasCost;
+  }
+
   private void evaluateExceptionalHaltReasons(final MessageFrame frame) {
     final EnumSet<ExceptionalHaltReason> haltReasons =
         ExceptionalHaltManager.evaluateAll(frame, this);
@@ -118,13 +225,15 @@ public class EVM {
     }
   }
 
-  private static void logState(final MessageFrame frame, final Optional<Gas> currentGasCost) {
+  private static void logState(final MessageFrame frame, final long currentGasCost) {
     if (LOG.isTraceEnabled()) {
       final StringBuilder builder = new StringBuilder();
       builder.append("Depth: ").append(frame.getMessageStackDepth()).append("\n");
       builder.append("Operation: ").append(frame.getCurrentOperation().getName()).append("\n");
       builder.append("PC: ").append(frame.getPC()).append("\n");
-      currentGasCost.ifPresent(gas -> builder.append("Gas cost: ").append(gas).append("\n"));
+      if (currentGasCost != NOT_EXECUTABLE) {
+        builder.append("Gas cost: ").append(currentGasCost).append("\n");
+      }
       builder.append("Gas Remaining: ").append(frame.getRemainingGas()).append("\n");
       builder.append("Depth: ").append(frame.getMessageStackDepth()).append("\n");
       builder.append("Stack:");
@@ -136,12 +245,22 @@ public class EVM {
   }
 
   private Operation operationAtOffset(final Code code, final int offset) {
-    final BytesValue bytecode = code.getBytes();
-    // If the length of the program code is shorter than the required offset, halt execution.
-    if (offset >= bytecode.size()) {
-      return operations.get(STOP_OPCODE);
-    }
+    return code.getAnalysis(this).operationAt(offset);
+  }
+
+  CodeAnalysis analyze(final Hash codeHash, final Supplier<BytesValue> bytes) {
+    return codeCache.getOrAnalyze(codeHash, () -> analyze(bytes.get()));
+  }
+
+  CodeAnalysis analyze(final BytesValue bytes) {
+    return new CodeAnalysis(this, bytes);
+  }
+
+  Operation operationForOpcode(final byte opcode) {
+    return operations.getOrDefault(opcode, invalidOperation);
+  }
 
-    return operations.getOrDefault(bytecode.get(offset), invalidOperation);
+  Operation stopOperation() {
+    return operations.get(STOP_OPCODE);
   }
 }
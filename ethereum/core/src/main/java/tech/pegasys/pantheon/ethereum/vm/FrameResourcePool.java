@@ -0,0 +1,99 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.vm;
+
+import tech.pegasys.pantheon.ethereum.core.Address;
+import tech.pegasys.pantheon.ethereum.core.LogSeries;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A per-thread pool of the operand stacks, memories and accumulators used by {@link MessageFrame}s.
+ *
+ * <p>Frames take their resources from the pool of the thread building them and hand them back
+ * through {@link MessageFrame#release()} once their results have been consumed. Resources are reset
+ * as they are returned, so a frame never observes state left behind by a previous one. The pool is
+ * bounded, and memories that grew unusually large are dropped rather than retained.
+ */
+final class FrameResourcePool {
+
+  private static final int MAX_POOLED_ENTRIES = 64;
+  private static final int MAX_POOLED_MEMORY_BYTES = 1024 * 1024;
+
+  private static final ThreadLocal<FrameResourcePool> POOL =
+      ThreadLocal.withInitial(FrameResourcePool::new);
+
+  private final Deque<PreAllocatedOperandStack> stacks = new ArrayDeque<>();
+  private final Deque<Memory> memories = new ArrayDeque<>();
+  private final Deque<LogSeries> logSeries = new ArrayDeque<>();
+  private final Deque<Set<Address>> addressSets = new ArrayDeque<>();
+
+  private FrameResourcePool() {}
+
+  static FrameResourcePool current() {
+    return POOL.get();
+  }
+
+  PreAllocatedOperandStack acquireStack(final int maxSize) {
+    final PreAllocatedOperandStack stack = stacks.pollFirst();
+    return stack != null && stack.getMaxSize() == maxSize
+        ? stack
+        : new PreAllocatedOperandStack(maxSize);
+  }
+
+  void releaseStack(final PreAllocatedOperandStack stack) {
+    stack.reset();
+    if (stacks.size() < MAX_POOLED_ENTRIES) {
+      stacks.addFirst(stack);
+    }
+  }
+
+  Memory acquireMemory() {
+    final Memory memory = memories.pollFirst();
+    return memory != null ? memory : new Memory();
+  }
+
+  void releaseMemory(final Memory memory) {
+    if (memories.size() < MAX_POOLED_ENTRIES && memory.getCapacity() <= MAX_POOLED_MEMORY_BYTES) {
+      memory.reset();
+      memories.addFirst(memory);
+    }
+  }
+
+  LogSeries acquireLogSeries() {
+    final LogSeries logs = logSeries.pollFirst();
+    return logs != null ? logs : LogSeries.empty();
+  }
+
+  void releaseLogSeries(final LogSeries logs) {
+    logs.clear();
+    if (logSeries.size() < MAX_POOLED_ENTRIES) {
+      logSeries.addFirst(logs);
+    }
+  }
+
+  Set<Address> acquireAddressSet() {
+    final Set<Address> addresses = addressSets.pollFirst();
+    return addresses != null ? addresses : new HashSet<>();
+  }
+
+  void releaseAddressSet(final Set<Address> addresses) {
+    addresses.clear();
+    if (addressSets.size() < MAX_POOLED_ENTRIES) {
+      addressSets.addFirst(addresses);
+    }
+  }
+}
@@ -15,17 +15,13 @@ package tech.pegasys.pantheon.ethereum.vm;
 import tech.pegasys.pantheon.util.bytes.Bytes32;
 import tech.pegasys.pantheon.util.bytes.BytesValue;
 import tech.pegasys.pantheon.util.bytes.BytesValues;
-import tech.pegasys.pantheon.util.bytes.MutableBytes32;
 import tech.pegasys.pantheon.util.bytes.MutableBytesValue;
 import tech.pegasys.pantheon.util.uint.UInt256;
 import tech.pegasys.pantheon.util.uint.UInt256Value;
 import tech.pegasys.pantheon.util.uint.UInt256s;
 
 import java.math.BigInteger;
-import java.util.ArrayList;
-import java.util.Objects;
-
-import com.google.common.base.Joiner;
+import java.util.Arrays;
 
 /**
  * A EVM memory implementation.
@@ -35,51 +31,28 @@ import com.google.common.base.Joiner;
  */
 public class Memory {
 
-  // See below.
-  private static final long MAX_BYTES = 32L * Integer.MAX_VALUE;
+  // The largest whole number of words that fits in a Java array. Memory expansion gas makes
+  // anything close to this unaffordable, so it is never reached by a valid transaction.
+  private static final long MAX_BYTES =
+      (long) Bytes32.SIZE * (Integer.MAX_VALUE / Bytes32.SIZE - 1);
+
+  private static final int INITIAL_CAPACITY = 32 * Bytes32.SIZE;
 
-  /**
-   * The data stored within the memory.
-   *
-   * <p>Note that the current Ethereum spec don't put a limit on memory, so we could theoretically
-   * overflow this. That said we can already store up to 64GB and:
-   *
-   * <ul>
-   *   <li>that's 64GB of underlying bytes, but *a lot* more physical memory use in practice,
-   *       because ... Java; worth testing but I suspect all but the beefiest servers would OOM
-   *       before we come close to his in the first place.
-   *   <li>the price of a transaction needing more than that is likely prohibitive.
-   * </ul>
-   *
-   * So this is likely a reasonable limitation, at least at first (and possibly ever if I'm to bet).
-   */
   /*
-   * Implementation note: using an array of word have a bunch of advantages: - it can make
-   * expansions cheaper (less bytes to copy on resize). - it makes word-related operations simple. -
-   * it's an easy way to put a higher limit on addressable memory (Integer.MAX_VALUE word is 32
-   * times more capacity than Integer.MAX_VALUE bytes). but it's not without downsides either: -
-   * non-word aligned operations (on more than 1 byte) are currently more expansive (could be
-   * improved, but with more works). - sequential access, even word-aligned, might be slower than if
-   * we allocated larger byte arrays underneath due to cache effects. This is likely good enough
-   * initially, but a page-based design (with a page being X word, X to be determined) could be
-   * worth exploring as a future improvement.
-   *
-   * Lastly note that we may want to share the underlying implementation with the VM Stack: the
-   * stack is really just growable memory that is grown/accessed from the end and on by fully word,
-   * but the same page-based design probably make sense.
+   * Implementation note: memory is a single contiguous array so that reads and writes are plain
+   * array copies regardless of word alignment. The array grows geometrically, so expanding memory
+   * one word at a time (the common pattern for MSTORE) costs amortised constant time. Only the
+   * first activeWords words are part of the EVM-visible memory; anything beyond is always zero.
    */
-  private final ArrayList<MutableBytes32> data;
+  private byte[] data;
 
-  // Really data.size(), but cached as a UInt256 to avoid recomputing it each time.
-  private UInt256 activeWords = UInt256.ZERO;
+  private int activeWords;
 
-  public Memory() {
-    this(new ArrayList<>());
-  }
+  // activeWords as a UInt256 for gas calculation, updated only when memory expands.
+  private UInt256 activeWordsValue = UInt256.ZERO;
 
-  private Memory(final ArrayList<MutableBytes32> data) {
-    this.data = data;
-    this.activeWords = UInt256.of(data.size());
+  public Memory() {
+    this.data = new byte[0];
   }
 
   private static RuntimeException overflow(final long v) {
@@ -94,16 +67,16 @@ public class Memory {
     throw new IllegalStateException(String.format(msg, v, MAX_BYTES));
   }
 
-  private void checkByteIndex(final long v) {
+  private static void checkByteIndex(final long v) {
     // We can have at most MAX_BYTES, so an index can only at most MAX_BYTES - 1.
     if (v < 0 || v >= MAX_BYTES) throw overflow(v);
   }
 
-  private long asByteIndex(final UInt256 w) {
+  private static int asByteIndex(final UInt256 w) {
     try {
       final long v = w.toLong();
       checkByteIndex(v);
-      return v;
+      return (int) v;
     } catch (final IllegalStateException e) {
       throw overflow(w.toString());
     }
@@ -111,25 +84,12 @@ public class Memory {
 
   private static int asByteLength(final UInt256 l) {
     try {
-      // While we can theoretically support up to 32 * Integer.MAX_VALUE due to storing words, and
-      // so an index in memory need to be a long internally, we simply cannot load/store more than
-      // Integer.MAX_VALUE bytes at a time (BytesValue has an int size).
       return l.toInt();
     } catch (final IllegalStateException e) {
       throw overflow(l.toString());
     }
   }
 
-  private int wordForByte(final long byteIndex) {
-    checkByteIndex(byteIndex);
-    return (int) (byteIndex / Bytes32.SIZE);
-  }
-
-  private int indexInWord(final long byteIndex) {
-    checkByteIndex(byteIndex);
-    return (int) (byteIndex - ((byteIndex / Bytes32.SIZE) * Bytes32.SIZE));
-  }
-
   /**
    * For use in memoryExpansionGasCost() of GasCost. Returns the number of new active words that
    * accommodate at least the number of specified bytes from the provide memory offset.
@@ -145,15 +105,15 @@ public class Memory {
   public UInt256 calculateNewActiveWords(
       final UInt256Value<?> location, final UInt256Value<?> numBytes) {
     if (numBytes.isZero()) {
-      return activeWords;
+      return activeWordsValue;
     }
 
     if (location.fitsInt() && numBytes.fitsInt()) {
       // Fast common path (note that we work on int but use long arithmetic to avoid issues)
       final long byteSize = (long) location.toInt() + (long) numBytes.toInt();
-      int wordSize = (int) (byteSize / Bytes32.SIZE);
+      long wordSize = byteSize / Bytes32.SIZE;
       if (byteSize % Bytes32.SIZE != 0) wordSize += 1;
-      return wordSize > data.size() ? UInt256.of(wordSize) : activeWords;
+      return wordSize > activeWords ? UInt256.of(wordSize) : activeWordsValue;
     } else {
       // Slow, rare path
 
@@ -167,7 +127,7 @@ public class Memory {
       if (!result[1].equals(BigInteger.ZERO)) {
         wordSize = wordSize.add(BigInteger.ONE);
       }
-      return UInt256s.max(activeWords, UInt256.of(wordSize));
+      return UInt256s.max(activeWordsValue, UInt256.of(wordSize));
     }
   }
 
@@ -183,8 +143,10 @@ public class Memory {
     if (numBytes == 0) {
       return;
     }
-    final int lastWordRequired = wordForByte(address + numBytes - 1);
-    maybeExpandCapacity(lastWordRequired + 1);
+    final long lastByte = address + numBytes - 1;
+    checkByteIndex(address);
+    checkByteIndex(lastByte);
+    maybeExpandCapacity((int) (lastByte / Bytes32.SIZE) + 1);
   }
 
   /**
@@ -193,15 +155,27 @@ public class Memory {
    * @param newActiveWords The new number of active words to expand to.
    */
   private void maybeExpandCapacity(final int newActiveWords) {
-    if (data.size() >= newActiveWords) return;
+    if (activeWords >= newActiveWords) return;
 
-    // Require full capacity to guarantee we don't resize more than once.
-    data.ensureCapacity(newActiveWords);
-    final int toAdd = newActiveWords - data.size();
-    for (int i = 0; i < toAdd; i++) {
-      data.add(MutableBytes32.create());
+    final int requiredBytes = newActiveWords * Bytes32.SIZE;
+    if (requiredBytes > data.length) {
+      // Grow geometrically so that repeated small expansions don't each copy the whole memory.
+      final long doubled = Math.max(INITIAL_CAPACITY, 2L * data.length);
+      data = Arrays.copyOf(data, (int) Math.min(MAX_BYTES, Math.max(doubled, requiredBytes)));
     }
-    this.activeWords = UInt256.of(data.size());
+    this.activeWords = newActiveWords;
+    this.activeWordsValue = UInt256.of(newActiveWords);
+  }
+
+  /** Clears all active words, leaving the memory empty but keeping its allocated capacity. */
+  void reset() {
+    Arrays.fill(data, 0, activeWords * Bytes32.SIZE, (byte) 0);
+    activeWords = 0;
+    activeWordsValue = UInt256.ZERO;
+  }
+
+  int getCapacity() {
+    return data.length;
   }
 
   /**
@@ -217,12 +191,16 @@ public class Memory {
     if (!(other instanceof Memory)) return false;
 
     final Memory that = (Memory) other;
-    return this.data.equals(that.data);
+    return this.activeWords == that.activeWords && activeBytes().equals(that.activeBytes());
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(data);
+    return activeBytes().hashCode();
+  }
+
+  private BytesValue activeBytes() {
+    return BytesValue.wrap(data, 0, activeWords * Bytes32.SIZE);
   }
 
   /**
@@ -231,7 +209,7 @@ public class Memory {
    * @return The current number of active bytes stored in memory.
    */
   public long getActiveBytes() {
-    return (long) data.size() * Bytes32.SIZE;
+    return (long) activeWords * Bytes32.SIZE;
   }
 
   /**
@@ -240,7 +218,7 @@ public class Memory {
    * @return The current number of active words stored in memory.
    */
   public UInt256 getActiveWords() {
-    return activeWords;
+    return activeWordsValue;
   }
 
   /**
@@ -261,40 +239,31 @@ public class Memory {
       return BytesValue.EMPTY;
     }
 
-    final long start = asByteIndex(location);
-
+    final int start = asByteIndex(location);
     ensureCapacityForBytes(start, length);
+    return BytesValue.wrap(Arrays.copyOfRange(data, start, start + length));
+  }
 
-    // Index of last byte to set.
-    final long end = start + length - 1;
-
-    final int startWord = wordForByte(start);
-    final int idxInStart = indexInWord(start);
-    final int endWord = wordForByte(end);
-    final int idxInEnd = indexInWord(end);
-
-    if (startWord == endWord) {
-      // Bytes within a word, fast-path.
-      final MutableBytesValue bytes = data.get(startWord);
-      return idxInStart == 0 && length == Bytes32.SIZE
-          ? bytes.copy()
-          : bytes.slice(idxInStart, length).copy();
+  /**
+   * Returns a view of bytes in memory without copying them.
+   *
+   * <p>The returned value reflects later writes to memory, so it must only be used before memory is
+   * next modified, for instance to hash the bytes.
+   *
+   * @param location The location in memory to start with.
+   * @param numBytes The number of bytes to get.
+   * @return A view of the bytes in memory starting at {@code location} and extending {@code
+   *     numBytes}.
+   */
+  public BytesValue getBytesWithoutCopy(final UInt256 location, final UInt256 numBytes) {
+    final int length = asByteLength(numBytes);
+    if (length == 0) {
+      return BytesValue.EMPTY;
     }
 
-    // Spans multiple word, slower path.
-    final int bytesInStartWord = Bytes32.SIZE - idxInStart;
-    final int bytesInEndWord = idxInEnd + 1;
-
-    final MutableBytesValue result = MutableBytesValue.create(length);
-    int resultIdx = 0;
-    data.get(startWord).slice(idxInStart).copyTo(result, resultIdx);
-    resultIdx += bytesInStartWord;
-    for (int i = startWord + 1; i < endWord; i++) {
-      data.get(i).copyTo(result, resultIdx);
-      resultIdx += Bytes32.SIZE;
-    }
-    data.get(endWord).slice(0, bytesInEndWord).copyTo(result, resultIdx);
-    return result;
+    final int start = asByteIndex(location);
+    ensureCapacityForBytes(start, length);
+    return BytesValue.wrap(data, start, length);
   }
 
   /**
@@ -355,50 +324,20 @@ public class Memory {
       return;
     }
 
-    final long start = asByteIndex(location);
+    final int start = asByteIndex(location);
     final int length = asByteLength(numBytes);
 
     ensureCapacityForBytes(start, length);
 
     // We've properly expanded memory as needed. We now have simply have to copy the
-    // min(length, value.size()) first bytes of value.
-    if (taintedValue.isEmpty()) {
-      return;
+    // min(length, value.size()) first bytes of value and clear the rest.
+    final int copyLength = Math.min(length, taintedValue.size());
+    if (copyLength > 0) {
+      taintedValue.slice(0, copyLength).copyTo(MutableBytesValue.wrap(data), start);
     }
-    final BytesValue value;
-    if (taintedValue.size() > length) {
-      value = taintedValue.slice(0, length);
-    } else if (taintedValue.size() < length) {
-      value = taintedValue;
-      clearBytes(location.plus(taintedValue.size()), numBytes.minus(taintedValue.size()));
-    } else {
-      value = taintedValue;
+    if (copyLength < length) {
+      Arrays.fill(data, start + copyLength, start + length, (byte) 0);
     }
-
-    // Index of last byte to set.
-    final long end = start + value.size() - 1;
-
-    final int startWord = wordForByte(start);
-    final int idxInStart = indexInWord(start);
-    final int endWord = wordForByte(end);
-
-    if (startWord == endWord) {
-      // Bytes within a word, fast-path.
-      value.copyTo(data.get(startWord), idxInStart);
-      return;
-    }
-
-    // Spans multiple word, slower path.
-    final int bytesInStartWord = Bytes32.SIZE - idxInStart;
-
-    int valueIdx = 0;
-    value.slice(valueIdx, bytesInStartWord).copyTo(data.get(startWord), idxInStart);
-    valueIdx += bytesInStartWord;
-    for (int i = startWord + 1; i < endWord; i++) {
-      value.slice(valueIdx, Bytes32.SIZE).copyTo(data.get(i));
-      valueIdx += Bytes32.SIZE;
-    }
-    value.slice(valueIdx).copyTo(data.get(endWord), 0);
   }
 
   /**
@@ -428,34 +367,7 @@ public class Memory {
     }
 
     ensureCapacityForBytes(location, numBytes);
-
-    // Index of last byte to set.
-    final long end = location + numBytes - 1;
-
-    final int startWord = wordForByte(location);
-    final int idxInStart = indexInWord(location);
-    final int endWord = wordForByte(end);
-    final int idxInEnd = indexInWord(end);
-
-    if (startWord == endWord) {
-      // Bytes within a word, fast-path.
-      MutableBytesValue bytes = data.get(startWord);
-      if (idxInStart != 0 || numBytes != Bytes32.SIZE) {
-        bytes = bytes.mutableSlice(idxInStart, numBytes);
-      }
-      bytes.clear();
-      return;
-    }
-
-    // Spans multiple word, slower path.
-    final int bytesInStartWord = Bytes32.SIZE - idxInStart;
-    final int bytesInEndWord = idxInEnd + 1;
-
-    data.get(startWord).mutableSlice(idxInStart, bytesInStartWord).clear();
-    for (int i = startWord + 1; i < endWord; i++) {
-      data.get(i).clear();
-    }
-    data.get(endWord).mutableSlice(0, bytesInEndWord).clear();
+    Arrays.fill(data, (int) location, (int) location + numBytes, (byte) 0);
   }
 
   /**
@@ -465,13 +377,9 @@ public class Memory {
    * @param value the value to set for the byte at {@code location}.
    */
   public void setByte(final UInt256 location, final byte value) {
-    final long start = asByteIndex(location);
+    final int start = asByteIndex(location);
     ensureCapacityForBytes(start, 1);
-
-    final int word = wordForByte(start);
-    final int idxInWord = indexInWord(start);
-
-    data.get(word).set(idxInWord, value);
+    data[start] = value;
   }
 
   /**
@@ -481,25 +389,9 @@ public class Memory {
    * @return a copy of the 32-bytes word that begins at the specified memory location.
    */
   public Bytes32 getWord(final UInt256 location) {
-    final long start = asByteIndex(location);
+    final int start = asByteIndex(location);
     ensureCapacityForBytes(start, Bytes32.SIZE);
-
-    final int startWord = wordForByte(start);
-    final int idxInStart = indexInWord(start);
-
-    if (idxInStart == 0) {
-      // Word-aligned. Fast-path.
-      return data.get(startWord).copy();
-    }
-
-    // Spans 2 memory word, slower path.
-    final MutableBytes32 result = MutableBytes32.create();
-    final int sizeInFirstWord = Bytes32.SIZE - idxInStart;
-    data.get(startWord).slice(idxInStart, sizeInFirstWord).copyTo(result, 0);
-    data.get(startWord + 1)
-        .slice(0, Bytes32.SIZE - sizeInFirstWord)
-        .copyTo(result, sizeInFirstWord);
-    return result;
+    return Bytes32.wrap(Arrays.copyOfRange(data, start, start + Bytes32.SIZE));
   }
 
   /**
@@ -512,30 +404,21 @@ public class Memory {
    * @param bytes the 32 bytes to copy at {@code location}.
    */
   public void setWord(final UInt256 location, final Bytes32 bytes) {
-    final long start = asByteIndex(location);
+    final int start = asByteIndex(location);
     ensureCapacityForBytes(start, Bytes32.SIZE);
-
-    final int startWord = wordForByte(start);
-    final int idxInStart = indexInWord(start);
-
-    if (idxInStart == 0) {
-      // Word-aligned. Fast-path.
-      bytes.copyTo(data.get(startWord));
-      return;
-    }
-
-    // Spans 2 memory word, slower path.
-    final int sizeInFirstWord = Bytes32.SIZE - idxInStart;
-    bytes.slice(0, sizeInFirstWord).copyTo(data.get(startWord), idxInStart);
-    bytes.slice(sizeInFirstWord).copyTo(data.get(startWord + 1), 0);
+    bytes.copyTo(MutableBytesValue.wrap(data), start);
   }
 
   @Override
   public String toString() {
-    if (data.isEmpty()) {
+    if (activeWords == 0) {
       return "";
     }
 
-    return '\n' + Joiner.on("\n").join(data);
+    final StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < activeWords; i++) {
+      builder.append('\n').append(Bytes32.wrap(data, i * Bytes32.SIZE));
+    }
+    return builder.toString();
   }
 }
@@ -31,7 +31,6 @@ import tech.pegasys.pantheon.util.uint.UInt256Value;
 
 import java.util.Deque;
 import java.util.EnumSet;
-import java.util.HashSet;
 import java.util.Set;
 import java.util.function.Consumer;
 
@@ -186,19 +185,19 @@ public class MessageFrame {
   private State state;
 
   // Machine state fields.
-  private Gas gasRemaining;
+  private long gasRemaining;
   private final BlockHashLookup blockHashLookup;
   private int pc;
-  private final Memory memory;
-  private final OperandStack stack;
+  private Memory memory;
+  private PreAllocatedOperandStack stack;
   private BytesValue output;
   private BytesValue returnData;
   private final boolean isStatic;
 
   // Transaction substate fields.
-  private final LogSeries logs;
+  private LogSeries logs;
   private Gas gasRefund;
-  private final Set<Address> selfDestructs;
+  private Set<Address> selfDestructs;
 
   // Execution Environment fields.
   private final Address recipient;
@@ -250,16 +249,17 @@ public class MessageFrame {
     this.blockchain = blockchain;
     this.messageFrameStack = messageFrameStack;
     this.worldState = worldState;
-    this.gasRemaining = initialGas;
+    this.gasRemaining = initialGas.toLong();
     this.blockHashLookup = blockHashLookup;
     this.pc = 0;
-    this.memory = new Memory();
-    this.stack = new PreAllocatedOperandStack(MAX_STACK_SIZE);
+    final FrameResourcePool resources = FrameResourcePool.current();
+    this.memory = resources.acquireMemory();
+    this.stack = resources.acquireStack(MAX_STACK_SIZE);
     this.output = BytesValue.EMPTY;
     this.returnData = BytesValue.EMPTY;
-    this.logs = LogSeries.empty();
+    this.logs = resources.acquireLogSeries();
     this.gasRefund = Gas.ZERO;
-    this.selfDestructs = new HashSet<>();
+    this.selfDestructs = resources.acquireAddressSet();
     this.recipient = recipient;
     this.originator = originator;
     this.contract = contract;
@@ -297,7 +297,7 @@ public class MessageFrame {
 
   /** Deducts the remainging gas. */
   public void clearGasRemaining() {
-    this.gasRemaining = Gas.ZERO;
+    this.gasRemaining = 0L;
   }
 
   /**
@@ -306,7 +306,16 @@ public class MessageFrame {
    * @param amount The amount of gas to deduct
    */
   public void decrementRemainingGas(final Gas amount) {
-    this.gasRemaining = gasRemaining.minus(amount);
+    decrementRemainingGas(amount.toLong());
+  }
+
+  /**
+   * Decrement the amount of remaining gas without boxing the amount.
+   *
+   * @param amount The amount of gas to deduct
+   */
+  public void decrementRemainingGas(final long amount) {
+    this.gasRemaining = gasRemaining - amount;
   }
 
   /**
@@ -315,6 +324,15 @@ public class MessageFrame {
    * @return the amount of remaining gas
    */
   public Gas getRemainingGas() {
+    return Gas.of(gasRemaining);
+  }
+
+  /**
+   * Return the amount of remaining gas as a primitive, for the interpreter's per-operation checks.
+   *
+   * @return the amount of remaining gas
+   */
+  public long getRemainingGasAsLong() {
     return gasRemaining;
   }
 
@@ -324,7 +342,11 @@ public class MessageFrame {
    * @param amount The amount of gas to increment
    */
   public void incrementRemainingGas(final Gas amount) {
-    this.gasRemaining = gasRemaining.plus(amount);
+    try {
+      this.gasRemaining = Math.addExact(gasRemaining, amount.toLong());
+    } catch (final ArithmeticException e) {
+      this.gasRemaining = Long.MAX_VALUE;
+    }
   }
 
   /**
@@ -333,7 +355,7 @@ public class MessageFrame {
    * @param amount The amount of remainging gas
    */
   public void setGasRemaining(final Gas amount) {
-    this.gasRemaining = amount;
+    this.gasRemaining = amount.toLong();
   }
 
   /**
@@ -503,6 +525,20 @@ public class MessageFrame {
     return memory.getBytes(offset, length);
   }
 
+  /**
+   * Read bytes in memory without copying them.
+   *
+   * <p>The returned bytes are only valid until memory is next written, so callers must consume them
+   * immediately rather than retain them.
+   *
+   * @param offset The offset in memory
+   * @param length The length of the bytes to read
+   * @return A view of the bytes in the specified range
+   */
+  public BytesValue shadowReadMemory(final UInt256 offset, final UInt256 length) {
+    return memory.getBytesWithoutCopy(offset, length);
+  }
+
   /**
    * Write byte to memory
    *
@@ -810,6 +846,32 @@ public class MessageFrame {
     this.currentOperation = currentOperation;
   }
 
+  /**
+   * Returns this frame's operand stack, memory and accumulators to a per-thread pool so that later
+   * frames can reuse them.
+   *
+   * <p>This must only be called once the frame has completed and its results have been consumed, as
+   * the frame's stack, memory, logs and self-destructs can no longer be used afterwards. The logs
+   * of an initial frame are the result of its transaction, so they are never recycled.
+   */
+  public void release() {
+    if (stack == null) {
+      return;
+    }
+
+    final FrameResourcePool resources = FrameResourcePool.current();
+    resources.releaseStack(stack);
+    resources.releaseMemory(memory);
+    resources.releaseAddressSet(selfDestructs);
+    stack = null;
+    memory = null;
+    selfDestructs = null;
+    if (depth > 0) {
+      resources.releaseLogSeries(logs);
+      logs = null;
+    }
+  }
+
   public static class Builder {
 
     private Type type;
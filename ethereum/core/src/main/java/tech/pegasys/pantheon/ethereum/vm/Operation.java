@@ -27,6 +27,16 @@ public interface Operation extends ExceptionalHaltPredicate {
    */
   Gas cost(MessageFrame frame);
 
+  /**
+   * Returns the cost of this operation if it is the same in every frame and the operation can only
+   * halt by running out of gas or stack, which allows it to be checked as part of a basic block.
+   *
+   * @return the fixed cost of this operation, or empty if it must be checked individually
+   */
+  default Optional<Gas> getFixedCost() {
+    return Optional.empty();
+  }
+
   /**
    * Executes the logic behind this operation.
    *
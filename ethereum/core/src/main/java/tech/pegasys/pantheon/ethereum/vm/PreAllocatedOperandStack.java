@@ -84,6 +84,16 @@ public class PreAllocatedOperandStack implements OperandStack {
     return top + 1;
   }
 
+  int getMaxSize() {
+    return maxSize;
+  }
+
+  /** Empties the stack, dropping the references it holds to its entries. */
+  void reset() {
+    Arrays.fill(entries, 0, top + 1, null);
+    top = -1;
+  }
+
   @Override
   public String toString() {
     final StringBuilder builder = new StringBuilder();
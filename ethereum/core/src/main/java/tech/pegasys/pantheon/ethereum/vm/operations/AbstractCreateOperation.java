@@ -147,5 +147,6 @@ public abstract class AbstractCreateOperation extends AbstractOperation {
 
     final int currentPC = frame.getPC();
     frame.setPC(currentPC + 1);
+    childFrame.release();
   }
 }
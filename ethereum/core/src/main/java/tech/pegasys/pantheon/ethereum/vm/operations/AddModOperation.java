@@ -12,21 +12,15 @@
  */
 package tech.pegasys.pantheon.ethereum.vm.operations;
 
-import tech.pegasys.pantheon.ethereum.core.Gas;
-import tech.pegasys.pantheon.ethereum.vm.AbstractOperation;
+import tech.pegasys.pantheon.ethereum.vm.AbstractFixedCostOperation;
 import tech.pegasys.pantheon.ethereum.vm.GasCalculator;
 import tech.pegasys.pantheon.ethereum.vm.MessageFrame;
 import tech.pegasys.pantheon.util.uint.UInt256;
 
-public class AddModOperation extends AbstractOperation {
+public class AddModOperation extends AbstractFixedCostOperation {
 
   public AddModOperation(final GasCalculator gasCalculator) {
-    super(0x08, "ADDMOD", 3, 1, false, 1, gasCalculator);
-  }
-
-  @Override
-  public Gas cost(final MessageFrame frame) {
-    return gasCalculator().getMidTierGasCost();
+    super(0x08, "ADDMOD", 3, 1, 1, gasCalculator, gasCalculator.getMidTierGasCost());
   }
 
   @Override
@@ -12,21 +12,15 @@
  */
 package tech.pegasys.pantheon.ethereum.vm.operations;
 
-import tech.pegasys.pantheon.ethereum.core.Gas;
-import tech.pegasys.pantheon.ethereum.vm.AbstractOperation;
+import tech.pegasys.pantheon.ethereum.vm.AbstractFixedCostOperation;
 import tech.pegasys.pantheon.ethereum.vm.GasCalculator;
 import tech.pegasys.pantheon.ethereum.vm.MessageFrame;
 import tech.pegasys.pantheon.util.uint.UInt256;
 
-public class AddOperation extends AbstractOperation {
+public class AddOperation extends AbstractFixedCostOperation {
 
   public AddOperation(final GasCalculator gasCalculator) {
-    super(0x01, "ADD", 2, 1, false, 1, gasCalculator);
-  }
-
-  @Override
-  public Gas cost(final MessageFrame frame) {
-    return gasCalculator().getVeryLowTierGasCost();
+    super(0x01, "ADD", 2, 1, 1, gasCalculator, gasCalculator.getVeryLowTierGasCost());
   }
 
   @Override
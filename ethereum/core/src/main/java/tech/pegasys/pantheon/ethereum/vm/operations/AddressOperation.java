@@ -13,21 +13,15 @@
 package tech.pegasys.pantheon.ethereum.vm.operations;
 
 import tech.pegasys.pantheon.ethereum.core.Address;
-import tech.pegasys.pantheon.ethereum.core.Gas;
-import tech.pegasys.pantheon.ethereum.vm.AbstractOperation;
+import tech.pegasys.pantheon.ethereum.vm.AbstractFixedCostOperation;
 import tech.pegasys.pantheon.ethereum.vm.GasCalculator;
 import tech.pegasys.pantheon.ethereum.vm.MessageFrame;
 import tech.pegasys.pantheon.ethereum.vm.Words;
 
-public class AddressOperation extends AbstractOperation {
+public class AddressOperation extends AbstractFixedCostOperation {
 
   public AddressOperation(final GasCalculator gasCalculator) {
-    super(0x30, "ADDRESS", 0, 1, false, 1, gasCalculator);
-  }
-
-  @Override
-  public Gas cost(final MessageFrame frame) {
-    return gasCalculator().getBaseTierGasCost();
+    super(0x30, "ADDRESS", 0, 1, 1, gasCalculator, gasCalculator.getBaseTierGasCost());
   }
 
   @Override
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.worldstate;
+
+import tech.pegasys.pantheon.ethereum.core.Hash;
+import tech.pegasys.pantheon.util.bytes.Bytes32;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * A {@link WorldStateStorage} that keeps recently used trie nodes in memory. Nodes are keyed by
+ * their hash, so a cached node can never be stale and the cache is shared by every world state
+ * built on this storage. The upper levels of the account trie, which nearly every transaction
+ * touches, therefore stay in memory across blocks.
+ *
+ * <p>The cache is bounded by the approximate number of bytes it holds rather than by entry count,
+ * since trie nodes range from a few bytes to over 500.
+ */
+public class CachingWorldStateStorage implements WorldStateStorage {
+
+  // Rough per-entry cost of the key, the BytesValue wrappers and the cache's own bookkeeping.
+  private static final int ENTRY_OVERHEAD = 128;
+
+  private final WorldStateStorage storage;
+  private final Cache<Bytes32, BytesValue> trieNodes;
+
+  public CachingWorldStateStorage(final WorldStateStorage storage, final long maxCacheSize) {
+    this.storage = storage;
+    this.trieNodes =
+        CacheBuilder.newBuilder()
+            .maximumWeight(maxCacheSize)
+            .weigher((final Bytes32 key, final BytesValue value) -> ENTRY_OVERHEAD + value.size())
+            .concurrencyLevel(Runtime.getRuntime().availableProcessors())
+            .recordStats()
+            .build();
+  }
+
+  @Override
+  public Optional<BytesValue> getCode(final Hash codeHash) {
+    return storage.getCode(codeHash);
+  }
+
+  @Override
+  public Optional<BytesValue> getAccountStateTrieNode(final Bytes32 nodeHash) {
+    return getTrieNode(nodeHash, storage::getAccountStateTrieNode);
+  }
+
+  @Override
+  public Optional<BytesValue> getAccountStorageTrieNode(final Bytes32 nodeHash) {
+    return getTrieNode(nodeHash, storage::getAccountStorageTrieNode);
+  }
+
+  private Optional<BytesValue> getTrieNode(
+      final Bytes32 nodeHash, final Function<Bytes32, Optional<BytesValue>> loader) {
+    final BytesValue cached = trieNodes.getIfPresent(nodeHash);
+    if (cached != null) {
+      return Optional.of(cached);
+    }
+    final Optional<BytesValue> node = loader.apply(nodeHash);
+    node.ifPresent(value -> trieNodes.put(nodeHash, value));
+    return node;
+  }
+
+  @Override
+  public Map<Hash, BytesValue> getNodeData(final Collection<Hash> hashes) {
+    final Map<Hash, BytesValue> nodeData = new HashMap<>();
+    final List<Hash> uncached = new ArrayList<>();
+    for (final Hash hash : hashes) {
+      // Read through the map view so that serving peers does not skew the cache statistics.
+      final BytesValue cached = trieNodes.asMap().get(hash);
+      if (cached != null) {
+        nodeData.put(hash, cached);
+      } else {
+        uncached.add(hash);
+      }
+    }
+    if (!uncached.isEmpty()) {
+      nodeData.putAll(storage.getNodeData(uncached));
+    }
+    return nodeData;
+  }
+
+  @Override
+  public Updater updater() {
+    return new Updater(storage.updater());
+  }
+
+  /** @return The number of trie node lookups answered from memory. */
+  public long getHitCount() {
+    return trieNodes.stats().hitCount();
+  }
+
+  /** @return The number of trie node lookups that had to go to the underlying storage. */
+  public long getMissCount() {
+    return trieNodes.stats().missCount();
+  }
+
+  /** @return The number of trie nodes currently held in memory. */
+  public long size() {
+    return trieNodes.size();
+  }
+
+  private class Updater implements WorldStateStorage.Updater {
+
+    private final WorldStateStorage.Updater updater;
+    private final Map<Bytes32, BytesValue> pendingNodes = new HashMap<>();
+
+    Updater(final WorldStateStorage.Updater updater) {
+      this.updater = updater;
+    }
+
+    @Override
+    public void putCode(final BytesValue code) {
+      updater.putCode(code);
+    }
+
+    @Override
+    public void putAccountStateTrieNode(final Bytes32 nodeHash, final BytesValue node) {
+      updater.putAccountStateTrieNode(nodeHash, node);
+      pendingNodes.put(nodeHash, node);
+    }
+
+    @Override
+    public void putAccountStorageTrieNode(final Bytes32 nodeHash, final BytesValue node) {
+      updater.putAccountStorageTrieNode(nodeHash, node);
+      pendingNodes.put(nodeHash, node);
+    }
+
+    @Override
+    public void commit() {
+      updater.commit();
+      // Freshly written nodes are the ones the next block is most likely to read.
+      trieNodes.putAll(pendingNodes);
+      pendingNodes.clear();
+    }
+
+    @Override
+    public void rollback() {
+      updater.rollback();
+      pendingNodes.clear();
+    }
+  }
+}
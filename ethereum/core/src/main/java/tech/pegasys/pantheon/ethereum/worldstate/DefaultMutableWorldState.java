@@ -25,6 +25,7 @@ import tech.pegasys.pantheon.ethereum.rlp.RLPException;
 import tech.pegasys.pantheon.ethereum.rlp.RLPInput;
 import tech.pegasys.pantheon.ethereum.trie.MerklePatriciaTrie;
 import tech.pegasys.pantheon.ethereum.trie.StoredMerklePatriciaTrie;
+import tech.pegasys.pantheon.ethereum.worldstate.WorldStateSnapshot.AccountRecord;
 import tech.pegasys.pantheon.util.bytes.Bytes32;
 import tech.pegasys.pantheon.util.bytes.BytesValue;
 import tech.pegasys.pantheon.util.uint.UInt256;
@@ -36,8 +37,10 @@ import java.util.Map;
 import java.util.NavigableMap;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Stream;
 
 public class DefaultMutableWorldState implements MutableWorldState {
@@ -47,6 +50,14 @@ public class DefaultMutableWorldState implements MutableWorldState {
       new HashMap<>();
   private final Map<Address, BytesValue> updatedAccountCode = new HashMap<>();
   private final WorldStateStorage worldStateStorage;
+  private final Optional<ForkJoinPool> hashingPool;
+
+  private final Optional<WorldStateSnapshot> snapshot;
+  // The state the snapshot is read at, which is the state this world state was created with or
+  // last persisted, and the changes made on top of it since.
+  private Hash snapshotRoot;
+  private WorldStateSnapshot.Diff snapshotDiff;
+  private boolean snapshotTracked;
 
   public DefaultMutableWorldState(final WorldStateStorage storage) {
     this(MerklePatriciaTrie.EMPTY_TRIE_ROOT_HASH, storage);
@@ -54,8 +65,40 @@ public class DefaultMutableWorldState implements MutableWorldState {
 
   public DefaultMutableWorldState(
       final Bytes32 rootHash, final WorldStateStorage worldStateStorage) {
+    this(rootHash, worldStateStorage, Optional.empty());
+  }
+
+  /**
+   * @param rootHash The root of the world state.
+   * @param worldStateStorage The storage holding the world state.
+   * @param hashingPool The pool on which the tries hash large sets of updates in parallel, or empty
+   *     to hash on the calling thread.
+   */
+  public DefaultMutableWorldState(
+      final Bytes32 rootHash,
+      final WorldStateStorage worldStateStorage,
+      final Optional<ForkJoinPool> hashingPool) {
+    this(rootHash, worldStateStorage, hashingPool, Optional.empty());
+  }
+
+  /**
+   * @param rootHash The root of the world state.
+   * @param worldStateStorage The storage holding the world state.
+   * @param hashingPool The pool on which the tries hash large sets of updates in parallel, or empty
+   *     to hash on the calling thread.
+   * @param snapshot The snapshot accounts and storage are read from where it holds the state, and
+   *     which is kept up to date with the state when it is persisted.
+   */
+  public DefaultMutableWorldState(
+      final Bytes32 rootHash,
+      final WorldStateStorage worldStateStorage,
+      final Optional<ForkJoinPool> hashingPool,
+      final Optional<WorldStateSnapshot> snapshot) {
     this.worldStateStorage = worldStateStorage;
+    this.hashingPool = hashingPool;
+    this.snapshot = snapshot;
     this.accountStateTrie = newAccountStateTrie(rootHash);
+    resetSnapshotDiff();
   }
 
   public DefaultMutableWorldState(final WorldState worldState) {
@@ -68,17 +111,20 @@ public class DefaultMutableWorldState implements MutableWorldState {
 
     final DefaultMutableWorldState other = (DefaultMutableWorldState) worldState;
     this.worldStateStorage = other.worldStateStorage;
+    this.hashingPool = other.hashingPool;
+    this.snapshot = other.snapshot;
     this.accountStateTrie = newAccountStateTrie(other.accountStateTrie.getRootHash());
+    resetSnapshotDiff();
   }
 
   private MerklePatriciaTrie<Bytes32, BytesValue> newAccountStateTrie(final Bytes32 rootHash) {
     return new StoredMerklePatriciaTrie<>(
-        worldStateStorage::getAccountStateTrieNode, rootHash, b -> b, b -> b);
+        worldStateStorage::getAccountStateTrieNode, rootHash, b -> b, b -> b, hashingPool);
   }
 
   private MerklePatriciaTrie<Bytes32, BytesValue> newAccountStorageTrie(final Bytes32 rootHash) {
     return new StoredMerklePatriciaTrie<>(
-        worldStateStorage::getAccountStorageTrieNode, rootHash, b -> b, b -> b);
+        worldStateStorage::getAccountStorageTrieNode, rootHash, b -> b, b -> b, hashingPool);
   }
 
   @Override
@@ -88,20 +134,77 @@ public class DefaultMutableWorldState implements MutableWorldState {
 
   @Override
   public MutableWorldState copy() {
-    return new DefaultMutableWorldState(rootHash(), worldStateStorage);
+    return new DefaultMutableWorldState(rootHash(), worldStateStorage, hashingPool, snapshot);
   }
 
   @Override
   public Account get(final Address address) {
-    final Hash addressHash = Hash.hash(address);
+    return getAccount(address, Hash.hash(address)).orElse(null);
+  }
+
+  private Optional<AccountState> getAccount(final Address address, final Hash addressHash) {
+    final Optional<AccountRecord> record = getSnapshotAccount(addressHash);
+    if (record.isPresent()) {
+      final OptionalLong incarnation = OptionalLong.of(record.get().incarnation);
+      return record
+          .get()
+          .account
+          .map(bytes -> deserializeAccount(address, addressHash, bytes, incarnation));
+    }
     return accountStateTrie
-        .get(Hash.hash(address))
-        .map(bytes -> deserializeAccount(address, addressHash, bytes))
-        .orElse(null);
+        .get(addressHash)
+        .map(bytes -> deserializeAccount(address, addressHash, bytes, OptionalLong.empty()));
+  }
+
+  private Optional<AccountRecord> getSnapshotAccount(final Hash addressHash) {
+    if (!snapshotTracked) {
+      return Optional.empty();
+    }
+    final AccountRecord updated = snapshotDiff.accounts.get(addressHash);
+    if (updated != null) {
+      return Optional.of(updated);
+    }
+    return snapshot.get().getAccount(snapshotRoot, addressHash);
+  }
+
+  /**
+   * Works out the incarnation of an updated account's storage for the snapshot.
+   *
+   * @param addressHash The hash of the account's address.
+   * @param storageCleared Whether the account's existing storage was cleared.
+   * @param origin The account before the update, or null if it did not exist.
+   * @return The incarnation, or empty if the snapshot can no longer be kept up to date.
+   */
+  private OptionalLong snapshotIncarnation(
+      final Hash addressHash, final boolean storageCleared, final AccountState origin) {
+    if (!snapshotTracked) {
+      return OptionalLong.empty();
+    }
+    if (!storageCleared && origin != null && origin.incarnation.isPresent()) {
+      return origin.incarnation;
+    }
+    final Optional<AccountRecord> current = getSnapshotAccount(addressHash);
+    if (!storageCleared || !current.isPresent()) {
+      // Without the account's current incarnation, its storage changes can't be recorded.
+      snapshotTracked = false;
+      return OptionalLong.empty();
+    }
+    snapshotDiff.clearStorage(addressHash);
+    return OptionalLong.of(current.get().incarnation + 1);
+  }
+
+  private void resetSnapshotDiff() {
+    snapshotRoot = rootHash();
+    snapshotDiff = new WorldStateSnapshot.Diff();
+    snapshotTracked = snapshot.map(s -> s.covers(snapshotRoot)).orElse(false);
   }
 
   private AccountState deserializeAccount(
-      final Address address, final Hash addressHash, final BytesValue encoded) throws RLPException {
+      final Address address,
+      final Hash addressHash,
+      final BytesValue encoded,
+      final OptionalLong incarnation)
+      throws RLPException {
     final RLPInput in = RLP.input(encoded);
     in.enterList();
 
@@ -112,7 +215,8 @@ public class DefaultMutableWorldState implements MutableWorldState {
 
     in.leaveList();
 
-    return new AccountState(address, addressHash, nonce, balance, storageRoot, codeHash);
+    return new AccountState(
+        address, addressHash, nonce, balance, storageRoot, codeHash, incarnation);
   }
 
   private static BytesValue serializeAccount(
@@ -178,6 +282,11 @@ public class DefaultMutableWorldState implements MutableWorldState {
 
     // Push changes to underlying storage
     updater.commit();
+
+    if (snapshotTracked) {
+      snapshot.get().update(snapshotRoot, rootHash(), snapshotDiff);
+    }
+    resetSnapshotDiff();
   }
 
   // An immutable class that represents an individual account as stored in
@@ -191,6 +300,8 @@ public class DefaultMutableWorldState implements MutableWorldState {
     private final Wei balance;
     private final Hash storageRoot;
     private final Hash codeHash;
+    // The incarnation of the account's storage in the snapshot, if it was read from the snapshot.
+    private final OptionalLong incarnation;
 
     // Lazily initialized since we don't always access storage.
     private volatile MerklePatriciaTrie<Bytes32, BytesValue> storageTrie;
@@ -201,7 +312,8 @@ public class DefaultMutableWorldState implements MutableWorldState {
         final long nonce,
         final Wei balance,
         final Hash storageRoot,
-        final Hash codeHash) {
+        final Hash codeHash,
+        final OptionalLong incarnation) {
 
       this.address = address;
       this.addressHash = addressHash;
@@ -209,6 +321,7 @@ public class DefaultMutableWorldState implements MutableWorldState {
       this.balance = balance;
       this.storageRoot = storageRoot;
       this.codeHash = codeHash;
+      this.incarnation = incarnation;
     }
 
     private MerklePatriciaTrie<Bytes32, BytesValue> storageTrie() {
@@ -267,13 +380,31 @@ public class DefaultMutableWorldState implements MutableWorldState {
 
     @Override
     public UInt256 getStorageValue(final UInt256 key) {
-      final Optional<BytesValue> val = storageTrie().get(Hash.hash(key.getBytes()));
+      final Hash slotHash = Hash.hash(key.getBytes());
+      final Optional<UInt256> snapshotValue = getSnapshotStorageValue(slotHash);
+      if (snapshotValue.isPresent()) {
+        return snapshotValue.get();
+      }
+      final Optional<BytesValue> val = storageTrie().get(slotHash);
       if (!val.isPresent()) {
         return UInt256.ZERO;
       }
       return convertToUInt256(val.get());
     }
 
+    private Optional<UInt256> getSnapshotStorageValue(final Hash slotHash) {
+      if (!snapshotTracked || !incarnation.isPresent()) {
+        return Optional.empty();
+      }
+      final Optional<UInt256> updated = snapshotDiff.getStorageValue(addressHash, slotHash);
+      if (updated.isPresent()) {
+        return updated;
+      }
+      return snapshot
+          .get()
+          .getStorageValue(snapshotRoot, addressHash, incarnation.getAsLong(), slotHash);
+    }
+
     @Override
     public UInt256 getOriginalStorageValue(final UInt256 key) {
       return getStorageValue(key);
@@ -318,13 +449,7 @@ public class DefaultMutableWorldState implements MutableWorldState {
 
     @Override
     protected AccountState getForMutation(final Address address) {
-      final DefaultMutableWorldState wrapped = wrappedWorldView();
-      final Hash addressHash = Hash.hash(address);
-      return wrapped
-          .accountStateTrie
-          .get(addressHash)
-          .map(bytes -> wrapped.deserializeAccount(address, addressHash, bytes))
-          .orElse(null);
+      return wrappedWorldView().getAccount(address, Hash.hash(address)).orElse(null);
     }
 
     @Override
@@ -347,6 +472,11 @@ public class DefaultMutableWorldState implements MutableWorldState {
         wrapped.accountStateTrie.remove(addressHash);
         wrapped.updatedStorageTries.remove(address);
         wrapped.updatedAccountCode.remove(address);
+        final OptionalLong incarnation = wrapped.snapshotIncarnation(addressHash, true, null);
+        if (incarnation.isPresent()) {
+          wrapped.snapshotDiff.accounts.put(
+              addressHash, new AccountRecord(incarnation.getAsLong(), Optional.empty()));
+        }
       }
 
       for (final UpdateTrackingAccount<AccountState> updated : updatedAccounts()) {
@@ -364,6 +494,8 @@ public class DefaultMutableWorldState implements MutableWorldState {
         if (freshState) {
           wrapped.updatedStorageTries.remove(updated.getAddress());
         }
+        final OptionalLong incarnation =
+            wrapped.snapshotIncarnation(updated.getAddressHash(), freshState, origin);
         final SortedMap<UInt256, UInt256> updatedStorage = updated.getUpdatedStorage();
         if (!updatedStorage.isEmpty()) {
           // Apply any storage updates
@@ -380,6 +512,9 @@ public class DefaultMutableWorldState implements MutableWorldState {
             } else {
               storageTrie.put(keyHash, RLP.encode(out -> out.writeUInt256Scalar(entry.getValue())));
             }
+            if (incarnation.isPresent()) {
+              wrapped.snapshotDiff.putStorageValue(updated.getAddressHash(), keyHash, value);
+            }
           }
           storageRoot = Hash.wrap(storageTrie.getRootHash());
         }
@@ -389,6 +524,11 @@ public class DefaultMutableWorldState implements MutableWorldState {
             serializeAccount(updated.getNonce(), updated.getBalance(), codeHash, storageRoot);
 
         wrapped.accountStateTrie.put(updated.getAddressHash(), account);
+        if (incarnation.isPresent()) {
+          wrapped.snapshotDiff.accounts.put(
+              updated.getAddressHash(),
+              new AccountRecord(incarnation.getAsLong(), Optional.of(account)));
+        }
       }
     }
   }
@@ -17,6 +17,9 @@ import tech.pegasys.pantheon.services.kvstore.KeyValueStorage;
 import tech.pegasys.pantheon.util.bytes.Bytes32;
 import tech.pegasys.pantheon.util.bytes.BytesValue;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 
 public class KeyValueStorageWorldStateStorage implements WorldStateStorage {
@@ -42,6 +45,19 @@ public class KeyValueStorageWorldStateStorage implements WorldStateStorage {
     return keyValueStorage.get(nodeHash);
   }
 
+  @Override
+  public Map<Hash, BytesValue> getNodeData(final Collection<Hash> hashes) {
+    final Map<BytesValue, BytesValue> values = keyValueStorage.getAll(hashes);
+    final Map<Hash, BytesValue> nodeData = new HashMap<>(values.size());
+    for (final Hash hash : hashes) {
+      final BytesValue value = values.get(hash);
+      if (value != null) {
+        nodeData.put(hash, value);
+      }
+    }
+    return nodeData;
+  }
+
   @Override
   public Updater updater() {
     return new Updater(keyValueStorage.getStartTransaction());
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.worldstate;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import tech.pegasys.pantheon.ethereum.rlp.RLP;
+import tech.pegasys.pantheon.ethereum.rlp.RLPInput;
+import tech.pegasys.pantheon.ethereum.trie.MerkleStorageException;
+import tech.pegasys.pantheon.ethereum.trie.StoredMerklePatriciaTrie;
+import tech.pegasys.pantheon.services.kvstore.KeyValueStorage.Entry;
+import tech.pegasys.pantheon.util.bytes.Bytes32;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Multiset;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Removes world state entries that are no longer reachable from recent chain heads.
+ *
+ * <p>The state roots of the most recent chain heads are retained, along with any roots that have
+ * been explicitly pinned. Every few chain head updates a background task marks every trie node and
+ * contract code reachable from those roots, then sweeps the underlying storage, removing each
+ * unmarked world state entry. Entries written since the chain head update before the prune began,
+ * or while it is in progress, are never removed, so block import continues while pruning runs.
+ * State older than the retained roots, including forks that branch off below them, can no longer be
+ * processed once it has been pruned.
+ *
+ * <p>Every entry keyed by a hash is considered world state, so the underlying storage must not be
+ * shared with other data.
+ */
+public class MarkSweepPruner implements Closeable {
+
+  private static final Logger LOG = LogManager.getLogger();
+  private static final int SWEEP_BATCH_SIZE = 1000;
+
+  private final WorldStateStorage worldStateStorage;
+  private final WriteTrackingWorldStateStorage trackingStorage;
+  private final int retainedStates;
+  private final int pruningInterval;
+  private final ExecutorService executor;
+
+  private final Deque<Bytes32> retainedRoots = new ArrayDeque<>();
+  private final Multiset<Bytes32> pinnedRoots = HashMultiset.create();
+  private int chainHeadUpdatesSincePrune = 0;
+  private boolean pruning = false;
+
+  private final AtomicLong prunedEntries = new AtomicLong();
+  private final AtomicLong reclaimedBytes = new AtomicLong();
+
+  /**
+   * @param worldStateStorage The storage read from when marking reachable nodes. This must see
+   *     every committed node, including any held in memory above {@code trackingStorage}.
+   * @param trackingStorage The storage world state is written to, and from which unreachable
+   *     entries are removed.
+   * @param retainedStates The number of recent chain head states to keep.
+   * @param pruningInterval The number of chain head updates between prunes.
+   * @param executor The executor prunes run on.
+   */
+  public MarkSweepPruner(
+      final WorldStateStorage worldStateStorage,
+      final WriteTrackingWorldStateStorage trackingStorage,
+      final int retainedStates,
+      final int pruningInterval,
+      final ExecutorService executor) {
+    checkArgument(retainedStates > 0, "Retained states must be positive");
+    checkArgument(pruningInterval > 0, "Pruning interval must be positive");
+    this.worldStateStorage = worldStateStorage;
+    this.trackingStorage = trackingStorage;
+    this.retainedStates = retainedStates;
+    this.pruningInterval = pruningInterval;
+    this.executor = executor;
+  }
+
+  /**
+   * Records the state root of a new chain head, starting a prune in the background if enough chain
+   * head updates have accumulated since the last one and no prune is already running.
+   *
+   * @param stateRoot The state root of the new chain head.
+   */
+  public synchronized void onChainHeadUpdated(final Bytes32 stateRoot) {
+    retainedRoots.addLast(stateRoot);
+    if (retainedRoots.size() > retainedStates) {
+      retainedRoots.removeFirst();
+    }
+    chainHeadUpdatesSincePrune++;
+    if (!pruning) {
+      // State written before the previous chain head update is either retained or unreachable, so
+      // only keys written since then need protecting. While a prune runs every write is protected.
+      trackingStorage.startGeneration();
+    }
+    if (!pruning
+        && chainHeadUpdatesSincePrune >= pruningInterval
+        && retainedRoots.size() >= retainedStates) {
+      // Only prune once a full window of states is retained, so a restart does not discard them.
+      pruning = true;
+      chainHeadUpdatesSincePrune = 0;
+      final Set<Bytes32> roots = new HashSet<>(retainedRoots);
+      roots.addAll(pinnedRoots.elementSet());
+      executor.execute(() -> prune(roots));
+    }
+  }
+
+  /**
+   * Keeps the state under the given root until it is unpinned. A root pinned while a prune is
+   * running is only protected from the next prune onwards, so callers should only pin roots that
+   * are currently retained.
+   *
+   * @param stateRoot The state root to keep.
+   */
+  public synchronized void pin(final Bytes32 stateRoot) {
+    pinnedRoots.add(stateRoot);
+  }
+
+  /**
+   * Releases a root previously passed to {@link #pin(Bytes32)}.
+   *
+   * @param stateRoot The state root to release.
+   */
+  public synchronized void unpin(final Bytes32 stateRoot) {
+    pinnedRoots.remove(stateRoot);
+  }
+
+  /** @return The total number of world state entries removed. */
+  public long prunedEntryCount() {
+    return prunedEntries.get();
+  }
+
+  /** @return The total size in bytes of the keys and values of the removed entries. */
+  public long reclaimedBytes() {
+    return reclaimedBytes.get();
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+    try {
+      executor.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void prune(final Set<Bytes32> roots) {
+    try {
+      final long startTime = System.currentTimeMillis();
+      final Set<Bytes32> marked = new HashSet<>();
+      for (final Bytes32 root : roots) {
+        markAccountStateTrie(root, marked);
+      }
+      final long markTime = System.currentTimeMillis() - startTime;
+
+      final long entriesBefore = prunedEntries.get();
+      final long bytesBefore = reclaimedBytes.get();
+      sweep(marked);
+      LOG.info(
+          "Pruned {} world state entries ({} bytes) unreachable from {} state roots, "
+              + "marked {} entries in {} ms, swept in {} ms",
+          prunedEntries.get() - entriesBefore,
+          reclaimedBytes.get() - bytesBefore,
+          roots.size(),
+          marked.size(),
+          markTime,
+          System.currentTimeMillis() - startTime - markTime);
+    } catch (final MerkleStorageException e) {
+      LOG.warn("Skipping world state pruning, unable to load retained state: {}", e.getMessage());
+    } catch (final CancellationException e) {
+      LOG.debug("World state pruning cancelled");
+    } catch (final RuntimeException e) {
+      LOG.error("World state pruning failed", e);
+    } finally {
+      synchronized (this) {
+        pruning = false;
+      }
+    }
+  }
+
+  private void markAccountStateTrie(final Bytes32 root, final Set<Bytes32> marked) {
+    new StoredMerklePatriciaTrie<Bytes32, BytesValue>(
+            worldStateStorage::getAccountStateTrieNode, root, b -> b, b -> b)
+        .visitStoredNodes(hash -> mark(hash, marked), account -> markAccount(account, marked));
+  }
+
+  private void markAccount(final BytesValue account, final Set<Bytes32> marked) {
+    final RLPInput in = RLP.input(account);
+    in.enterList();
+    in.skipNext(); // nonce
+    in.skipNext(); // balance
+    final Bytes32 storageRoot = in.readBytes32();
+    final Bytes32 codeHash = in.readBytes32();
+    in.leaveList();
+
+    marked.add(codeHash);
+    new StoredMerklePatriciaTrie<Bytes32, BytesValue>(
+            worldStateStorage::getAccountStorageTrieNode, storageRoot, b -> b, b -> b)
+        .visitStoredNodes(hash -> mark(hash, marked), value -> {});
+  }
+
+  private static boolean mark(final Bytes32 hash, final Set<Bytes32> marked) {
+    if (Thread.currentThread().isInterrupted()) {
+      throw new CancellationException();
+    }
+    // Subtrees below an already marked node are shared with an earlier root and already marked.
+    return marked.add(hash);
+  }
+
+  private void sweep(final Set<Bytes32> marked) {
+    final List<Entry> batch = new ArrayList<>(SWEEP_BATCH_SIZE);
+    try (final Stream<Entry> entries = trackingStorage.entries()) {
+      final Iterator<Entry> iterator = entries.iterator();
+      while (iterator.hasNext()) {
+        final Entry entry = iterator.next();
+        // World state is keyed by hash, bookkeeping kept alongside it never is.
+        if (entry.getKey().size() == Bytes32.SIZE
+            && !marked.contains(Bytes32.wrap(entry.getKey(), 0))) {
+          batch.add(entry);
+          if (batch.size() >= SWEEP_BATCH_SIZE) {
+            removeBatch(batch);
+          }
+        }
+      }
+    }
+    removeBatch(batch);
+  }
+
+  private void removeBatch(final List<Entry> batch) {
+    if (batch.isEmpty()) {
+      return;
+    }
+    if (Thread.currentThread().isInterrupted()) {
+      throw new CancellationException();
+    }
+    for (final Entry entry : trackingStorage.removeUnlessRecentlyWritten(batch)) {
+      prunedEntries.incrementAndGet();
+      reclaimedBytes.addAndGet(entry.getKey().size() + entry.getValue().size());
+    }
+    batch.clear();
+  }
+}
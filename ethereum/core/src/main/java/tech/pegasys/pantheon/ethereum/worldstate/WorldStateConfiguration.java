@@ -0,0 +1,197 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.worldstate;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.base.MoreObjects;
+
+/** Options controlling how world state is held in memory on top of its storage. */
+public class WorldStateConfiguration {
+
+  public static final long DEFAULT_TRIE_NODE_CACHE_SIZE = 256L * 1024 * 1024;
+  public static final int DEFAULT_PRUNING_INTERVAL = 1000;
+
+  private final long trieNodeCacheSize;
+  private final int writeBackBlocks;
+  private final int pruningRetainedStates;
+  private final int pruningInterval;
+  private final int prefetchThreads;
+  private final int hashingThreads;
+  private final int snapshotLayers;
+
+  private WorldStateConfiguration(
+      final long trieNodeCacheSize,
+      final int writeBackBlocks,
+      final int pruningRetainedStates,
+      final int pruningInterval,
+      final int prefetchThreads,
+      final int hashingThreads,
+      final int snapshotLayers) {
+    this.trieNodeCacheSize = trieNodeCacheSize;
+    this.writeBackBlocks = writeBackBlocks;
+    this.pruningRetainedStates = pruningRetainedStates;
+    this.pruningInterval = pruningInterval;
+    this.prefetchThreads = prefetchThreads;
+    this.hashingThreads = hashingThreads;
+    this.snapshotLayers = snapshotLayers;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * The approximate number of bytes of trie nodes kept in memory, or zero to disable caching.
+   *
+   * @return the trie node cache size in bytes.
+   */
+  public long trieNodeCacheSize() {
+    return trieNodeCacheSize;
+  }
+
+  /**
+   * The number of chain head updates for which committed trie nodes are held in memory before being
+   * written to storage, or zero to write them as soon as they are committed.
+   *
+   * @return the number of blocks between world state checkpoints.
+   */
+  public int writeBackBlocks() {
+    return writeBackBlocks;
+  }
+
+  /**
+   * The number of recent chain head states kept when pruning unreachable world state, or zero to
+   * keep all world state.
+   *
+   * @return the number of retained chain head states.
+   */
+  public int pruningRetainedStates() {
+    return pruningRetainedStates;
+  }
+
+  /**
+   * The number of chain head updates between prunes of unreachable world state.
+   *
+   * @return the pruning interval in blocks.
+   */
+  public int pruningInterval() {
+    return pruningInterval;
+  }
+
+  /**
+   * The number of threads reading the accounts a block will touch ahead of its execution, or zero
+   * to disable prefetching.
+   *
+   * @return the number of prefetch threads.
+   */
+  public int prefetchThreads() {
+    return prefetchThreads;
+  }
+
+  /**
+   * The number of threads hashing trie nodes in parallel when a block updates many accounts or
+   * storage slots, or zero to always hash on the importing thread.
+   *
+   * @return the number of trie hashing threads.
+   */
+  public int hashingThreads() {
+    return hashingThreads;
+  }
+
+  /**
+   * The number of recent chain head states whose changes the flat world state snapshot keeps in
+   * memory, or zero to disable the snapshot and read all world state from the tries.
+   *
+   * @return the number of snapshot diff layers.
+   */
+  public int snapshotLayers() {
+    return snapshotLayers;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("trieNodeCacheSize", trieNodeCacheSize)
+        .add("writeBackBlocks", writeBackBlocks)
+        .add("pruningRetainedStates", pruningRetainedStates)
+        .add("pruningInterval", pruningInterval)
+        .add("prefetchThreads", prefetchThreads)
+        .add("hashingThreads", hashingThreads)
+        .add("snapshotLayers", snapshotLayers)
+        .toString();
+  }
+
+  public static class Builder {
+    private long trieNodeCacheSize = DEFAULT_TRIE_NODE_CACHE_SIZE;
+    private int writeBackBlocks = 0;
+    private int pruningRetainedStates = 0;
+    private int pruningInterval = DEFAULT_PRUNING_INTERVAL;
+    private int prefetchThreads = 0;
+    private int hashingThreads = 0;
+    private int snapshotLayers = 0;
+
+    public Builder trieNodeCacheSize(final long trieNodeCacheSize) {
+      this.trieNodeCacheSize = trieNodeCacheSize;
+      return this;
+    }
+
+    public Builder writeBackBlocks(final int writeBackBlocks) {
+      this.writeBackBlocks = writeBackBlocks;
+      return this;
+    }
+
+    public Builder pruningRetainedStates(final int pruningRetainedStates) {
+      this.pruningRetainedStates = pruningRetainedStates;
+      return this;
+    }
+
+    public Builder pruningInterval(final int pruningInterval) {
+      this.pruningInterval = pruningInterval;
+      return this;
+    }
+
+    public Builder prefetchThreads(final int prefetchThreads) {
+      this.prefetchThreads = prefetchThreads;
+      return this;
+    }
+
+    public Builder hashingThreads(final int hashingThreads) {
+      this.hashingThreads = hashingThreads;
+      return this;
+    }
+
+    public Builder snapshotLayers(final int snapshotLayers) {
+      this.snapshotLayers = snapshotLayers;
+      return this;
+    }
+
+    public WorldStateConfiguration build() {
+      checkArgument(trieNodeCacheSize >= 0, "Trie node cache size must not be negative");
+      checkArgument(writeBackBlocks >= 0, "Write-back blocks must not be negative");
+      checkArgument(pruningRetainedStates >= 0, "Pruning retained states must not be negative");
+      checkArgument(pruningInterval > 0, "Pruning interval must be positive");
+      checkArgument(prefetchThreads >= 0, "Prefetch threads must not be negative");
+      checkArgument(hashingThreads >= 0, "Hashing threads must not be negative");
+      checkArgument(snapshotLayers >= 0, "Snapshot layers must not be negative");
+      return new WorldStateConfiguration(
+          trieNodeCacheSize,
+          writeBackBlocks,
+          pruningRetainedStates,
+          pruningInterval,
+          prefetchThreads,
+          hashingThreads,
+          snapshotLayers);
+    }
+  }
+}
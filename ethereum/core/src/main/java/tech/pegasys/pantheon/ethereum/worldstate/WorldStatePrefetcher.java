@@ -0,0 +1,82 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.worldstate;
+
+import tech.pegasys.pantheon.ethereum.core.Address;
+import tech.pegasys.pantheon.ethereum.core.Hash;
+import tech.pegasys.pantheon.ethereum.rlp.RLP;
+import tech.pegasys.pantheon.ethereum.rlp.RLPInput;
+import tech.pegasys.pantheon.ethereum.trie.MerklePatriciaTrie;
+import tech.pegasys.pantheon.ethereum.trie.StoredMerklePatriciaTrie;
+import tech.pegasys.pantheon.util.bytes.Bytes32;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+
+/**
+ * Reads the accounts a block is expected to touch ahead of its execution, so that the trie nodes on
+ * their paths, their code and the roots of their storage tries are already in memory, or at least
+ * in the database's block cache, by the time a transaction reaches them.
+ *
+ * <p>Each account is looked up through its own trie, so lookups can run in parallel with each other
+ * and with execution. Nothing read here is kept beyond what the storage itself caches.
+ */
+public class WorldStatePrefetcher {
+
+  private final WorldStateStorage storage;
+  private final Executor executor;
+
+  public WorldStatePrefetcher(final WorldStateStorage storage, final Executor executor) {
+    this.storage = storage;
+    this.executor = executor;
+  }
+
+  /**
+   * Starts reading the given accounts in the background. Nothing waits for the reads, which the
+   * executor is free to discard if it falls behind.
+   *
+   * @param stateRoot The root of the world state the accounts are read from.
+   * @param addresses The accounts to read.
+   */
+  public void prefetch(final Hash stateRoot, final Collection<Address> addresses) {
+    for (final Address address : addresses) {
+      executor.execute(() -> load(stateRoot, address));
+    }
+  }
+
+  private void load(final Hash stateRoot, final Address address) {
+    final MerklePatriciaTrie<Bytes32, BytesValue> accountStateTrie =
+        new StoredMerklePatriciaTrie<>(storage::getAccountStateTrieNode, stateRoot, b -> b, b -> b);
+    final Optional<BytesValue> account = accountStateTrie.get(Hash.hash(address));
+    if (!account.isPresent()) {
+      return;
+    }
+
+    final RLPInput in = RLP.input(account.get());
+    in.enterList();
+    in.skipNext(); // nonce
+    in.skipNext(); // balance
+    final Bytes32 storageRoot = in.readBytes32();
+    final Hash codeHash = Hash.wrap(in.readBytes32());
+    in.leaveList();
+
+    if (!storageRoot.equals(MerklePatriciaTrie.EMPTY_TRIE_ROOT_HASH)) {
+      storage.getAccountStorageTrieNode(storageRoot);
+    }
+    if (!codeHash.equals(Hash.EMPTY)) {
+      storage.getCode(codeHash);
+    }
+  }
+}
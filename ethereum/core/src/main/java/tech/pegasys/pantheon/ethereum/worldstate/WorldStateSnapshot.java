@@ -0,0 +1,632 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.worldstate;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import tech.pegasys.pantheon.ethereum.core.Hash;
+import tech.pegasys.pantheon.ethereum.rlp.RLP;
+import tech.pegasys.pantheon.ethereum.rlp.RLPInput;
+import tech.pegasys.pantheon.ethereum.trie.MerkleStorageException;
+import tech.pegasys.pantheon.ethereum.trie.StoredMerklePatriciaTrie;
+import tech.pegasys.pantheon.services.kvstore.KeyValueStorage;
+import tech.pegasys.pantheon.util.bytes.Bytes32;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+import tech.pegasys.pantheon.util.bytes.BytesValues;
+import tech.pegasys.pantheon.util.uint.UInt256;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import com.google.common.primitives.Longs;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A flat copy of the world state, keyed by account hash and by account and slot hash, that answers
+ * account and storage reads with a single lookup instead of a walk down the tries.
+ *
+ * <p>The flat entries on disk hold a single state, the disk layer. The changes made by each
+ * persisted world state above it are kept in memory as a diff layer, so that any recent state,
+ * including those of competing forks, can be read. As the chain head advances, the diff layers more
+ * than {@code retainedLayers} blocks below it are flattened into the disk layer and layers of forks
+ * that no longer connect to it are dropped.
+ *
+ * <p>Clearing an account's storage would otherwise mean finding and removing every one of its flat
+ * storage entries. Instead, each account record carries an incarnation that is part of its storage
+ * keys and changes whenever the account's storage is cleared, orphaning the old entries.
+ *
+ * <p>When the snapshot loses track of the chain head, for example after an unclean shutdown, a
+ * reorg deeper than the retained layers or on a database created without it, it is disabled and
+ * every read falls back to the tries. It is then regenerated in the background by comparing the
+ * chain head's account and storage tries with those of the disk layer, or with the empty state if
+ * the disk layer is unusable, and enabled again once it has caught up with the chain head.
+ */
+public class WorldStateSnapshot {
+
+  private static final Logger LOG = LogManager.getLogger();
+
+  // Prefixes are chosen not to clash with blockchain entries, which may share the same storage,
+  // and keys are never 32 bytes long so that they are left alone by the pruner.
+  private static final BytesValue ROOT_KEY =
+      BytesValues.concatenate(
+          BytesValue.of(0x10), BytesValue.wrap("snapshotRoot".getBytes(StandardCharsets.UTF_8)));
+  private static final BytesValue ACCOUNT_PREFIX = BytesValue.of(0x11);
+  private static final BytesValue STORAGE_PREFIX = BytesValue.of(0x12);
+
+  private static final int ACCOUNT_KEY_SIZE = ACCOUNT_PREFIX.size() + Bytes32.SIZE;
+  private static final int STORAGE_KEY_SIZE = STORAGE_PREFIX.size() + 2 * Bytes32.SIZE + Long.BYTES;
+
+  // Reads retried when the disk layer moves underneath them before falling back to the tries.
+  private static final int MAX_READ_ATTEMPTS = 3;
+  // Entries written by regeneration per transaction.
+  private static final int GENERATION_BATCH_SIZE = 10_000;
+
+  private final KeyValueStorage storage;
+  private final WorldStateStorage trieStorage;
+  private final int retainedLayers;
+  private final ExecutorService generationExecutor;
+
+  private final Map<Hash, DiffLayer> layers = new ConcurrentHashMap<>();
+  private volatile boolean enabled;
+  // The root of the state held on disk, or null while the disk layer is being updated.
+  private volatile Hash diskRoot;
+  private DiffLayer chainHead;
+  // The state root of the latest chain head, which regeneration catches up with.
+  private Hash chainHeadRoot;
+  private boolean generating;
+  private volatile boolean closed;
+
+  private WorldStateSnapshot(
+      final KeyValueStorage storage,
+      final WorldStateStorage trieStorage,
+      final int retainedLayers,
+      final ExecutorService generationExecutor,
+      final Optional<Hash> diskRoot) {
+    this.storage = storage;
+    this.trieStorage = trieStorage;
+    this.retainedLayers = retainedLayers;
+    this.generationExecutor = generationExecutor;
+    this.enabled = diskRoot.isPresent();
+    if (diskRoot.isPresent()) {
+      final DiffLayer diskLayer = DiffLayer.disk(diskRoot.get());
+      this.layers.put(diskLayer.root, diskLayer);
+      this.diskRoot = diskLayer.root;
+      this.chainHead = diskLayer;
+    }
+  }
+
+  /**
+   * Opens the snapshot kept in the given storage, starting a new one at the empty state if there is
+   * none.
+   *
+   * @param storage The storage holding world state.
+   * @param trieStorage The storage holding the world state tries, which the snapshot is
+   *     regenerated from.
+   * @param retainedLayers The number of recent chain head states kept in memory, which bounds the
+   *     depth of reorgs the snapshot can follow.
+   * @param generationExecutor The executor the snapshot is regenerated on, which is shut down when
+   *     the snapshot is closed.
+   * @return The snapshot.
+   */
+  public static WorldStateSnapshot open(
+      final KeyValueStorage storage,
+      final WorldStateStorage trieStorage,
+      final int retainedLayers,
+      final ExecutorService generationExecutor) {
+    checkArgument(retainedLayers > 0, "Retained layers must be positive");
+    final Optional<BytesValue> root = storage.get(ROOT_KEY);
+    final Optional<Hash> diskRoot;
+    if (!root.isPresent()) {
+      diskRoot = Optional.of(Hash.EMPTY_TRIE_HASH);
+    } else if (root.get().isEmpty()) {
+      LOG.debug("World state snapshot is incomplete and will be regenerated");
+      diskRoot = Optional.empty();
+    } else {
+      diskRoot = Optional.of(Hash.wrap(Bytes32.wrap(root.get(), 0)));
+    }
+    return new WorldStateSnapshot(
+        storage, trieStorage, retainedLayers, generationExecutor, diskRoot);
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Whether reads of the world state with the given root can be answered by the snapshot.
+   *
+   * @param stateRoot The root of the world state.
+   * @return true if the state is held by the snapshot.
+   */
+  public boolean covers(final Hash stateRoot) {
+    return enabled && layers.containsKey(stateRoot);
+  }
+
+  /**
+   * Reads an account record from the world state with the given root.
+   *
+   * @param stateRoot The root of the world state.
+   * @param accountHash The hash of the account's address.
+   * @return The account record, which is {@link AccountRecord#NONE} if the account has never
+   *     existed, or empty if the state is not held by the snapshot.
+   */
+  Optional<AccountRecord> getAccount(final Hash stateRoot, final Hash accountHash) {
+    return read(
+        stateRoot,
+        diff -> Optional.ofNullable(diff.accounts.get(accountHash)),
+        accountKey(accountHash),
+        value -> value.map(AccountRecord::decode).orElse(AccountRecord.NONE));
+  }
+
+  /**
+   * Reads a storage slot from the world state with the given root.
+   *
+   * @param stateRoot The root of the world state.
+   * @param accountHash The hash of the account's address.
+   * @param incarnation The incarnation of the account's storage in that state.
+   * @param slotHash The hash of the storage slot.
+   * @return The slot's value, or empty if the state is not held by the snapshot.
+   */
+  Optional<UInt256> getStorageValue(
+      final Hash stateRoot, final Hash accountHash, final long incarnation, final Hash slotHash) {
+    return read(
+        stateRoot,
+        diff -> diff.getStorageValue(accountHash, slotHash),
+        storageKey(accountHash, incarnation, slotHash),
+        value -> value.map(v -> RLP.input(v).readUInt256Scalar()).orElse(UInt256.ZERO));
+  }
+
+  private <T> Optional<T> read(
+      final Hash stateRoot,
+      final Function<Diff, Optional<T>> diffLookup,
+      final BytesValue diskKey,
+      final Function<Optional<BytesValue>, T> diskValue) {
+    for (int attempt = 0; attempt < MAX_READ_ATTEMPTS; attempt++) {
+      DiffLayer layer = enabled ? layers.get(stateRoot) : null;
+      if (layer == null) {
+        return Optional.empty();
+      }
+      while (!layer.flattened) {
+        final Optional<T> value = diffLookup.apply(layer.diff);
+        if (value.isPresent()) {
+          return value;
+        }
+        final DiffLayer parent = layer.parent;
+        if (parent == null) {
+          // The layer was flattened while we were reading it.
+          break;
+        }
+        layer = parent;
+      }
+      if (layer.root.equals(diskRoot)) {
+        final Optional<BytesValue> value = storage.get(diskKey);
+        // Equal roots mean equal state, so the value is only stale if the disk layer has moved.
+        if (layer.root.equals(diskRoot)) {
+          return Optional.of(diskValue.apply(value));
+        }
+      }
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * Adds the changes a persisted world state made on top of its parent state.
+   *
+   * @param parentRoot The root of the state the changes were made to.
+   * @param root The root of the resulting state.
+   * @param diff The changes, which must not be modified afterwards.
+   */
+  synchronized void update(final Hash parentRoot, final Hash root, final Diff diff) {
+    if (!enabled || parentRoot.equals(root) || layers.containsKey(root)) {
+      return;
+    }
+    final DiffLayer parent = layers.get(parentRoot);
+    if (parent == null) {
+      return;
+    }
+    layers.put(root, new DiffLayer(root, parent, diff));
+  }
+
+  /**
+   * Flattens the diff layers that have fallen far enough behind the new chain head into the disk
+   * layer, and drops the layers of forks that no longer connect to it. If the snapshot doesn't hold
+   * the new chain head, it is disabled and regenerated in the background.
+   *
+   * @param stateRoot The state root of the new chain head.
+   */
+  public synchronized void onChainHeadUpdated(final Bytes32 stateRoot) {
+    chainHeadRoot = Hash.wrap(stateRoot);
+    if (enabled) {
+      final DiffLayer head = layers.get(chainHeadRoot);
+      if (head != null) {
+        chainHead = head;
+        flatten(head, retainedLayers);
+        return;
+      }
+      disable();
+    }
+    if (!generating && !closed) {
+      generating = true;
+      generationExecutor.execute(this::regenerate);
+    }
+  }
+
+  /**
+   * Stops any regeneration and flattens every diff layer up to the chain head, so that the snapshot
+   * survives a restart.
+   */
+  public void close() {
+    synchronized (this) {
+      closed = true;
+      if (enabled) {
+        flatten(chainHead, 0);
+      }
+    }
+    generationExecutor.shutdownNow();
+    try {
+      generationExecutor.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void flatten(final DiffLayer head, final int retained) {
+    final Deque<DiffLayer> unflattened = new ArrayDeque<>();
+    for (DiffLayer layer = head; !layer.flattened; layer = layer.parent) {
+      unflattened.push(layer);
+    }
+    if (unflattened.size() <= retained) {
+      return;
+    }
+    while (unflattened.size() > retained) {
+      writeToDisk(unflattened.pop());
+    }
+    layers.values().removeIf(layer -> !connectsToDisk(layer));
+  }
+
+  private void writeToDisk(final DiffLayer layer) {
+    final KeyValueStorage.Transaction transaction = storage.getStartTransaction();
+    layer.diff.accounts.forEach(
+        (accountHash, record) -> transaction.put(accountKey(accountHash), record.encode()));
+    layer.diff.storage.forEach(
+        (accountHash, slots) -> {
+          final long incarnation = layer.diff.accounts.get(accountHash).incarnation;
+          slots.forEach(
+              (slotHash, value) -> {
+                final BytesValue key = storageKey(accountHash, incarnation, slotHash);
+                if (value.isZero()) {
+                  transaction.remove(key);
+                } else {
+                  transaction.put(key, RLP.encode(out -> out.writeUInt256Scalar(value)));
+                }
+              });
+        });
+    transaction.put(ROOT_KEY, layer.root);
+
+    diskRoot = null;
+    transaction.commit();
+    layer.flattened = true;
+    layer.parent = null;
+    diskRoot = layer.root;
+  }
+
+  private boolean connectsToDisk(final DiffLayer layer) {
+    DiffLayer current = layer;
+    while (!current.flattened) {
+      current = current.parent;
+    }
+    return current.root.equals(diskRoot);
+  }
+
+  private void disable() {
+    LOG.warn(
+        "World state snapshot no longer follows the chain head and has been disabled until it is "
+            + "regenerated. World state reads will use the state tries.");
+    // The disk layer is left as it is, as regeneration starts from it.
+    enabled = false;
+    layers.clear();
+    chainHead = null;
+  }
+
+  private void enable() {
+    final DiffLayer diskLayer = DiffLayer.disk(diskRoot);
+    layers.clear();
+    layers.put(diskLayer.root, diskLayer);
+    chainHead = diskLayer;
+    enabled = true;
+    LOG.info("World state snapshot regenerated at state root {}", diskRoot);
+  }
+
+  private void regenerate() {
+    try {
+      while (true) {
+        final Hash target;
+        synchronized (this) {
+          if (closed) {
+            return;
+          }
+          if (chainHeadRoot.equals(diskRoot)) {
+            enable();
+            return;
+          }
+          target = chainHeadRoot;
+        }
+        if (!isStateAvailable(target)) {
+          // The chain head's state is still being downloaded, so try again on a later chain head.
+          LOG.debug("Postponing world state snapshot regeneration, state {} is missing", target);
+          return;
+        }
+        generate(target);
+      }
+    } catch (final CancellationException e) {
+      LOG.debug("World state snapshot regeneration cancelled");
+    } catch (final RuntimeException e) {
+      LOG.warn("World state snapshot regeneration failed", e);
+    } finally {
+      synchronized (this) {
+        generating = false;
+      }
+    }
+  }
+
+  /** Moves the disk layer to the given state, which must be held in the tries. */
+  private void generate(final Hash target) {
+    Hash from = diskRoot;
+    // Until the disk layer is consistent again, a restart has to regenerate it from scratch.
+    diskRoot = null;
+    final KeyValueStorage.Transaction transaction = storage.getStartTransaction();
+    transaction.put(ROOT_KEY, BytesValue.EMPTY);
+    transaction.commit();
+
+    if (from == null || !isStateAvailable(from)) {
+      clear();
+      from = Hash.EMPTY_TRIE_HASH;
+    }
+    LOG.info("Regenerating world state snapshot from state root {} to {}", from, target);
+    try {
+      applyChanges(from, target);
+    } catch (final MerkleStorageException e) {
+      if (from.equals(Hash.EMPTY_TRIE_HASH)) {
+        throw e;
+      }
+      // Part of the disk layer's state has been pruned, so start again from the empty state.
+      LOG.debug("Unable to compare with state {}, regenerating from scratch", from);
+      clear();
+      applyChanges(Hash.EMPTY_TRIE_HASH, target);
+    }
+    diskRoot = target;
+  }
+
+  private void applyChanges(final Hash from, final Hash to) {
+    final BatchWriter writer = new BatchWriter();
+    accountTrie(to)
+        .visitChangesSince(
+            from,
+            (accountHash, previous, current) -> {
+              final Hash hash = Hash.wrap(accountHash);
+              final AccountRecord existing =
+                  storage
+                      .get(accountKey(hash))
+                      .map(AccountRecord::decode)
+                      .orElse(AccountRecord.NONE);
+              // As when the snapshot is kept up to date, storage starts afresh with a new
+              // incarnation when the account is created or deleted.
+              final boolean freshState = !previous.isPresent() || !current.isPresent();
+              final long incarnation =
+                  freshState ? existing.incarnation + 1 : existing.incarnation;
+              if (current.isPresent()) {
+                final Hash previousStorageRoot =
+                    freshState ? Hash.EMPTY_TRIE_HASH : storageRoot(previous.get());
+                storageTrie(storageRoot(current.get()))
+                    .visitChangesSince(
+                        previousStorageRoot,
+                        (slotHash, previousValue, value) -> {
+                          final BytesValue key =
+                              storageKey(hash, incarnation, Hash.wrap(slotHash));
+                          if (value.isPresent()) {
+                            writer.put(key, value.get());
+                          } else {
+                            writer.remove(key);
+                          }
+                        });
+              }
+              writer.put(accountKey(hash), new AccountRecord(incarnation, current).encode());
+            });
+    writer.put(ROOT_KEY, to);
+    writer.commit();
+  }
+
+  /** Removes every flat entry, leaving the disk layer at the empty state. */
+  private void clear() {
+    final BatchWriter writer = new BatchWriter();
+    try (final Stream<KeyValueStorage.Entry> entries = storage.entries()) {
+      entries
+          .map(KeyValueStorage.Entry::getKey)
+          .filter(WorldStateSnapshot::isFlatEntryKey)
+          .forEach(writer::remove);
+    }
+    writer.commit();
+  }
+
+  private boolean isStateAvailable(final Hash stateRoot) {
+    return stateRoot.equals(Hash.EMPTY_TRIE_HASH)
+        || trieStorage.getAccountStateTrieNode(stateRoot).isPresent();
+  }
+
+  private StoredMerklePatriciaTrie<Bytes32, BytesValue> accountTrie(final Hash rootHash) {
+    return new StoredMerklePatriciaTrie<>(
+        trieStorage::getAccountStateTrieNode, rootHash, b -> b, b -> b);
+  }
+
+  private StoredMerklePatriciaTrie<Bytes32, BytesValue> storageTrie(final Hash rootHash) {
+    return new StoredMerklePatriciaTrie<>(
+        trieStorage::getAccountStorageTrieNode, rootHash, b -> b, b -> b);
+  }
+
+  private static Hash storageRoot(final BytesValue account) {
+    final RLPInput in = RLP.input(account);
+    in.enterList();
+    in.skipNext(); // nonce
+    in.skipNext(); // balance
+    final Hash storageRoot = Hash.wrap(in.readBytes32());
+    in.leaveList(true);
+    return storageRoot;
+  }
+
+  private static boolean isFlatEntryKey(final BytesValue key) {
+    return (key.size() == ACCOUNT_KEY_SIZE && key.get(0) == ACCOUNT_PREFIX.get(0))
+        || (key.size() == STORAGE_KEY_SIZE && key.get(0) == STORAGE_PREFIX.get(0));
+  }
+
+  private static BytesValue accountKey(final Hash accountHash) {
+    return BytesValues.concatenate(ACCOUNT_PREFIX, accountHash);
+  }
+
+  private static BytesValue storageKey(
+      final Hash accountHash, final long incarnation, final Hash slotHash) {
+    return BytesValues.concatenate(
+        STORAGE_PREFIX, accountHash, BytesValue.wrap(Longs.toByteArray(incarnation)), slotHash);
+  }
+
+  /**
+   * Writes regenerated entries in transactions of bounded size, stopping once the snapshot is
+   * closed.
+   */
+  private class BatchWriter {
+    private KeyValueStorage.Transaction transaction = storage.getStartTransaction();
+    private int pending = 0;
+
+    private void put(final BytesValue key, final BytesValue value) {
+      transaction.put(key, value);
+      written();
+    }
+
+    private void remove(final BytesValue key) {
+      transaction.remove(key);
+      written();
+    }
+
+    private void written() {
+      if (++pending >= GENERATION_BATCH_SIZE) {
+        commit();
+        transaction = storage.getStartTransaction();
+        pending = 0;
+      }
+    }
+
+    private void commit() {
+      if (closed || Thread.currentThread().isInterrupted()) {
+        transaction.rollback();
+        throw new CancellationException();
+      }
+      transaction.commit();
+    }
+  }
+
+  /** An account as held by the snapshot, along with the incarnation of its storage. */
+  static class AccountRecord {
+    static final AccountRecord NONE = new AccountRecord(0, Optional.empty());
+
+    final long incarnation;
+    // The account's RLP encoding as held in the account trie, or empty if it does not exist.
+    final Optional<BytesValue> account;
+
+    AccountRecord(final long incarnation, final Optional<BytesValue> account) {
+      this.incarnation = incarnation;
+      this.account = account;
+    }
+
+    private BytesValue encode() {
+      return RLP.encode(
+          out -> {
+            out.startList();
+            out.writeLongScalar(incarnation);
+            out.writeBytesValue(account.orElse(BytesValue.EMPTY));
+            out.endList();
+          });
+    }
+
+    private static AccountRecord decode(final BytesValue encoded) {
+      final RLPInput in = RLP.input(encoded);
+      in.enterList();
+      final long incarnation = in.readLongScalar();
+      final BytesValue account = in.readBytesValue();
+      in.leaveList();
+      return new AccountRecord(
+          incarnation, account.isEmpty() ? Optional.empty() : Optional.of(account));
+    }
+  }
+
+  /** The account and storage changes made by a world state on top of its parent state. */
+  static class Diff {
+    final Map<Hash, AccountRecord> accounts = new HashMap<>();
+    // Storage changes, where zero values are removed slots. Every account with storage changes
+    // also has its record in accounts.
+    final Map<Hash, Map<Hash, UInt256>> storage = new HashMap<>();
+    // Accounts whose storage from the parent state was cleared.
+    final Set<Hash> clearedStorage = new HashSet<>();
+
+    Optional<UInt256> getStorageValue(final Hash accountHash, final Hash slotHash) {
+      final Map<Hash, UInt256> slots = storage.get(accountHash);
+      if (slots != null) {
+        final UInt256 value = slots.get(slotHash);
+        if (value != null) {
+          return Optional.of(value);
+        }
+      }
+      return clearedStorage.contains(accountHash) ? Optional.of(UInt256.ZERO) : Optional.empty();
+    }
+
+    void clearStorage(final Hash accountHash) {
+      storage.remove(accountHash);
+      clearedStorage.add(accountHash);
+    }
+
+    void putStorageValue(final Hash accountHash, final Hash slotHash, final UInt256 value) {
+      storage.computeIfAbsent(accountHash, key -> new HashMap<>()).put(slotHash, value);
+    }
+  }
+
+  private static class DiffLayer {
+    private final Hash root;
+    private final Diff diff;
+    // Null once the layer has been flattened into the disk layer.
+    private volatile DiffLayer parent;
+    private volatile boolean flattened;
+
+    private DiffLayer(final Hash root, final DiffLayer parent, final Diff diff) {
+      this.root = root;
+      this.parent = parent;
+      this.diff = diff;
+    }
+
+    private static DiffLayer disk(final Hash root) {
+      final DiffLayer layer = new DiffLayer(root, null, new Diff());
+      layer.flattened = true;
+      return layer;
+    }
+  }
+}
@@ -16,6 +16,8 @@ import tech.pegasys.pantheon.ethereum.core.Hash;
 import tech.pegasys.pantheon.util.bytes.Bytes32;
 import tech.pegasys.pantheon.util.bytes.BytesValue;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.Optional;
 
 public interface WorldStateStorage {
@@ -26,6 +28,15 @@ public interface WorldStateStorage {
 
   Optional<BytesValue> getAccountStorageTrieNode(Bytes32 nodeHash);
 
+  /**
+   * Looks up trie nodes and contract code by hash, without regard to which trie they belong to, as
+   * peers syncing the world state request them.
+   *
+   * @param hashes The hashes of the requested nodes or code.
+   * @return The data found, keyed by hash. Hashes with no stored data are absent from the map.
+   */
+  Map<Hash, BytesValue> getNodeData(Collection<Hash> hashes);
+
   Updater updater();
 
   interface Updater {
@@ -0,0 +1,358 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.worldstate;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import tech.pegasys.pantheon.ethereum.core.Hash;
+import tech.pegasys.pantheon.ethereum.rlp.RLP;
+import tech.pegasys.pantheon.ethereum.rlp.RLPInput;
+import tech.pegasys.pantheon.ethereum.trie.MerklePatriciaTrie;
+import tech.pegasys.pantheon.ethereum.trie.TrieNodeDecoder;
+import tech.pegasys.pantheon.util.bytes.Bytes32;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A {@link WorldStateStorage} that holds committed trie nodes in memory and only writes them to the
+ * underlying storage every few chain head updates.
+ *
+ * <p>On each flush only the nodes reachable from the state root of the current chain head are
+ * written. The flush is a single transaction on the underlying storage, so the stored world state
+ * is always a complete trie for some checkpointed chain head. Flushes run on their own executor, so
+ * block import carries on while a checkpoint is written. After an unclean shutdown the blocks
+ * imported since the last checkpoint are processed again by {@link
+ * tech.pegasys.pantheon.ethereum.mainnet.WorldStateRecovery}.
+ *
+ * <p>Nodes that are not written stay in memory while they are reachable from one of the last few
+ * chain heads, or from a node committed during that window, so the states of recent blocks and of
+ * forks built on them can still be read to import competing blocks or reorg. Only nodes that are
+ * older than the window and no longer reachable from it are dropped without reaching disk.
+ */
+public class WriteBackWorldStateStorage implements WorldStateStorage {
+
+  private static final Logger LOG = LogManager.getLogger();
+
+  private final WorldStateStorage storage;
+  private final int flushInterval;
+  private final Executor flushExecutor;
+  private final Runnable checkpointListener;
+  // Held while writing a checkpoint, so that a flush on close waits for one in the background.
+  private final Object flushLock = new Object();
+  private final Map<Bytes32, PendingNode> pendingNodes = new ConcurrentHashMap<>();
+  private final Map<Hash, BytesValue> pendingCode = new ConcurrentHashMap<>();
+
+  private final Deque<Bytes32> retainedRoots = new ArrayDeque<>();
+  private volatile long chainHeadUpdates = 0;
+  private int chainHeadUpdatesSinceFlush = 0;
+  private boolean flushing = false;
+
+  public WriteBackWorldStateStorage(
+      final WorldStateStorage storage, final int flushInterval, final Executor flushExecutor) {
+    this(storage, flushInterval, flushExecutor, () -> {});
+  }
+
+  /**
+   * @param storage The storage checkpoints are written to.
+   * @param flushInterval The number of chain head updates between checkpoints.
+   * @param flushExecutor The executor checkpoints are written on.
+   * @param checkpointListener Run on the flush executor after each checkpoint is written.
+   */
+  public WriteBackWorldStateStorage(
+      final WorldStateStorage storage,
+      final int flushInterval,
+      final Executor flushExecutor,
+      final Runnable checkpointListener) {
+    checkArgument(flushInterval > 0, "Flush interval must be positive");
+    this.storage = storage;
+    this.flushInterval = flushInterval;
+    this.flushExecutor = flushExecutor;
+    this.checkpointListener = checkpointListener;
+  }
+
+  @Override
+  public Optional<BytesValue> getCode(final Hash codeHash) {
+    final BytesValue code = pendingCode.get(codeHash);
+    return code != null ? Optional.of(code) : storage.getCode(codeHash);
+  }
+
+  @Override
+  public Optional<BytesValue> getAccountStateTrieNode(final Bytes32 nodeHash) {
+    final PendingNode node = pendingNodes.get(nodeHash);
+    return node != null ? Optional.of(node.value) : storage.getAccountStateTrieNode(nodeHash);
+  }
+
+  @Override
+  public Optional<BytesValue> getAccountStorageTrieNode(final Bytes32 nodeHash) {
+    final PendingNode node = pendingNodes.get(nodeHash);
+    return node != null ? Optional.of(node.value) : storage.getAccountStorageTrieNode(nodeHash);
+  }
+
+  @Override
+  public Map<Hash, BytesValue> getNodeData(final Collection<Hash> hashes) {
+    final Map<Hash, BytesValue> nodeData = new HashMap<>();
+    final List<Hash> remaining = new ArrayList<>();
+    for (final Hash hash : hashes) {
+      final PendingNode node = pendingNodes.get(hash);
+      final BytesValue data = node != null ? node.value : pendingCode.get(hash);
+      if (data != null) {
+        nodeData.put(hash, data);
+      } else {
+        remaining.add(hash);
+      }
+    }
+    if (!remaining.isEmpty()) {
+      nodeData.putAll(storage.getNodeData(remaining));
+    }
+    return nodeData;
+  }
+
+  @Override
+  public Updater updater() {
+    return new Updater();
+  }
+
+  /**
+   * Records the state root of a new chain head, starting a flush of pending nodes on the flush
+   * executor if enough chain head updates have accumulated since the last one and no flush is
+   * already running.
+   *
+   * @param stateRoot The state root of the new chain head.
+   */
+  public synchronized void onChainHeadUpdated(final Bytes32 stateRoot) {
+    retainedRoots.addLast(stateRoot);
+    if (retainedRoots.size() > flushInterval) {
+      retainedRoots.removeFirst();
+    }
+    chainHeadUpdates++;
+    chainHeadUpdatesSinceFlush++;
+    if (!flushing && chainHeadUpdatesSinceFlush >= flushInterval) {
+      flushing = true;
+      chainHeadUpdatesSinceFlush = 0;
+      final List<Bytes32> roots = new ArrayList<>(retainedRoots);
+      final long windowStart = chainHeadUpdates - flushInterval;
+      try {
+        flushExecutor.execute(() -> flushInBackground(roots, windowStart));
+      } catch (final RejectedExecutionException e) {
+        LOG.debug("Skipping world state checkpoint, flush executor has been shut down");
+        flushing = false;
+      }
+    }
+  }
+
+  /**
+   * Writes every pending node reachable from the most recent chain head state root to the
+   * underlying storage, and discards the pending nodes that are no longer needed by the recent
+   * chain heads or forks. Waits for any flush already running on the flush executor first.
+   */
+  public void flush() {
+    final List<Bytes32> roots;
+    final long windowStart;
+    synchronized (this) {
+      roots = new ArrayList<>(retainedRoots);
+      windowStart = chainHeadUpdates - flushInterval;
+    }
+    if (roots.isEmpty()) {
+      return;
+    }
+    flush(roots, windowStart);
+    checkpointListener.run();
+  }
+
+  private void flushInBackground(final List<Bytes32> roots, final long windowStart) {
+    try {
+      flush(roots, windowStart);
+      checkpointListener.run();
+    } catch (final RuntimeException e) {
+      // Pending nodes are only discarded once written, so the next checkpoint includes them.
+      LOG.error("Failed to write world state checkpoint", e);
+    } finally {
+      synchronized (this) {
+        flushing = false;
+      }
+    }
+  }
+
+  private void flush(final List<Bytes32> roots, final long windowStart) {
+    synchronized (flushLock) {
+      final long startTime = System.currentTimeMillis();
+      final Bytes32 stateRoot = roots.get(roots.size() - 1);
+      final Map<Bytes32, PendingNode> nodes = new HashMap<>(pendingNodes);
+      final Map<Hash, BytesValue> code = new HashMap<>(pendingCode);
+
+      final Set<Bytes32> written =
+          reachableNodes(Collections.singletonList(new NodeReference(stateRoot, true)), nodes);
+      final WorldStateStorage.Updater updater = storage.updater();
+      code.values().forEach(updater::putCode);
+      for (final Bytes32 hash : written) {
+        final PendingNode node = nodes.get(hash);
+        if (node.isAccountNode) {
+          updater.putAccountStateTrieNode(hash, node.value);
+        } else {
+          updater.putAccountStorageTrieNode(hash, node.value);
+        }
+      }
+      updater.commit();
+
+      // Nodes committed for blocks in the window may belong to forks whose roots are never
+      // reported.
+      final List<NodeReference> retainedReferences = new ArrayList<>();
+      roots.forEach(root -> retainedReferences.add(new NodeReference(root, true)));
+      nodes.forEach(
+          (hash, node) -> {
+            if (node.committedAt >= windowStart && !written.contains(hash)) {
+              retainedReferences.add(new NodeReference(hash, node.isAccountNode));
+            }
+          });
+      final Set<Bytes32> retained = reachableNodes(retainedReferences, nodes);
+
+      int discarded = 0;
+      for (final Map.Entry<Bytes32, PendingNode> entry : nodes.entrySet()) {
+        // Only remove a node if it hasn't been committed again since the flush started.
+        if (written.contains(entry.getKey())) {
+          pendingNodes.remove(entry.getKey(), entry.getValue());
+        } else if (!retained.contains(entry.getKey())
+            && pendingNodes.remove(entry.getKey(), entry.getValue())) {
+          discarded++;
+        }
+      }
+      code.forEach(pendingCode::remove);
+      LOG.debug(
+          "Flushed {} pending trie nodes for state root {} in {} ms, retained {} and discarded {}",
+          written.size(),
+          stateRoot,
+          System.currentTimeMillis() - startTime,
+          pendingNodes.size(),
+          discarded);
+    }
+  }
+
+  /** @return The number of trie nodes held in memory awaiting a flush. */
+  public int pendingNodeCount() {
+    return pendingNodes.size();
+  }
+
+  private static Set<Bytes32> reachableNodes(
+      final Collection<NodeReference> roots, final Map<Bytes32, PendingNode> nodes) {
+    final Deque<NodeReference> remaining = new ArrayDeque<>(roots);
+    final Set<Bytes32> visited = new HashSet<>();
+    while (!remaining.isEmpty()) {
+      final NodeReference reference = remaining.pop();
+      // Nodes that are not pending are already stored, and so are all nodes below them.
+      final PendingNode node = nodes.get(reference.hash);
+      if (node == null || !visited.add(reference.hash)) {
+        continue;
+      }
+      TrieNodeDecoder.visitReferences(
+          node.value,
+          child -> remaining.push(new NodeReference(child, reference.isAccountNode)),
+          value -> {
+            if (reference.isAccountNode) {
+              visitAccount(value, remaining);
+            }
+          });
+    }
+    return visited;
+  }
+
+  private static void visitAccount(final BytesValue value, final Deque<NodeReference> remaining) {
+    final RLPInput account = RLP.input(value);
+    account.enterList();
+    account.skipNext(); // nonce
+    account.skipNext(); // balance
+    final Bytes32 storageRoot = account.readBytes32();
+    account.leaveList(true);
+    if (!storageRoot.equals(MerklePatriciaTrie.EMPTY_TRIE_ROOT_HASH)) {
+      remaining.push(new NodeReference(storageRoot, false));
+    }
+  }
+
+  private static class PendingNode {
+    private final BytesValue value;
+    private final boolean isAccountNode;
+    private final long committedAt;
+
+    PendingNode(final BytesValue value, final boolean isAccountNode, final long committedAt) {
+      this.value = value;
+      this.isAccountNode = isAccountNode;
+      this.committedAt = committedAt;
+    }
+  }
+
+  private static class NodeReference {
+    private final Bytes32 hash;
+    private final boolean isAccountNode;
+
+    NodeReference(final Bytes32 hash, final boolean isAccountNode) {
+      this.hash = hash;
+      this.isAccountNode = isAccountNode;
+    }
+  }
+
+  private class Updater implements WorldStateStorage.Updater {
+
+    private final Map<Hash, BytesValue> code = new HashMap<>();
+    private final Map<Bytes32, BytesValue> accountNodes = new HashMap<>();
+    private final Map<Bytes32, BytesValue> storageNodes = new HashMap<>();
+
+    @Override
+    public void putCode(final BytesValue code) {
+      this.code.put(Hash.hash(code), code);
+    }
+
+    @Override
+    public void putAccountStateTrieNode(final Bytes32 nodeHash, final BytesValue node) {
+      accountNodes.put(nodeHash, node);
+    }
+
+    @Override
+    public void putAccountStorageTrieNode(final Bytes32 nodeHash, final BytesValue node) {
+      storageNodes.put(nodeHash, node);
+    }
+
+    @Override
+    public void commit() {
+      final long committedAt = chainHeadUpdates;
+      pendingCode.putAll(code);
+      storageNodes.forEach(
+          (hash, node) -> pendingNodes.put(hash, new PendingNode(node, false, committedAt)));
+      accountNodes.forEach(
+          (hash, node) -> pendingNodes.put(hash, new PendingNode(node, true, committedAt)));
+      rollback();
+    }
+
+    @Override
+    public void rollback() {
+      code.clear();
+      accountNodes.clear();
+      storageNodes.clear();
+    }
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.worldstate;
+
+import tech.pegasys.pantheon.ethereum.core.Hash;
+import tech.pegasys.pantheon.services.kvstore.KeyValueStorage;
+import tech.pegasys.pantheon.services.kvstore.KeyValueStorage.Entry;
+import tech.pegasys.pantheon.util.bytes.Bytes32;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * A {@link WorldStateStorage} backed by a {@link KeyValueStorage} that remembers which keys have
+ * been written recently, so that a concurrent {@link MarkSweepPruner} never removes an entry that
+ * was stored after its mark phase began.
+ *
+ * <p>Writes are grouped into generations. Keys written during the current or the previous
+ * generation are protected from removal, and older keys are forgotten, so the pruner starts a new
+ * generation on each chain head update to keep the tracked keys bounded.
+ */
+public class WriteTrackingWorldStateStorage implements WorldStateStorage {
+
+  private final KeyValueStorage keyValueStorage;
+  private final WorldStateStorage storage;
+
+  private Set<Bytes32> writtenKeys = new HashSet<>();
+  private Set<Bytes32> previouslyWrittenKeys = new HashSet<>();
+
+  public WriteTrackingWorldStateStorage(final KeyValueStorage keyValueStorage) {
+    this.keyValueStorage = keyValueStorage;
+    this.storage = new KeyValueStorageWorldStateStorage(keyValueStorage);
+  }
+
+  @Override
+  public Optional<BytesValue> getCode(final Hash codeHash) {
+    return storage.getCode(codeHash);
+  }
+
+  @Override
+  public Optional<BytesValue> getAccountStateTrieNode(final Bytes32 nodeHash) {
+    return storage.getAccountStateTrieNode(nodeHash);
+  }
+
+  @Override
+  public Optional<BytesValue> getAccountStorageTrieNode(final Bytes32 nodeHash) {
+    return storage.getAccountStorageTrieNode(nodeHash);
+  }
+
+  @Override
+  public Map<Hash, BytesValue> getNodeData(final Collection<Hash> hashes) {
+    return storage.getNodeData(hashes);
+  }
+
+  @Override
+  public Updater updater() {
+    return new Updater(storage.updater());
+  }
+
+  /** Starts a new generation, forgetting the keys written before the current one began. */
+  synchronized void startGeneration() {
+    previouslyWrittenKeys = writtenKeys;
+    writtenKeys = new HashSet<>();
+  }
+
+  /**
+   * Streams every entry of the underlying storage.
+   *
+   * @return A stream of the stored entries, which must be closed after use.
+   */
+  Stream<Entry> entries() {
+    return keyValueStorage.entries();
+  }
+
+  /**
+   * Atomically removes the given entries, except those written during the current or previous
+   * generation.
+   *
+   * @param entries The entries to remove.
+   * @return The entries that were removed.
+   */
+  synchronized List<Entry> removeUnlessRecentlyWritten(final Collection<Entry> entries) {
+    final List<Entry> removed = new ArrayList<>(entries.size());
+    final KeyValueStorage.Transaction transaction = keyValueStorage.getStartTransaction();
+    for (final Entry entry : entries) {
+      final Bytes32 key = Bytes32.wrap(entry.getKey(), 0);
+      if (!writtenKeys.contains(key) && !previouslyWrittenKeys.contains(key)) {
+        transaction.remove(key);
+        removed.add(entry);
+      }
+    }
+    transaction.commit();
+    return removed;
+  }
+
+  private synchronized void commit(
+      final Collection<Bytes32> keys, final WorldStateStorage.Updater updater) {
+    writtenKeys.addAll(keys);
+    updater.commit();
+  }
+
+  private class Updater implements WorldStateStorage.Updater {
+
+    private final WorldStateStorage.Updater updater;
+    private final Set<Bytes32> keys = new HashSet<>();
+
+    Updater(final WorldStateStorage.Updater updater) {
+      this.updater = updater;
+    }
+
+    @Override
+    public void putCode(final BytesValue code) {
+      keys.add(Hash.hash(code));
+      updater.putCode(code);
+    }
+
+    @Override
+    public void putAccountStateTrieNode(final Bytes32 nodeHash, final BytesValue node) {
+      keys.add(nodeHash);
+      updater.putAccountStateTrieNode(nodeHash, node);
+    }
+
+    @Override
+    public void putAccountStorageTrieNode(final Bytes32 nodeHash, final BytesValue node) {
+      keys.add(nodeHash);
+      updater.putAccountStorageTrieNode(nodeHash, node);
+    }
+
+    @Override
+    public void commit() {
+      WriteTrackingWorldStateStorage.this.commit(keys, updater);
+      keys.clear();
+    }
+
+    @Override
+    public void rollback() {
+      keys.clear();
+      updater.rollback();
+    }
+  }
+}
@@ -23,6 +23,8 @@ import tech.pegasys.pantheon.ethereum.core.PendingTransactions.TransactionSelect
 import java.util.ArrayList;
 import java.util.List;
 import java.util.OptionalLong;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import com.google.common.collect.Lists;
 import org.junit.Test;
@@ -74,6 +76,23 @@ public class PendingTransactionsTest {
     assertTransactionNotPending(oldestTransaction);
   }
 
+  @Test
+  public void shouldDropCheapestTransactionWhenLimitExceeded() {
+    final Transaction cheapestTransaction =
+        transactionWithNonceSenderAndGasPrice(0, KeyPair.generate(), 1);
+    transactions.addRemoteTransaction(transactionWithNonceSenderAndGasPrice(0, KEYS2, 5));
+    transactions.addRemoteTransaction(cheapestTransaction);
+    for (int i = 2; i < MAX_TRANSACTIONS; i++) {
+      transactions.addRemoteTransaction(
+          transactionWithNonceSenderAndGasPrice(0, KeyPair.generate(), 3));
+    }
+    assertThat(transactions.size()).isEqualTo(MAX_TRANSACTIONS);
+
+    transactions.addRemoteTransaction(transactionWithNonceSenderAndGasPrice(1, KEYS2, 2));
+    assertThat(transactions.size()).isEqualTo(MAX_TRANSACTIONS);
+    assertTransactionNotPending(cheapestTransaction);
+  }
+
   @Test
   public void shouldHandleMaximumTransactionLimitCorrectlyWhenSameTransactionAddedMultipleTimes() {
     transactions.addRemoteTransaction(createTransaction(0));
@@ -183,6 +202,58 @@ public class PendingTransactionsTest {
     assertThat(transactions.size()).isZero();
   }
 
+  @Test
+  public void selectTransactionsInGasPriceOrder() {
+    final Transaction cheapTransaction = transactionWithNonceSenderAndGasPrice(0, KEYS1, 1);
+    final Transaction expensiveTransaction = transactionWithNonceSenderAndGasPrice(0, KEYS2, 10);
+    final Transaction midPricedTransaction =
+        transactionWithNonceSenderAndGasPrice(0, KeyPair.generate(), 5);
+    transactions.addRemoteTransaction(cheapTransaction);
+    transactions.addRemoteTransaction(expensiveTransaction);
+    transactions.addRemoteTransaction(midPricedTransaction);
+
+    final List<Transaction> iterationOrder = new ArrayList<>();
+    transactions.selectTransactions(
+        transaction -> {
+          iterationOrder.add(transaction);
+          return TransactionSelectionResult.CONTINUE;
+        });
+
+    assertThat(iterationOrder)
+        .containsExactly(expensiveTransaction, midPricedTransaction, cheapTransaction);
+  }
+
+  @Test
+  public void shouldAcceptTransactionsWhileSelectionIsInProgress() throws Exception {
+    transactions.addRemoteTransaction(transaction1);
+    final CountDownLatch selectionStarted = new CountDownLatch(1);
+    final CountDownLatch transactionAdded = new CountDownLatch(1);
+    final Thread selectionThread =
+        new Thread(
+            () ->
+                transactions.selectTransactions(
+                    transaction -> {
+                      selectionStarted.countDown();
+                      try {
+                        transactionAdded.await(10, TimeUnit.SECONDS);
+                      } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                      }
+                      return TransactionSelectionResult.COMPLETE_OPERATION;
+                    }));
+    selectionThread.start();
+    assertThat(selectionStarted.await(10, TimeUnit.SECONDS)).isTrue();
+
+    // The selector is still running, but adding a transaction must not wait for it.
+    final Transaction otherSenderTransaction = transactionWithNonceAndSender(0, KEYS2);
+    assertThat(transactions.addRemoteTransaction(otherSenderTransaction)).isTrue();
+    transactionAdded.countDown();
+    selectionThread.join(10_000);
+
+    assertThat(selectionThread.isAlive()).isFalse();
+    assertTransactionPending(otherSenderTransaction);
+  }
+
   @Test
   public void shouldReturnEmptyOptionalAsMaximumNonceWhenNoTransactionsPresent() {
     assertThat(transactions.getNextNonceForSender(SENDER1)).isEmpty();
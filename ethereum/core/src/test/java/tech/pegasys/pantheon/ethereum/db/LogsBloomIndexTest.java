@@ -0,0 +1,145 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.db;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import tech.pegasys.pantheon.ethereum.chain.Blockchain;
+import tech.pegasys.pantheon.ethereum.core.Block;
+import tech.pegasys.pantheon.ethereum.core.LogsBloomFilter;
+import tech.pegasys.pantheon.ethereum.mainnet.MainnetBlockHashFunction;
+import tech.pegasys.pantheon.ethereum.testutil.BlockDataGenerator;
+import tech.pegasys.pantheon.services.kvstore.InMemoryKeyValueStorage;
+import tech.pegasys.pantheon.services.kvstore.KeyValueStorage;
+import tech.pegasys.pantheon.util.uint.UInt256;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.Test;
+
+public class LogsBloomIndexTest {
+
+  private static final int SECTION_SIZE = 8;
+  private static final int SECTION_CONFIRMATIONS = 2;
+
+  private final BlockDataGenerator gen = new BlockDataGenerator(1);
+  private final KeyValueStorage kvStore = new InMemoryKeyValueStorage();
+
+  @Test
+  public void matchingBlocksAgreeWithHeaderBlooms() {
+    final List<Block> chain = gen.blockSequence(30);
+    final DefaultMutableBlockchain blockchain = createBlockchain(chain);
+    final LogsBloomIndex index = createIndex(blockchain);
+
+    assertMatchesHeaderBlooms(blockchain, index, criteria(), 0, 29);
+    assertMatchesHeaderBlooms(blockchain, index, criteria(), 5, 21);
+    assertMatchesHeaderBlooms(
+        blockchain,
+        index,
+        Collections.singletonList(
+            Collections.singletonList(chain.get(13).getHeader().getLogsBloom())),
+        0,
+        29);
+    assertMatchesHeaderBlooms(blockchain, index, Collections.emptyList(), 3, 27);
+  }
+
+  @Test
+  public void sectionsReplacedByReorgAreCheckedAgainstHeaders() {
+    final List<Block> chain = gen.blockSequence(30);
+    final DefaultMutableBlockchain blockchain = createBlockchain(chain);
+    final LogsBloomIndex index = createIndex(blockchain);
+    final List<List<LogsBloomFilter>> criteria = criteria();
+    assertMatchesHeaderBlooms(blockchain, index, criteria, 0, 29);
+
+    Block parent = chain.get(10);
+    for (int i = 0; i < 25; i++) {
+      final Block block =
+          gen.block(gen.nextBlockOptions(parent).setDifficulty(UInt256.of(1L << 40)));
+      blockchain.appendBlock(block, gen.receipts(block));
+      parent = block;
+    }
+    assertThat(blockchain.getChainHeadBlockNumber()).isEqualTo(35);
+
+    // Once to find the replaced sections, and again after they have been indexed again.
+    assertMatchesHeaderBlooms(blockchain, index, criteria, 0, 35);
+    assertMatchesHeaderBlooms(blockchain, index, criteria, 0, 35);
+  }
+
+  @Test
+  public void indexIsKeptAcrossRestarts() {
+    final List<Block> chain = gen.blockSequence(30);
+    final DefaultMutableBlockchain blockchain = createBlockchain(chain);
+    createIndex(blockchain).close();
+
+    final LogsBloomIndex index =
+        new LogsBloomIndex(
+            blockchain,
+            kvStore,
+            MoreExecutors.newDirectExecutorService(),
+            SECTION_SIZE,
+            SECTION_CONFIRMATIONS);
+    assertThat(index.indexedSections()).isEqualTo(3);
+    assertMatchesHeaderBlooms(blockchain, index, criteria(), 0, 29);
+  }
+
+  private DefaultMutableBlockchain createBlockchain(final List<Block> chain) {
+    final DefaultMutableBlockchain blockchain =
+        new DefaultMutableBlockchain(chain.get(0), kvStore, MainnetBlockHashFunction::createHash);
+    for (int i = 1; i < chain.size(); i++) {
+      blockchain.appendBlock(chain.get(i), gen.receipts(chain.get(i)));
+    }
+    return blockchain;
+  }
+
+  private LogsBloomIndex createIndex(final Blockchain blockchain) {
+    final LogsBloomIndex index =
+        new LogsBloomIndex(
+            blockchain,
+            kvStore,
+            MoreExecutors.newDirectExecutorService(),
+            SECTION_SIZE,
+            SECTION_CONFIRMATIONS);
+    index.start();
+    return index;
+  }
+
+  private List<List<LogsBloomFilter>> criteria() {
+    return Arrays.asList(
+        Arrays.asList(
+            LogsBloomFilter.forValue(gen.address()), LogsBloomFilter.forValue(gen.address())),
+        Collections.singletonList(LogsBloomFilter.forValue(gen.hash())));
+  }
+
+  private void assertMatchesHeaderBlooms(
+      final Blockchain blockchain,
+      final LogsBloomIndex index,
+      final List<List<LogsBloomFilter>> criteria,
+      final long fromBlockNumber,
+      final long toBlockNumber) {
+    final Predicate<LogsBloomFilter> couldMatch =
+        bloom -> criteria.stream().allMatch(group -> group.stream().anyMatch(bloom::couldContain));
+    final List<Long> expected = new ArrayList<>();
+    for (long blockNumber = fromBlockNumber; blockNumber <= toBlockNumber; blockNumber++) {
+      if (couldMatch.test(blockchain.getBlockHeader(blockNumber).get().getLogsBloom())) {
+        expected.add(blockNumber);
+      }
+    }
+    assertThat(index.matchingBlocks(fromBlockNumber, toBlockNumber, criteria, couldMatch))
+        .isEqualTo(expected);
+  }
+}
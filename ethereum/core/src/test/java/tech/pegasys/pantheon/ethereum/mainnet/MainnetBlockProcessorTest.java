@@ -15,18 +15,41 @@ package tech.pegasys.pantheon.ethereum.mainnet;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.emptyMap;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
+import tech.pegasys.pantheon.crypto.SECP256K1.KeyPair;
 import tech.pegasys.pantheon.ethereum.chain.Blockchain;
 import tech.pegasys.pantheon.ethereum.chain.GenesisConfig;
+import tech.pegasys.pantheon.ethereum.core.Address;
 import tech.pegasys.pantheon.ethereum.core.BlockHeader;
+import tech.pegasys.pantheon.ethereum.core.BlockHeaderTestFixture;
 import tech.pegasys.pantheon.ethereum.core.Hash;
+import tech.pegasys.pantheon.ethereum.core.MutableAccount;
 import tech.pegasys.pantheon.ethereum.core.MutableWorldState;
+import tech.pegasys.pantheon.ethereum.core.Transaction;
+import tech.pegasys.pantheon.ethereum.core.TransactionTestFixture;
+import tech.pegasys.pantheon.ethereum.core.Util;
 import tech.pegasys.pantheon.ethereum.core.Wei;
+import tech.pegasys.pantheon.ethereum.core.WorldUpdater;
 import tech.pegasys.pantheon.ethereum.mainnet.MainnetBlockProcessor.TransactionReceiptFactory;
 import tech.pegasys.pantheon.ethereum.vm.TestBlockchain;
 import tech.pegasys.pantheon.ethereum.vm.WorldStateMock;
+import tech.pegasys.pantheon.ethereum.worldstate.DefaultMutableWorldState;
+import tech.pegasys.pantheon.ethereum.worldstate.KeyValueStorageWorldStateStorage;
+import tech.pegasys.pantheon.services.kvstore.InMemoryKeyValueStorage;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
 import org.junit.Test;
 
 public class MainnetBlockProcessorTest {
@@ -38,6 +61,18 @@ public class MainnetBlockProcessorTest {
       new MainnetBlockProcessor(
           transactionProcessor, transactionReceiptFactory, Wei.ZERO, BlockHeader::getCoinbase);
 
+  // Increments the storage slot keyed by the caller's address.
+  private static final Address COUNTER = Address.fromHexString("0xc1");
+  private static final BytesValue COUNTER_CODE = BytesValue.fromHexString("0x3354600101335500");
+
+  private final Blockchain blockchain = new TestBlockchain();
+  private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
   @Test
   public void noAccountCreatedWhenBlockRewardIsZero() {
     final Blockchain blockchain = new TestBlockchain();
@@ -51,4 +86,104 @@ public class MainnetBlockProcessorTest {
     // An empty block with 0 reward should not change the world state
     assertThat(worldState.rootHash()).isEqualTo(initialHash);
   }
+
+  @Test
+  public void speculativeExecutionMatchesSequentialExecution() {
+    final ProtocolSpec<Void> protocolSpec =
+        MainnetProtocolSchedule.create(0, 0, 0, 0, 100, -1, 2018).getByBlockNumber(1);
+    final TransactionProcessor transactionProcessor = spy(protocolSpec.getTransactionProcessor());
+    final MainnetBlockProcessor sequentialProcessor =
+        new MainnetBlockProcessor(
+            transactionProcessor,
+            protocolSpec.getTransactionReceiptFactory(),
+            protocolSpec.getBlockReward(),
+            BlockHeader::getCoinbase);
+    final MainnetBlockProcessor speculativeProcessor =
+        new MainnetBlockProcessor(
+            transactionProcessor,
+            protocolSpec.getTransactionReceiptFactory(),
+            protocolSpec.getBlockReward(),
+            BlockHeader::getCoinbase,
+            Optional.of(executor));
+
+    final KeyPair[] keys = {
+      KeyPair.generate(),
+      KeyPair.generate(),
+      KeyPair.generate(),
+      KeyPair.generate(),
+      KeyPair.generate()
+    };
+    final Address coinbase = Address.fromHexString("0xc0");
+    final BlockHeader blockHeader =
+        new BlockHeaderTestFixture()
+            .number(1)
+            .gasLimit(10_000_000)
+            .coinbase(coinbase)
+            .buildHeader();
+    final List<Transaction> transactions =
+        Arrays.asList(
+            // Independent calls, each incrementing a different storage slot of the counter.
+            callCounter(keys[0], 0),
+            callCounter(keys[1], 0),
+            // A transfer, followed by a call from its recipient which must see its new balance.
+            transfer(keys[2], 0, Util.publicKeyToAddress(keys[3].getPublicKey())),
+            callCounter(keys[3], 0),
+            // A second transaction from the same sender.
+            callCounter(keys[0], 1),
+            // A transfer to the coinbase, which has been credited by all preceding transactions.
+            transfer(keys[4], 0, coinbase));
+
+    final MutableWorldState sequentialState = createWorldState(keys);
+    final MutableWorldState speculativeState = createWorldState(keys);
+    final BlockProcessor.Result sequentialResult =
+        sequentialProcessor.processBlock(
+            blockchain, sequentialState, blockHeader, transactions, emptyList());
+    final BlockProcessor.Result speculativeResult =
+        speculativeProcessor.processBlock(
+            blockchain, speculativeState, blockHeader, transactions, emptyList());
+
+    assertThat(sequentialResult.isSuccessful()).isTrue();
+    assertThat(speculativeResult.isSuccessful()).isTrue();
+    assertThat(speculativeResult.getReceipts()).isEqualTo(sequentialResult.getReceipts());
+    assertThat(speculativeState.rootHash()).isEqualTo(sequentialState.rootHash());
+
+    // 6 sequential executions, 5 speculative ones (the second transaction from the same sender
+    // isn't speculated) and 3 re-executions: the transfer recipient, the second transaction from
+    // the same sender and the transfer to the coinbase.
+    verify(transactionProcessor, times(6 + 5 + 3))
+        .processTransaction(any(), any(), any(), any(), any(), any());
+  }
+
+  private Transaction callCounter(final KeyPair keys, final long nonce) {
+    return new TransactionTestFixture()
+        .nonce(nonce)
+        .gasLimit(100_000)
+        .to(Optional.of(COUNTER))
+        .value(Wei.ZERO)
+        .createTransaction(keys);
+  }
+
+  private Transaction transfer(final KeyPair keys, final long nonce, final Address to) {
+    return new TransactionTestFixture()
+        .nonce(nonce)
+        .gasLimit(21_000)
+        .to(Optional.of(to))
+        .value(Wei.of(1_000))
+        .createTransaction(keys);
+  }
+
+  private MutableWorldState createWorldState(final KeyPair[] keys) {
+    final MutableWorldState worldState =
+        new DefaultMutableWorldState(
+            new KeyValueStorageWorldStateStorage(new InMemoryKeyValueStorage()));
+    final WorldUpdater updater = worldState.updater();
+    for (final KeyPair key : keys) {
+      updater.createAccount(Util.publicKeyToAddress(key.getPublicKey()), 0, Wei.fromEth(1));
+    }
+    final MutableAccount counter = updater.createAccount(COUNTER);
+    counter.setCode(COUNTER_CODE);
+    updater.commit();
+    worldState.persist();
+    return worldState;
+  }
 }
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.mainnet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import tech.pegasys.pantheon.ethereum.core.Address;
+import tech.pegasys.pantheon.ethereum.core.MutableAccount;
+import tech.pegasys.pantheon.ethereum.core.MutableWorldState;
+import tech.pegasys.pantheon.ethereum.core.Wei;
+import tech.pegasys.pantheon.ethereum.core.WorldUpdater;
+import tech.pegasys.pantheon.ethereum.worldstate.DefaultMutableWorldState;
+import tech.pegasys.pantheon.ethereum.worldstate.KeyValueStorageWorldStateStorage;
+import tech.pegasys.pantheon.services.kvstore.InMemoryKeyValueStorage;
+import tech.pegasys.pantheon.util.uint.UInt256;
+
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class SpeculativeWorldUpdaterTest {
+
+  private static final Address ACCOUNT = Address.fromHexString("0x01");
+  private static final Address OTHER_ACCOUNT = Address.fromHexString("0x02");
+  private static final Address FEE_RECIPIENT = Address.fromHexString("0x03");
+
+  private final MutableWorldState worldState =
+      new DefaultMutableWorldState(
+          new KeyValueStorageWorldStateStorage(new InMemoryKeyValueStorage()));
+
+  @Before
+  public void setUp() {
+    final WorldUpdater updater = worldState.updater();
+    final MutableAccount account = updater.createAccount(ACCOUNT, 0, Wei.of(100));
+    account.setStorageValue(UInt256.ONE, UInt256.of(10));
+    updater.createAccount(FEE_RECIPIENT, 0, Wei.of(1_000));
+    updater.commit();
+  }
+
+  @Test
+  public void shouldConflictWithChangedAccountItRead() {
+    final SpeculativeWorldUpdater updater =
+        new SpeculativeWorldUpdater(worldState, Optional.empty());
+    updater.get(ACCOUNT);
+
+    final BlockStateWrites writes = new BlockStateWrites();
+    writes.accountChanged(OTHER_ACCOUNT);
+    assertThat(updater.readsAnyOf(writes)).isFalse();
+
+    writes.accountChanged(ACCOUNT);
+    assertThat(updater.readsAnyOf(writes)).isTrue();
+  }
+
+  @Test
+  public void shouldOnlyConflictWithChangedStorageSlotsItRead() {
+    final SpeculativeWorldUpdater updater =
+        new SpeculativeWorldUpdater(worldState, Optional.empty());
+    assertThat(updater.get(ACCOUNT).getStorageValue(UInt256.ONE)).isEqualTo(UInt256.of(10));
+
+    final BlockStateWrites writes = new BlockStateWrites();
+    writes.storageChanged(ACCOUNT, UInt256.of(2));
+    assertThat(updater.readsAnyOf(writes)).isFalse();
+
+    writes.storageChanged(ACCOUNT, UInt256.ONE);
+    assertThat(updater.readsAnyOf(writes)).isTrue();
+  }
+
+  @Test
+  public void shouldConflictWithReplacedAccountStorage() {
+    final SpeculativeWorldUpdater updater =
+        new SpeculativeWorldUpdater(worldState, Optional.empty());
+    updater.get(ACCOUNT).getStorageValue(UInt256.ONE);
+
+    final BlockStateWrites writes = new BlockStateWrites();
+    writes.accountReplaced(ACCOUNT);
+    assertThat(updater.readsAnyOf(writes)).isTrue();
+  }
+
+  @Test
+  public void shouldRecordOnlyStorageWritesWhenAccountIsOtherwiseUnchanged() {
+    final SpeculativeWorldUpdater updater =
+        new SpeculativeWorldUpdater(worldState, Optional.empty());
+    updater.getMutable(ACCOUNT).setStorageValue(UInt256.of(2), UInt256.ONE);
+
+    final BlockStateWrites writes = new BlockStateWrites();
+    updater.recordWritesIn(writes);
+
+    assertThat(writes.isAccountChanged(ACCOUNT)).isFalse();
+    assertThat(writes.isStorageChanged(ACCOUNT, UInt256.of(2))).isTrue();
+    assertThat(writes.isStorageChanged(ACCOUNT, UInt256.ONE)).isFalse();
+  }
+
+  @Test
+  public void shouldApplyUpdatesToUnderlyingWorldOnCommit() {
+    final SpeculativeWorldUpdater updater =
+        new SpeculativeWorldUpdater(worldState, Optional.empty());
+    final MutableAccount account = updater.getMutable(ACCOUNT);
+    account.incrementNonce();
+    account.setStorageValue(UInt256.ONE, UInt256.of(20));
+    updater.createAccount(OTHER_ACCOUNT, 0, Wei.of(5));
+
+    updater.commit();
+
+    assertThat(worldState.get(ACCOUNT).getNonce()).isEqualTo(1);
+    assertThat(worldState.get(ACCOUNT).getStorageValue(UInt256.ONE)).isEqualTo(UInt256.of(20));
+    assertThat(worldState.get(OTHER_ACCOUNT).getBalance()).isEqualTo(Wei.of(5));
+  }
+
+  @Test
+  public void shouldApplyFeeAsBalanceIncreaseWhenFeeRecipientOnlyCredited() {
+    final SpeculativeWorldUpdater updater =
+        new SpeculativeWorldUpdater(worldState, Optional.of(FEE_RECIPIENT));
+    updater.getOrCreate(FEE_RECIPIENT).incrementBalance(Wei.of(7));
+
+    // A preceding transaction also credited the fee recipient.
+    final WorldUpdater preceding = worldState.updater();
+    preceding.getMutable(FEE_RECIPIENT).incrementBalance(Wei.of(3));
+    preceding.commit();
+    final BlockStateWrites writes = new BlockStateWrites();
+    writes.accountChanged(FEE_RECIPIENT);
+
+    assertThat(updater.readsAnyOf(writes)).isFalse();
+    updater.commit();
+    assertThat(worldState.get(FEE_RECIPIENT).getBalance()).isEqualTo(Wei.of(1_010));
+  }
+
+  @Test
+  public void shouldConflictWhenFeeRecipientReadDuringExecution() {
+    final SpeculativeWorldUpdater updater =
+        new SpeculativeWorldUpdater(worldState, Optional.of(FEE_RECIPIENT));
+    updater.updater().get(FEE_RECIPIENT);
+    updater.getOrCreate(FEE_RECIPIENT).incrementBalance(Wei.of(7));
+
+    final BlockStateWrites writes = new BlockStateWrites();
+    writes.accountChanged(FEE_RECIPIENT);
+    assertThat(updater.readsAnyOf(writes)).isTrue();
+  }
+}
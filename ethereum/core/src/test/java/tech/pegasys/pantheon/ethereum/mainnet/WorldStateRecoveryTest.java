@@ -0,0 +1,103 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.mainnet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import tech.pegasys.pantheon.ethereum.chain.MutableBlockchain;
+import tech.pegasys.pantheon.ethereum.core.Address;
+import tech.pegasys.pantheon.ethereum.core.Block;
+import tech.pegasys.pantheon.ethereum.core.BlockBody;
+import tech.pegasys.pantheon.ethereum.core.BlockHeader;
+import tech.pegasys.pantheon.ethereum.core.BlockHeaderTestFixture;
+import tech.pegasys.pantheon.ethereum.core.ExecutionContextTestFixture;
+import tech.pegasys.pantheon.ethereum.core.Hash;
+import tech.pegasys.pantheon.ethereum.core.MutableWorldState;
+import tech.pegasys.pantheon.ethereum.db.WorldStateArchive;
+import tech.pegasys.pantheon.ethereum.worldstate.KeyValueStorageWorldStateStorage;
+import tech.pegasys.pantheon.ethereum.worldstate.WriteBackWorldStateStorage;
+import tech.pegasys.pantheon.util.uint.UInt256;
+
+import java.util.Collections;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.Test;
+
+public class WorldStateRecoveryTest {
+
+  private static final Address COINBASE =
+      Address.fromHexString("0xa94f5374fce5edbc8e2a8697c15331677e6ebf0b");
+
+  private final ExecutionContextTestFixture fixture = new ExecutionContextTestFixture();
+  private final MutableBlockchain blockchain = fixture.getBlockchain();
+  private final ProtocolSchedule<Void> protocolSchedule = fixture.getProtocolSchedule();
+
+  @Test
+  public void processesBlocksWhoseWorldStateWasNotWritten() {
+    // World state committed to the write-back storage is lost, as if the node had crashed.
+    final WorldStateArchive writeBackArchive =
+        new WorldStateArchive(
+            new WriteBackWorldStateStorage(
+                new KeyValueStorageWorldStateStorage(fixture.getKeyValueStorage()),
+                Integer.MAX_VALUE,
+                MoreExecutors.directExecutor()));
+    for (int i = 0; i < 3; i++) {
+      appendBlock(writeBackArchive);
+    }
+    final Hash headStateRoot = blockchain.getChainHeadHeader().getStateRoot();
+    final WorldStateArchive diskArchive = fixture.getStateArchive();
+    assertThat(diskArchive.isWorldStateAvailable(headStateRoot)).isFalse();
+
+    WorldStateRecovery.recoverChainHeadWorldState(protocolSchedule, fixture.getProtocolContext());
+
+    assertThat(diskArchive.isWorldStateAvailable(headStateRoot)).isTrue();
+    assertThat(diskArchive.get(headStateRoot).get(COINBASE).getBalance())
+        .isEqualTo(writeBackArchive.get(headStateRoot).get(COINBASE).getBalance());
+  }
+
+  @Test
+  public void doesNothingWhenChainHeadWorldStateIsStored() {
+    appendBlock(fixture.getStateArchive());
+    final long entries = fixture.getKeyValueStorage().entries().count();
+
+    WorldStateRecovery.recoverChainHeadWorldState(protocolSchedule, fixture.getProtocolContext());
+
+    assertThat(fixture.getKeyValueStorage().entries().count()).isEqualTo(entries);
+  }
+
+  private void appendBlock(final WorldStateArchive worldStateArchive) {
+    final BlockHeader parent = blockchain.getChainHeadHeader();
+    final BlockHeaderTestFixture headerFixture =
+        new BlockHeaderTestFixture()
+            .parentHash(parent.getHash())
+            .number(parent.getNumber() + 1)
+            .coinbase(COINBASE)
+            .difficulty(UInt256.ONE);
+    final MutableWorldState worldState = worldStateArchive.getMutable(parent.getStateRoot());
+    final BlockProcessor.Result result =
+        protocolSchedule
+            .getByBlockNumber(parent.getNumber() + 1)
+            .getBlockProcessor()
+            .processBlock(
+                blockchain,
+                worldState,
+                headerFixture.buildHeader(),
+                Collections.emptyList(),
+                Collections.emptyList());
+    assertThat(result.isSuccessful()).isTrue();
+    final BlockHeader header = headerFixture.stateRoot(worldState.rootHash()).buildHeader();
+    blockchain.appendBlock(
+        new Block(header, new BlockBody(Collections.emptyList(), Collections.emptyList())),
+        Collections.emptyList());
+  }
+}
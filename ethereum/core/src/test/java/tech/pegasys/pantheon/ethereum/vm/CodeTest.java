@@ -0,0 +1,114 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.vm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import tech.pegasys.pantheon.ethereum.core.Hash;
+import tech.pegasys.pantheon.ethereum.mainnet.FrontierGasCalculator;
+import tech.pegasys.pantheon.ethereum.mainnet.MainnetEvmRegistries;
+import tech.pegasys.pantheon.util.bytes.Bytes32;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+import tech.pegasys.pantheon.util.uint.UInt256;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+public class CodeTest {
+
+  // PUSH1 0x5b JUMPDEST PUSH2 0x0102 STOP, where the first 0x5b is push data.
+  private static final BytesValue BYTES = BytesValue.fromHexString("0x605b5b61010200");
+
+  private final EVM evm = MainnetEvmRegistries.frontier(new FrontierGasCalculator());
+
+  @Test
+  public void shouldOnlyTreatJumpDestOperationsAsJumpDestinations() {
+    final Code code = new Code(BYTES);
+
+    assertThat(code.isValidJumpDestination(evm, UInt256.of(1))).isFalse();
+    assertThat(code.isValidJumpDestination(evm, UInt256.of(2))).isTrue();
+    assertThat(code.isValidJumpDestination(evm, UInt256.of(BYTES.size()))).isFalse();
+  }
+
+  @Test
+  public void shouldPadPushImmediates() {
+    final Code code = new Code(BYTES);
+    code.getAnalysis(evm);
+
+    assertThat(code.getPushImmediate(0)).isEqualTo(Bytes32.fromHexStringLenient("0x5b"));
+    assertThat(code.getPushImmediate(3)).isEqualTo(Bytes32.fromHexStringLenient("0x0102"));
+  }
+
+  @Test
+  public void shouldRightPadTruncatedPushImmediate() {
+    // PUSH2 with only one byte of data left.
+    final Code code = new Code(BytesValue.fromHexString("0x6101"));
+
+    assertThat(code.getPushImmediate(0)).isEqualTo(Bytes32.fromHexStringLenient("0x0100"));
+  }
+
+  @Test
+  public void shouldSummariseBasicBlocksOfFixedCostOperations() {
+    // PUSH1 1 PUSH1 2 ADD JUMPDEST ADD MSTORE ADD
+    final CodeAnalysis analysis =
+        new Code(BytesValue.fromHexString("0x60016002015b015201")).getAnalysis(evm);
+
+    final BasicBlock first = analysis.basicBlockAt(0);
+    assertThat(first.getEnd()).isEqualTo(5);
+    assertThat(first.getGasCost()).isEqualTo(9);
+    assertThat(first.getMinimumStackSize()).isEqualTo(0);
+    assertThat(first.getMaximumStackGrowth()).isEqualTo(2);
+
+    // A jump destination always starts a new block.
+    final BasicBlock second = analysis.basicBlockAt(5);
+    assertThat(second.getEnd()).isEqualTo(7);
+    assertThat(second.getGasCost()).isEqualTo(4);
+    assertThat(second.getMinimumStackSize()).isEqualTo(2);
+    assertThat(second.getMaximumStackGrowth()).isEqualTo(0);
+
+    // MSTORE has a dynamic cost so is checked on its own, and ends the block before it.
+    assertThat(analysis.basicBlockAt(7)).isNull();
+    assertThat(analysis.basicBlockAt(8).getMinimumStackSize()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldOnlyLoadCodeWithTheSameHashOnce() {
+    final AtomicInteger loads = new AtomicInteger();
+    final Supplier<BytesValue> loader =
+        () -> {
+          loads.incrementAndGet();
+          return BYTES;
+        };
+    final Hash codeHash = Hash.hash(BYTES);
+
+    final Code first = new Code(codeHash, loader);
+    final Code second = new Code(codeHash, loader);
+
+    assertThat(first.getAnalysis(evm)).isSameAs(second.getAnalysis(evm));
+    assertThat(second.getBytes()).isEqualTo(BYTES);
+    assertThat(loads.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldNotShareAnalysisBetweenEvms() {
+    final EVM otherEvm = MainnetEvmRegistries.frontier(new FrontierGasCalculator());
+    final Code code = new Code(Hash.hash(BYTES), () -> BYTES);
+
+    final CodeAnalysis analysis = code.getAnalysis(evm);
+
+    assertThat(code.getAnalysis(otherEvm)).isNotSameAs(analysis);
+    assertThat(code.getAnalysis(otherEvm).isFor(otherEvm)).isTrue();
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.vm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import tech.pegasys.pantheon.ethereum.core.TestCodeExecutor;
+import tech.pegasys.pantheon.ethereum.mainnet.MainnetProtocolSchedule;
+import tech.pegasys.pantheon.ethereum.mainnet.ProtocolSchedule;
+import tech.pegasys.pantheon.ethereum.vm.MessageFrame.State;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+/** Checks the untraced interpreter loop behaves exactly like the traced one. */
+@RunWith(Parameterized.class)
+public class EVMTest {
+  private static final ProtocolSchedule<Void> protocolSchedule =
+      MainnetProtocolSchedule.create(0, 0, 0, 0, 0, 0, 1);
+
+  @Parameters(name = "Code: {0}, Gas: {1}")
+  public static Object[][] scenarios() {
+    return new Object[][] {
+      // PUSH1 1 PUSH1 2 ADD PUSH1 0 SSTORE
+      {"0x6001600201600055", 100_000, State.COMPLETED_SUCCESS},
+      // PUSH1 1 PUSH1 2 ADD PUSH1 0 MSTORE PUSH1 32 PUSH1 0 RETURN
+      {"0x600160020160005260206000f3", 100_000, State.COMPLETED_SUCCESS},
+      // PUSH1 1 PUSH1 2 ADD PUSH1 2 MUL PUSH1 0 MSTORE PUSH1 32 PUSH1 0 RETURN
+      {"0x600160020160020260005260206000f3", 100_000, State.COMPLETED_SUCCESS},
+      // PUSH1 1 PUSH1 2 ADD PUSH1 2 MUL with gas running out part way through the block
+      {"0x6001600201600202", 12, State.COMPLETED_FAILED},
+      // PUSH1 1 ADD with the stack underflowing part way through the block
+      {"0x600101", 100_000, State.COMPLETED_FAILED},
+      // ADD with an empty stack
+      {"0x01", 100_000, State.COMPLETED_FAILED},
+      // PUSH1 1 PUSH1 2 ADD without enough gas for the ADD
+      {"0x6001600201", 7, State.COMPLETED_FAILED},
+      // INVALID
+      {"0xfe", 100_000, State.COMPLETED_FAILED},
+      // Undefined opcode
+      {"0x0c", 100_000, State.COMPLETED_FAILED},
+      // PUSH1 0 JUMP to a position that isn't a JUMPDEST
+      {"0x600056", 100_000, State.COMPLETED_FAILED},
+      // JUMPDEST PUSH1 0 JUMP looping until out of gas
+      {"0x5b600056", 1_000, State.COMPLETED_FAILED},
+      // JUMPDEST ADDRESS PUSH1 0 JUMP looping until the stack overflows
+      {"0x5b30600056", 1_000_000, State.COMPLETED_FAILED},
+    };
+  }
+
+  @Parameter public String code;
+
+  @Parameter(value = 1)
+  public long gasLimit;
+
+  @Parameter(value = 2)
+  public State expectedState;
+
+  @Test
+  public void untracedExecutionShouldMatchTracedExecution() {
+    final AtomicInteger tracedOperations = new AtomicInteger();
+    final OperationTracer countingTracer =
+        (frame, currentGasCost, executeOperation) -> {
+          tracedOperations.incrementAndGet();
+          executeOperation.execute();
+        };
+
+    final MessageFrame untraced =
+        new TestCodeExecutor(protocolSchedule).executeCode(code, gasLimit, account -> {});
+    final MessageFrame traced =
+        new TestCodeExecutor(protocolSchedule)
+            .executeCode(code, gasLimit, account -> {}, countingTracer);
+
+    assertThat(tracedOperations.get()).isGreaterThan(0);
+    assertThat(untraced.getState()).isEqualTo(expectedState);
+    assertThat(untraced.getState()).isEqualTo(traced.getState());
+    assertThat(untraced.getRemainingGas()).isEqualTo(traced.getRemainingGas());
+    assertThat(untraced.getExceptionalHaltReasons().isEmpty())
+        .isEqualTo(expectedState == State.COMPLETED_SUCCESS);
+    assertThat(untraced.getExceptionalHaltReasons()).isEqualTo(traced.getExceptionalHaltReasons());
+    assertThat(untraced.getOutputData()).isEqualTo(traced.getOutputData());
+    assertThat(untraced.getPC()).isEqualTo(traced.getPC());
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.vm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import tech.pegasys.pantheon.ethereum.core.Address;
+import tech.pegasys.pantheon.ethereum.core.Log;
+import tech.pegasys.pantheon.ethereum.core.LogSeries;
+import tech.pegasys.pantheon.ethereum.core.LogsBloomFilter;
+import tech.pegasys.pantheon.util.bytes.Bytes32;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+import tech.pegasys.pantheon.util.uint.UInt256;
+
+import java.util.Collections;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class FrameResourcePoolTest {
+
+  private final FrameResourcePool pool = FrameResourcePool.current();
+
+  @Test
+  public void shouldReuseReleasedStackEmptied() {
+    final PreAllocatedOperandStack stack = pool.acquireStack(1024);
+    stack.push(Bytes32.fromHexString("0x01"));
+    stack.push(Bytes32.fromHexString("0x02"));
+    pool.releaseStack(stack);
+
+    final PreAllocatedOperandStack reused = pool.acquireStack(1024);
+    assertThat(reused).isSameAs(stack);
+    assertThat(reused.size()).isZero();
+    assertThat(reused).isEqualTo(new PreAllocatedOperandStack(1024));
+  }
+
+  @Test
+  public void shouldNotReuseStackOfDifferentSize() {
+    final PreAllocatedOperandStack stack = pool.acquireStack(1024);
+    pool.releaseStack(stack);
+
+    assertThat(pool.acquireStack(16)).isNotSameAs(stack);
+  }
+
+  @Test
+  public void shouldReuseReleasedMemoryCleared() {
+    final Memory memory = pool.acquireMemory();
+    memory.setWord(UInt256.of(64), Bytes32.fromHexString("0xff"));
+    pool.releaseMemory(memory);
+
+    final Memory reused = pool.acquireMemory();
+    assertThat(reused).isSameAs(memory);
+    assertThat(reused.getActiveWords()).isEqualTo(UInt256.ZERO);
+    assertThat(reused.getWord(UInt256.of(64))).isEqualTo(Bytes32.ZERO);
+  }
+
+  @Test
+  public void shouldDropOversizedMemory() {
+    final Memory memory = pool.acquireMemory();
+    memory.setWord(UInt256.of(4 * 1024 * 1024), Bytes32.ZERO);
+    pool.releaseMemory(memory);
+
+    assertThat(pool.acquireMemory()).isNotSameAs(memory);
+  }
+
+  @Test
+  public void shouldReuseReleasedLogSeriesWithClearedBloomFilter() {
+    final LogSeries logs = pool.acquireLogSeries();
+    logs.add(new Log(Address.ID, BytesValue.EMPTY, Collections.emptyList()));
+    pool.releaseLogSeries(logs);
+
+    final LogSeries reused = pool.acquireLogSeries();
+    assertThat(reused).isSameAs(logs);
+    assertThat(reused).isEmpty();
+    assertThat(reused.getBloomFilter()).isEqualTo(new LogsBloomFilter());
+  }
+
+  @Test
+  public void shouldReuseReleasedAddressSetCleared() {
+    final Set<Address> addresses = pool.acquireAddressSet();
+    addresses.add(Address.ID);
+    pool.releaseAddressSet(addresses);
+
+    final Set<Address> reused = pool.acquireAddressSet();
+    assertThat(reused).isSameAs(addresses);
+    assertThat(reused).isEmpty();
+  }
+}
@@ -123,6 +123,56 @@ public class MemoryTest {
     assertThat(memory.getWord(UInt256.of(64))).isEqualTo(WORD3);
   }
 
+  @Test
+  public void shouldKeepContentsWhenMemoryGrows() {
+    memory.setWord(UInt256.ZERO, WORD1);
+    memory.setWord(UInt256.of(32 * 1000), WORD2);
+
+    assertThat(memory.getActiveWords()).isEqualTo(UInt256.of(1001));
+    assertThat(memory.getWord(UInt256.ZERO)).isEqualTo(WORD1);
+    assertThat(memory.getWord(UInt256.of(32 * 500))).isEqualTo(Bytes32.ZERO);
+    assertThat(memory.getWord(UInt256.of(32 * 1000))).isEqualTo(WORD2);
+  }
+
+  @Test
+  public void shouldGetBytesSpanningWords() {
+    memory.setWord(UInt256.ZERO, WORD1);
+    memory.setWord(UInt256.of(32), WORD2);
+
+    assertThat(memory.getBytes(UInt256.of(16), UInt256.of(32)))
+        .isEqualTo(BytesValues.concatenate(WORD1.slice(16), WORD2.slice(0, 16)));
+    assertThat(memory.getWord(UInt256.of(16)))
+        .isEqualTo(Bytes32.wrap(BytesValues.concatenate(WORD1.slice(16), WORD2.slice(0, 16)), 0));
+  }
+
+  @Test
+  public void shouldExpandMemoryWhenReadingBeyondActiveWords() {
+    assertThat(memory.getBytes(UInt256.of(40), UInt256.of(10)))
+        .isEqualTo(BytesValue.wrap(new byte[10]));
+    assertThat(memory.getActiveWords()).isEqualTo(UInt256.of(2));
+  }
+
+  @Test
+  public void shouldNotBeAffectedByLaterWritesWhenCopied() {
+    memory.setWord(UInt256.ZERO, WORD1);
+    final BytesValue copy = memory.getBytes(UInt256.ZERO, UInt256.of(32));
+    final BytesValue view = memory.getBytesWithoutCopy(UInt256.ZERO, UInt256.of(32));
+    memory.setWord(UInt256.ZERO, WORD2);
+
+    assertThat(copy).isEqualTo(WORD1);
+    assertThat(view).isEqualTo(WORD2);
+  }
+
+  @Test
+  public void shouldBeEqualToMemoryWithSameActiveContents() {
+    final Memory other = new Memory();
+    memory.setWord(UInt256.of(32), WORD3);
+    other.setBytes(UInt256.of(32), UInt256.of(32), WORD3);
+
+    assertThat(memory).isEqualTo(other);
+    assertThat(memory.hashCode()).isEqualTo(other.hashCode());
+  }
+
   private static Bytes32 fillBytes32(final long value) {
     return Bytes32.fromHexString(Strings.repeat(Long.toString(value), 64));
   }
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.worldstate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import tech.pegasys.pantheon.ethereum.core.Address;
+import tech.pegasys.pantheon.ethereum.core.MutableWorldState;
+import tech.pegasys.pantheon.ethereum.core.Wei;
+import tech.pegasys.pantheon.ethereum.core.WorldUpdater;
+import tech.pegasys.pantheon.services.kvstore.InMemoryKeyValueStorage;
+import tech.pegasys.pantheon.util.bytes.Bytes32;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+
+import java.util.Optional;
+
+import org.junit.Test;
+
+public class CachingWorldStateStorageTest {
+
+  private static final Address ADDRESS =
+      Address.fromHexString("0xa94f5374fce5edbc8e2a8697c15331677e6ebf0b");
+  private static final Bytes32 NODE_HASH = Bytes32.fromHexStringLenient("0x01");
+  private static final BytesValue NODE = BytesValue.fromHexString("0xc180");
+
+  private final InMemoryKeyValueStorage keyValueStorage = new InMemoryKeyValueStorage();
+  private final CachingWorldStateStorage storage =
+      new CachingWorldStateStorage(
+          new KeyValueStorageWorldStateStorage(keyValueStorage), 1024 * 1024);
+
+  @Test
+  public void secondLookupIsServedFromCache() {
+    keyValueStorage.put(NODE_HASH, NODE);
+
+    assertThat(storage.getAccountStateTrieNode(NODE_HASH)).contains(NODE);
+    keyValueStorage.remove(NODE_HASH);
+    assertThat(storage.getAccountStateTrieNode(NODE_HASH)).contains(NODE);
+
+    assertThat(storage.getMissCount()).isEqualTo(1);
+    assertThat(storage.getHitCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void missingNodesAreNotCached() {
+    assertThat(storage.getAccountStorageTrieNode(NODE_HASH)).isEmpty();
+    keyValueStorage.put(NODE_HASH, NODE);
+    assertThat(storage.getAccountStorageTrieNode(NODE_HASH)).contains(NODE);
+  }
+
+  @Test
+  public void committedNodesAreCached() {
+    final WorldStateStorage.Updater updater = storage.updater();
+    updater.putAccountStateTrieNode(NODE_HASH, NODE);
+    updater.commit();
+
+    assertThat(storage.getAccountStateTrieNode(NODE_HASH)).contains(NODE);
+    assertThat(storage.getHitCount()).isEqualTo(1);
+    assertThat(storage.getMissCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void rolledBackNodesAreNotCached() {
+    final WorldStateStorage.Updater updater = storage.updater();
+    updater.putAccountStateTrieNode(NODE_HASH, NODE);
+    updater.rollback();
+
+    assertThat(storage.getAccountStateTrieNode(NODE_HASH)).isEqualTo(Optional.empty());
+    assertThat(storage.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void cacheIsBoundedByBytes() {
+    final CachingWorldStateStorage smallStorage =
+        new CachingWorldStateStorage(new KeyValueStorageWorldStateStorage(keyValueStorage), 2048);
+    final WorldStateStorage.Updater updater = smallStorage.updater();
+    for (int i = 0; i < 100; i++) {
+      updater.putAccountStateTrieNode(
+          Bytes32.leftPad(BytesValue.of(i)), BytesValue.wrap(new byte[100]));
+    }
+    updater.commit();
+
+    assertThat(smallStorage.size()).isLessThan(100);
+    for (int i = 0; i < 100; i++) {
+      assertThat(smallStorage.getAccountStateTrieNode(Bytes32.leftPad(BytesValue.of(i))))
+          .isPresent();
+    }
+  }
+
+  @Test
+  public void worldStateReadsThroughCache() {
+    final MutableWorldState worldState = new DefaultMutableWorldState(storage);
+    final WorldUpdater updater = worldState.updater();
+    updater.createAccount(ADDRESS).setBalance(Wei.of(100000));
+    updater.commit();
+    worldState.persist();
+
+    final MutableWorldState reloaded = new DefaultMutableWorldState(worldState.rootHash(), storage);
+    assertThat(reloaded.get(ADDRESS).getBalance()).isEqualTo(Wei.of(100000));
+    assertThat(storage.getHitCount()).isGreaterThan(0);
+  }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.worldstate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import tech.pegasys.pantheon.ethereum.core.Address;
+import tech.pegasys.pantheon.ethereum.core.Hash;
+import tech.pegasys.pantheon.ethereum.core.MutableAccount;
+import tech.pegasys.pantheon.ethereum.core.MutableWorldState;
+import tech.pegasys.pantheon.ethereum.core.Wei;
+import tech.pegasys.pantheon.ethereum.core.WorldUpdater;
+import tech.pegasys.pantheon.ethereum.trie.MerkleStorageException;
+import tech.pegasys.pantheon.services.kvstore.InMemoryKeyValueStorage;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+import tech.pegasys.pantheon.util.uint.UInt256;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.Test;
+
+public class MarkSweepPrunerTest {
+
+  private static final Address ADDRESS =
+      Address.fromHexString("0xa94f5374fce5edbc8e2a8697c15331677e6ebf0b");
+  private static final Address OTHER_ADDRESS =
+      Address.fromHexString("0x1000000000000000000000000000000000000000");
+  private static final BytesValue CODE = BytesValue.fromHexString("0x6001600155");
+
+  private final InMemoryKeyValueStorage keyValueStorage = new InMemoryKeyValueStorage();
+  private final WriteTrackingWorldStateStorage storage =
+      new WriteTrackingWorldStateStorage(keyValueStorage);
+
+  @Test
+  public void unreachableStateIsRemoved() {
+    final MarkSweepPruner pruner = createPruner(1, 2);
+    final MutableWorldState worldState = new DefaultMutableWorldState(storage);
+    setBalance(worldState, Wei.of(1));
+    final Hash prunedRoot = worldState.rootHash();
+    pruner.onChainHeadUpdated(prunedRoot);
+    setBalance(worldState, Wei.of(2));
+    setBalance(worldState, Wei.of(3));
+    final Hash headRoot = worldState.rootHash();
+    pruner.onChainHeadUpdated(headRoot);
+    // Entries written since the previous chain head update are only removed by a later prune.
+    pruner.onChainHeadUpdated(headRoot);
+    pruner.onChainHeadUpdated(headRoot);
+
+    assertThat(pruner.prunedEntryCount()).isGreaterThan(0);
+    assertThat(pruner.reclaimedBytes()).isGreaterThan(0);
+    assertThat(storage.getAccountStateTrieNode(prunedRoot)).isEmpty();
+    assertThat(new DefaultMutableWorldState(headRoot, storage).get(ADDRESS).getBalance())
+        .isEqualTo(Wei.of(3));
+    assertThatThrownBy(() -> new DefaultMutableWorldState(prunedRoot, storage).get(ADDRESS))
+        .isInstanceOf(MerkleStorageException.class);
+  }
+
+  @Test
+  public void retainedStatesAreKept() {
+    final MarkSweepPruner pruner = createPruner(2, 2);
+    final MutableWorldState worldState = new DefaultMutableWorldState(storage);
+    setBalance(worldState, Wei.of(1));
+    final Hash retainedRoot = worldState.rootHash();
+    pruner.onChainHeadUpdated(retainedRoot);
+    setBalance(worldState, Wei.of(2));
+    pruner.onChainHeadUpdated(worldState.rootHash());
+
+    assertThat(new DefaultMutableWorldState(retainedRoot, storage).get(ADDRESS).getBalance())
+        .isEqualTo(Wei.of(1));
+  }
+
+  @Test
+  public void pinnedStatesAreKept() {
+    final MarkSweepPruner pruner = createPruner(1, 1);
+    final MutableWorldState worldState = new DefaultMutableWorldState(storage);
+    setBalance(worldState, Wei.of(1));
+    final Hash pinnedRoot = worldState.rootHash();
+    pruner.pin(pinnedRoot);
+    pruner.onChainHeadUpdated(pinnedRoot);
+    setBalance(worldState, Wei.of(2));
+    pruner.onChainHeadUpdated(worldState.rootHash());
+
+    assertThat(new DefaultMutableWorldState(pinnedRoot, storage).get(ADDRESS).getBalance())
+        .isEqualTo(Wei.of(1));
+
+    pruner.unpin(pinnedRoot);
+    setBalance(worldState, Wei.of(3));
+    pruner.onChainHeadUpdated(worldState.rootHash());
+
+    assertThat(storage.getAccountStateTrieNode(pinnedRoot)).isEmpty();
+  }
+
+  @Test
+  public void storageTriesAndCodeOfReachableAccountsAreKept() {
+    final MarkSweepPruner pruner = createPruner(1, 1);
+    final MutableWorldState worldState = new DefaultMutableWorldState(storage);
+    final WorldUpdater updater = worldState.updater();
+    final MutableAccount account = updater.createAccount(ADDRESS);
+    account.setCode(CODE);
+    for (int i = 0; i < 20; i++) {
+      account.setStorageValue(UInt256.of(i), UInt256.of(i + 1));
+    }
+    updater.commit();
+    worldState.persist();
+    pruner.onChainHeadUpdated(worldState.rootHash());
+
+    final WorldUpdater otherUpdater = worldState.updater();
+    otherUpdater.createAccount(OTHER_ADDRESS).setBalance(Wei.of(1));
+    otherUpdater.commit();
+    worldState.persist();
+    pruner.onChainHeadUpdated(worldState.rootHash());
+
+    assertThat(pruner.prunedEntryCount()).isGreaterThan(0);
+    final MutableWorldState reloaded = new DefaultMutableWorldState(worldState.rootHash(), storage);
+    assertThat(reloaded.get(ADDRESS).getCode()).isEqualTo(CODE);
+    for (int i = 0; i < 20; i++) {
+      assertThat(reloaded.get(ADDRESS).getStorageValue(UInt256.of(i))).isEqualTo(UInt256.of(i + 1));
+    }
+  }
+
+  @Test
+  public void entriesThatAreNotWorldStateAreKept() {
+    final MarkSweepPruner pruner = createPruner(1, 1);
+    final BytesValue key = BytesValue.fromHexString("0x01");
+    keyValueStorage.put(key, BytesValue.of(1));
+    final MutableWorldState worldState = new DefaultMutableWorldState(storage);
+    setBalance(worldState, Wei.of(1));
+    pruner.onChainHeadUpdated(worldState.rootHash());
+
+    assertThat(keyValueStorage.get(key)).contains(BytesValue.of(1));
+  }
+
+  @Test
+  public void recentlyWrittenEntriesAreKept() {
+    final MarkSweepPruner pruner = createPruner(1, 1);
+    final MutableWorldState worldState = new DefaultMutableWorldState(storage);
+    setBalance(worldState, Wei.of(1));
+    final Hash unreferencedRoot = worldState.rootHash();
+    setBalance(worldState, Wei.of(2));
+    pruner.onChainHeadUpdated(worldState.rootHash());
+
+    // Written since the previous chain head update, as a block being imported would be.
+    assertThat(storage.getAccountStateTrieNode(unreferencedRoot)).isPresent();
+
+    pruner.onChainHeadUpdated(worldState.rootHash());
+
+    assertThat(storage.getAccountStateTrieNode(unreferencedRoot)).isEmpty();
+  }
+
+  @Test
+  public void writesAreOnlyTrackedUntilTheNextChainHeadUpdate() {
+    final MarkSweepPruner pruner = createPruner(1, 3);
+    final MutableWorldState worldState = new DefaultMutableWorldState(storage);
+    setBalance(worldState, Wei.of(1));
+    final Hash unreferencedRoot = worldState.rootHash();
+    setBalance(worldState, Wei.of(2));
+    pruner.onChainHeadUpdated(worldState.rootHash());
+    pruner.onChainHeadUpdated(worldState.rootHash());
+    pruner.onChainHeadUpdated(worldState.rootHash());
+
+    assertThat(storage.getAccountStateTrieNode(unreferencedRoot)).isEmpty();
+  }
+
+  private MarkSweepPruner createPruner(final int retainedStates, final int pruningInterval) {
+    return new MarkSweepPruner(
+        storage,
+        storage,
+        retainedStates,
+        pruningInterval,
+        MoreExecutors.newDirectExecutorService());
+  }
+
+  private static void setBalance(final MutableWorldState worldState, final Wei balance) {
+    final WorldUpdater updater = worldState.updater();
+    updater.getOrCreate(ADDRESS).setBalance(balance);
+    updater.commit();
+    worldState.persist();
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.worldstate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import tech.pegasys.pantheon.ethereum.core.Address;
+import tech.pegasys.pantheon.ethereum.core.Hash;
+import tech.pegasys.pantheon.ethereum.core.MutableAccount;
+import tech.pegasys.pantheon.ethereum.core.MutableWorldState;
+import tech.pegasys.pantheon.ethereum.core.Wei;
+import tech.pegasys.pantheon.ethereum.core.WorldUpdater;
+import tech.pegasys.pantheon.services.kvstore.InMemoryKeyValueStorage;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+import tech.pegasys.pantheon.util.uint.UInt256;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.Executor;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.Test;
+
+public class WorldStatePrefetcherTest {
+
+  private static final Address SENDER = Address.fromHexString("0x01");
+  private static final Address CONTRACT = Address.fromHexString("0x02");
+  private static final Address MISSING = Address.fromHexString("0x03");
+  private static final BytesValue CODE = BytesValue.fromHexString("0x6001600055");
+
+  private final Executor executor = MoreExecutors.directExecutor();
+  private final KeyValueStorageWorldStateStorage diskStorage =
+      new KeyValueStorageWorldStateStorage(new InMemoryKeyValueStorage());
+
+  @Test
+  public void prefetchedAccountsAreReadFromCache() {
+    final Hash stateRoot = createWorldState();
+    final CachingWorldStateStorage storage = new CachingWorldStateStorage(diskStorage, 1 << 20);
+    final WorldStatePrefetcher prefetcher = new WorldStatePrefetcher(storage, executor);
+
+    prefetcher.prefetch(stateRoot, Arrays.asList(SENDER, CONTRACT, MISSING));
+    final long misses = storage.getMissCount();
+    assertThat(misses).isGreaterThan(0);
+
+    final MutableWorldState worldState = new DefaultMutableWorldState(stateRoot, storage);
+    assertThat(worldState.get(SENDER).getBalance()).isEqualTo(Wei.of(100));
+    assertThat(worldState.get(CONTRACT).getStorageValue(UInt256.ONE)).isEqualTo(UInt256.ONE);
+    assertThat(worldState.get(MISSING)).isNull();
+    // Every node these reads need was loaded by the prefetch.
+    assertThat(storage.getMissCount()).isEqualTo(misses);
+  }
+
+  @Test
+  public void prefetchOfEmptyWorldStateReadsNothing() {
+    final CachingWorldStateStorage storage = new CachingWorldStateStorage(diskStorage, 1 << 20);
+    final WorldStatePrefetcher prefetcher = new WorldStatePrefetcher(storage, executor);
+
+    prefetcher.prefetch(Hash.EMPTY_TRIE_HASH, Collections.singletonList(SENDER));
+
+    assertThat(storage.getMissCount()).isZero();
+  }
+
+  private Hash createWorldState() {
+    final MutableWorldState worldState = new DefaultMutableWorldState(diskStorage);
+    final WorldUpdater updater = worldState.updater();
+    updater.createAccount(SENDER).setBalance(Wei.of(100));
+    final MutableAccount contract = updater.createAccount(CONTRACT);
+    contract.setCode(CODE);
+    contract.setStorageValue(UInt256.ONE, UInt256.ONE);
+    updater.commit();
+    worldState.persist();
+    return worldState.rootHash();
+  }
+}
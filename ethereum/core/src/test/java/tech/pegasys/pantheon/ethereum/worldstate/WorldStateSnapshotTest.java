@@ -0,0 +1,287 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.worldstate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import tech.pegasys.pantheon.ethereum.core.Account;
+import tech.pegasys.pantheon.ethereum.core.Address;
+import tech.pegasys.pantheon.ethereum.core.Hash;
+import tech.pegasys.pantheon.ethereum.core.MutableWorldState;
+import tech.pegasys.pantheon.ethereum.core.Wei;
+import tech.pegasys.pantheon.ethereum.core.WorldState;
+import tech.pegasys.pantheon.ethereum.core.WorldUpdater;
+import tech.pegasys.pantheon.services.kvstore.InMemoryKeyValueStorage;
+import tech.pegasys.pantheon.services.kvstore.KeyValueStorage;
+import tech.pegasys.pantheon.util.uint.UInt256;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.Test;
+
+public class WorldStateSnapshotTest {
+
+  private static final Address ACCOUNT_A = Address.fromHexString("0x01");
+  private static final Address ACCOUNT_B = Address.fromHexString("0x02");
+  private static final Address ACCOUNT_C = Address.fromHexString("0x03");
+  private static final List<Address> ACCOUNTS = Arrays.asList(ACCOUNT_A, ACCOUNT_B, ACCOUNT_C);
+  private static final List<UInt256> SLOTS =
+      Arrays.asList(UInt256.of(1), UInt256.of(2), UInt256.of(3), UInt256.of(5));
+
+  private final KeyValueStorage keyValueStorage = new InMemoryKeyValueStorage();
+  private final WorldStateStorage worldStateStorage =
+      new KeyValueStorageWorldStateStorage(keyValueStorage);
+
+  @Test
+  public void readsMatchTriesAsLayersAreFlattened() {
+    final WorldStateSnapshot snapshot = openSnapshot(2);
+
+    final Hash root1 =
+        importBlock(
+            snapshot,
+            Hash.EMPTY_TRIE_HASH,
+            updater -> {
+              updater.createAccount(ACCOUNT_A).setStorageValue(UInt256.of(1), UInt256.of(1));
+              updater.getMutable(ACCOUNT_A).setStorageValue(UInt256.of(2), UInt256.of(2));
+              updater.createAccount(ACCOUNT_B).setBalance(Wei.of(10));
+            });
+    final Hash root2 =
+        importBlock(
+            snapshot,
+            root1,
+            updater -> {
+              updater.getMutable(ACCOUNT_A).setStorageValue(UInt256.of(1), UInt256.ZERO);
+              updater.getMutable(ACCOUNT_A).setStorageValue(UInt256.of(3), UInt256.of(3));
+              updater.deleteAccount(ACCOUNT_B);
+            });
+    final Hash root3 =
+        importBlock(
+            snapshot,
+            root2,
+            updater -> updater.getMutable(ACCOUNT_A).clearStorage(),
+            updater -> updater.getMutable(ACCOUNT_A).setStorageValue(UInt256.of(5), UInt256.of(5)));
+    final Hash root4 =
+        importBlock(
+            snapshot,
+            root3,
+            updater -> {
+              updater.createAccount(ACCOUNT_B).setBalance(Wei.of(20));
+              updater.getMutable(ACCOUNT_A).setStorageValue(UInt256.of(5), UInt256.of(6));
+            });
+    final Hash root5 =
+        importBlock(
+            snapshot, root4, updater -> updater.createAccount(ACCOUNT_C).setBalance(Wei.of(30)));
+    final Hash root6 =
+        importBlock(
+            snapshot, root5, updater -> updater.getMutable(ACCOUNT_C).setBalance(Wei.of(40)));
+
+    // Storage written before the clear has been flattened, but must no longer be visible.
+    assertThat(snapshot.covers(root1)).isFalse();
+    assertThat(snapshot.covers(root4)).isTrue();
+    assertThat(snapshotState(snapshot, root6).get(ACCOUNT_A).getStorageValue(UInt256.of(2)))
+        .isEqualTo(UInt256.ZERO);
+    for (final Hash root : Arrays.asList(root1, root2, root3, root4, root5, root6)) {
+      assertMatchesTries(snapshot, root);
+    }
+
+    snapshot.close();
+    final WorldStateSnapshot reopened = openSnapshot(2);
+    assertThat(reopened.covers(root6)).isTrue();
+    assertThat(reopened.getAccount(root6, Hash.hash(ACCOUNT_C))).isPresent();
+    assertMatchesTries(reopened, root6);
+  }
+
+  @Test
+  public void forksAreDroppedOnceTheyNoLongerConnectToTheDiskLayer() {
+    final WorldStateSnapshot snapshot = openSnapshot(1);
+
+    final Hash root1 =
+        importBlock(
+            snapshot,
+            Hash.EMPTY_TRIE_HASH,
+            updater -> updater.createAccount(ACCOUNT_A).setBalance(Wei.of(10)));
+    final Hash forkA =
+        importBlock(
+            snapshot, root1, updater -> updater.createAccount(ACCOUNT_B).setBalance(Wei.of(20)));
+    final Hash forkB =
+        addLayer(
+            snapshot, root1, updater -> updater.createAccount(ACCOUNT_C).setBalance(Wei.of(30)));
+    assertThat(snapshot.covers(forkB)).isTrue();
+    assertMatchesTries(snapshot, forkB);
+
+    importBlock(snapshot, forkA, updater -> updater.getMutable(ACCOUNT_A).setBalance(Wei.of(5)));
+
+    assertThat(snapshot.covers(forkB)).isFalse();
+    assertMatchesTries(snapshot, forkA);
+    assertMatchesTries(snapshot, forkB);
+  }
+
+  @Test
+  public void snapshotIsDisabledUntilRegeneratedWhenChainHeadIsUnknown() {
+    final WorldStateSnapshot snapshot = openSnapshot(2);
+    final Hash root =
+        addLayer(
+            snapshot,
+            Hash.EMPTY_TRIE_HASH,
+            updater -> updater.createAccount(ACCOUNT_A).setBalance(Wei.of(10)));
+    assertThat(snapshot.covers(root)).isTrue();
+
+    // The state of an unknown chain head is missing, so it can't be regenerated.
+    snapshot.onChainHeadUpdated(Hash.hash(root));
+
+    assertThat(snapshot.isEnabled()).isFalse();
+    assertThat(snapshot.covers(root)).isFalse();
+    assertMatchesTries(snapshot, root);
+
+    snapshot.onChainHeadUpdated(root);
+
+    assertThat(snapshot.isEnabled()).isTrue();
+    assertThat(snapshot.covers(root)).isTrue();
+    assertMatchesTries(snapshot, root);
+  }
+
+  @Test
+  public void snapshotCatchesUpWithChainHeadAfterUncleanShutdown() {
+    final WorldStateSnapshot snapshot = openSnapshot(1);
+    final Hash root1 =
+        importBlock(
+            snapshot,
+            Hash.EMPTY_TRIE_HASH,
+            updater -> {
+              updater.createAccount(ACCOUNT_A).setStorageValue(UInt256.of(1), UInt256.of(1));
+              updater.getMutable(ACCOUNT_A).setStorageValue(UInt256.of(2), UInt256.of(2));
+              updater.createAccount(ACCOUNT_B).setStorageValue(UInt256.of(3), UInt256.of(3));
+            });
+    final Hash root2 =
+        importBlock(
+            snapshot, root1, updater -> updater.getMutable(ACCOUNT_B).setBalance(Wei.of(10)));
+    final Hash root3 =
+        importBlock(
+            snapshot,
+            root2,
+            updater -> {
+              updater.getMutable(ACCOUNT_A).setStorageValue(UInt256.of(1), UInt256.ZERO);
+              updater.getMutable(ACCOUNT_A).setStorageValue(UInt256.of(5), UInt256.of(5));
+              updater.deleteAccount(ACCOUNT_B);
+            });
+
+    // The node stops without closing the snapshot, leaving the disk layer at root2.
+    final WorldStateSnapshot reopened = openSnapshot(1);
+    assertThat(reopened.covers(root2)).isTrue();
+    assertThat(reopened.covers(root3)).isFalse();
+
+    final Hash root4 =
+        importBlock(
+            reopened,
+            root3,
+            updater -> {
+              updater.createAccount(ACCOUNT_B).setStorageValue(UInt256.of(5), UInt256.of(6));
+              updater.createAccount(ACCOUNT_C).setBalance(Wei.of(30));
+            });
+
+    assertThat(reopened.isEnabled()).isTrue();
+    assertThat(reopened.covers(root4)).isTrue();
+    assertMatchesTries(reopened, root4);
+    // Storage of the deleted account must not reappear with the recreated one.
+    assertThat(snapshotState(reopened, root4).get(ACCOUNT_B).getStorageValue(UInt256.of(3)))
+        .isEqualTo(UInt256.ZERO);
+
+    final Hash root5 =
+        importBlock(
+            reopened,
+            root4,
+            updater -> updater.getMutable(ACCOUNT_A).setStorageValue(UInt256.of(2), UInt256.of(7)));
+    assertThat(reopened.covers(root5)).isTrue();
+    assertMatchesTries(reopened, root5);
+  }
+
+  @Test
+  public void snapshotIsGeneratedForDatabaseCreatedWithoutIt() {
+    final MutableWorldState worldState = new DefaultMutableWorldState(worldStateStorage);
+    final WorldUpdater updater = worldState.updater();
+    updater.createAccount(ACCOUNT_A).setStorageValue(UInt256.of(1), UInt256.of(1));
+    updater.createAccount(ACCOUNT_B).setBalance(Wei.of(10));
+    updater.commit();
+    worldState.persist();
+    final Hash root = worldState.rootHash();
+
+    final WorldStateSnapshot snapshot = openSnapshot(2);
+    snapshot.onChainHeadUpdated(root);
+
+    assertThat(snapshot.isEnabled()).isTrue();
+    assertThat(snapshot.covers(root)).isTrue();
+    assertThat(snapshot.getAccount(root, Hash.hash(ACCOUNT_B))).isPresent();
+    assertMatchesTries(snapshot, root);
+  }
+
+  private WorldStateSnapshot openSnapshot(final int retainedLayers) {
+    return WorldStateSnapshot.open(
+        keyValueStorage,
+        worldStateStorage,
+        retainedLayers,
+        MoreExecutors.newDirectExecutorService());
+  }
+
+  @SafeVarargs
+  private final Hash importBlock(
+      final WorldStateSnapshot snapshot,
+      final Hash parentRoot,
+      final Consumer<WorldUpdater>... transactions) {
+    final Hash root = addLayer(snapshot, parentRoot, transactions);
+    snapshot.onChainHeadUpdated(root);
+    return root;
+  }
+
+  @SafeVarargs
+  private final Hash addLayer(
+      final WorldStateSnapshot snapshot,
+      final Hash parentRoot,
+      final Consumer<WorldUpdater>... transactions) {
+    final MutableWorldState worldState = snapshotState(snapshot, parentRoot);
+    for (final Consumer<WorldUpdater> transaction : transactions) {
+      final WorldUpdater updater = worldState.updater();
+      transaction.accept(updater);
+      updater.commit();
+    }
+    worldState.persist();
+    return worldState.rootHash();
+  }
+
+  private MutableWorldState snapshotState(final WorldStateSnapshot snapshot, final Hash root) {
+    return new DefaultMutableWorldState(
+        root, worldStateStorage, Optional.empty(), Optional.of(snapshot));
+  }
+
+  private void assertMatchesTries(final WorldStateSnapshot snapshot, final Hash root) {
+    final WorldState expected = new DefaultMutableWorldState(root, worldStateStorage);
+    final WorldState actual = snapshotState(snapshot, root);
+    for (final Address address : ACCOUNTS) {
+      final Account expectedAccount = expected.get(address);
+      final Account actualAccount = actual.get(address);
+      if (expectedAccount == null) {
+        assertThat(actualAccount).isNull();
+        continue;
+      }
+      assertThat(actualAccount.getBalance()).isEqualTo(expectedAccount.getBalance());
+      assertThat(actualAccount.getNonce()).isEqualTo(expectedAccount.getNonce());
+      for (final UInt256 slot : SLOTS) {
+        assertThat(actualAccount.getStorageValue(slot))
+            .isEqualTo(expectedAccount.getStorageValue(slot));
+      }
+    }
+  }
+}
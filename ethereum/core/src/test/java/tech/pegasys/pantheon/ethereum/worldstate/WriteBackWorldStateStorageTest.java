@@ -0,0 +1,197 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.worldstate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import tech.pegasys.pantheon.ethereum.core.Address;
+import tech.pegasys.pantheon.ethereum.core.Hash;
+import tech.pegasys.pantheon.ethereum.core.MutableAccount;
+import tech.pegasys.pantheon.ethereum.core.MutableWorldState;
+import tech.pegasys.pantheon.ethereum.core.Wei;
+import tech.pegasys.pantheon.ethereum.core.WorldUpdater;
+import tech.pegasys.pantheon.services.kvstore.InMemoryKeyValueStorage;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+import tech.pegasys.pantheon.util.uint.UInt256;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.Test;
+
+public class WriteBackWorldStateStorageTest {
+
+  private static final Address ADDRESS =
+      Address.fromHexString("0xa94f5374fce5edbc8e2a8697c15331677e6ebf0b");
+  private static final BytesValue CODE = BytesValue.fromHexString("0x6001600155");
+
+  private final InMemoryKeyValueStorage keyValueStorage = new InMemoryKeyValueStorage();
+  private final KeyValueStorageWorldStateStorage diskStorage =
+      new KeyValueStorageWorldStateStorage(keyValueStorage);
+
+  @Test
+  public void committedNodesAreReadableBeforeFlush() {
+    final WriteBackWorldStateStorage storage = writeBackStorage(2);
+    final MutableWorldState worldState = new DefaultMutableWorldState(storage);
+    setBalance(worldState, Wei.of(1));
+    storage.onChainHeadUpdated(worldState.rootHash());
+
+    assertThat(keyValueStorage.entries().count()).isEqualTo(0);
+    assertThat(storage.pendingNodeCount()).isGreaterThan(0);
+    final MutableWorldState reloaded = new DefaultMutableWorldState(worldState.rootHash(), storage);
+    assertThat(reloaded.get(ADDRESS).getBalance()).isEqualTo(Wei.of(1));
+  }
+
+  @Test
+  public void onlyChainHeadStateIsWrittenOnFlush() {
+    final WriteBackWorldStateStorage storage = writeBackStorage(2);
+    final MutableWorldState worldState = new DefaultMutableWorldState(storage);
+    setBalance(worldState, Wei.of(1));
+    final Hash supersededRoot = worldState.rootHash();
+    storage.onChainHeadUpdated(supersededRoot);
+    setBalance(worldState, Wei.of(2));
+    final Hash headRoot = worldState.rootHash();
+    storage.onChainHeadUpdated(headRoot);
+
+    assertThat(diskStorage.getAccountStateTrieNode(supersededRoot)).isEmpty();
+    final MutableWorldState reloaded = new DefaultMutableWorldState(headRoot, diskStorage);
+    assertThat(reloaded.get(ADDRESS).getBalance()).isEqualTo(Wei.of(2));
+  }
+
+  @Test
+  public void recentChainHeadStatesAreRetainedUntilTheyLeaveTheWindow() {
+    final WriteBackWorldStateStorage storage = writeBackStorage(2);
+    final MutableWorldState worldState = new DefaultMutableWorldState(storage);
+    setBalance(worldState, Wei.of(1));
+    final Hash parentRoot = worldState.rootHash();
+    storage.onChainHeadUpdated(parentRoot);
+    setBalance(worldState, Wei.of(2));
+    storage.onChainHeadUpdated(worldState.rootHash());
+
+    // A competing block can still be imported on top of the parent of the chain head.
+    final MutableWorldState parent = new DefaultMutableWorldState(parentRoot, storage);
+    assertThat(parent.get(ADDRESS).getBalance()).isEqualTo(Wei.of(1));
+
+    for (int i = 3; i <= 6; i++) {
+      setBalance(worldState, Wei.of(i));
+      storage.onChainHeadUpdated(worldState.rootHash());
+    }
+    assertThat(storage.getAccountStateTrieNode(parentRoot)).isEmpty();
+    assertThat(storage.pendingNodeCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void forkStatesCommittedWithinTheWindowAreRetained() {
+    final WriteBackWorldStateStorage storage = writeBackStorage(2);
+    final MutableWorldState worldState = new DefaultMutableWorldState(storage);
+    setBalance(worldState, Wei.of(1));
+    final Hash parentRoot = worldState.rootHash();
+    storage.onChainHeadUpdated(parentRoot);
+
+    final MutableWorldState fork = new DefaultMutableWorldState(parentRoot, storage);
+    setBalance(fork, Wei.of(5));
+    setBalance(worldState, Wei.of(2));
+    storage.onChainHeadUpdated(worldState.rootHash());
+
+    final MutableWorldState reloadedFork = new DefaultMutableWorldState(fork.rootHash(), storage);
+    assertThat(reloadedFork.get(ADDRESS).getBalance()).isEqualTo(Wei.of(5));
+    assertThat(diskStorage.getAccountStateTrieNode(fork.rootHash())).isEmpty();
+  }
+
+  @Test
+  public void storageTriesAndCodeAreWrittenOnFlush() {
+    final WriteBackWorldStateStorage storage = writeBackStorage(1);
+    final MutableWorldState worldState = new DefaultMutableWorldState(storage);
+    final WorldUpdater updater = worldState.updater();
+    final MutableAccount account = updater.createAccount(ADDRESS);
+    account.setCode(CODE);
+    for (int i = 0; i < 20; i++) {
+      account.setStorageValue(UInt256.of(i), UInt256.of(i + 1));
+    }
+    updater.commit();
+    worldState.persist();
+    storage.onChainHeadUpdated(worldState.rootHash());
+
+    assertThat(storage.pendingNodeCount()).isEqualTo(0);
+    final MutableWorldState reloaded =
+        new DefaultMutableWorldState(worldState.rootHash(), diskStorage);
+    assertThat(reloaded.get(ADDRESS).getCode()).isEqualTo(CODE);
+    for (int i = 0; i < 20; i++) {
+      assertThat(reloaded.get(ADDRESS).getStorageValue(UInt256.of(i))).isEqualTo(UInt256.of(i + 1));
+    }
+  }
+
+  @Test
+  public void checkpointsAreWrittenOnTheFlushExecutor() {
+    final List<Runnable> flushes = new ArrayList<>();
+    final AtomicInteger checkpoints = new AtomicInteger();
+    final WriteBackWorldStateStorage storage =
+        new WriteBackWorldStateStorage(diskStorage, 1, flushes::add, checkpoints::incrementAndGet);
+    final MutableWorldState worldState = new DefaultMutableWorldState(storage);
+    setBalance(worldState, Wei.of(1));
+    final Hash checkpointRoot = worldState.rootHash();
+    storage.onChainHeadUpdated(checkpointRoot);
+
+    assertThat(flushes).hasSize(1);
+    assertThat(keyValueStorage.entries().count()).isEqualTo(0);
+
+    // No other flush starts while one is running.
+    setBalance(worldState, Wei.of(2));
+    storage.onChainHeadUpdated(worldState.rootHash());
+    assertThat(flushes).hasSize(1);
+
+    flushes.get(0).run();
+    assertThat(checkpoints.get()).isEqualTo(1);
+    // The flush writes the chain head it was started for.
+    assertThat(diskStorage.getAccountStateTrieNode(checkpointRoot)).isPresent();
+    assertThat(diskStorage.getAccountStateTrieNode(worldState.rootHash())).isEmpty();
+
+    setBalance(worldState, Wei.of(3));
+    storage.onChainHeadUpdated(worldState.rootHash());
+    assertThat(flushes).hasSize(2);
+  }
+
+  @Test
+  public void rolledBackChangesAreDiscarded() {
+    final WriteBackWorldStateStorage storage = writeBackStorage(1);
+    final WorldStateStorage.Updater updater = storage.updater();
+    updater.putCode(CODE);
+    updater.rollback();
+
+    assertThat(storage.getCode(Hash.hash(CODE))).isEmpty();
+  }
+
+  @Test
+  public void flushWithoutChainHeadKeepsPendingNodes() {
+    final WriteBackWorldStateStorage storage = writeBackStorage(1);
+    setBalance(new DefaultMutableWorldState(storage), Wei.of(1));
+    storage.flush();
+
+    assertThat(storage.pendingNodeCount()).isGreaterThan(0);
+    assertThat(keyValueStorage.entries().count()).isEqualTo(0);
+  }
+
+  private WriteBackWorldStateStorage writeBackStorage(final int flushInterval) {
+    return new WriteBackWorldStateStorage(
+        diskStorage, flushInterval, MoreExecutors.directExecutor());
+  }
+
+  private static void setBalance(final MutableWorldState worldState, final Wei balance) {
+    final WorldUpdater updater = worldState.updater();
+    updater.getOrCreate(ADDRESS).setBalance(balance);
+    updater.commit();
+    worldState.persist();
+  }
+}
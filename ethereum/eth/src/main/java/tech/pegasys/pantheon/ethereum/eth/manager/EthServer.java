@@ -17,6 +17,7 @@ import tech.pegasys.pantheon.ethereum.core.BlockBody;
 import tech.pegasys.pantheon.ethereum.core.BlockHeader;
 import tech.pegasys.pantheon.ethereum.core.Hash;
 import tech.pegasys.pantheon.ethereum.core.TransactionReceipt;
+import tech.pegasys.pantheon.ethereum.db.WorldStateArchive;
 import tech.pegasys.pantheon.ethereum.eth.messages.BlockBodiesMessage;
 import tech.pegasys.pantheon.ethereum.eth.messages.BlockHeadersMessage;
 import tech.pegasys.pantheon.ethereum.eth.messages.EthPV62;
@@ -38,6 +39,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import org.apache.logging.log4j.LogManager;
@@ -45,13 +47,21 @@ import org.apache.logging.log4j.Logger;
 
 class EthServer {
   private static final Logger LOG = LogManager.getLogger();
+  // Matches the soft response limit other clients apply to node data responses.
+  static final int DEFAULT_MAX_NODE_DATA_RESPONSE_SIZE = 2 * 1024 * 1024;
 
   private final Blockchain blockchain;
+  private final WorldStateArchive worldStateArchive;
   private final EthMessages ethMessages;
   private final int requestLimit;
 
-  EthServer(final Blockchain blockchain, final EthMessages ethMessages, final int requestLimit) {
+  EthServer(
+      final Blockchain blockchain,
+      final WorldStateArchive worldStateArchive,
+      final EthMessages ethMessages,
+      final int requestLimit) {
     this.blockchain = blockchain;
+    this.worldStateArchive = worldStateArchive;
     this.ethMessages = ethMessages;
     this.requestLimit = requestLimit;
     this.setupListeners();
@@ -106,7 +116,8 @@ class EthServer {
   private void handleGetNodeData(final EthMessage message) {
     LOG.trace("Responding to GET_NODE_DATA request");
     try {
-      final MessageData response = constructGetNodeDataResponse(message.getData(), requestLimit);
+      final MessageData response =
+          constructGetNodeDataResponse(worldStateArchive, message.getData(), requestLimit);
       message.getPeer().send(response);
     } catch (final RLPException e) {
       message.getPeer().disconnect(DisconnectReason.BREACH_OF_PROTOCOL);
@@ -207,19 +218,42 @@ class EthServer {
   }
 
   static MessageData constructGetNodeDataResponse(
-      final MessageData message, final int requestLimit) {
+      final WorldStateArchive worldStateArchive,
+      final MessageData message,
+      final int requestLimit) {
+    return constructGetNodeDataResponse(
+        worldStateArchive, message, requestLimit, DEFAULT_MAX_NODE_DATA_RESPONSE_SIZE);
+  }
+
+  static MessageData constructGetNodeDataResponse(
+      final WorldStateArchive worldStateArchive,
+      final MessageData message,
+      final int requestLimit,
+      final int maxResponseSize) {
     final GetNodeDataMessage getNodeDataMessage = GetNodeDataMessage.readFrom(message);
     try {
-      final Iterable<Hash> hashes = getNodeDataMessage.hashes();
+      final List<Hash> hashes = new ArrayList<>();
+      for (final Hash hash : getNodeDataMessage.hashes()) {
+        if (hashes.size() >= requestLimit) {
+          break;
+        }
+        hashes.add(hash);
+      }
 
+      // Look everything up in one batch rather than one storage read per hash.
+      final Map<Hash, BytesValue> found = worldStateArchive.getNodeData(hashes);
       final List<BytesValue> nodeData = new ArrayList<>();
-      int count = 0;
+      int responseSize = 0;
       for (final Hash hash : hashes) {
-        if (count >= requestLimit) {
+        final BytesValue data = found.get(hash);
+        if (data == null) {
+          continue;
+        }
+        nodeData.add(data);
+        responseSize += data.size();
+        if (responseSize >= maxResponseSize) {
           break;
         }
-        count++;
-        // TODO: Lookup node data and add it to the list
       }
       return NodeDataMessage.create(nodeData);
     } finally {
@@ -22,6 +22,7 @@ import tech.pegasys.pantheon.ethereum.eth.manager.AbstractPeerTask;
 import tech.pegasys.pantheon.ethereum.eth.manager.EthContext;
 import tech.pegasys.pantheon.ethereum.eth.manager.EthMessage;
 import tech.pegasys.pantheon.ethereum.eth.manager.EthPeer;
+import tech.pegasys.pantheon.ethereum.eth.manager.EthScheduler;
 import tech.pegasys.pantheon.ethereum.eth.messages.EthPV62;
 import tech.pegasys.pantheon.ethereum.eth.messages.NewBlockHashesMessage;
 import tech.pegasys.pantheon.ethereum.eth.messages.NewBlockHashesMessage.NewBlockHash;
@@ -30,6 +31,7 @@ import tech.pegasys.pantheon.ethereum.eth.sync.state.PendingBlocks;
 import tech.pegasys.pantheon.ethereum.eth.sync.state.SyncState;
 import tech.pegasys.pantheon.ethereum.eth.sync.tasks.GetBlockFromPeerTask;
 import tech.pegasys.pantheon.ethereum.eth.sync.tasks.PersistBlockTask;
+import tech.pegasys.pantheon.ethereum.eth.transactions.TransactionSenderRecovery;
 import tech.pegasys.pantheon.ethereum.mainnet.HeaderValidationMode;
 import tech.pegasys.pantheon.ethereum.mainnet.ProtocolSchedule;
 import tech.pegasys.pantheon.ethereum.p2p.wire.messages.DisconnectMessage.DisconnectReason;
@@ -245,9 +247,10 @@ public class BlockPropagationManager<C> {
     final PersistBlockTask<C> importTask =
         PersistBlockTask.create(
             protocolSchedule, protocolContext, block, HeaderValidationMode.FULL);
-    return ethContext
-        .getScheduler()
-        .scheduleWorkerTask(importTask::run)
+    final EthScheduler scheduler = ethContext.getScheduler();
+    return new TransactionSenderRecovery(scheduler)
+        .recoverSenders(block.getBody().getTransactions())
+        .thenCompose(ignore -> scheduler.scheduleWorkerTask(importTask::run))
         .whenComplete(
             (r, t) -> {
               if (t != null) {
@@ -13,13 +13,20 @@
 package tech.pegasys.pantheon.ethereum.eth.sync;
 
 import tech.pegasys.pantheon.ethereum.ProtocolContext;
+import tech.pegasys.pantheon.ethereum.core.Hash;
 import tech.pegasys.pantheon.ethereum.core.SyncStatus;
 import tech.pegasys.pantheon.ethereum.core.Synchronizer;
 import tech.pegasys.pantheon.ethereum.eth.manager.EthContext;
+import tech.pegasys.pantheon.ethereum.eth.sync.state.FastSyncStateStorage;
 import tech.pegasys.pantheon.ethereum.eth.sync.state.PendingBlocks;
 import tech.pegasys.pantheon.ethereum.eth.sync.state.SyncState;
+import tech.pegasys.pantheon.ethereum.eth.sync.worldstate.NodeDataRequestQueue;
+import tech.pegasys.pantheon.ethereum.eth.sync.worldstate.WorldStateDownloader;
 import tech.pegasys.pantheon.ethereum.mainnet.ProtocolSchedule;
+import tech.pegasys.pantheon.ethereum.mainnet.ScheduleBasedBlockHashFunction;
+import tech.pegasys.pantheon.ethereum.storage.StorageProvider;
 
+import java.time.Duration;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -29,19 +36,32 @@ import org.apache.logging.log4j.Logger;
 public class DefaultSynchronizer<C> implements Synchronizer {
 
   private static final Logger LOG = LogManager.getLogger();
+  private static final Duration FAST_SYNC_RETRY_DELAY = Duration.ofSeconds(10);
 
+  private final SynchronizerConfiguration syncConfig;
+  private final ProtocolSchedule<C> protocolSchedule;
+  private final ProtocolContext<C> protocolContext;
+  private final EthContext ethContext;
   private final SyncState syncState;
+  private final StorageProvider storageProvider;
   private final AtomicBoolean started = new AtomicBoolean(false);
   private final BlockPropagationManager<C> blockPropagationManager;
   private final Downloader<C> downloader;
+  private final boolean fastSyncEnabled;
 
   public DefaultSynchronizer(
       final SynchronizerConfiguration syncConfig,
       final ProtocolSchedule<C> protocolSchedule,
       final ProtocolContext<C> protocolContext,
       final EthContext ethContext,
-      final SyncState syncState) {
+      final SyncState syncState,
+      final StorageProvider storageProvider) {
+    this.syncConfig = syncConfig;
+    this.protocolSchedule = protocolSchedule;
+    this.protocolContext = protocolContext;
+    this.ethContext = ethContext;
     this.syncState = syncState;
+    this.storageProvider = storageProvider;
     this.blockPropagationManager =
         new BlockPropagationManager<>(
             syncConfig,
@@ -55,7 +75,8 @@ public class DefaultSynchronizer<C> implements Synchronizer {
 
     ChainHeadTracker.trackChainHeadForPeers(
         ethContext, protocolSchedule, protocolContext.getBlockchain(), syncConfig);
-    if (syncConfig.syncMode().equals(SyncMode.FAST)) {
+    this.fastSyncEnabled = syncConfig.syncMode().equals(SyncMode.FAST);
+    if (fastSyncEnabled) {
       LOG.info("Fast sync enabled.");
     }
   }
@@ -64,13 +85,69 @@ public class DefaultSynchronizer<C> implements Synchronizer {
   public void start() {
     if (started.compareAndSet(false, true)) {
       LOG.info("Starting synchronizer.");
-      blockPropagationManager.start();
-      downloader.start();
+      if (fastSyncEnabled) {
+        startFastSync();
+      } else {
+        startFullSync();
+      }
     } else {
       throw new IllegalStateException("Attempt to start an already started synchronizer.");
     }
   }
 
+  private void startFastSync() {
+    final FastSyncStateStorage fastSyncStateStorage =
+        new FastSyncStateStorage(
+            storageProvider.createFastSyncStorage(),
+            ScheduleBasedBlockHashFunction.create(protocolSchedule));
+    final WorldStateDownloader worldStateDownloader =
+        new WorldStateDownloader(
+            ethContext,
+            storageProvider.createFastSyncWorldStateStorage(),
+            new NodeDataRequestQueue(storageProvider.createFastSyncStorage()),
+            syncConfig.worldStateHashCountPerRequest(),
+            syncConfig.worldStateRequestParallelism(),
+            syncConfig.worldStateMaxRequestsWithoutProgress());
+    new FastSyncDownloader<>(
+            syncConfig,
+            protocolSchedule,
+            protocolContext,
+            ethContext,
+            fastSyncStateStorage,
+            worldStateDownloader)
+        .start()
+        .whenComplete(
+            (result, error) -> {
+              if (error != null) {
+                LOG.error("Fast sync failed.", error);
+              }
+              if (isChainHeadWorldStateAvailable()) {
+                // Whatever fast sync left undone is caught up on by processing blocks.
+                storageProvider.deleteFastSyncStorage();
+                startFullSync();
+              } else {
+                // The chain was imported past its last known world state, so only a completed fast
+                // sync can bring the node to a state it can process blocks from. Pending world
+                // state requests are kept, as the nodes already stored depend on them.
+                LOG.info("Retrying fast sync with a new pivot block.");
+                fastSyncStateStorage.clearPivotBlockHeader();
+                ethContext
+                    .getScheduler()
+                    .scheduleFutureTask(this::startFastSync, FAST_SYNC_RETRY_DELAY);
+              }
+            });
+  }
+
+  private boolean isChainHeadWorldStateAvailable() {
+    final Hash stateRoot = protocolContext.getBlockchain().getChainHeadHeader().getStateRoot();
+    return protocolContext.getWorldStateArchive().isWorldStateAvailable(stateRoot);
+  }
+
+  private void startFullSync() {
+    blockPropagationManager.start();
+    downloader.start();
+  }
+
   @Override
   public Optional<SyncStatus> getSyncStatus() {
     if (!started.get()) {
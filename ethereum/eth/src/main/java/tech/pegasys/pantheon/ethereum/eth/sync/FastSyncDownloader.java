@@ -0,0 +1,397 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.eth.sync;
+
+import tech.pegasys.pantheon.ethereum.ProtocolContext;
+import tech.pegasys.pantheon.ethereum.chain.MutableBlockchain;
+import tech.pegasys.pantheon.ethereum.core.Block;
+import tech.pegasys.pantheon.ethereum.core.BlockHeader;
+import tech.pegasys.pantheon.ethereum.core.BlockImporter;
+import tech.pegasys.pantheon.ethereum.core.Hash;
+import tech.pegasys.pantheon.ethereum.core.TransactionReceipt;
+import tech.pegasys.pantheon.ethereum.eth.manager.AbstractPeerTask.PeerTaskResult;
+import tech.pegasys.pantheon.ethereum.eth.manager.EthContext;
+import tech.pegasys.pantheon.ethereum.eth.manager.EthPeer;
+import tech.pegasys.pantheon.ethereum.eth.sync.state.FastSyncState;
+import tech.pegasys.pantheon.ethereum.eth.sync.state.FastSyncStateStorage;
+import tech.pegasys.pantheon.ethereum.eth.sync.tasks.CompleteBlocksTask;
+import tech.pegasys.pantheon.ethereum.eth.sync.tasks.DownloadHeaderSequenceTask;
+import tech.pegasys.pantheon.ethereum.eth.sync.tasks.GetHeadersFromPeerByNumberTask;
+import tech.pegasys.pantheon.ethereum.eth.sync.tasks.GetReceiptsFromPeerTask;
+import tech.pegasys.pantheon.ethereum.eth.sync.tasks.WaitForPeersTask;
+import tech.pegasys.pantheon.ethereum.eth.sync.tasks.exceptions.InvalidBlockException;
+import tech.pegasys.pantheon.ethereum.eth.sync.worldstate.WorldStateDownloader;
+import tech.pegasys.pantheon.ethereum.mainnet.HeaderValidationMode;
+import tech.pegasys.pantheon.ethereum.mainnet.ProtocolSchedule;
+import tech.pegasys.pantheon.util.ExceptionUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Brings an empty node up to a pivot block near the head of the chain without executing any
+ * transactions. The world state at the pivot is downloaded directly from peers, while the blocks up
+ * to it are imported along with their receipts, validating a sample of the headers in full. Once
+ * both are done, the node carries on with a regular full sync from the pivot.
+ *
+ * <p>The pivot header is taken from the best peer, and only persisted once other peers return the
+ * same header for its number, so an interrupted fast sync resumes towards the same block. Fast sync
+ * fails rather than retrying forever once the pivot turns out to be unusable: when a block or
+ * header leading to it is invalid, or when peers keep failing to serve the chain or world state.
+ *
+ * @param <C> the consensus algorithm context
+ */
+public class FastSyncDownloader<C> {
+  private static final Logger LOG = LogManager.getLogger();
+  private static final Duration RETRY_DELAY = Duration.ofSeconds(1);
+  private static final int MAX_PIVOT_CONFIRMATIONS = 2;
+
+  private final SynchronizerConfiguration config;
+  private final ProtocolSchedule<C> protocolSchedule;
+  private final ProtocolContext<C> protocolContext;
+  private final EthContext ethContext;
+  private final FastSyncState fastSyncState;
+  private final FastSyncStateStorage fastSyncStateStorage;
+  private final WorldStateDownloader worldStateDownloader;
+  private volatile boolean stopped;
+
+  public FastSyncDownloader(
+      final SynchronizerConfiguration config,
+      final ProtocolSchedule<C> protocolSchedule,
+      final ProtocolContext<C> protocolContext,
+      final EthContext ethContext,
+      final FastSyncStateStorage fastSyncStateStorage,
+      final WorldStateDownloader worldStateDownloader) {
+    this.config = config;
+    this.protocolSchedule = protocolSchedule;
+    this.protocolContext = protocolContext;
+    this.ethContext = ethContext;
+    this.fastSyncState = new FastSyncState(config);
+    this.fastSyncStateStorage = fastSyncStateStorage;
+    this.worldStateDownloader = worldStateDownloader;
+  }
+
+  /**
+   * Runs fast sync to completion.
+   *
+   * @return A future completed once the node holds the chain and the world state of the pivot
+   *     block, or once it is clear the chain is too short for fast sync to be of any use. It is
+   *     completed exceptionally once the pivot block can no longer be synced to.
+   */
+  public CompletableFuture<Void> start() {
+    final Optional<BlockHeader> storedPivot = fastSyncStateStorage.loadPivotBlockHeader();
+    final CompletableFuture<Optional<BlockHeader>> pivot =
+        storedPivot.isPresent()
+            ? CompletableFuture.completedFuture(storedPivot)
+            : selectPivotBlock();
+    return pivot.thenCompose(
+        maybePivot -> {
+          if (!maybePivot.isPresent()) {
+            LOG.info("Chain is too short for fast sync, continuing with full sync.");
+            return CompletableFuture.completedFuture(null);
+          }
+          final BlockHeader pivotHeader = maybePivot.get();
+          LOG.info("Fast syncing to pivot block {}.", pivotHeader.getNumber());
+          return downloadChainAndWorldState(pivotHeader)
+              .thenRun(() -> completeFastSync(pivotHeader));
+        });
+  }
+
+  private CompletableFuture<Void> downloadChainAndWorldState(final BlockHeader pivotHeader) {
+    final CompletableFuture<Void> worldState = worldStateDownloader.run(pivotHeader);
+    final CompletableFuture<Void> chain = importChainTo(pivotHeader, 0);
+    final CompletableFuture<Void> result = CompletableFuture.allOf(worldState, chain);
+    // Either failing means giving up on the pivot, so the other is stopped rather than waited for.
+    worldState.whenComplete(
+        (r, error) -> {
+          if (error != null) {
+            stopped = true;
+            result.completeExceptionally(error);
+          }
+        });
+    chain.whenComplete(
+        (r, error) -> {
+          if (error != null) {
+            result.completeExceptionally(error);
+            worldState.cancel(false);
+          }
+        });
+    return result;
+  }
+
+  private CompletableFuture<Optional<BlockHeader>> selectPivotBlock() {
+    LOG.info("Waiting for {} peers to select a fast sync pivot block.", minimumPeerCount());
+    return WaitForPeersTask.create(ethContext, minimumPeerCount())
+        .run()
+        .thenCompose(
+            v -> {
+              final Optional<EthPeer> bestPeer = ethContext.getEthPeers().bestPeer();
+              // A freshly connected peer's height is unknown until its chain head is fetched.
+              if (!bestPeer.isPresent() || !bestPeer.get().chainState().hasEstimatedHeight()) {
+                return retry(this::selectPivotBlock);
+              }
+              fastSyncState.setFastSyncChainTarget(
+                  bestPeer.get().chainState().getEstimatedHeight());
+              final long pivotBlockNumber = fastSyncState.pivot();
+              if (pivotBlockNumber <= protocolContext.getBlockchain().getChainHeadBlockNumber()) {
+                return CompletableFuture.completedFuture(Optional.empty());
+              }
+              final EthPeer sourcePeer = bestPeer.get();
+              return downloadPivotBlockHeader(sourcePeer, pivotBlockNumber)
+                  .thenCompose(
+                      pivotHeader -> {
+                        if (!pivotHeader.isPresent()) {
+                          return retry(this::selectPivotBlock);
+                        }
+                        return confirmPivotBlockHeader(sourcePeer, pivotHeader.get());
+                      });
+            });
+  }
+
+  private int minimumPeerCount() {
+    return config.fastSyncMinimumPeerCount();
+  }
+
+  private int requiredPivotConfirmations() {
+    return Math.min(minimumPeerCount() - 1, MAX_PIVOT_CONFIRMATIONS);
+  }
+
+  private CompletableFuture<Optional<BlockHeader>> downloadPivotBlockHeader(
+      final EthPeer peer, final long pivotBlockNumber) {
+    return GetHeadersFromPeerByNumberTask.forSingleNumber(
+            protocolSchedule, ethContext, pivotBlockNumber)
+        .assignPeer(peer)
+        .run()
+        .handle(
+            (result, error) -> {
+              if (error != null || result.getResult().isEmpty()) {
+                LOG.debug("Failed to download pivot block header from {}.", peer);
+                return Optional.empty();
+              }
+              return Optional.of(result.getResult().get(0));
+            });
+  }
+
+  private CompletableFuture<Optional<BlockHeader>> confirmPivotBlockHeader(
+      final EthPeer sourcePeer, final BlockHeader pivotHeader) {
+    // Everything fast sync downloads hangs off the pivot, so a single peer's word is not enough.
+    final List<EthPeer> confirmingPeers =
+        ethContext
+            .getEthPeers()
+            .availablePeers()
+            .filter(peer -> !peer.equals(sourcePeer))
+            .filter(peer -> peer.chainState().hasEstimatedHeight())
+            .filter(peer -> peer.chainState().getEstimatedHeight() >= pivotHeader.getNumber())
+            .limit(requiredPivotConfirmations())
+            .collect(Collectors.toList());
+    if (confirmingPeers.size() < requiredPivotConfirmations()) {
+      return retry(this::selectPivotBlock);
+    }
+    final List<CompletableFuture<Boolean>> confirmations =
+        confirmingPeers
+            .stream()
+            .map(
+                peer ->
+                    downloadPivotBlockHeader(peer, pivotHeader.getNumber())
+                        .thenApply(
+                            header ->
+                                header
+                                    .map(BlockHeader::getHash)
+                                    .equals(Optional.of(pivotHeader.getHash()))))
+            .collect(Collectors.toList());
+    return CompletableFuture.allOf(confirmations.toArray(new CompletableFuture<?>[0]))
+        .thenCompose(
+            v -> {
+              if (!confirmations.stream().allMatch(CompletableFuture::join)) {
+                LOG.info(
+                    "Pivot block {} from {} was not confirmed by other peers.",
+                    pivotHeader.getNumber(),
+                    sourcePeer);
+                return retry(this::selectPivotBlock);
+              }
+              fastSyncStateStorage.storePivotBlockHeader(pivotHeader);
+              return CompletableFuture.completedFuture(Optional.of(pivotHeader));
+            });
+  }
+
+  private CompletableFuture<Void> importChainTo(
+      final BlockHeader pivotHeader, final int failedAttempts) {
+    final MutableBlockchain blockchain = protocolContext.getBlockchain();
+    final long chainHead = blockchain.getChainHeadBlockNumber();
+    if (chainHead >= pivotHeader.getNumber()) {
+      return CompletableFuture.completedFuture(null);
+    }
+    final long lastBlockNumber =
+        Math.min(chainHead + config.downloaderChainSegmentSize(), pivotHeader.getNumber());
+    return downloadCheckpointHeader(pivotHeader, lastBlockNumber)
+        .thenCompose(checkpoint -> downloadHeaders(checkpoint, chainHead))
+        .thenCompose(
+            headers -> CompleteBlocksTask.forHeaders(protocolSchedule, ethContext, headers).run())
+        .thenCompose(this::downloadReceipts)
+        .thenCompose(
+            blocksWithReceipts ->
+                ethContext
+                    .getScheduler()
+                    .scheduleWorkerTask(() -> importBlocks(blocksWithReceipts, pivotHeader)))
+        .handle(
+            (result, error) -> {
+              if (stopped) {
+                throw new CancellationException("Fast sync stopped.");
+              }
+              if (error == null) {
+                return importChainTo(pivotHeader, 0);
+              }
+              final Throwable cause = ExceptionUtils.rootCause(error);
+              if (cause instanceof InvalidBlockException) {
+                // The chain does not lead to the pivot, so no amount of retrying will help.
+                LOG.warn("Invalid block while importing chain: {}", cause.getMessage());
+                throw (InvalidBlockException) cause;
+              }
+              if (failedAttempts + 1 >= config.downloaderChainSegmentTimeoutsPermitted()) {
+                throw new IllegalStateException(
+                    "Failed to import chain segment ending at block " + lastBlockNumber, cause);
+              }
+              LOG.debug(
+                  "Failed to import chain segment ending at block {}: {}",
+                  lastBlockNumber,
+                  error.toString());
+              return retry(() -> importChainTo(pivotHeader, failedAttempts + 1));
+            })
+        .thenCompose(future -> future);
+  }
+
+  private CompletableFuture<BlockHeader> downloadCheckpointHeader(
+      final BlockHeader pivotHeader, final long blockNumber) {
+    if (blockNumber == pivotHeader.getNumber()) {
+      return CompletableFuture.completedFuture(pivotHeader);
+    }
+    return GetHeadersFromPeerByNumberTask.forSingleNumber(protocolSchedule, ethContext, blockNumber)
+        .run()
+        .thenApply(
+            result -> {
+              if (result.getResult().isEmpty()) {
+                throw new IllegalStateException("No header returned for block " + blockNumber);
+              }
+              return result.getResult().get(0);
+            });
+  }
+
+  private CompletableFuture<List<BlockHeader>> downloadHeaders(
+      final BlockHeader checkpoint, final long chainHead) {
+    final int segmentLength = (int) (checkpoint.getNumber() - chainHead - 1);
+    if (segmentLength == 0) {
+      return CompletableFuture.completedFuture(Collections.singletonList(checkpoint));
+    }
+    return DownloadHeaderSequenceTask.endingAtHeader(
+            protocolSchedule, protocolContext, ethContext, checkpoint, segmentLength)
+        .run()
+        .thenApply(
+            headers -> {
+              final List<BlockHeader> segment = new ArrayList<>(headers);
+              segment.add(checkpoint);
+              return segment;
+            });
+  }
+
+  private CompletableFuture<Map<Block, List<TransactionReceipt>>> downloadReceipts(
+      final List<Block> blocks) {
+    final Map<Block, List<TransactionReceipt>> receipts = new HashMap<>();
+    return downloadReceipts(blocks, receipts).thenApply(v -> receipts);
+  }
+
+  private CompletableFuture<Void> downloadReceipts(
+      final List<Block> blocks, final Map<Block, List<TransactionReceipt>> receipts) {
+    final List<Block> incomplete =
+        blocks.stream().filter(block -> !receipts.containsKey(block)).collect(Collectors.toList());
+    if (incomplete.isEmpty()) {
+      return CompletableFuture.completedFuture(null);
+    }
+    final Map<BlockHeader, Block> blocksByHeader =
+        incomplete.stream().collect(Collectors.toMap(Block::getHeader, block -> block));
+    return GetReceiptsFromPeerTask.forHeaders(ethContext, new ArrayList<>(blocksByHeader.keySet()))
+        .run()
+        .thenApply(PeerTaskResult::getResult)
+        .thenCompose(
+            received -> {
+              if (received.isEmpty()) {
+                throw new IllegalStateException("No receipts returned.");
+              }
+              received.forEach((header, value) -> receipts.put(blocksByHeader.get(header), value));
+              return downloadReceipts(blocks, receipts);
+            });
+  }
+
+  private CompletableFuture<Void> importBlocks(
+      final Map<Block, List<TransactionReceipt>> blocksWithReceipts,
+      final BlockHeader pivotHeader) {
+    final List<Block> blocks = new ArrayList<>(blocksWithReceipts.keySet());
+    blocks.sort((a, b) -> Long.compare(a.getHeader().getNumber(), b.getHeader().getNumber()));
+    for (final Block block : blocks) {
+      final BlockHeader header = block.getHeader();
+      final BlockImporter<C> importer =
+          protocolSchedule.getByBlockNumber(header.getNumber()).getBlockImporter();
+      if (!importer.fastImportBlock(
+          protocolContext,
+          block,
+          blocksWithReceipts.get(block),
+          headerValidationMode(header, pivotHeader))) {
+        throw new InvalidBlockException(
+            "Failed to import block", header.getNumber(), header.getHash());
+      }
+    }
+    final BlockHeader last = blocks.get(blocks.size() - 1).getHeader();
+    LOG.info("Imported chain up to block {} of {}.", last.getNumber(), pivotHeader.getNumber());
+    return CompletableFuture.completedFuture(null);
+  }
+
+  private HeaderValidationMode headerValidationMode(
+      final BlockHeader header, final BlockHeader pivotHeader) {
+    // The pivot block is always validated in full, as the downloaded world state hangs off it.
+    if (header.getNumber() == pivotHeader.getNumber()
+        || ThreadLocalRandom.current().nextFloat() < config.fastSyncFullValidationRate()) {
+      return HeaderValidationMode.FULL;
+    }
+    return HeaderValidationMode.LIGHT;
+  }
+
+  private void completeFastSync(final BlockHeader pivotHeader) {
+    final Optional<Hash> importedPivotHash =
+        protocolContext.getBlockchain().getBlockHashByNumber(pivotHeader.getNumber());
+    if (!importedPivotHash.equals(Optional.of(pivotHeader.getHash()))) {
+      throw new IllegalStateException(
+          "Imported chain does not lead to the fast sync pivot block " + pivotHeader.getHash());
+    }
+    fastSyncStateStorage.markComplete();
+    LOG.info(
+        "Fast sync completed at block {}, {} world state nodes downloaded.",
+        pivotHeader.getNumber(),
+        worldStateDownloader.downloadedNodeCount());
+  }
+
+  private <T> CompletableFuture<T> retry(final Supplier<CompletableFuture<T>> task) {
+    return ethContext.getScheduler().scheduleFutureTask(task, RETRY_DELAY);
+  }
+}
@@ -30,10 +30,18 @@ public class SynchronizerConfiguration {
   // TODO: Determine reasonable defaults here
   public static int DEFAULT_PIVOT_DISTANCE_FROM_HEAD = 500;
   public static float DEFAULT_FULL_VALIDATION_RATE = .1f;
+  public static int DEFAULT_FAST_SYNC_MINIMUM_PEERS = 5;
+  public static int DEFAULT_WORLD_STATE_HASH_COUNT_PER_REQUEST = 384;
+  public static int DEFAULT_WORLD_STATE_REQUEST_PARALLELISM = 10;
+  public static int DEFAULT_WORLD_STATE_MAX_REQUESTS_WITHOUT_PROGRESS = 1000;
 
   // Fast sync config
   private final int fastSyncPivotDistance;
   private final float fastSyncFullValidationRate;
+  private final int fastSyncMinimumPeerCount;
+  private final int worldStateHashCountPerRequest;
+  private final int worldStateRequestParallelism;
+  private final int worldStateMaxRequestsWithoutProgress;
 
   // Block propagation config
   private final Range<Long> blockPropagationRange;
@@ -57,6 +65,10 @@ public class SynchronizerConfiguration {
       final SyncMode requestedSyncMode,
       final int fastSyncPivotDistance,
       final float fastSyncFullValidationRate,
+      final int fastSyncMinimumPeerCount,
+      final int worldStateHashCountPerRequest,
+      final int worldStateRequestParallelism,
+      final int worldStateMaxRequestsWithoutProgress,
       final Range<Long> blockPropagationRange,
       final Optional<SyncMode> syncMode,
       final long downloaderChangeTargetThresholdByHeight,
@@ -71,6 +83,10 @@ public class SynchronizerConfiguration {
     this.requestedSyncMode = requestedSyncMode;
     this.fastSyncPivotDistance = fastSyncPivotDistance;
     this.fastSyncFullValidationRate = fastSyncFullValidationRate;
+    this.fastSyncMinimumPeerCount = fastSyncMinimumPeerCount;
+    this.worldStateHashCountPerRequest = worldStateHashCountPerRequest;
+    this.worldStateRequestParallelism = worldStateRequestParallelism;
+    this.worldStateMaxRequestsWithoutProgress = worldStateMaxRequestsWithoutProgress;
     this.blockPropagationRange = blockPropagationRange;
     this.syncMode = syncMode;
     this.downloaderChangeTargetThresholdByHeight = downloaderChangeTargetThresholdByHeight;
@@ -91,12 +107,28 @@ public class SynchronizerConfiguration {
    * @return a new, validated config instance
    */
   public SynchronizerConfiguration validated(final Blockchain blockchain) {
+    return validated(blockchain, false);
+  }
+
+  /**
+   * Validates the sync configuration against the blockchain, to define the actual sync mode.
+   *
+   * @param blockchain the local blockchain
+   * @param fastSyncInProgress true if an earlier fast sync was interrupted. The local world state
+   *     is then incomplete, so fast sync is resumed whatever the requested mode.
+   * @return a new, validated config instance
+   */
+  public SynchronizerConfiguration validated(
+      final Blockchain blockchain, final boolean fastSyncInProgress) {
     if (syncMode.isPresent()) {
       return this;
     }
 
     final SyncMode actualSyncMode;
-    if (requestedSyncMode.equals(SyncMode.FAST)) {
+    if (fastSyncInProgress) {
+      actualSyncMode = SyncMode.FAST;
+      LOG.info("Resuming interrupted fast sync.");
+    } else if (requestedSyncMode.equals(SyncMode.FAST)) {
       final boolean blockchainIsEmpty =
           blockchain.getChainHeadBlockNumber() != BlockHeader.GENESIS_BLOCK_NUMBER;
       actualSyncMode = blockchainIsEmpty ? SyncMode.FULL : SyncMode.FAST;
@@ -112,6 +144,10 @@ public class SynchronizerConfiguration {
         requestedSyncMode,
         fastSyncPivotDistance,
         fastSyncFullValidationRate,
+        fastSyncMinimumPeerCount,
+        worldStateHashCountPerRequest,
+        worldStateRequestParallelism,
+        worldStateMaxRequestsWithoutProgress,
         blockPropagationRange,
         Optional.of(actualSyncMode),
         downloaderChangeTargetThresholdByHeight,
@@ -162,6 +198,44 @@ public class SynchronizerConfiguration {
     return fastSyncPivotDistance;
   }
 
+  /**
+   * The number of peers to wait for before choosing the pivot block, so that the choice does not
+   * rest on a single peer's view of the chain.
+   *
+   * @return the minimum number of peers to select a fast sync pivot block from.
+   */
+  public int fastSyncMinimumPeerCount() {
+    return fastSyncMinimumPeerCount;
+  }
+
+  /**
+   * The number of trie nodes and code entries asked for in a single GetNodeData request.
+   *
+   * @return the number of hashes per world state request.
+   */
+  public int worldStateHashCountPerRequest() {
+    return worldStateHashCountPerRequest;
+  }
+
+  /**
+   * The number of world state requests that may be outstanding at once, spread across peers.
+   *
+   * @return the maximum number of concurrent world state requests.
+   */
+  public int worldStateRequestParallelism() {
+    return worldStateRequestParallelism;
+  }
+
+  /**
+   * The number of world state requests in a row that may bring back no data before the download is
+   * given up, as peers no longer serving the world state of the pivot block have likely pruned it.
+   *
+   * @return the maximum number of consecutive world state requests without progress.
+   */
+  public int worldStateMaxRequestsWithoutProgress() {
+    return worldStateMaxRequestsWithoutProgress;
+  }
+
   public long downloaderChangeTargetThresholdByHeight() {
     return downloaderChangeTargetThresholdByHeight;
   }
@@ -217,6 +291,11 @@ public class SynchronizerConfiguration {
   public static class Builder {
     private int fastSyncPivotDistance = DEFAULT_PIVOT_DISTANCE_FROM_HEAD;
     private float fastSyncFullValidationRate = DEFAULT_FULL_VALIDATION_RATE;
+    private int fastSyncMinimumPeerCount = DEFAULT_FAST_SYNC_MINIMUM_PEERS;
+    private int worldStateHashCountPerRequest = DEFAULT_WORLD_STATE_HASH_COUNT_PER_REQUEST;
+    private int worldStateRequestParallelism = DEFAULT_WORLD_STATE_REQUEST_PARALLELISM;
+    private int worldStateMaxRequestsWithoutProgress =
+        DEFAULT_WORLD_STATE_MAX_REQUESTS_WITHOUT_PROGRESS;
     private SyncMode syncMode = SyncMode.FULL;
     private Range<Long> blockPropagationRange = Range.closed(-10L, 30L);
     private long downloaderChangeTargetThresholdByHeight = 20L;
@@ -239,6 +318,27 @@ public class SynchronizerConfiguration {
       return this;
     }
 
+    public Builder fastSyncMinimumPeerCount(final int fastSyncMinimumPeerCount) {
+      this.fastSyncMinimumPeerCount = fastSyncMinimumPeerCount;
+      return this;
+    }
+
+    public Builder worldStateHashCountPerRequest(final int worldStateHashCountPerRequest) {
+      this.worldStateHashCountPerRequest = worldStateHashCountPerRequest;
+      return this;
+    }
+
+    public Builder worldStateRequestParallelism(final int worldStateRequestParallelism) {
+      this.worldStateRequestParallelism = worldStateRequestParallelism;
+      return this;
+    }
+
+    public Builder worldStateMaxRequestsWithoutProgress(
+        final int worldStateMaxRequestsWithoutProgress) {
+      this.worldStateMaxRequestsWithoutProgress = worldStateMaxRequestsWithoutProgress;
+      return this;
+    }
+
     public Builder syncMode(final SyncMode mode) {
       this.syncMode = mode;
       return this;
@@ -300,10 +400,23 @@ public class SynchronizerConfiguration {
     }
 
     public SynchronizerConfiguration build() {
+      checkArgument(fastSyncMinimumPeerCount > 0, "Fast sync minimum peer count must be positive.");
+      checkArgument(
+          worldStateHashCountPerRequest > 0,
+          "World state hash count per request must be positive.");
+      checkArgument(
+          worldStateRequestParallelism > 0, "World state request parallelism must be positive.");
+      checkArgument(
+          worldStateMaxRequestsWithoutProgress > 0,
+          "World state max requests without progress must be positive.");
       return new SynchronizerConfiguration(
           syncMode,
           fastSyncPivotDistance,
           fastSyncFullValidationRate,
+          fastSyncMinimumPeerCount,
+          worldStateHashCountPerRequest,
+          worldStateRequestParallelism,
+          worldStateMaxRequestsWithoutProgress,
           blockPropagationRange,
           Optional.empty(),
           downloaderChangeTargetThresholdByHeight,
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.eth.sync.state;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import tech.pegasys.pantheon.ethereum.core.BlockHashFunction;
+import tech.pegasys.pantheon.ethereum.core.BlockHeader;
+import tech.pegasys.pantheon.ethereum.rlp.RLP;
+import tech.pegasys.pantheon.services.kvstore.KeyValueStorage;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+
+import java.util.Optional;
+
+/**
+ * Persists the pivot block of a fast sync, so that an interrupted fast sync resumes towards the
+ * same block after a restart. The pivot is only present while fast sync is in progress, and is
+ * cleared when fast sync starts over towards a new pivot.
+ */
+public class FastSyncStateStorage {
+  private static final BytesValue PIVOT_BLOCK_HEADER_KEY =
+      BytesValue.wrap("pivotBlockHeader".getBytes(UTF_8));
+
+  private final KeyValueStorage storage;
+  private final BlockHashFunction blockHashFunction;
+
+  public FastSyncStateStorage(
+      final KeyValueStorage storage, final BlockHashFunction blockHashFunction) {
+    this.storage = storage;
+    this.blockHashFunction = blockHashFunction;
+  }
+
+  /** @return true if a fast sync was started and has not yet completed. */
+  public boolean isFastSyncInProgress() {
+    return storage.get(PIVOT_BLOCK_HEADER_KEY).isPresent();
+  }
+
+  public Optional<BlockHeader> loadPivotBlockHeader() {
+    return storage
+        .get(PIVOT_BLOCK_HEADER_KEY)
+        .map(rlp -> BlockHeader.readFrom(RLP.input(rlp), blockHashFunction));
+  }
+
+  public void storePivotBlockHeader(final BlockHeader pivotBlockHeader) {
+    storage.put(PIVOT_BLOCK_HEADER_KEY, RLP.encode(pivotBlockHeader::writeTo));
+  }
+
+  /** Forgets the pivot block, so that the next fast sync attempt selects a new one. */
+  public void clearPivotBlockHeader() {
+    storage.remove(PIVOT_BLOCK_HEADER_KEY);
+  }
+
+  /** Records that fast sync has completed, by removing the pivot block. */
+  public void markComplete() {
+    storage.remove(PIVOT_BLOCK_HEADER_KEY);
+  }
+}
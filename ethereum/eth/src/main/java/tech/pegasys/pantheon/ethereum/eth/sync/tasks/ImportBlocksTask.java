@@ -18,6 +18,7 @@ import tech.pegasys.pantheon.ethereum.core.BlockHeader;
 import tech.pegasys.pantheon.ethereum.eth.manager.AbstractPeerTask;
 import tech.pegasys.pantheon.ethereum.eth.manager.EthContext;
 import tech.pegasys.pantheon.ethereum.eth.manager.EthPeer;
+import tech.pegasys.pantheon.ethereum.eth.transactions.TransactionSenderRecovery;
 import tech.pegasys.pantheon.ethereum.mainnet.HeaderValidationMode;
 import tech.pegasys.pantheon.ethereum.mainnet.ProtocolSchedule;
 import tech.pegasys.pantheon.ethereum.p2p.api.PeerConnection.PeerNotConnected;
@@ -77,6 +78,7 @@ public class ImportBlocksTask<C> extends AbstractPeerTask<List<Block>> {
     LOG.info("Importing blocks from {}", startNumber);
     downloadHeaders()
         .thenCompose(this::completeBlocks)
+        .thenCompose(this::recoverSenders)
         .thenCompose(this::importBlocks)
         .whenComplete(
             (r, t) -> {
@@ -113,6 +115,12 @@ public class ImportBlocksTask<C> extends AbstractPeerTask<List<Block>> {
     return executeSubTask(() -> ethContext.getScheduler().timeout(task));
   }
 
+  private CompletableFuture<List<Block>> recoverSenders(final List<Block> blocks) {
+    final TransactionSenderRecovery senderRecovery =
+        new TransactionSenderRecovery(ethContext.getScheduler());
+    return executeSubTask(() -> senderRecovery.recoverSendersForBlocks(blocks));
+  }
+
   private CompletableFuture<List<Block>> importBlocks(final List<Block> blocks) {
     // Don't import reference block if we already know about it
     if (protocolContext.getBlockchain().contains(referenceHeader.getHash())) {
@@ -15,10 +15,10 @@ package tech.pegasys.pantheon.ethereum.eth.sync.tasks;
 import tech.pegasys.pantheon.ethereum.ProtocolContext;
 import tech.pegasys.pantheon.ethereum.core.Block;
 import tech.pegasys.pantheon.ethereum.core.BlockHeader;
-import tech.pegasys.pantheon.ethereum.core.Transaction;
 import tech.pegasys.pantheon.ethereum.eth.manager.AbstractEthTask;
 import tech.pegasys.pantheon.ethereum.eth.manager.EthContext;
 import tech.pegasys.pantheon.ethereum.eth.sync.tasks.exceptions.InvalidBlockException;
+import tech.pegasys.pantheon.ethereum.eth.transactions.TransactionSenderRecovery;
 import tech.pegasys.pantheon.ethereum.mainnet.BlockHeaderValidator;
 import tech.pegasys.pantheon.ethereum.mainnet.HeaderValidationMode;
 import tech.pegasys.pantheon.ethereum.mainnet.ProtocolSchedule;
@@ -259,19 +259,9 @@ public class PipelinedImportChainSegmentTask<C> extends AbstractEthTask<List<Blo
         "Extracting sender {} to {}",
         blocks.get(0).getHeader().getNumber(),
         blocks.get(blocks.size() - 1).getHeader().getNumber());
-    return executeWorkerSubTask(
-        ethContext.getScheduler(),
-        () -> {
-          final CompletableFuture<List<Block>> result = new CompletableFuture<>();
-          for (final Block block : blocks) {
-            for (final Transaction transaction : block.getBody().getTransactions()) {
-              // This method internally performs the transaction sender extraction.
-              transaction.getSender();
-            }
-          }
-          result.complete(blocks);
-          return result;
-        });
+    final TransactionSenderRecovery senderRecovery =
+        new TransactionSenderRecovery(ethContext.getScheduler());
+    return executeSubTask(() -> senderRecovery.recoverSendersForBlocks(blocks));
   }
 
   private BlockHeader firstHeader() {
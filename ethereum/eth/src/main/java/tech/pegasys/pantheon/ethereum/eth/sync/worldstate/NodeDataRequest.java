@@ -0,0 +1,159 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.eth.sync.worldstate;
+
+import tech.pegasys.pantheon.ethereum.core.Hash;
+import tech.pegasys.pantheon.ethereum.rlp.RLP;
+import tech.pegasys.pantheon.ethereum.rlp.RLPInput;
+import tech.pegasys.pantheon.ethereum.trie.MerklePatriciaTrie;
+import tech.pegasys.pantheon.ethereum.trie.TrieNodeDecoder;
+import tech.pegasys.pantheon.ethereum.worldstate.WorldStateStorage;
+import tech.pegasys.pantheon.util.bytes.Bytes32;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+import tech.pegasys.pantheon.util.bytes.BytesValues;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A request for one piece of world state, identified by its hash and by what kind of data it is.
+ */
+public class NodeDataRequest {
+
+  public enum Kind {
+    ACCOUNT_TRIE_NODE,
+    STORAGE_TRIE_NODE,
+    CODE
+  }
+
+  private static final int SERIALIZED_SIZE = 1 + Bytes32.SIZE;
+
+  private final Kind kind;
+  private final Hash hash;
+
+  private NodeDataRequest(final Kind kind, final Hash hash) {
+    this.kind = kind;
+    this.hash = hash;
+  }
+
+  public static NodeDataRequest createAccountTrieNodeRequest(final Hash hash) {
+    return new NodeDataRequest(Kind.ACCOUNT_TRIE_NODE, hash);
+  }
+
+  public static NodeDataRequest createStorageTrieNodeRequest(final Hash hash) {
+    return new NodeDataRequest(Kind.STORAGE_TRIE_NODE, hash);
+  }
+
+  public static NodeDataRequest createCodeRequest(final Hash hash) {
+    return new NodeDataRequest(Kind.CODE, hash);
+  }
+
+  public Kind getKind() {
+    return kind;
+  }
+
+  public Hash getHash() {
+    return hash;
+  }
+
+  /**
+   * @param storage The storage to look in.
+   * @return The data for this request if it is already held locally.
+   */
+  public Optional<BytesValue> getExistingData(final WorldStateStorage storage) {
+    switch (kind) {
+      case ACCOUNT_TRIE_NODE:
+        return storage.getAccountStateTrieNode(hash);
+      case STORAGE_TRIE_NODE:
+        return storage.getAccountStorageTrieNode(hash);
+      default:
+        return storage.getCode(hash);
+    }
+  }
+
+  /**
+   * @param updater The updater to write the data with.
+   * @param data The data for this request, already verified against its hash.
+   */
+  public void persist(final WorldStateStorage.Updater updater, final BytesValue data) {
+    switch (kind) {
+      case ACCOUNT_TRIE_NODE:
+        updater.putAccountStateTrieNode(hash, data);
+        break;
+      case STORAGE_TRIE_NODE:
+        updater.putAccountStorageTrieNode(hash, data);
+        break;
+      default:
+        updater.putCode(data);
+    }
+  }
+
+  /**
+   * Decodes the data for this request to find the state it references: child trie nodes, and for
+   * accounts, their storage trie and code.
+   *
+   * @param data The data for this request.
+   * @return Requests for everything the data references.
+   */
+  public List<NodeDataRequest> getChildRequests(final BytesValue data) {
+    final List<NodeDataRequest> children = new ArrayList<>();
+    if (kind == Kind.CODE) {
+      return children;
+    }
+    TrieNodeDecoder.visitReferences(
+        data,
+        childHash -> children.add(new NodeDataRequest(kind, Hash.wrap(childHash))),
+        value -> {
+          if (kind == Kind.ACCOUNT_TRIE_NODE) {
+            addAccountRequests(value, children);
+          }
+        });
+    return children;
+  }
+
+  private static void addAccountRequests(
+      final BytesValue account, final List<NodeDataRequest> requests) {
+    final RLPInput in = RLP.input(account);
+    in.enterList();
+    in.skipNext(); // nonce
+    in.skipNext(); // balance
+    final Hash storageRoot = Hash.wrap(in.readBytes32());
+    final Hash codeHash = Hash.wrap(in.readBytes32());
+    in.leaveList();
+
+    if (!storageRoot.equals(MerklePatriciaTrie.EMPTY_TRIE_ROOT_HASH)) {
+      requests.add(createStorageTrieNodeRequest(storageRoot));
+    }
+    if (!codeHash.equals(Hash.EMPTY)) {
+      requests.add(createCodeRequest(codeHash));
+    }
+  }
+
+  public BytesValue serialize() {
+    return BytesValues.concatenate(BytesValue.of(kind.ordinal()), hash);
+  }
+
+  public static NodeDataRequest deserialize(final BytesValue serialized) {
+    if (serialized.size() != SERIALIZED_SIZE) {
+      throw new IllegalArgumentException("Invalid serialized node data request " + serialized);
+    }
+    final Kind kind = Kind.values()[serialized.get(0)];
+    return new NodeDataRequest(kind, Hash.wrap(Bytes32.wrap(serialized, 1)));
+  }
+
+  @Override
+  public String toString() {
+    return "NodeDataRequest{" + "kind=" + kind + ", hash=" + hash + "}";
+  }
+}
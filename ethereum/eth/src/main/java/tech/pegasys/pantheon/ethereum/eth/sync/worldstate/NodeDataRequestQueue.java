@@ -0,0 +1,135 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.eth.sync.worldstate;
+
+import tech.pegasys.pantheon.services.kvstore.KeyValueStorage;
+import tech.pegasys.pantheon.services.kvstore.KeyValueStorage.Transaction;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import com.google.common.primitives.Longs;
+
+/**
+ * A first-in, first-out queue of world state requests kept in a {@link KeyValueStorage}, so that a
+ * download can resume where it left off after a restart.
+ *
+ * <p>Polling a request does not remove it from storage. A request only leaves storage once it is
+ * completed, in the same transaction that adds the requests for its children, so a request that was
+ * in flight when the node stopped is simply polled again on the next start.
+ */
+public class NodeDataRequestQueue {
+
+  private static final byte REQUEST_PREFIX = 1;
+
+  private final KeyValueStorage storage;
+  private final Deque<NodeDataRequest> retries = new ArrayDeque<>();
+  private final Map<NodeDataRequest, Long> outstanding = new IdentityHashMap<>();
+  private long head;
+  private long tail;
+
+  public NodeDataRequestQueue(final KeyValueStorage storage) {
+    this.storage = storage;
+    head = Long.MAX_VALUE;
+    tail = 0;
+    storage
+        .entries()
+        .map(KeyValueStorage.Entry::getKey)
+        .filter(key -> key.size() == 1 + Long.BYTES && key.get(0) == REQUEST_PREFIX)
+        .forEach(
+            key -> {
+              final long index = Longs.fromByteArray(key.slice(1).extractArray());
+              head = Math.min(head, index);
+              tail = Math.max(tail, index + 1);
+            });
+    head = Math.min(head, tail);
+  }
+
+  /** @param request The request to add to the end of the queue. */
+  public synchronized void add(final NodeDataRequest request) {
+    final Transaction transaction = storage.getStartTransaction();
+    transaction.put(key(tail++), request.serialize());
+    transaction.commit();
+  }
+
+  /**
+   * Takes the next request to send. Requests handed back through {@link #retry} come first.
+   *
+   * @return The next request, or empty if there are none left to send.
+   */
+  public synchronized Optional<NodeDataRequest> poll() {
+    if (!retries.isEmpty()) {
+      return Optional.of(retries.poll());
+    }
+    while (head < tail) {
+      final long index = head++;
+      final Optional<BytesValue> serialized = storage.get(key(index));
+      if (serialized.isPresent()) {
+        final NodeDataRequest request = NodeDataRequest.deserialize(serialized.get());
+        outstanding.put(request, index);
+        return Optional.of(request);
+      }
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * Hands back a polled request that could not be fulfilled, so that it is polled again.
+   *
+   * @param request A request previously returned by {@link #poll()}.
+   */
+  public synchronized void retry(final NodeDataRequest request) {
+    retries.add(request);
+  }
+
+  /**
+   * Atomically removes fulfilled requests and queues the requests for the data they reference. The
+   * data for the completed requests must already be persisted.
+   *
+   * @param completed Requests previously returned by {@link #poll()} whose data is now stored.
+   * @param children Requests for the data referenced by the completed requests.
+   */
+  public synchronized void complete(
+      final Collection<NodeDataRequest> completed, final Collection<NodeDataRequest> children) {
+    final Transaction transaction = storage.getStartTransaction();
+    for (final NodeDataRequest child : children) {
+      transaction.put(key(tail++), child.serialize());
+    }
+    for (final NodeDataRequest request : completed) {
+      final Long index = outstanding.remove(request);
+      if (index != null) {
+        transaction.remove(key(index));
+      }
+    }
+    transaction.commit();
+  }
+
+  /** @return True if every request added to the queue has been completed. */
+  public synchronized boolean isEmpty() {
+    return head >= tail && retries.isEmpty() && outstanding.isEmpty();
+  }
+
+  /** @return The number of requests that have not yet been sent. */
+  public synchronized long pendingCount() {
+    return tail - head + retries.size();
+  }
+
+  private static BytesValue key(final long index) {
+    return BytesValue.of(REQUEST_PREFIX).concat(BytesValue.wrap(Longs.toByteArray(index)));
+  }
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.eth.sync.worldstate;
+
+import tech.pegasys.pantheon.ethereum.core.BlockHeader;
+import tech.pegasys.pantheon.ethereum.core.Hash;
+import tech.pegasys.pantheon.ethereum.eth.manager.AbstractPeerTask.PeerTaskResult;
+import tech.pegasys.pantheon.ethereum.eth.manager.EthContext;
+import tech.pegasys.pantheon.ethereum.eth.sync.tasks.GetNodeDataFromPeerTask;
+import tech.pegasys.pantheon.ethereum.worldstate.WorldStateStorage;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Downloads the complete world state for a block from peers, by walking the account trie, the
+ * storage tries and the code the accounts reference, breadth first. Nodes are requested in batches
+ * from several peers in parallel, and every node is verified against its hash before it is
+ * persisted.
+ *
+ * <p>Progress is kept in a {@link NodeDataRequestQueue}. A node is stored first, and its request
+ * only leaves the queue afterwards, in the same transaction that queues the requests for its
+ * children. A node present in storage therefore either has its missing descendants queued, or is
+ * still queued itself and has its children queued when it is polled again, so any referenced node
+ * that is already present can be skipped. This lets a download resume after a restart, and skips
+ * state shared between accounts.
+ *
+ * <p>The download fails once a number of requests in a row have brought no data, as peers no longer
+ * serving the world state of a block usually means they have pruned it, so a new pivot is needed.
+ */
+public class WorldStateDownloader {
+  private static final Logger LOG = LogManager.getLogger();
+  private static final Duration RETRY_DELAY = Duration.ofSeconds(1);
+  private static final long PROGRESS_LOG_INTERVAL = 100_000;
+
+  private final EthContext ethContext;
+  private final WorldStateStorage worldStateStorage;
+  private final NodeDataRequestQueue pendingRequests;
+  private final int hashCountPerRequest;
+  private final int maxOutstandingRequests;
+  private final int maxRequestsWithoutProgress;
+  private final AtomicLong downloadedNodes = new AtomicLong();
+
+  private int outstandingRequests;
+  private int requestsWithoutProgress;
+  private Optional<CompletableFuture<Void>> future = Optional.empty();
+  private BlockHeader header;
+
+  public WorldStateDownloader(
+      final EthContext ethContext,
+      final WorldStateStorage worldStateStorage,
+      final NodeDataRequestQueue pendingRequests,
+      final int hashCountPerRequest,
+      final int maxOutstandingRequests,
+      final int maxRequestsWithoutProgress) {
+    this.ethContext = ethContext;
+    this.worldStateStorage = worldStateStorage;
+    this.pendingRequests = pendingRequests;
+    this.hashCountPerRequest = hashCountPerRequest;
+    this.maxOutstandingRequests = maxOutstandingRequests;
+    this.maxRequestsWithoutProgress = maxRequestsWithoutProgress;
+  }
+
+  /**
+   * Downloads the world state of the given block, resuming any download left in the queue. The
+   * queue may hold requests for the world state of an earlier pivot block, which are completed as
+   * well, since the nodes already stored for it depend on them.
+   *
+   * @param header The header of the block whose world state to download.
+   * @return A future completed once the whole world state is stored, or completed exceptionally
+   *     once peers stop serving it.
+   */
+  public synchronized CompletableFuture<Void> run(final BlockHeader header) {
+    if (future.isPresent()) {
+      throw new IllegalStateException("World state download already started.");
+    }
+    this.header = header;
+    final CompletableFuture<Void> result = new CompletableFuture<>();
+    future = Optional.of(result);
+
+    final Hash stateRoot = header.getStateRoot();
+    final boolean rootPresent = worldStateStorage.getAccountStateTrieNode(stateRoot).isPresent();
+    if (pendingRequests.isEmpty()) {
+      if (rootPresent) {
+        LOG.info("World state for block {} is already present.", header.getNumber());
+        result.complete(null);
+        return result;
+      }
+    } else {
+      LOG.info("Resuming world state download with {} pending requests.", pendingCount());
+    }
+    if (!rootPresent) {
+      pendingRequests.add(NodeDataRequest.createAccountTrieNodeRequest(stateRoot));
+    }
+    LOG.info("Downloading world state for block {} with root {}.", header.getNumber(), stateRoot);
+    requestNodeData();
+    return result;
+  }
+
+  /** @return The number of trie nodes and code entries stored by this downloader. */
+  public long downloadedNodeCount() {
+    return downloadedNodes.get();
+  }
+
+  /** @return The number of requests that have not yet been sent. */
+  public long pendingCount() {
+    return pendingRequests.pendingCount();
+  }
+
+  private synchronized void requestNodeData() {
+    final CompletableFuture<Void> result = future.get();
+    while (!result.isDone() && outstandingRequests < maxOutstandingRequests) {
+      final List<NodeDataRequest> requests = pollRequests();
+      if (requests.isEmpty()) {
+        if (outstandingRequests == 0 && pendingRequests.isEmpty()) {
+          LOG.info(
+              "Finished downloading world state for block {}, {} nodes downloaded.",
+              header.getNumber(),
+              downloadedNodes.get());
+          result.complete(null);
+        }
+        return;
+      }
+      outstandingRequests++;
+      final List<Hash> hashes =
+          requests.stream().map(NodeDataRequest::getHash).distinct().collect(Collectors.toList());
+      GetNodeDataFromPeerTask.forHashes(ethContext, hashes, header.getNumber())
+          .run()
+          .whenComplete(
+              (response, error) ->
+                  ethContext
+                      .getScheduler()
+                      .scheduleWorkerTask(() -> handleResponse(requests, response, error)));
+    }
+  }
+
+  private List<NodeDataRequest> pollRequests() {
+    final List<NodeDataRequest> requests = new ArrayList<>();
+    final List<NodeDataRequest> present = new ArrayList<>();
+    final List<NodeDataRequest> presentChildren = new ArrayList<>();
+    while (requests.size() < hashCountPerRequest) {
+      final Optional<NodeDataRequest> maybeRequest = pendingRequests.poll();
+      if (!maybeRequest.isPresent()) {
+        break;
+      }
+      final NodeDataRequest request = maybeRequest.get();
+      // Only a request interrupted by a restart can find its data already stored. Its children
+      // may not have been queued, so queue them now.
+      final Optional<BytesValue> existingData = request.getExistingData(worldStateStorage);
+      if (existingData.isPresent()) {
+        present.add(request);
+        presentChildren.addAll(missingChildren(request, existingData.get()));
+      } else {
+        requests.add(request);
+      }
+    }
+    if (!present.isEmpty()) {
+      pendingRequests.complete(present, presentChildren);
+      if (requests.isEmpty()) {
+        return pollRequests();
+      }
+    }
+    return requests;
+  }
+
+  private void handleResponse(
+      final List<NodeDataRequest> requests,
+      final PeerTaskResult<Map<Hash, BytesValue>> response,
+      final Throwable error) {
+    if (future.get().isDone()) {
+      // A download that has failed leaves its requests to the next attempt, which may already be
+      // using the queue.
+      synchronized (this) {
+        outstandingRequests--;
+      }
+      return;
+    }
+    final Map<Hash, BytesValue> nodeData =
+        error == null ? response.getResult() : Collections.emptyMap();
+    if (error != null) {
+      LOG.debug("Failed to download world state nodes: {}", error.toString());
+    }
+
+    final List<NodeDataRequest> completed = new ArrayList<>();
+    final List<NodeDataRequest> children = new ArrayList<>();
+    final WorldStateStorage.Updater updater = worldStateStorage.updater();
+    for (final NodeDataRequest request : requests) {
+      final BytesValue data = nodeData.get(request.getHash());
+      if (data == null) {
+        pendingRequests.retry(request);
+        continue;
+      }
+      request.persist(updater, data);
+      completed.add(request);
+      children.addAll(missingChildren(request, data));
+    }
+    try {
+      if (!completed.isEmpty()) {
+        updater.commit();
+        pendingRequests.complete(completed, children);
+        logProgress(downloadedNodes.addAndGet(completed.size()), completed.size());
+      }
+    } catch (final RuntimeException e) {
+      LOG.error("Failed to store world state nodes.", e);
+      future.get().completeExceptionally(e);
+    }
+
+    final boolean unavailable;
+    synchronized (this) {
+      outstandingRequests--;
+      requestsWithoutProgress = completed.isEmpty() ? requestsWithoutProgress + 1 : 0;
+      unavailable = requestsWithoutProgress >= maxRequestsWithoutProgress;
+    }
+    if (unavailable) {
+      LOG.warn(
+          "No world state nodes received for block {} in {} requests.",
+          header.getNumber(),
+          maxRequestsWithoutProgress);
+      future
+          .get()
+          .completeExceptionally(
+              new IllegalStateException(
+                  "World state for block " + header.getNumber() + " is not available from peers"));
+    } else if (completed.isEmpty()) {
+      // No peer could serve these nodes right now, so back off before asking again.
+      ethContext.getScheduler().scheduleFutureTask(this::requestNodeData, RETRY_DELAY);
+    } else {
+      requestNodeData();
+    }
+  }
+
+  private List<NodeDataRequest> missingChildren(
+      final NodeDataRequest request, final BytesValue data) {
+    return request
+        .getChildRequests(data)
+        .stream()
+        .filter(child -> !child.getExistingData(worldStateStorage).isPresent())
+        .collect(Collectors.toList());
+  }
+
+  private void logProgress(final long total, final int added) {
+    if (total / PROGRESS_LOG_INTERVAL != (total - added) / PROGRESS_LOG_INTERVAL) {
+      LOG.info(
+          "Downloaded {} world state nodes, {} requests pending.",
+          total,
+          pendingRequests.pendingCount());
+    }
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.eth.transactions;
+
+import tech.pegasys.pantheon.ethereum.core.Block;
+import tech.pegasys.pantheon.ethereum.core.Transaction;
+import tech.pegasys.pantheon.ethereum.eth.manager.EthScheduler;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Recovers the senders of a batch of transactions across the scheduler's computation pool.
+ *
+ * <p>Sender recovery is an ECDSA public key recovery per transaction and dominates the cost of
+ * validating and executing a block or a transactions message. {@link Transaction#getSender()}
+ * caches the recovered sender, so recovering senders for a whole batch up front means the
+ * single-threaded validation and import steps that follow only ever hit the cache.
+ */
+public class TransactionSenderRecovery {
+
+  private static final int MIN_TRANSACTIONS_PER_TASK = 16;
+
+  private final EthScheduler scheduler;
+  private final int parallelism;
+
+  public TransactionSenderRecovery(final EthScheduler scheduler) {
+    this(scheduler, Runtime.getRuntime().availableProcessors());
+  }
+
+  public TransactionSenderRecovery(final EthScheduler scheduler, final int parallelism) {
+    this.scheduler = scheduler;
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Recovers the senders of every transaction in the given blocks.
+   *
+   * @param blocks the blocks whose transaction senders are recovered
+   * @return a future completed with the given blocks once all senders have been recovered
+   */
+  public CompletableFuture<List<Block>> recoverSendersForBlocks(final List<Block> blocks) {
+    final List<Transaction> transactions = new ArrayList<>();
+    for (final Block block : blocks) {
+      transactions.addAll(block.getBody().getTransactions());
+    }
+    return recoverSenders(transactions).thenApply(ignore -> blocks);
+  }
+
+  /**
+   * Recovers the senders of the given transactions.
+   *
+   * <p>Transactions with an invalid signature are skipped, leaving validation to reject them with a
+   * proper reason.
+   *
+   * @param transactions the transactions whose senders are recovered
+   * @return a future completed once all senders have been recovered
+   */
+  public CompletableFuture<Void> recoverSenders(final Collection<Transaction> transactions) {
+    if (transactions.isEmpty()) {
+      return CompletableFuture.completedFuture(null);
+    }
+    final int batchSize =
+        Math.max(MIN_TRANSACTIONS_PER_TASK, (transactions.size() + parallelism - 1) / parallelism);
+    final List<List<Transaction>> batches =
+        Lists.partition(new ArrayList<>(transactions), batchSize);
+    final CompletableFuture<?>[] recoveries = new CompletableFuture<?>[batches.size()];
+    for (int i = 0; i < batches.size(); i++) {
+      final List<Transaction> batch = batches.get(i);
+      recoveries[i] = scheduler.scheduleComputationTask(() -> recoverBatch(batch));
+    }
+    return CompletableFuture.allOf(recoveries);
+  }
+
+  private static Void recoverBatch(final List<Transaction> batch) {
+    for (final Transaction transaction : batch) {
+      try {
+        // The sender is cached on the transaction once recovered.
+        transaction.getSender();
+      } catch (final IllegalStateException e) {
+        // Invalid signature, rejected during validation.
+      }
+    }
+    return null;
+  }
+}
@@ -32,11 +32,15 @@ class TransactionsMessageProcessor {
   private static final Logger LOG = getLogger();
   private final PeerTransactionTracker transactionTracker;
   private final TransactionPool transactionPool;
+  private final TransactionSenderRecovery senderRecovery;
 
   public TransactionsMessageProcessor(
-      final PeerTransactionTracker transactionTracker, final TransactionPool transactionPool) {
+      final PeerTransactionTracker transactionTracker,
+      final TransactionPool transactionPool,
+      final TransactionSenderRecovery senderRecovery) {
     this.transactionTracker = transactionTracker;
     this.transactionPool = transactionPool;
+    this.senderRecovery = senderRecovery;
   }
 
   void processTransactionsMessage(
@@ -48,7 +52,16 @@ class TransactionsMessageProcessor {
           transactionsMessage.transactions(Transaction::readFrom);
       final Set<Transaction> transactions = Sets.newHashSet(readTransactions);
       transactionTracker.markTransactionsAsSeen(peer, transactions);
-      transactionPool.addRemoteTransactions(transactions);
+      // Recover senders in parallel so pool validation doesn't do it one transaction at a time.
+      // Transactions whose sender could not be recovered are rejected by the pool's validation.
+      senderRecovery
+          .recoverSenders(transactions)
+          .thenRun(() -> transactionPool.addRemoteTransactions(transactions))
+          .exceptionally(
+              error -> {
+                LOG.warn("Failed to add transactions received from {}", peer, error);
+                return null;
+              });
     } catch (final RLPException ex) {
       if (peer != null) {
         peer.disconnect(DisconnectReason.BREACH_OF_PROTOCOL);
@@ -25,6 +25,7 @@ import tech.pegasys.pantheon.ethereum.core.BlockHeader;
 import tech.pegasys.pantheon.ethereum.core.Hash;
 import tech.pegasys.pantheon.ethereum.core.TransactionReceipt;
 import tech.pegasys.pantheon.ethereum.db.DefaultMutableBlockchain;
+import tech.pegasys.pantheon.ethereum.db.WorldStateArchive;
 import tech.pegasys.pantheon.ethereum.eth.EthProtocol;
 import tech.pegasys.pantheon.ethereum.eth.EthProtocol.EthVersion;
 import tech.pegasys.pantheon.ethereum.eth.manager.MockPeerConnection.PeerSendHandler;
@@ -35,8 +36,10 @@ import tech.pegasys.pantheon.ethereum.eth.messages.EthPV62;
 import tech.pegasys.pantheon.ethereum.eth.messages.EthPV63;
 import tech.pegasys.pantheon.ethereum.eth.messages.GetBlockBodiesMessage;
 import tech.pegasys.pantheon.ethereum.eth.messages.GetBlockHeadersMessage;
+import tech.pegasys.pantheon.ethereum.eth.messages.GetNodeDataMessage;
 import tech.pegasys.pantheon.ethereum.eth.messages.GetReceiptsMessage;
 import tech.pegasys.pantheon.ethereum.eth.messages.NewBlockMessage;
+import tech.pegasys.pantheon.ethereum.eth.messages.NodeDataMessage;
 import tech.pegasys.pantheon.ethereum.eth.messages.ReceiptsMessage;
 import tech.pegasys.pantheon.ethereum.eth.messages.StatusMessage;
 import tech.pegasys.pantheon.ethereum.mainnet.MainnetBlockHashFunction;
@@ -49,6 +52,7 @@ import tech.pegasys.pantheon.ethereum.p2p.wire.DefaultMessage;
 import tech.pegasys.pantheon.ethereum.testutil.BlockDataGenerator;
 import tech.pegasys.pantheon.services.kvstore.InMemoryKeyValueStorage;
 import tech.pegasys.pantheon.services.kvstore.KeyValueStorage;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
 import tech.pegasys.pantheon.util.uint.UInt256;
 
 import java.util.ArrayList;
@@ -72,6 +76,7 @@ import org.mockito.ArgumentCaptor;
 public final class EthProtocolManagerTest {
 
   private static Blockchain blockchain;
+  private static WorldStateArchive worldStateArchive;
   private static ProtocolSchedule<Void> protocolSchedule;
   private static BlockDataGenerator gen;
 
@@ -81,13 +86,15 @@ public final class EthProtocolManagerTest {
     final BlockchainSetupUtil<Void> blockchainSetupUtil = BlockchainSetupUtil.forTesting();
     blockchainSetupUtil.importAllBlocks();
     blockchain = blockchainSetupUtil.getBlockchain();
+    worldStateArchive = blockchainSetupUtil.getWorldArchive();
     protocolSchedule = blockchainSetupUtil.getProtocolSchedule();
     assert (blockchainSetupUtil.getMaxBlockNumber() >= 20L);
   }
 
   @Test
   public void disconnectOnUnsolicitedMessage() {
-    try (final EthProtocolManager ethManager = new EthProtocolManager(blockchain, 1, true, 1)) {
+    try (final EthProtocolManager ethManager =
+        new EthProtocolManager(blockchain, worldStateArchive, 1, true, 1)) {
       final MessageData messageData =
           BlockHeadersMessage.create(Collections.singletonList(blockchain.getBlockHeader(1).get()));
       final MockPeerConnection peer = setupPeer(ethManager, (cap, msg, conn) -> {});
@@ -98,7 +105,8 @@ public final class EthProtocolManagerTest {
 
   @Test
   public void disconnectOnFailureToSendStatusMessage() {
-    try (final EthProtocolManager ethManager = new EthProtocolManager(blockchain, 1, true, 1)) {
+    try (final EthProtocolManager ethManager =
+        new EthProtocolManager(blockchain, worldStateArchive, 1, true, 1)) {
       final MessageData messageData =
           BlockHeadersMessage.create(Collections.singletonList(blockchain.getBlockHeader(1).get()));
       final MockPeerConnection peer =
@@ -110,7 +118,8 @@ public final class EthProtocolManagerTest {
 
   @Test
   public void disconnectOnWrongChainId() {
-    try (final EthProtocolManager ethManager = new EthProtocolManager(blockchain, 1, true, 1)) {
+    try (final EthProtocolManager ethManager =
+        new EthProtocolManager(blockchain, worldStateArchive, 1, true, 1)) {
       final MessageData messageData =
           BlockHeadersMessage.create(Collections.singletonList(blockchain.getBlockHeader(1).get()));
       final MockPeerConnection peer =
@@ -133,7 +142,8 @@ public final class EthProtocolManagerTest {
 
   @Test
   public void disconnectOnWrongGenesisHash() {
-    try (final EthProtocolManager ethManager = new EthProtocolManager(blockchain, 1, true, 1)) {
+    try (final EthProtocolManager ethManager =
+        new EthProtocolManager(blockchain, worldStateArchive, 1, true, 1)) {
       final MessageData messageData =
           BlockHeadersMessage.create(Collections.singletonList(blockchain.getBlockHeader(1).get()));
       final MockPeerConnection peer =
@@ -156,7 +166,8 @@ public final class EthProtocolManagerTest {
 
   @Test(expected = ConditionTimeoutException.class)
   public void doNotDisconnectOnValidMessage() {
-    try (final EthProtocolManager ethManager = new EthProtocolManager(blockchain, 1, true, 1)) {
+    try (final EthProtocolManager ethManager =
+        new EthProtocolManager(blockchain, worldStateArchive, 1, true, 1)) {
       final MessageData messageData =
           GetBlockBodiesMessage.create(Collections.singletonList(gen.hash()));
       final MockPeerConnection peer = setupPeer(ethManager, (cap, msg, conn) -> {});
@@ -171,7 +182,8 @@ public final class EthProtocolManagerTest {
   @Test
   public void respondToGetHeaders() throws ExecutionException, InterruptedException {
     final CompletableFuture<Void> done = new CompletableFuture<>();
-    try (final EthProtocolManager ethManager = new EthProtocolManager(blockchain, 1, true, 1)) {
+    try (final EthProtocolManager ethManager =
+        new EthProtocolManager(blockchain, worldStateArchive, 1, true, 1)) {
       final long startBlock = 5L;
       final int blockCount = 5;
       final MessageData messageData =
@@ -204,7 +216,7 @@ public final class EthProtocolManagerTest {
     final CompletableFuture<Void> done = new CompletableFuture<>();
     final int limit = 5;
     try (final EthProtocolManager ethManager =
-        new EthProtocolManager(blockchain, 1, true, 1, limit)) {
+        new EthProtocolManager(blockchain, worldStateArchive, 1, true, 1, limit)) {
       final long startBlock = 5L;
       final int blockCount = 10;
       final MessageData messageData =
@@ -235,7 +247,8 @@ public final class EthProtocolManagerTest {
   @Test
   public void respondToGetHeadersReversed() throws ExecutionException, InterruptedException {
     final CompletableFuture<Void> done = new CompletableFuture<>();
-    try (final EthProtocolManager ethManager = new EthProtocolManager(blockchain, 1, true, 1)) {
+    try (final EthProtocolManager ethManager =
+        new EthProtocolManager(blockchain, worldStateArchive, 1, true, 1)) {
       final long endBlock = 10L;
       final int blockCount = 5;
       final MessageData messageData = GetBlockHeadersMessage.create(endBlock, blockCount, true, 0);
@@ -265,7 +278,8 @@ public final class EthProtocolManagerTest {
   @Test
   public void respondToGetHeadersWithSkip() throws ExecutionException, InterruptedException {
     final CompletableFuture<Void> done = new CompletableFuture<>();
-    try (final EthProtocolManager ethManager = new EthProtocolManager(blockchain, 1, true, 1)) {
+    try (final EthProtocolManager ethManager =
+        new EthProtocolManager(blockchain, worldStateArchive, 1, true, 1)) {
       final long startBlock = 5L;
       final int blockCount = 5;
       final int skip = 1;
@@ -298,7 +312,8 @@ public final class EthProtocolManagerTest {
   public void respondToGetHeadersReversedWithSkip()
       throws ExecutionException, InterruptedException {
     final CompletableFuture<Void> done = new CompletableFuture<>();
-    try (final EthProtocolManager ethManager = new EthProtocolManager(blockchain, 1, true, 1)) {
+    try (final EthProtocolManager ethManager =
+        new EthProtocolManager(blockchain, worldStateArchive, 1, true, 1)) {
       final long endBlock = 10L;
       final int blockCount = 5;
       final int skip = 1;
@@ -352,7 +367,8 @@ public final class EthProtocolManagerTest {
   @Test
   public void respondToGetHeadersPartial() throws ExecutionException, InterruptedException {
     final CompletableFuture<Void> done = new CompletableFuture<>();
-    try (final EthProtocolManager ethManager = new EthProtocolManager(blockchain, 1, true, 1)) {
+    try (final EthProtocolManager ethManager =
+        new EthProtocolManager(blockchain, worldStateArchive, 1, true, 1)) {
       final long startBlock = blockchain.getChainHeadBlockNumber() - 1L;
       final int blockCount = 5;
       final MessageData messageData =
@@ -383,7 +399,8 @@ public final class EthProtocolManagerTest {
   @Test
   public void respondToGetHeadersEmpty() throws ExecutionException, InterruptedException {
     final CompletableFuture<Void> done = new CompletableFuture<>();
-    try (final EthProtocolManager ethManager = new EthProtocolManager(blockchain, 1, true, 1)) {
+    try (final EthProtocolManager ethManager =
+        new EthProtocolManager(blockchain, worldStateArchive, 1, true, 1)) {
       final long startBlock = blockchain.getChainHeadBlockNumber() + 1;
       final int blockCount = 5;
       final MessageData messageData =
@@ -411,7 +428,8 @@ public final class EthProtocolManagerTest {
   @Test
   public void respondToGetBodies() throws ExecutionException, InterruptedException {
     final CompletableFuture<Void> done = new CompletableFuture<>();
-    try (final EthProtocolManager ethManager = new EthProtocolManager(blockchain, 1, true, 1)) {
+    try (final EthProtocolManager ethManager =
+        new EthProtocolManager(blockchain, worldStateArchive, 1, true, 1)) {
       // Setup blocks query
       final long startBlock = blockchain.getChainHeadBlockNumber() - 5;
       final int blockCount = 2;
@@ -456,7 +474,7 @@ public final class EthProtocolManagerTest {
     final CompletableFuture<Void> done = new CompletableFuture<>();
     final int limit = 5;
     try (final EthProtocolManager ethManager =
-        new EthProtocolManager(blockchain, 1, true, 1, limit)) {
+        new EthProtocolManager(blockchain, worldStateArchive, 1, true, 1, limit)) {
       // Setup blocks query
       final int blockCount = 10;
       final long startBlock = blockchain.getChainHeadBlockNumber() - blockCount;
@@ -499,7 +517,8 @@ public final class EthProtocolManagerTest {
   @Test
   public void respondToGetBodiesPartial() throws ExecutionException, InterruptedException {
     final CompletableFuture<Void> done = new CompletableFuture<>();
-    try (final EthProtocolManager ethManager = new EthProtocolManager(blockchain, 1, true, 1)) {
+    try (final EthProtocolManager ethManager =
+        new EthProtocolManager(blockchain, worldStateArchive, 1, true, 1)) {
       // Setup blocks query
       final long expectedBlockNumber = blockchain.getChainHeadBlockNumber() - 1;
       final BlockHeader header = blockchain.getBlockHeader(expectedBlockNumber).get();
@@ -536,7 +555,8 @@ public final class EthProtocolManagerTest {
   @Test
   public void respondToGetReceipts() throws ExecutionException, InterruptedException {
     final CompletableFuture<Void> done = new CompletableFuture<>();
-    try (final EthProtocolManager ethManager = new EthProtocolManager(blockchain, 1, true, 1)) {
+    try (final EthProtocolManager ethManager =
+        new EthProtocolManager(blockchain, worldStateArchive, 1, true, 1)) {
       // Setup blocks query
       final long startBlock = blockchain.getChainHeadBlockNumber() - 5;
       final int blockCount = 2;
@@ -575,12 +595,62 @@ public final class EthProtocolManagerTest {
     }
   }
 
+  @Test
+  public void respondToGetNodeData() throws ExecutionException, InterruptedException {
+    final CompletableFuture<Void> done = new CompletableFuture<>();
+    try (final EthProtocolManager ethManager =
+        new EthProtocolManager(blockchain, worldStateArchive, 1, true, 1)) {
+      // Setup node data query for a known and an unknown node
+      final Hash stateRoot = blockchain.getChainHeadHeader().getStateRoot();
+      final Hash unknownHash = Hash.hash(BytesValue.of(1));
+      final MessageData messageData =
+          GetNodeDataMessage.create(Arrays.asList(unknownHash, stateRoot));
+
+      // Define handler to validate response
+      final PeerSendHandler onSend =
+          (cap, message, conn) -> {
+            if (message.getCode() == EthPV62.STATUS) {
+              // Ignore status message
+              return;
+            }
+            assertThat(message.getCode()).isEqualTo(EthPV63.NODE_DATA);
+            final NodeDataMessage nodeDataMessage = NodeDataMessage.readFrom(message);
+            final List<BytesValue> nodeData = Lists.newArrayList(nodeDataMessage.nodeData());
+            assertThat(nodeData.size()).isEqualTo(1);
+            assertThat(Hash.hash(nodeData.get(0))).isEqualTo(stateRoot);
+            message.release();
+            done.complete(null);
+          };
+
+      // Run test
+      final PeerConnection peer = setupPeer(ethManager, onSend);
+      ethManager.processMessage(EthProtocol.ETH63, new DefaultMessage(peer, messageData));
+      done.get();
+    }
+  }
+
+  @Test
+  public void respondToGetNodeDataWithinSizeLimit() {
+    final Hash headStateRoot = blockchain.getChainHeadHeader().getStateRoot();
+    final Hash genesisStateRoot = blockchain.getBlockHeader(0).get().getStateRoot();
+    final MessageData request =
+        GetNodeDataMessage.create(Arrays.asList(genesisStateRoot, headStateRoot));
+
+    final NodeDataMessage response =
+        NodeDataMessage.readFrom(
+            EthServer.constructGetNodeDataResponse(worldStateArchive, request, 200, 1));
+    final List<BytesValue> nodeData = Lists.newArrayList(response.nodeData());
+    assertThat(nodeData.size()).isEqualTo(1);
+    assertThat(Hash.hash(nodeData.get(0))).isEqualTo(genesisStateRoot);
+    response.release();
+  }
+
   @Test
   public void respondToGetReceiptsWithinLimits() throws ExecutionException, InterruptedException {
     final CompletableFuture<Void> done = new CompletableFuture<>();
     final int limit = 5;
     try (final EthProtocolManager ethManager =
-        new EthProtocolManager(blockchain, 1, true, 1, limit)) {
+        new EthProtocolManager(blockchain, worldStateArchive, 1, true, 1, limit)) {
       // Setup blocks query
       final int blockCount = 10;
       final long startBlock = blockchain.getChainHeadBlockNumber() - blockCount;
@@ -622,7 +692,8 @@ public final class EthProtocolManagerTest {
   @Test
   public void respondToGetReceiptsPartial() throws ExecutionException, InterruptedException {
     final CompletableFuture<Void> done = new CompletableFuture<>();
-    try (final EthProtocolManager ethManager = new EthProtocolManager(blockchain, 1, true, 1)) {
+    try (final EthProtocolManager ethManager =
+        new EthProtocolManager(blockchain, worldStateArchive, 1, true, 1)) {
       // Setup blocks query
       final long blockNumber = blockchain.getChainHeadBlockNumber() - 5;
       final int blockCount = 2;
@@ -659,7 +730,8 @@ public final class EthProtocolManagerTest {
 
   @Test
   public void newBlockMinedSendsNewBlockMessageToAllPeers() {
-    final EthProtocolManager ethManager = new EthProtocolManager(blockchain, 1, true, 1);
+    final EthProtocolManager ethManager =
+        new EthProtocolManager(blockchain, worldStateArchive, 1, true, 1);
 
     // Define handler to validate response
     final PeerSendHandler onSend = mock(PeerSendHandler.class);
@@ -724,7 +796,8 @@ public final class EthProtocolManagerTest {
     blockchain.appendBlock(block, receipts);
 
     final CompletableFuture<Void> done = new CompletableFuture<>();
-    try (final EthProtocolManager ethManager = new EthProtocolManager(blockchain, 1, true, 1)) {
+    try (final EthProtocolManager ethManager =
+        new EthProtocolManager(blockchain, worldStateArchive, 1, true, 1)) {
       final long startBlock = 1L;
       final int requestedBlockCount = 13;
       final int receivedBlockCount = 2;
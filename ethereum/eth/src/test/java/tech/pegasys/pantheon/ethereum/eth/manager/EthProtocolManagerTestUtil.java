@@ -12,10 +12,13 @@
  */
 package tech.pegasys.pantheon.ethereum.eth.manager;
 
+import static tech.pegasys.pantheon.ethereum.core.InMemoryWorldState.createInMemoryWorldStateArchive;
+
 import tech.pegasys.pantheon.ethereum.chain.Blockchain;
 import tech.pegasys.pantheon.ethereum.chain.ChainHead;
 import tech.pegasys.pantheon.ethereum.chain.GenesisConfig;
 import tech.pegasys.pantheon.ethereum.db.DefaultMutableBlockchain;
+import tech.pegasys.pantheon.ethereum.db.WorldStateArchive;
 import tech.pegasys.pantheon.ethereum.eth.EthProtocol;
 import tech.pegasys.pantheon.ethereum.eth.manager.DeterministicEthScheduler.TimeoutPolicy;
 import tech.pegasys.pantheon.ethereum.mainnet.MainnetProtocolSchedule;
@@ -28,11 +31,23 @@ import tech.pegasys.pantheon.util.uint.UInt256;
 public class EthProtocolManagerTestUtil {
 
   public static EthProtocolManager create(
-      final Blockchain blockchain, final TimeoutPolicy timeoutPolicy) {
+      final Blockchain blockchain,
+      final WorldStateArchive worldStateArchive,
+      final TimeoutPolicy timeoutPolicy) {
     final int networkId = 1;
     final EthScheduler ethScheduler = new DeterministicEthScheduler(timeoutPolicy);
     return new EthProtocolManager(
-        blockchain, networkId, false, EthProtocolManager.DEFAULT_REQUEST_LIMIT, ethScheduler);
+        blockchain,
+        worldStateArchive,
+        networkId,
+        false,
+        EthProtocolManager.DEFAULT_REQUEST_LIMIT,
+        ethScheduler);
+  }
+
+  public static EthProtocolManager create(
+      final Blockchain blockchain, final TimeoutPolicy timeoutPolicy) {
+    return create(blockchain, createInMemoryWorldStateArchive(), timeoutPolicy);
   }
 
   public static EthProtocolManager create(final Blockchain blockchain) {
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.eth.sync;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import tech.pegasys.pantheon.ethereum.ProtocolContext;
+import tech.pegasys.pantheon.ethereum.chain.Blockchain;
+import tech.pegasys.pantheon.ethereum.chain.MutableBlockchain;
+import tech.pegasys.pantheon.ethereum.core.BlockHeader;
+import tech.pegasys.pantheon.ethereum.core.BlockHeaderTestFixture;
+import tech.pegasys.pantheon.ethereum.eth.manager.EthContext;
+import tech.pegasys.pantheon.ethereum.eth.manager.EthProtocolManager;
+import tech.pegasys.pantheon.ethereum.eth.manager.EthProtocolManagerTestUtil;
+import tech.pegasys.pantheon.ethereum.eth.manager.RespondingEthPeer;
+import tech.pegasys.pantheon.ethereum.eth.manager.RespondingEthPeer.Responder;
+import tech.pegasys.pantheon.ethereum.eth.manager.ethtaskutils.BlockchainSetupUtil;
+import tech.pegasys.pantheon.ethereum.eth.messages.BlockHeadersMessage;
+import tech.pegasys.pantheon.ethereum.eth.messages.EthPV62;
+import tech.pegasys.pantheon.ethereum.eth.sync.state.FastSyncStateStorage;
+import tech.pegasys.pantheon.ethereum.eth.sync.worldstate.NodeDataRequestQueue;
+import tech.pegasys.pantheon.ethereum.eth.sync.worldstate.WorldStateDownloader;
+import tech.pegasys.pantheon.ethereum.mainnet.ProtocolSchedule;
+import tech.pegasys.pantheon.ethereum.mainnet.ScheduleBasedBlockHashFunction;
+import tech.pegasys.pantheon.ethereum.p2p.api.MessageData;
+import tech.pegasys.pantheon.ethereum.p2p.wire.messages.DisconnectMessage.DisconnectReason;
+import tech.pegasys.pantheon.ethereum.testutil.BlockDataGenerator;
+import tech.pegasys.pantheon.ethereum.worldstate.KeyValueStorageWorldStateStorage;
+import tech.pegasys.pantheon.services.kvstore.InMemoryKeyValueStorage;
+
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class FastSyncDownloaderTest {
+
+  private static final int PIVOT_DISTANCE = 5;
+
+  private final BlockDataGenerator gen = new BlockDataGenerator();
+  private ProtocolSchedule<Void> protocolSchedule;
+  private ProtocolContext<Void> protocolContext;
+  private EthProtocolManager ethProtocolManager;
+  private EthContext ethContext;
+  private MutableBlockchain localBlockchain;
+  private Blockchain otherBlockchain;
+  private FastSyncStateStorage fastSyncStateStorage;
+
+  @Before
+  public void setupTest() {
+    final BlockchainSetupUtil<Void> localBlockchainSetup = BlockchainSetupUtil.forTesting();
+    localBlockchain = localBlockchainSetup.getBlockchain();
+    final BlockchainSetupUtil<Void> otherBlockchainSetup = BlockchainSetupUtil.forTesting();
+    otherBlockchainSetup.importFirstBlocks(20);
+    otherBlockchain = otherBlockchainSetup.getBlockchain();
+
+    protocolSchedule = localBlockchainSetup.getProtocolSchedule();
+    protocolContext = localBlockchainSetup.getProtocolContext();
+    ethProtocolManager = EthProtocolManagerTestUtil.create(localBlockchain);
+    ethContext = ethProtocolManager.ethContext();
+    fastSyncStateStorage =
+        new FastSyncStateStorage(
+            new InMemoryKeyValueStorage(), ScheduleBasedBlockHashFunction.create(protocolSchedule));
+  }
+
+  private FastSyncDownloader<Void> downloader(final SynchronizerConfiguration syncConfig) {
+    final WorldStateDownloader worldStateDownloader =
+        new WorldStateDownloader(
+            ethContext,
+            new KeyValueStorageWorldStateStorage(new InMemoryKeyValueStorage()),
+            new NodeDataRequestQueue(new InMemoryKeyValueStorage()),
+            syncConfig.worldStateHashCountPerRequest(),
+            syncConfig.worldStateRequestParallelism(),
+            syncConfig.worldStateMaxRequestsWithoutProgress());
+    return new FastSyncDownloader<>(
+        syncConfig,
+        protocolSchedule,
+        protocolContext,
+        ethContext,
+        fastSyncStateStorage,
+        worldStateDownloader);
+  }
+
+  @Test
+  public void pivotBlockHeaderIsOnlyStoredOnceConfirmedByOtherPeers() {
+    final long pivotBlockNumber = otherBlockchain.getChainHeadBlockNumber() - PIVOT_DISTANCE;
+    final BlockHeader pivotHeader = otherBlockchain.getBlockHeader(pivotBlockNumber).get();
+    final BlockHeader fakePivotHeader =
+        new BlockHeaderTestFixture().number(pivotBlockNumber).buildHeader();
+    final Responder responder = RespondingEthPeer.blockchainResponder(otherBlockchain);
+    final Responder lyingResponder =
+        (cap, msg) -> {
+          if (msg.getCode() != EthPV62.GET_BLOCK_HEADERS) {
+            return Optional.empty();
+          }
+          final MessageData response =
+              BlockHeadersMessage.create(Collections.singletonList(fakePivotHeader));
+          return Optional.of(response);
+        };
+
+    // The lying peer claims the most work, so it is the one the pivot is taken from.
+    final RespondingEthPeer lyingPeer =
+        EthProtocolManagerTestUtil.createPeer(
+            ethProtocolManager,
+            otherBlockchain.getChainHead().getTotalDifficulty().plus(1L),
+            otherBlockchain.getChainHeadBlockNumber());
+    final RespondingEthPeer peerA =
+        EthProtocolManagerTestUtil.createPeer(ethProtocolManager, otherBlockchain);
+    final RespondingEthPeer peerB =
+        EthProtocolManagerTestUtil.createPeer(ethProtocolManager, otherBlockchain);
+
+    final SynchronizerConfiguration syncConfig =
+        SynchronizerConfiguration.builder()
+            .fastSyncPivotDistance(PIVOT_DISTANCE)
+            .fastSyncMinimumPeerCount(2)
+            .build();
+    downloader(syncConfig).start();
+
+    lyingPeer.respond(lyingResponder);
+    peerA.respond(responder);
+    peerB.respond(responder);
+    assertThat(fastSyncStateStorage.loadPivotBlockHeader()).isEmpty();
+
+    ethProtocolManager.handleDisconnect(
+        lyingPeer.getPeerConnection(), DisconnectReason.BREACH_OF_PROTOCOL, false);
+    while (!fastSyncStateStorage.isFastSyncInProgress()) {
+      peerA.respond(responder);
+      peerB.respond(responder);
+    }
+
+    assertThat(fastSyncStateStorage.loadPivotBlockHeader().map(BlockHeader::getHash))
+        .contains(pivotHeader.getHash());
+  }
+
+  @Test
+  public void failsWhenPivotBlockIsUnknownToPeers() {
+    final BlockHeader invalidPivotHeader =
+        new BlockHeaderTestFixture()
+            .number(otherBlockchain.getChainHeadBlockNumber() - PIVOT_DISTANCE)
+            .stateRoot(gen.hash())
+            .buildHeader();
+    fastSyncStateStorage.storePivotBlockHeader(invalidPivotHeader);
+    final RespondingEthPeer peer =
+        EthProtocolManagerTestUtil.createPeer(ethProtocolManager, otherBlockchain);
+
+    final SynchronizerConfiguration syncConfig =
+        SynchronizerConfiguration.builder().worldStateMaxRequestsWithoutProgress(10).build();
+    final CompletableFuture<Void> result = downloader(syncConfig).start();
+    peer.respondTimes(RespondingEthPeer.blockchainResponder(otherBlockchain), 100);
+
+    assertThat(result).isCompletedExceptionally();
+    assertThat(localBlockchain.getBlockHashByNumber(invalidPivotHeader.getNumber())).isEmpty();
+  }
+}
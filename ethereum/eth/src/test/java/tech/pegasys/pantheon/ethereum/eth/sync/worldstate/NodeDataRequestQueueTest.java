@@ -0,0 +1,91 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.eth.sync.worldstate;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import tech.pegasys.pantheon.ethereum.core.Hash;
+import tech.pegasys.pantheon.services.kvstore.InMemoryKeyValueStorage;
+import tech.pegasys.pantheon.services.kvstore.KeyValueStorage;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+
+import org.junit.Test;
+
+public class NodeDataRequestQueueTest {
+
+  private final KeyValueStorage storage = new InMemoryKeyValueStorage();
+  private final NodeDataRequestQueue queue = new NodeDataRequestQueue(storage);
+
+  @Test
+  public void pollsRequestsInInsertionOrder() {
+    final NodeDataRequest first = NodeDataRequest.createAccountTrieNodeRequest(hash(1));
+    final NodeDataRequest second = NodeDataRequest.createCodeRequest(hash(2));
+    queue.add(first);
+    queue.add(second);
+
+    assertThat(queue.poll()).map(NodeDataRequest::getHash).contains(hash(1));
+    assertThat(queue.poll()).map(NodeDataRequest::getHash).contains(hash(2));
+    assertThat(queue.poll()).isEmpty();
+    assertThat(queue.isEmpty()).isFalse();
+  }
+
+  @Test
+  public void pollsRetriedRequestsFirst() {
+    queue.add(NodeDataRequest.createAccountTrieNodeRequest(hash(1)));
+    queue.add(NodeDataRequest.createAccountTrieNodeRequest(hash(2)));
+
+    final NodeDataRequest polled = queue.poll().get();
+    queue.retry(polled);
+
+    assertThat(queue.poll()).containsSame(polled);
+    assertThat(queue.poll()).map(NodeDataRequest::getHash).contains(hash(2));
+  }
+
+  @Test
+  public void isEmptyOnceAllRequestsAreCompleted() {
+    queue.add(NodeDataRequest.createAccountTrieNodeRequest(hash(1)));
+    final NodeDataRequest parent = queue.poll().get();
+    final NodeDataRequest child = NodeDataRequest.createStorageTrieNodeRequest(hash(2));
+
+    queue.complete(singletonList(parent), singletonList(child));
+    assertThat(queue.isEmpty()).isFalse();
+
+    final NodeDataRequest polledChild = queue.poll().get();
+    assertThat(polledChild.getKind()).isEqualTo(NodeDataRequest.Kind.STORAGE_TRIE_NODE);
+    queue.complete(singletonList(polledChild), emptyList());
+    assertThat(queue.isEmpty()).isTrue();
+    assertThat(storage.entries()).isEmpty();
+  }
+
+  @Test
+  public void resumesUncompletedRequestsFromStorage() {
+    queue.add(NodeDataRequest.createAccountTrieNodeRequest(hash(1)));
+    queue.add(NodeDataRequest.createAccountTrieNodeRequest(hash(2)));
+    queue.add(NodeDataRequest.createCodeRequest(hash(3)));
+    final NodeDataRequest completed = queue.poll().get();
+    queue.poll();
+    queue.complete(singletonList(completed), emptyList());
+
+    final NodeDataRequestQueue resumed = new NodeDataRequestQueue(storage);
+    assertThat(resumed.pendingCount()).isEqualTo(2);
+    assertThat(resumed.poll()).map(NodeDataRequest::getHash).contains(hash(2));
+    assertThat(resumed.poll()).map(NodeDataRequest::getHash).contains(hash(3));
+    assertThat(resumed.poll()).isEmpty();
+  }
+
+  private static Hash hash(final int value) {
+    return Hash.hash(BytesValue.of(value));
+  }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.eth.sync.worldstate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import tech.pegasys.pantheon.ethereum.chain.Blockchain;
+import tech.pegasys.pantheon.ethereum.core.Account;
+import tech.pegasys.pantheon.ethereum.core.Address;
+import tech.pegasys.pantheon.ethereum.core.BlockHeader;
+import tech.pegasys.pantheon.ethereum.core.BlockHeaderTestFixture;
+import tech.pegasys.pantheon.ethereum.core.MutableAccount;
+import tech.pegasys.pantheon.ethereum.core.MutableWorldState;
+import tech.pegasys.pantheon.ethereum.core.Wei;
+import tech.pegasys.pantheon.ethereum.core.WorldState;
+import tech.pegasys.pantheon.ethereum.core.WorldUpdater;
+import tech.pegasys.pantheon.ethereum.db.WorldStateArchive;
+import tech.pegasys.pantheon.ethereum.eth.manager.EthProtocolManager;
+import tech.pegasys.pantheon.ethereum.eth.manager.EthProtocolManagerTestUtil;
+import tech.pegasys.pantheon.ethereum.eth.manager.RespondingEthPeer;
+import tech.pegasys.pantheon.ethereum.eth.manager.RespondingEthPeer.Responder;
+import tech.pegasys.pantheon.ethereum.worldstate.DefaultMutableWorldState;
+import tech.pegasys.pantheon.ethereum.worldstate.KeyValueStorageWorldStateStorage;
+import tech.pegasys.pantheon.ethereum.worldstate.WorldStateStorage;
+import tech.pegasys.pantheon.services.kvstore.InMemoryKeyValueStorage;
+import tech.pegasys.pantheon.services.kvstore.KeyValueStorage;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+import tech.pegasys.pantheon.util.uint.UInt256;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class WorldStateDownloaderTest {
+
+  private static final int ACCOUNT_COUNT = 50;
+
+  private final WorldStateStorage remoteStorage =
+      new KeyValueStorageWorldStateStorage(new InMemoryKeyValueStorage());
+  private final WorldStateStorage localStorage =
+      new KeyValueStorageWorldStateStorage(new InMemoryKeyValueStorage());
+  private final KeyValueStorage queueStorage = new InMemoryKeyValueStorage();
+  private BlockHeader header;
+
+  @Before
+  public void setUp() {
+    final MutableWorldState worldState = new DefaultMutableWorldState(remoteStorage);
+    final WorldUpdater updater = worldState.updater();
+    for (int i = 0; i < ACCOUNT_COUNT; i++) {
+      final MutableAccount account = updater.createAccount(address(i), i, Wei.of(i * 1000L));
+      if (i % 3 == 0) {
+        account.setCode(BytesValue.of(0x60, 0x01, 0x60, i));
+      }
+      if (i % 2 == 0) {
+        account.setStorageValue(UInt256.ONE, UInt256.of(i + 1));
+        account.setStorageValue(UInt256.of(i + 2), UInt256.of(7));
+      }
+    }
+    updater.commit();
+    worldState.persist();
+    header = new BlockHeaderTestFixture().number(10).stateRoot(worldState.rootHash()).buildHeader();
+  }
+
+  @Test
+  public void downloadsCompleteWorldState() {
+    final EthProtocolManager ethProtocolManager = EthProtocolManagerTestUtil.create();
+    final RespondingEthPeer peer = EthProtocolManagerTestUtil.createPeer(ethProtocolManager, 100);
+    final WorldStateDownloader downloader = createDownloader(ethProtocolManager);
+
+    final CompletableFuture<Void> future = downloader.run(header);
+    peer.respondWhile(remoteStateResponder(), () -> !future.isDone());
+
+    assertThat(future).isCompleted();
+    assertThat(downloader.pendingCount()).isZero();
+    assertWorldStateDownloaded();
+  }
+
+  @Test
+  public void completesImmediatelyWhenWorldStateIsAlreadyPresent() {
+    final EthProtocolManager ethProtocolManager = EthProtocolManagerTestUtil.create();
+    final WorldStateDownloader downloader =
+        new WorldStateDownloader(
+            ethProtocolManager.ethContext(),
+            remoteStorage,
+            new NodeDataRequestQueue(queueStorage),
+            10,
+            2,
+            100);
+
+    assertThat(downloader.run(header)).isCompleted();
+    assertThat(downloader.downloadedNodeCount()).isZero();
+  }
+
+  @Test
+  public void resumesInterruptedDownload() {
+    final EthProtocolManager firstManager = EthProtocolManagerTestUtil.create();
+    final RespondingEthPeer firstPeer = EthProtocolManagerTestUtil.createPeer(firstManager, 100);
+    final CompletableFuture<Void> interrupted = createDownloader(firstManager).run(header);
+    firstPeer.respondTimes(remoteStateResponder(), 3);
+    assertThat(interrupted).isNotDone();
+
+    // Start over with a fresh downloader, as after a restart, sharing only what was persisted.
+    final EthProtocolManager secondManager = EthProtocolManagerTestUtil.create();
+    final RespondingEthPeer secondPeer = EthProtocolManagerTestUtil.createPeer(secondManager, 100);
+    final WorldStateDownloader downloader = createDownloader(secondManager);
+    final CompletableFuture<Void> future = downloader.run(header);
+    secondPeer.respondWhile(remoteStateResponder(), () -> !future.isDone());
+
+    assertThat(future).isCompleted();
+    assertWorldStateDownloaded();
+  }
+
+  @Test
+  public void completesPendingRequestsForAnEarlierPivot() {
+    final EthProtocolManager firstManager = EthProtocolManagerTestUtil.create();
+    final RespondingEthPeer firstPeer = EthProtocolManagerTestUtil.createPeer(firstManager, 100);
+    final CompletableFuture<Void> abandoned = createDownloader(firstManager).run(header);
+    firstPeer.respondTimes(remoteStateResponder(), 3);
+    assertThat(abandoned).isNotDone();
+
+    final MutableWorldState worldState =
+        new DefaultMutableWorldState(header.getStateRoot(), remoteStorage);
+    final WorldUpdater updater = worldState.updater();
+    updater.createAccount(address(ACCOUNT_COUNT), 0, Wei.of(1));
+    updater.commit();
+    worldState.persist();
+    final BlockHeader newPivot =
+        new BlockHeaderTestFixture().number(20).stateRoot(worldState.rootHash()).buildHeader();
+
+    final EthProtocolManager secondManager = EthProtocolManagerTestUtil.create();
+    final RespondingEthPeer secondPeer = EthProtocolManagerTestUtil.createPeer(secondManager, 100);
+    final CompletableFuture<Void> future = createDownloader(secondManager).run(newPivot);
+    secondPeer.respondWhile(remoteStateResponder(), () -> !future.isDone());
+
+    assertThat(future).isCompleted();
+    assertWorldStateDownloaded();
+    final WorldState downloaded =
+        new DefaultMutableWorldState(newPivot.getStateRoot(), localStorage);
+    assertThat(downloaded.get(address(ACCOUNT_COUNT)).getBalance()).isEqualTo(Wei.of(1));
+  }
+
+  @Test
+  public void failsWhenPeersDoNotServeTheWorldState() {
+    final EthProtocolManager ethProtocolManager = EthProtocolManagerTestUtil.create();
+    final RespondingEthPeer peer = EthProtocolManagerTestUtil.createPeer(ethProtocolManager, 100);
+    final CompletableFuture<Void> future = createDownloader(ethProtocolManager, 10).run(header);
+    peer.respondTimes(RespondingEthPeer.emptyResponder(), 20);
+
+    assertThat(future).isCompletedExceptionally();
+    assertThat(localStorage.getAccountStateTrieNode(header.getStateRoot())).isEmpty();
+  }
+
+  private WorldStateDownloader createDownloader(final EthProtocolManager ethProtocolManager) {
+    return createDownloader(ethProtocolManager, 100);
+  }
+
+  private WorldStateDownloader createDownloader(
+      final EthProtocolManager ethProtocolManager, final int maxRequestsWithoutProgress) {
+    return new WorldStateDownloader(
+        ethProtocolManager.ethContext(),
+        localStorage,
+        new NodeDataRequestQueue(queueStorage),
+        10,
+        2,
+        maxRequestsWithoutProgress);
+  }
+
+  private void assertWorldStateDownloaded() {
+    final WorldState expected = new DefaultMutableWorldState(header.getStateRoot(), remoteStorage);
+    final WorldState actual = new DefaultMutableWorldState(header.getStateRoot(), localStorage);
+    for (int i = 0; i < ACCOUNT_COUNT; i++) {
+      final Account expectedAccount = expected.get(address(i));
+      final Account actualAccount = actual.get(address(i));
+      assertThat(actualAccount.getNonce()).isEqualTo(expectedAccount.getNonce());
+      assertThat(actualAccount.getBalance()).isEqualTo(expectedAccount.getBalance());
+      assertThat(actualAccount.getCode()).isEqualTo(expectedAccount.getCode());
+      assertThat(actualAccount.getStorageValue(UInt256.ONE))
+          .isEqualTo(expectedAccount.getStorageValue(UInt256.ONE));
+      assertThat(actualAccount.getStorageValue(UInt256.of(i + 2)))
+          .isEqualTo(expectedAccount.getStorageValue(UInt256.of(i + 2)));
+    }
+  }
+
+  private Responder remoteStateResponder() {
+    return RespondingEthPeer.blockchainResponder(
+        mock(Blockchain.class), new WorldStateArchive(remoteStorage));
+  }
+
+  private static Address address(final int index) {
+    return Address.fromHexString(String.format("0x%040x", index + 1));
+  }
+}
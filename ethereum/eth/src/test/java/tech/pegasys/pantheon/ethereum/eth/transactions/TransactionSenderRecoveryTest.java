@@ -0,0 +1,82 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.eth.transactions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import tech.pegasys.pantheon.ethereum.core.Block;
+import tech.pegasys.pantheon.ethereum.core.Transaction;
+import tech.pegasys.pantheon.ethereum.eth.manager.EthProtocolManagerTestUtil;
+import tech.pegasys.pantheon.ethereum.eth.manager.EthScheduler;
+import tech.pegasys.pantheon.ethereum.testutil.BlockDataGenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Test;
+
+public class TransactionSenderRecoveryTest {
+
+  private final BlockDataGenerator generator = new BlockDataGenerator();
+  private final EthScheduler scheduler =
+      spy(EthProtocolManagerTestUtil.create().ethContext().getScheduler());
+  private final TransactionSenderRecovery senderRecovery =
+      new TransactionSenderRecovery(scheduler, 4);
+
+  @Test
+  public void shouldRecoverSenderOfEveryTransactionInBatches() {
+    final List<Transaction> transactions = new ArrayList<>();
+    for (int i = 0; i < 40; i++) {
+      transactions.add(spy(generator.transaction()));
+    }
+
+    final CompletableFuture<Void> result = senderRecovery.recoverSenders(transactions);
+
+    assertThat(result).isDone();
+    assertThat(result.isCompletedExceptionally()).isFalse();
+    transactions.forEach(transaction -> verify(transaction).getSender());
+    // Batches never drop below the minimum size, even with spare parallelism.
+    verify(scheduler, times(3)).scheduleComputationTask(any());
+  }
+
+  @Test
+  public void shouldNotFailWhenSenderCannotBeRecovered() {
+    final Transaction invalid = spy(generator.transaction());
+    doThrow(new IllegalStateException("Invalid signature")).when(invalid).getSender();
+    final Transaction valid = spy(generator.transaction());
+    final List<Transaction> transactions = new ArrayList<>();
+    transactions.add(invalid);
+    transactions.add(valid);
+
+    final CompletableFuture<Void> result = senderRecovery.recoverSenders(transactions);
+
+    assertThat(result).isDone();
+    assertThat(result.isCompletedExceptionally()).isFalse();
+    verify(valid).getSender();
+  }
+
+  @Test
+  public void shouldCompleteWithBlocksOnceSendersAreRecovered() {
+    final List<Block> blocks = generator.blockSequence(3);
+
+    final CompletableFuture<List<Block>> result = senderRecovery.recoverSendersForBlocks(blocks);
+
+    assertThat(result).isCompletedWithValue(blocks);
+  }
+}
@@ -13,15 +13,23 @@
 package tech.pegasys.pantheon.ethereum.eth.transactions;
 
 import static java.util.Arrays.asList;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
 
 import tech.pegasys.pantheon.ethereum.core.Transaction;
 import tech.pegasys.pantheon.ethereum.core.TransactionPool;
 import tech.pegasys.pantheon.ethereum.eth.manager.EthPeer;
+import tech.pegasys.pantheon.ethereum.eth.manager.EthProtocolManagerTestUtil;
+import tech.pegasys.pantheon.ethereum.eth.manager.EthScheduler;
 import tech.pegasys.pantheon.ethereum.eth.messages.TransactionsMessage;
 import tech.pegasys.pantheon.ethereum.testutil.BlockDataGenerator;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
 import com.google.common.collect.ImmutableSet;
 import org.junit.Test;
 
@@ -37,7 +45,11 @@ public class TransactionsMessageProcessorTest {
   private final Transaction transaction3 = generator.transaction();
 
   private final TransactionsMessageProcessor messageHandler =
-      new TransactionsMessageProcessor(transactionTracker, transactionPool);
+      new TransactionsMessageProcessor(
+          transactionTracker,
+          transactionPool,
+          new TransactionSenderRecovery(
+              EthProtocolManagerTestUtil.create().ethContext().getScheduler()));
 
   @Test
   public void shouldMarkAllReceivedTransactionsAsSeen() {
@@ -56,4 +68,37 @@ public class TransactionsMessageProcessorTest {
     verify(transactionPool)
         .addRemoteTransactions(ImmutableSet.of(transaction1, transaction2, transaction3));
   }
+
+  @Test
+  public void shouldNotWaitForSenderRecoveryBeforeReturning() {
+    final EthScheduler scheduler = mock(EthScheduler.class);
+    final CompletableFuture<Object> recovery = new CompletableFuture<>();
+    when(scheduler.scheduleComputationTask(any())).thenReturn(recovery);
+    final TransactionsMessageProcessor processor =
+        new TransactionsMessageProcessor(
+            transactionTracker, transactionPool, new TransactionSenderRecovery(scheduler));
+
+    processor.processTransactionsMessage(
+        peer1, TransactionsMessage.create(asList(transaction1, transaction2)));
+    verifyZeroInteractions(transactionPool);
+
+    recovery.complete(null);
+    verify(transactionPool).addRemoteTransactions(ImmutableSet.of(transaction1, transaction2));
+  }
+
+  @Test
+  public void shouldNotAddTransactionsWhenSenderRecoveryFails() {
+    final EthScheduler scheduler = mock(EthScheduler.class);
+    final CompletableFuture<Object> recovery = new CompletableFuture<>();
+    when(scheduler.scheduleComputationTask(any())).thenReturn(recovery);
+    final TransactionsMessageProcessor processor =
+        new TransactionsMessageProcessor(
+            transactionTracker, transactionPool, new TransactionSenderRecovery(scheduler));
+
+    processor.processTransactionsMessage(
+        peer1, TransactionsMessage.create(asList(transaction1, transaction2)));
+    recovery.completeExceptionally(new RejectedExecutionException());
+
+    verifyZeroInteractions(transactionPool);
+  }
 }
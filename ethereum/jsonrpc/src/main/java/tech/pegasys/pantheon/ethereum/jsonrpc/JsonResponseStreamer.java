@@ -0,0 +1,241 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.jsonrpc;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.Json;
+
+/**
+ * Serialises a value as JSON straight into an HTTP response, in chunks, instead of encoding it to a
+ * single string first.
+ *
+ * <p>Responses that fit in one chunk are sent as a normal response with a content length; larger
+ * ones use chunked transfer encoding. Streaming a larger response waits for the response's write
+ * queue to drain when the client reads slower than the value is written, so it is handed to a
+ * separate executor rather than holding the calling thread. A client that stops reading altogether
+ * has its connection closed once the write timeout expires, so that it can't hold the streaming
+ * thread.
+ */
+class JsonResponseStreamer extends OutputStream {
+
+  private static final int CHUNK_SIZE = 16 * 1024;
+  private static final long DRAIN_CHECK_MILLIS = 100;
+  private static final long DEFAULT_WRITE_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+  private final HttpServerResponse response;
+  private final long writeTimeoutMillis;
+  private Buffer chunk = Buffer.buffer(CHUNK_SIZE);
+  private boolean closed;
+
+  private JsonResponseStreamer(final HttpServerResponse response, final long writeTimeoutMillis) {
+    this.response = response;
+    this.writeTimeoutMillis = writeTimeoutMillis;
+  }
+
+  /**
+   * Writes a value to the response as JSON and ends the response, without waiting for the client.
+   *
+   * <p>A value that fits in a single chunk is written straight away. A larger one is serialised
+   * again and streamed on the write executor, which may wait for the client to read it.
+   *
+   * @param response the response to write to.
+   * @param value the value to serialise.
+   * @param pretty whether to indent the JSON.
+   * @param writeExecutor the executor to stream values larger than a chunk on.
+   * @return a future completed once the response is written. If it completes exceptionally, the
+   *     response may already be partly written and should be closed.
+   */
+  static CompletableFuture<Void> stream(
+      final HttpServerResponse response,
+      final Object value,
+      final boolean pretty,
+      final Executor writeExecutor) {
+    final SingleChunk single = new SingleChunk();
+    try {
+      writer(pretty).writeValue(single, value);
+    } catch (final IOException e) {
+      if (!single.overflowed) {
+        return failed(e);
+      }
+      try {
+        return CompletableFuture.runAsync(
+            () -> {
+              try {
+                stream(response, value, pretty);
+              } catch (final IOException streamFailure) {
+                throw new UncheckedIOException(streamFailure);
+              }
+            },
+            writeExecutor);
+      } catch (final RejectedExecutionException rejected) {
+        return failed(rejected);
+      }
+    }
+    response.end(single.chunk);
+    return CompletableFuture.completedFuture(null);
+  }
+
+  /**
+   * Writes a value to the response as JSON and ends the response, waiting for the client to read
+   * it as it goes.
+   *
+   * <p>If this fails, the response may already be partly written and should be closed.
+   *
+   * @param response the response to write to.
+   * @param value the value to serialise.
+   * @param pretty whether to indent the JSON.
+   * @throws IOException if the value could not be serialised or the connection was closed.
+   */
+  static void stream(final HttpServerResponse response, final Object value, final boolean pretty)
+      throws IOException {
+    stream(response, value, pretty, DEFAULT_WRITE_TIMEOUT_MILLIS);
+  }
+
+  /**
+   * Writes a value to the response as JSON and ends the response, waiting for the client to read
+   * it as it goes.
+   *
+   * @param response the response to write to.
+   * @param value the value to serialise.
+   * @param pretty whether to indent the JSON.
+   * @param writeTimeoutMillis how long to wait for the client to read a chunk before the connection
+   *     is closed.
+   * @throws IOException if the value could not be serialised, the connection was closed or the
+   *     write timed out.
+   */
+  static void stream(
+      final HttpServerResponse response,
+      final Object value,
+      final boolean pretty,
+      final long writeTimeoutMillis)
+      throws IOException {
+    final JsonResponseStreamer out = new JsonResponseStreamer(response, writeTimeoutMillis);
+    // Only end the response once the whole value is written, so a failure part way through is
+    // never mistaken for a complete response.
+    writer(pretty).writeValue(out, value);
+    out.close();
+  }
+
+  private static ObjectWriter writer(final boolean pretty) {
+    final ObjectWriter writer =
+        pretty ? Json.mapper.writerWithDefaultPrettyPrinter() : Json.mapper.writer();
+    return writer.without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+  }
+
+  private static CompletableFuture<Void> failed(final Throwable cause) {
+    final CompletableFuture<Void> result = new CompletableFuture<>();
+    result.completeExceptionally(cause);
+    return result;
+  }
+
+  @Override
+  public void write(final int b) throws IOException {
+    chunk.appendByte((byte) b);
+    writeChunkIfFull();
+  }
+
+  @Override
+  public void write(final byte[] b, final int off, final int len) throws IOException {
+    chunk.appendBytes(b, off, len);
+    writeChunkIfFull();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    if (!response.isChunked()) {
+      response.end(chunk);
+    } else {
+      if (chunk.length() > 0) {
+        writeChunk();
+      }
+      response.end();
+    }
+  }
+
+  private void writeChunkIfFull() throws IOException {
+    if (chunk.length() >= CHUNK_SIZE) {
+      response.setChunked(true);
+      writeChunk();
+    }
+  }
+
+  private void writeChunk() throws IOException {
+    if (response.closed()) {
+      throw new IOException("Connection closed while writing JSON-RPC response");
+    }
+    response.write(chunk);
+    chunk = Buffer.buffer(CHUNK_SIZE);
+    awaitDrain();
+  }
+
+  private void awaitDrain() throws IOException {
+    if (!response.writeQueueFull()) {
+      return;
+    }
+    final CountDownLatch drained = new CountDownLatch(1);
+    response.drainHandler(v -> drained.countDown());
+    final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(writeTimeoutMillis);
+    try {
+      while (response.writeQueueFull()
+          && !drained.await(DRAIN_CHECK_MILLIS, TimeUnit.MILLISECONDS)) {
+        if (response.closed()) {
+          throw new IOException("Connection closed while writing JSON-RPC response");
+        }
+        if (System.nanoTime() - deadline >= 0) {
+          response.close();
+          throw new IOException("Timed out waiting for the client to read JSON-RPC response");
+        }
+      }
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+  }
+
+  /** Collects a value's JSON, failing as soon as it no longer fits in a single chunk. */
+  private static class SingleChunk extends OutputStream {
+    private final Buffer chunk = Buffer.buffer(CHUNK_SIZE);
+    private boolean overflowed;
+
+    @Override
+    public void write(final int b) throws IOException {
+      write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+      if (chunk.length() + len >= CHUNK_SIZE) {
+        overflowed = true;
+        throw new IOException("JSON-RPC response does not fit in a single chunk");
+      }
+      chunk.appendBytes(b, off, len);
+    }
+  }
+}
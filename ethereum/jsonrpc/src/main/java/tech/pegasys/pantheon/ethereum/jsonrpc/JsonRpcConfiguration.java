@@ -12,10 +12,15 @@
  */
 package tech.pegasys.pantheon.ethereum.jsonrpc;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
 
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Objects;
@@ -31,6 +36,13 @@ public class JsonRpcConfiguration {
   private String host;
   private Collection<String> corsAllowedDomains = Collections.emptyList();
   private Collection<RpcApi> rpcApis;
+  private boolean prettyJsonEnabled;
+  private final Map<JsonRpcWorkerPool, Integer> workerThreads =
+      new EnumMap<>(JsonRpcWorkerPool.class);
+  private final Map<JsonRpcWorkerPool, Integer> workerQueueSizes =
+      new EnumMap<>(JsonRpcWorkerPool.class);
+  private final Map<String, Integer> methodConcurrencyLimits = new HashMap<>();
+  private int responseCacheSize;
 
   public static JsonRpcConfiguration createDefault() {
     final JsonRpcConfiguration config = new JsonRpcConfiguration();
@@ -90,6 +102,62 @@ public class JsonRpcConfiguration {
     rpcApis.add(rpcApi);
   }
 
+  public boolean isPrettyJsonEnabled() {
+    return prettyJsonEnabled;
+  }
+
+  public void setPrettyJsonEnabled(final boolean prettyJsonEnabled) {
+    this.prettyJsonEnabled = prettyJsonEnabled;
+  }
+
+  public int getWorkerThreads(final JsonRpcWorkerPool pool) {
+    return workerThreads.getOrDefault(pool, pool.getDefaultThreads());
+  }
+
+  public void setWorkerThreads(final JsonRpcWorkerPool pool, final int threads) {
+    checkArgument(threads > 0, "JSON-RPC worker pool %s must have at least one thread", pool);
+    workerThreads.put(pool, threads);
+  }
+
+  public int getWorkerQueueSize(final JsonRpcWorkerPool pool) {
+    return workerQueueSizes.getOrDefault(pool, pool.getDefaultQueueSize());
+  }
+
+  public void setWorkerQueueSize(final JsonRpcWorkerPool pool, final int queueSize) {
+    checkArgument(queueSize >= 0, "JSON-RPC worker pool %s queue size must not be negative", pool);
+    workerQueueSizes.put(pool, queueSize);
+  }
+
+  /**
+   * The maximum number of requests for each listed method that may be queued or executing at once.
+   * Methods that aren't listed are only limited by their worker pool.
+   *
+   * @return the concurrency limits by method name.
+   */
+  public Map<String, Integer> getMethodConcurrencyLimits() {
+    return Collections.unmodifiableMap(methodConcurrencyLimits);
+  }
+
+  public void setMethodConcurrencyLimit(final String method, final int limit) {
+    checkArgument(limit > 0, "Concurrency limit for %s must be at least one", method);
+    methodConcurrencyLimits.put(method, limit);
+  }
+
+  /**
+   * The maximum size in megabytes of the cache of immutable JSON-RPC results, such as blocks and
+   * receipts by hash. Zero disables the cache.
+   *
+   * @return the maximum size of the response cache in megabytes.
+   */
+  public int getResponseCacheSize() {
+    return responseCacheSize;
+  }
+
+  public void setResponseCacheSize(final int responseCacheSize) {
+    checkArgument(responseCacheSize >= 0, "JSON-RPC response cache size must not be negative");
+    this.responseCacheSize = responseCacheSize;
+  }
+
   @Override
   public String toString() {
     return MoreObjects.toStringHelper(this)
@@ -98,6 +166,11 @@ public class JsonRpcConfiguration {
         .add("host", host)
         .add("corsAllowedDomains", corsAllowedDomains)
         .add("rpcApis", rpcApis)
+        .add("prettyJsonEnabled", prettyJsonEnabled)
+        .add("workerThreads", workerThreads)
+        .add("workerQueueSizes", workerQueueSizes)
+        .add("methodConcurrencyLimits", methodConcurrencyLimits)
+        .add("responseCacheSize", responseCacheSize)
         .toString();
   }
 
@@ -114,11 +187,26 @@ public class JsonRpcConfiguration {
         && port == that.port
         && Objects.equal(host, that.host)
         && Objects.equal(corsAllowedDomains, that.corsAllowedDomains)
-        && Objects.equal(rpcApis, that.rpcApis);
+        && Objects.equal(rpcApis, that.rpcApis)
+        && prettyJsonEnabled == that.prettyJsonEnabled
+        && Objects.equal(workerThreads, that.workerThreads)
+        && Objects.equal(workerQueueSizes, that.workerQueueSizes)
+        && Objects.equal(methodConcurrencyLimits, that.methodConcurrencyLimits)
+        && responseCacheSize == that.responseCacheSize;
   }
 
   @Override
   public int hashCode() {
-    return Objects.hashCode(enabled, port, host, corsAllowedDomains, rpcApis);
+    return Objects.hashCode(
+        enabled,
+        port,
+        host,
+        corsAllowedDomains,
+        rpcApis,
+        prettyJsonEnabled,
+        workerThreads,
+        workerQueueSizes,
+        methodConcurrencyLimits,
+        responseCacheSize);
   }
 }
@@ -35,10 +35,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.StringJoiner;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 import com.google.common.annotations.VisibleForTesting;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import io.vertx.core.CompositeFuture;
+import io.vertx.core.Context;
 import io.vertx.core.Future;
 import io.vertx.core.Vertx;
 import io.vertx.core.http.HttpMethod;
@@ -71,6 +73,7 @@ public class JsonRpcHttpService {
   private final Path dataDir;
 
   private HttpServer httpServer;
+  private JsonRpcScheduler scheduler;
 
   public JsonRpcHttpService(
       final Vertx vertx,
@@ -93,6 +96,7 @@ public class JsonRpcHttpService {
 
   public CompletableFuture<?> start() {
     LOG.info("Starting JsonRPC service on {}:{}", config.getHost(), config.getPort());
+    scheduler = new JsonRpcScheduler(config);
     // Create the HTTP server and a router object.
     httpServer =
         vertx.createHttpServer(
@@ -133,6 +137,7 @@ public class JsonRpcHttpService {
                 return;
               }
               httpServer = null;
+              scheduler.stop();
               final Throwable cause = res.cause();
               if (cause instanceof BindException || cause instanceof SocketException) {
                 resultFuture.completeExceptionally(
@@ -160,6 +165,7 @@ public class JsonRpcHttpService {
             resultFuture.completeExceptionally(res.cause());
           } else {
             httpServer = null;
+            scheduler.stop();
             resultFuture.complete(null);
           }
         });
@@ -208,23 +214,55 @@ public class JsonRpcHttpService {
   private void handleJsonSingleRequest(
       final RoutingContext routingContext, final JsonObject request) {
     final HttpServerResponse response = routingContext.response();
-    vertx.executeBlocking(
-        future -> {
-          final JsonRpcResponse jsonRpcResponse = process(request);
-          future.complete(jsonRpcResponse);
-        },
-        false,
-        (res) -> {
-          if (res.failed()) {
-            response.setStatusCode(HttpResponseStatus.INTERNAL_SERVER_ERROR.code()).end();
-            return;
-          }
+    try {
+      scheduler.execute(
+          methodName(request),
+          () -> {
+            try {
+              final JsonRpcResponse jsonRpcResponse = process(request);
+              response.setStatusCode(status(jsonRpcResponse).code());
+              response.putHeader("Content-Type", APPLICATION_JSON);
+              if (jsonRpcResponse.getType() == JsonRpcResponseType.NONE) {
+                response.end(EMPTY_RESPONSE);
+              } else {
+                writeResponse(response, jsonRpcResponse);
+              }
+            } catch (final RuntimeException e) {
+              handleWriteFailure(response, e);
+            }
+          });
+    } catch (final RejectedExecutionException e) {
+      LOG.debug("Rejected JSON-RPC request: {}", e.getMessage());
+      response
+          .setStatusCode(HttpResponseStatus.SERVICE_UNAVAILABLE.code())
+          .putHeader("Content-Type", APPLICATION_JSON)
+          .end(Json.encode(errorResponse(requestId(request), JsonRpcError.SERVER_BUSY)));
+    }
+  }
 
-          final JsonRpcResponse jsonRpcResponse = (JsonRpcResponse) res.result();
-          response.setStatusCode(status(jsonRpcResponse).code());
-          response.putHeader("Content-Type", APPLICATION_JSON);
-          response.end(serialise(jsonRpcResponse));
-        });
+  // Responses larger than a chunk are streamed on the writer pool, so that a slow client never
+  // holds a request pool thread, or the event loop, while its response drains.
+  private void writeResponse(final HttpServerResponse response, final Object value) {
+    JsonResponseStreamer.stream(response, value, config.isPrettyJsonEnabled(), scheduler::write)
+        .whenComplete(
+            (written, error) -> {
+              if (error != null) {
+                handleWriteFailure(response, error);
+              }
+            });
+  }
+
+  private void handleWriteFailure(final HttpServerResponse response, final Throwable cause) {
+    LOG.debug("Failed to write JSON-RPC response", cause);
+    if (response.closed() || response.ended()) {
+      return;
+    }
+    if (response.headWritten()) {
+      // Part of the response has already been sent, so the client can only be told by closing it.
+      response.close();
+    } else {
+      response.setStatusCode(HttpResponseStatus.INTERNAL_SERVER_ERROR.code()).end();
+    }
   }
 
   private HttpResponseStatus status(final JsonRpcResponse response) {
@@ -239,18 +277,10 @@ public class JsonRpcHttpService {
     }
   }
 
-  private String serialise(final JsonRpcResponse response) {
-
-    if (response.getType() == JsonRpcResponseType.NONE) {
-      return EMPTY_RESPONSE;
-    }
-
-    return Json.encodePrettily(response);
-  }
-
   @SuppressWarnings("rawtypes")
   private void handleJsonBatchRequest(
       final RoutingContext routingContext, final JsonArray jsonArray) {
+    final Context context = vertx.getOrCreateContext();
     // Interpret json as rpc request
     final List<Future> responses =
         jsonArray
@@ -264,16 +294,22 @@ public class JsonRpcHttpService {
 
                   final JsonObject req = (JsonObject) obj;
                   final Future<JsonRpcResponse> fut = Future.future();
-                  vertx.executeBlocking(
-                      future -> future.complete(process(req)),
-                      false,
-                      ar -> {
-                        if (ar.failed()) {
-                          fut.fail(ar.cause());
-                        } else {
-                          fut.complete((JsonRpcResponse) ar.result());
-                        }
-                      });
+                  try {
+                    scheduler.execute(
+                        methodName(req),
+                        () -> {
+                          try {
+                            final JsonRpcResponse response = process(req);
+                            context.runOnContext(v -> fut.complete(response));
+                          } catch (final RuntimeException e) {
+                            context.runOnContext(v -> fut.fail(e));
+                          }
+                        });
+                  } catch (final RejectedExecutionException e) {
+                    // Only the requests that couldn't be scheduled fail, the rest of the batch
+                    // is still answered.
+                    fut.complete(errorResponse(requestId(req), JsonRpcError.SERVER_BUSY));
+                  }
                   return fut;
                 })
             .collect(toList());
@@ -296,10 +332,27 @@ public class JsonRpcHttpService {
                       .filter(r -> isNonEmptyResponses(r))
                       .toArray(JsonRpcResponse[]::new);
 
-              routingContext.response().end(Json.encode(completed));
+              try {
+                writeResponse(routingContext.response(), completed);
+              } catch (final RuntimeException e) {
+                handleWriteFailure(routingContext.response(), e);
+              }
             });
   }
 
+  private static String methodName(final JsonObject requestJson) {
+    final Object method = requestJson.getValue("method");
+    return method instanceof String ? (String) method : "";
+  }
+
+  private static Object requestId(final JsonObject requestJson) {
+    try {
+      return new JsonRpcRequestId(requestJson.getValue("id")).getValue();
+    } catch (final IllegalArgumentException e) {
+      return null;
+    }
+  }
+
   private boolean isNonEmptyResponses(final JsonRpcResponse result) {
     return result.getType() != JsonRpcResponseType.NONE;
   }
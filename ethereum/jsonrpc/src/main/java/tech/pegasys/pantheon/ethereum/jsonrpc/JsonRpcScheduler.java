@@ -0,0 +1,128 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.jsonrpc;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Executes JSON-RPC requests on bounded {@link JsonRpcWorkerPool}s, limiting how many requests for
+ * a method may be in flight at once.
+ *
+ * <p>Requests are rejected straight away, rather than queued without bound, when their pool's queue
+ * is full or their method is at its limit.
+ *
+ * <p>Responses streamed to the client have a pool of their own, as a client that reads slowly holds
+ * the writing thread until it catches up or the write times out.
+ */
+class JsonRpcScheduler {
+
+  private static final int WRITER_THREADS = 8;
+  private static final int WRITER_QUEUE_SIZE = 1000;
+
+  private final ExecutorService writer =
+      new ThreadPoolExecutor(
+          WRITER_THREADS,
+          WRITER_THREADS,
+          0L,
+          TimeUnit.MILLISECONDS,
+          new ArrayBlockingQueue<>(WRITER_QUEUE_SIZE),
+          new ThreadFactoryBuilder().setDaemon(true).setNameFormat("JsonRpc-WRITER-%d").build());
+  private final Map<JsonRpcWorkerPool, ExecutorService> pools =
+      new EnumMap<>(JsonRpcWorkerPool.class);
+  private final Map<String, Semaphore> methodPermits = new HashMap<>();
+
+  JsonRpcScheduler(final JsonRpcConfiguration config) {
+    for (final JsonRpcWorkerPool pool : JsonRpcWorkerPool.values()) {
+      final int threads = config.getWorkerThreads(pool);
+      final int queueSize = config.getWorkerQueueSize(pool);
+      final BlockingQueue<Runnable> queue =
+          queueSize > 0 ? new ArrayBlockingQueue<>(queueSize) : new SynchronousQueue<>();
+      pools.put(
+          pool,
+          new ThreadPoolExecutor(
+              threads,
+              threads,
+              0L,
+              TimeUnit.MILLISECONDS,
+              queue,
+              new ThreadFactoryBuilder()
+                  .setDaemon(true)
+                  .setNameFormat("JsonRpc-" + pool.name() + "-%d")
+                  .build()));
+    }
+    config
+        .getMethodConcurrencyLimits()
+        .forEach((method, limit) -> methodPermits.put(method, new Semaphore(limit)));
+  }
+
+  /**
+   * Executes a request on the pool for its method.
+   *
+   * @param method the name of the requested method.
+   * @param request the request to execute.
+   * @throws RejectedExecutionException if the method is at its concurrency limit, or its pool is
+   *     saturated or stopped.
+   */
+  void execute(final String method, final Runnable request) {
+    final Semaphore permits = methodPermits.get(method);
+    if (permits == null) {
+      pools.get(JsonRpcWorkerPool.forMethod(method)).execute(request);
+      return;
+    }
+    if (!permits.tryAcquire()) {
+      throw new RejectedExecutionException("Too many concurrent " + method + " requests");
+    }
+    try {
+      pools
+          .get(JsonRpcWorkerPool.forMethod(method))
+          .execute(
+              () -> {
+                try {
+                  request.run();
+                } finally {
+                  permits.release();
+                }
+              });
+    } catch (final RejectedExecutionException e) {
+      permits.release();
+      throw e;
+    }
+  }
+
+  /**
+   * Writes a response on the writer pool.
+   *
+   * @param write the write, which may wait for the client to read the response.
+   * @throws RejectedExecutionException if the writer pool is saturated or stopped.
+   */
+  void write(final Runnable write) {
+    writer.execute(write);
+  }
+
+  void stop() {
+    pools.values().forEach(ExecutorService::shutdownNow);
+    writer.shutdownNow();
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.jsonrpc;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The worker pools JSON-RPC requests are executed on, so that slow queries and traces can't hold up
+ * the cheap reads that are used for health checks.
+ */
+public enum JsonRpcWorkerPool {
+  READ(8, 1000),
+  QUERY(4, 100),
+  TRACE(2, 10);
+
+  private static final Set<String> QUERY_METHODS =
+      new HashSet<>(
+          Arrays.asList(
+              "eth_call",
+              "eth_estimateGas",
+              "eth_getLogs",
+              "eth_getFilterLogs",
+              "debug_storageRangeAt"));
+  private static final String TRACE_METHOD_PREFIX = "debug_trace";
+
+  private final int defaultThreads;
+  private final int defaultQueueSize;
+
+  JsonRpcWorkerPool(final int defaultThreads, final int defaultQueueSize) {
+    this.defaultThreads = defaultThreads;
+    this.defaultQueueSize = defaultQueueSize;
+  }
+
+  public int getDefaultThreads() {
+    return defaultThreads;
+  }
+
+  public int getDefaultQueueSize() {
+    return defaultQueueSize;
+  }
+
+  public static JsonRpcWorkerPool forMethod(final String method) {
+    if (method.startsWith(TRACE_METHOD_PREFIX)) {
+      return TRACE;
+    }
+    return QUERY_METHODS.contains(method) ? QUERY : READ;
+  }
+}
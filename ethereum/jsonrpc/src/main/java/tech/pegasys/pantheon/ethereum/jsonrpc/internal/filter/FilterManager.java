@@ -31,7 +31,7 @@ import com.google.common.annotations.VisibleForTesting;
 import io.vertx.core.AbstractVerticle;
 
 /** Manages JSON-RPC filter events. */
-public class FilterManager extends AbstractVerticle {
+public class FilterManager extends AbstractVerticle implements LogsListener {
 
   private static final int FILTER_TIMEOUT_CHECK_TIMER = 10000;
 
@@ -132,21 +132,23 @@ public class FilterManager extends AbstractVerticle {
             filter.addBlockHash(blockHash);
           }
         });
-
-    checkBlockchainForMatchingLogsForFilters();
   }
 
-  private void checkBlockchainForMatchingLogsForFilters() {
+  @Override
+  public void addLogsQueries(final BlockAddedEvent event, final LogsQueryIndex queries) {
     final Collection<LogFilter> logFilters = filterRepository.getFiltersOfType(LogFilter.class);
     logFilters.forEach(
-        (filter) -> {
-          final long headBlockNumber = blockchainQueries.headBlockNumber();
-          final long toBlockNumber =
-              filter.getToBlock().getNumber().orElse(blockchainQueries.headBlockNumber());
-          final List<LogWithMetadata> logs =
-              blockchainQueries.matchingLogs(headBlockNumber, toBlockNumber, filter.getLogsQuery());
-          filter.addLog(logs);
-        });
+        (filter) ->
+            queries.add(
+                filter.getLogsQuery(),
+                log -> {
+                  if (log.getBlockNumber()
+                      <= filter.getToBlock().getNumber().orElse(log.getBlockNumber())) {
+                    synchronized (filter) {
+                      filter.addLog(log);
+                    }
+                  }
+                }));
   }
 
   @VisibleForTesting
@@ -49,8 +49,8 @@ class LogFilter extends Filter {
     return logsQuery;
   }
 
-  void addLog(final List<LogWithMetadata> logs) {
-    this.logs.addAll(logs);
+  void addLog(final LogWithMetadata log) {
+    logs.add(log);
   }
 
   List<LogWithMetadata> logs() {
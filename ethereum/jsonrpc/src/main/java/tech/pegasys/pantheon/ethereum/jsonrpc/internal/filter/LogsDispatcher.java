@@ -0,0 +1,164 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.jsonrpc.internal.filter;
+
+import tech.pegasys.pantheon.ethereum.chain.BlockAddedEvent;
+import tech.pegasys.pantheon.ethereum.chain.BlockAddedEvent.EventType;
+import tech.pegasys.pantheon.ethereum.chain.BlockAddedObserver;
+import tech.pegasys.pantheon.ethereum.chain.Blockchain;
+import tech.pegasys.pantheon.ethereum.chain.TransactionLocation;
+import tech.pegasys.pantheon.ethereum.core.Block;
+import tech.pegasys.pantheon.ethereum.core.Hash;
+import tech.pegasys.pantheon.ethereum.core.Log;
+import tech.pegasys.pantheon.ethereum.core.Transaction;
+import tech.pegasys.pantheon.ethereum.core.TransactionReceipt;
+import tech.pegasys.pantheon.ethereum.jsonrpc.internal.queries.LogWithMetadata;
+import tech.pegasys.pantheon.util.Subscribers;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Dispatches the logs of added blocks to all {@link LogsListener}s in a single pass.
+ *
+ * <p>The queries of every listener are gathered into one {@link LogsQueryIndex}, and the receipts
+ * of each affected block are read once, however many filters and subscriptions are installed.
+ */
+public class LogsDispatcher implements BlockAddedObserver {
+
+  private final Subscribers<LogsListener> listeners = new Subscribers<>();
+
+  public long addListener(final LogsListener listener) {
+    return listeners.subscribe(listener);
+  }
+
+  public boolean removeListener(final long listenerId) {
+    return listeners.unsubscribe(listenerId);
+  }
+
+  @Override
+  public void onBlockAdded(final BlockAddedEvent event, final Blockchain blockchain) {
+    final LogsQueryIndex queries = new LogsQueryIndex();
+    listeners.forEach(listener -> listener.addLogsQueries(event, queries));
+    if (queries.isEmpty()) {
+      return;
+    }
+
+    if (event.getEventType() == EventType.HEAD_ADVANCED) {
+      final Block block = event.getBlock();
+      final List<TransactionReceipt> receipts =
+          blockchain.getTxReceipts(block.getHash()).orElse(Collections.emptyList());
+      final List<Transaction> transactions = block.getBody().getTransactions();
+      for (int i = 0; i < Math.min(transactions.size(), receipts.size()); i++) {
+        dispatchLogs(
+            queries,
+            receipts.get(i),
+            block.getHeader().getNumber(),
+            block.getHash(),
+            transactions.get(i).hash(),
+            i,
+            false);
+      }
+    } else {
+      final Map<Hash, Optional<BlockReceipts>> blocks = new HashMap<>();
+      dispatchLogs(queries, blockchain, event.getAddedTransactions(), blocks, false);
+      dispatchLogs(queries, blockchain, event.getRemovedTransactions(), blocks, true);
+    }
+  }
+
+  // Reorgs span several blocks, so each block's receipts are read the first time one of its
+  // transactions is reached and reused for the rest.
+  private void dispatchLogs(
+      final LogsQueryIndex queries,
+      final Blockchain blockchain,
+      final List<Transaction> transactions,
+      final Map<Hash, Optional<BlockReceipts>> blocks,
+      final boolean removed) {
+    for (final Transaction transaction : transactions) {
+      final Hash transactionHash = transaction.hash();
+      final Optional<TransactionLocation> location =
+          blockchain.getTransactionLocation(transactionHash);
+      if (!location.isPresent()) {
+        continue;
+      }
+      final Hash blockHash = location.get().getBlockHash();
+      final Optional<BlockReceipts> blockReceipts =
+          blocks.computeIfAbsent(blockHash, hash -> BlockReceipts.read(blockchain, hash));
+      final int transactionIndex = location.get().getTransactionIndex();
+      if (blockReceipts.isPresent() && transactionIndex < blockReceipts.get().receipts.size()) {
+        dispatchLogs(
+            queries,
+            blockReceipts.get().receipts.get(transactionIndex),
+            blockReceipts.get().blockNumber,
+            blockHash,
+            transactionHash,
+            transactionIndex,
+            removed);
+      }
+    }
+  }
+
+  private void dispatchLogs(
+      final LogsQueryIndex queries,
+      final TransactionReceipt receipt,
+      final long blockNumber,
+      final Hash blockHash,
+      final Hash transactionHash,
+      final int transactionIndex,
+      final boolean removed) {
+    final List<Log> logs = receipt.getLogs();
+    for (int logIndex = 0; logIndex < logs.size(); logIndex++) {
+      final Log log = logs.get(logIndex);
+      final List<Consumer<LogWithMetadata>> receivers = queries.matchingReceivers(log);
+      if (receivers.isEmpty()) {
+        continue;
+      }
+      final LogWithMetadata logWithMetadata =
+          LogWithMetadata.create(
+              logIndex,
+              blockNumber,
+              blockHash,
+              transactionHash,
+              transactionIndex,
+              log.getLogger(),
+              log.getData(),
+              log.getTopics(),
+              removed);
+      receivers.forEach(receiver -> receiver.accept(logWithMetadata));
+    }
+  }
+
+  private static class BlockReceipts {
+    private final long blockNumber;
+    private final List<TransactionReceipt> receipts;
+
+    private BlockReceipts(final long blockNumber, final List<TransactionReceipt> receipts) {
+      this.blockNumber = blockNumber;
+      this.receipts = receipts;
+    }
+
+    private static Optional<BlockReceipts> read(final Blockchain blockchain, final Hash blockHash) {
+      return blockchain
+          .getBlockHeader(blockHash)
+          .flatMap(
+              header ->
+                  blockchain
+                      .getTxReceipts(blockHash)
+                      .map(receipts -> new BlockReceipts(header.getNumber(), receipts)));
+    }
+  }
+}
@@ -15,10 +15,13 @@ package tech.pegasys.pantheon.ethereum.jsonrpc.internal.filter;
 import tech.pegasys.pantheon.ethereum.core.Address;
 import tech.pegasys.pantheon.ethereum.core.Log;
 import tech.pegasys.pantheon.ethereum.core.LogTopic;
+import tech.pegasys.pantheon.ethereum.core.LogsBloomFilter;
 import tech.pegasys.pantheon.ethereum.jsonrpc.internal.parameters.TopicsParameter;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import com.google.common.collect.Lists;
 
@@ -26,10 +29,55 @@ public class LogsQuery {
 
   private final List<Address> queryAddresses;
   private final List<List<LogTopic>> queryTopics;
+  private final List<List<LogsBloomFilter>> bloomCriteria;
 
   private LogsQuery(final List<Address> addresses, final List<List<LogTopic>> topics) {
     this.queryAddresses = addresses;
     this.queryTopics = topics;
+    this.bloomCriteria = bloomCriteria(addresses, topics);
+  }
+
+  private static List<List<LogsBloomFilter>> bloomCriteria(
+      final List<Address> addresses, final List<List<LogTopic>> topics) {
+    final List<List<LogsBloomFilter>> criteria = new ArrayList<>();
+    if (!addresses.isEmpty()) {
+      criteria.add(addresses.stream().map(LogsBloomFilter::forValue).collect(Collectors.toList()));
+    }
+    for (final List<LogTopic> topic : topics) {
+      // Positions with a null candidate match any topic, so they constrain nothing.
+      if (!topic.isEmpty() && !topic.contains(null)) {
+        criteria.add(topic.stream().map(LogsBloomFilter::forValue).collect(Collectors.toList()));
+      }
+    }
+    return criteria;
+  }
+
+  /**
+   * The logs bloom filters a block must contain to hold matching logs: for every group, the block's
+   * bloom must contain at least one of the group's filters.
+   *
+   * @return the groups of bloom filters.
+   */
+  public List<List<LogsBloomFilter>> getBloomCriteria() {
+    return bloomCriteria;
+  }
+
+  /**
+   * Whether a block with the given logs bloom could hold logs matching this query.
+   *
+   * @param bloom the block's logs bloom.
+   * @return false if the block can not hold any matching logs.
+   */
+  public boolean couldMatch(final LogsBloomFilter bloom) {
+    return bloomCriteria.stream().allMatch(group -> group.stream().anyMatch(bloom::couldContain));
+  }
+
+  List<Address> getAddresses() {
+    return queryAddresses;
+  }
+
+  List<List<LogTopic>> getTopics() {
+    return queryTopics;
   }
 
   public boolean matches(final Log log) {
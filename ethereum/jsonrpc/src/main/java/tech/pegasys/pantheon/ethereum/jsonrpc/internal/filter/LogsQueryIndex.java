@@ -0,0 +1,118 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.jsonrpc.internal.filter;
+
+import tech.pegasys.pantheon.ethereum.core.Address;
+import tech.pegasys.pantheon.ethereum.core.Log;
+import tech.pegasys.pantheon.ethereum.core.LogTopic;
+import tech.pegasys.pantheon.ethereum.jsonrpc.internal.queries.LogWithMetadata;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * An inverted index of log queries, so that a log is only checked against the queries that could
+ * match it rather than against every installed query.
+ *
+ * <p>A query is indexed by its addresses if it has any, otherwise by the candidates of its first
+ * topic position that constrains the topic. Queries with neither are checked against every log.
+ */
+public class LogsQueryIndex {
+
+  private final Map<Address, List<Entry>> byAddress = new HashMap<>();
+  private final List<Map<LogTopic, List<Entry>>> byTopic = new ArrayList<>();
+  private final List<Entry> unindexed = new ArrayList<>();
+  private int size;
+
+  /**
+   * Adds a query whose matching logs are given to the receiver.
+   *
+   * @param query the query logs are matched against.
+   * @param receiver the receiver of the matching logs.
+   */
+  public void add(final LogsQuery query, final Consumer<LogWithMetadata> receiver) {
+    final Entry entry = new Entry(query, receiver);
+    size++;
+    if (!query.getAddresses().isEmpty()) {
+      for (final Address address : new LinkedHashSet<>(query.getAddresses())) {
+        byAddress.computeIfAbsent(address, key -> new ArrayList<>()).add(entry);
+      }
+      return;
+    }
+    final List<List<LogTopic>> topics = query.getTopics();
+    for (int position = 0; position < topics.size(); position++) {
+      final List<LogTopic> candidates = topics.get(position);
+      if (!candidates.isEmpty() && !candidates.contains(null)) {
+        while (byTopic.size() <= position) {
+          byTopic.add(new HashMap<>());
+        }
+        for (final LogTopic topic : new LinkedHashSet<>(candidates)) {
+          byTopic.get(position).computeIfAbsent(topic, key -> new ArrayList<>()).add(entry);
+        }
+        return;
+      }
+    }
+    unindexed.add(entry);
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Finds the receivers of the queries matching a log.
+   *
+   * @param log the log to match.
+   * @return the receivers of the matching queries, in no particular order.
+   */
+  public List<Consumer<LogWithMetadata>> matchingReceivers(final Log log) {
+    if (isEmpty()) {
+      return Collections.emptyList();
+    }
+    final List<Consumer<LogWithMetadata>> receivers = new ArrayList<>();
+    addMatchingReceivers(byAddress.get(log.getLogger()), log, receivers);
+    final List<LogTopic> topics = log.getTopics();
+    for (int position = 0; position < Math.min(topics.size(), byTopic.size()); position++) {
+      addMatchingReceivers(byTopic.get(position).get(topics.get(position)), log, receivers);
+    }
+    addMatchingReceivers(unindexed, log, receivers);
+    return receivers;
+  }
+
+  private static void addMatchingReceivers(
+      final List<Entry> entries, final Log log, final List<Consumer<LogWithMetadata>> receivers) {
+    if (entries == null) {
+      return;
+    }
+    for (final Entry entry : entries) {
+      if (entry.query.matches(log)) {
+        receivers.add(entry.receiver);
+      }
+    }
+  }
+
+  private static class Entry {
+    private final LogsQuery query;
+    private final Consumer<LogWithMetadata> receiver;
+
+    private Entry(final LogsQuery query, final Consumer<LogWithMetadata> receiver) {
+      this.query = query;
+      this.receiver = receiver;
+    }
+  }
+}
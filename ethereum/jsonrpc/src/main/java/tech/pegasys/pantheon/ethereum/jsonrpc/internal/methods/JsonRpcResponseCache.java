@@ -0,0 +1,233 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.jsonrpc.internal.methods;
+
+import tech.pegasys.pantheon.ethereum.chain.BlockAddedEvent;
+import tech.pegasys.pantheon.ethereum.chain.BlockAddedEvent.EventType;
+import tech.pegasys.pantheon.ethereum.chain.BlockAddedObserver;
+import tech.pegasys.pantheon.ethereum.chain.Blockchain;
+import tech.pegasys.pantheon.ethereum.chain.TransactionLocation;
+import tech.pegasys.pantheon.ethereum.core.BlockHeader;
+import tech.pegasys.pantheon.ethereum.core.Hash;
+import tech.pegasys.pantheon.ethereum.jsonrpc.internal.JsonRpcRequest;
+import tech.pegasys.pantheon.ethereum.jsonrpc.internal.exception.InvalidJsonRpcParameters;
+import tech.pegasys.pantheon.ethereum.jsonrpc.internal.parameters.FilterParameter;
+import tech.pegasys.pantheon.ethereum.jsonrpc.internal.parameters.JsonRpcParameter;
+import tech.pegasys.pantheon.ethereum.jsonrpc.internal.response.JsonRpcResponse;
+import tech.pegasys.pantheon.ethereum.jsonrpc.internal.response.JsonRpcResponseType;
+import tech.pegasys.pantheon.ethereum.jsonrpc.internal.response.JsonRpcSuccessResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.vertx.core.json.Json;
+
+/**
+ * Caches the results of JSON-RPC methods whose results are fixed once the block they
+ * depend on is known: blocks by hash, transactions and receipts by hash, transaction traces and
+ * logs by block hash.
+ *
+ * <p>Entries are keyed by method, the hash of the block the result was read from and the encoded
+ * request parameters. Transactions are resolved to their current block on every request, so a
+ * transaction that moves to another block in a reorg is not served from the old block's entry. Logs
+ * are marked as removed when their block is not canonical, so when a reorg is observed the entries
+ * of every block that has left or joined the canonical chain since they were cached are dropped.
+ *
+ * <p>Entries are weighed by the size in bytes of their key and of their result encoded as compact
+ * JSON.
+ */
+public class JsonRpcResponseCache implements BlockAddedObserver {
+
+  private final JsonRpcParameter parameters = new JsonRpcParameter();
+  private final Blockchain blockchain;
+  private final Cache<String, CachedResult> cache;
+  // Results computed across a reorg may be inconsistent and must not be cached.
+  private final Object reorgLock = new Object();
+  private long reorgs;
+
+  public JsonRpcResponseCache(final Blockchain blockchain, final long maximumBytes) {
+    this.blockchain = blockchain;
+    this.cache =
+        CacheBuilder.newBuilder()
+            .maximumWeight(maximumBytes)
+            .<String, CachedResult>weigher((key, value) -> utf8Length(key) + value.encodedLength)
+            .build();
+  }
+
+  /**
+   * Wraps each method with cacheable results so that it is answered from this cache.
+   *
+   * @param methods the methods by name, which are replaced in place.
+   */
+  public void decorate(final Map<String, JsonRpcMethod> methods) {
+    methods.replaceAll(
+        (name, method) -> isCacheable(name) ? new CachingJsonRpcMethod(method) : method);
+  }
+
+  @Override
+  public void onBlockAdded(final BlockAddedEvent event, final Blockchain blockchain) {
+    if (event.getEventType() != EventType.CHAIN_REORG) {
+      return;
+    }
+    synchronized (reorgLock) {
+      reorgs++;
+    }
+    final Map<Hash, Boolean> canonical = new HashMap<>();
+    cache
+        .asMap()
+        .values()
+        .removeIf(
+            result ->
+                result.canonical
+                    != canonical.computeIfAbsent(
+                        result.blockHash,
+                        hash -> isCanonical(blockchain, hash, result.blockNumber)));
+  }
+
+  @VisibleForTesting
+  long size() {
+    return cache.size();
+  }
+
+  private static int utf8Length(final String value) {
+    return value.getBytes(StandardCharsets.UTF_8).length;
+  }
+
+  private static boolean isCanonical(
+      final Blockchain blockchain, final Hash blockHash, final long blockNumber) {
+    return blockchain.getBlockHashByNumber(blockNumber).map(blockHash::equals).orElse(false);
+  }
+
+  private static boolean isCacheable(final String method) {
+    switch (method) {
+      case "eth_getBlockByHash":
+      case "eth_getTransactionByHash":
+      case "eth_getTransactionReceipt":
+      case "debug_traceTransaction":
+      case "eth_getLogs":
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private Optional<BlockHeader> dependentBlock(final JsonRpcRequest request) {
+    final Object[] params = request.getParams();
+    try {
+      switch (request.getMethod()) {
+        case "eth_getBlockByHash":
+          return blockchain.getBlockHeader(parameters.required(params, 0, Hash.class));
+        case "eth_getTransactionByHash":
+        case "eth_getTransactionReceipt":
+        case "debug_traceTransaction":
+          return blockchain
+              .getTransactionLocation(parameters.required(params, 0, Hash.class))
+              .map(TransactionLocation::getBlockHash)
+              .flatMap(blockchain::getBlockHeader);
+        case "eth_getLogs":
+          return Optional.ofNullable(
+                  parameters.required(params, 0, FilterParameter.class).getBlockhash())
+              .flatMap(blockchain::getBlockHeader);
+        default:
+          return Optional.empty();
+      }
+    } catch (final InvalidJsonRpcParameters e) {
+      // Leave the method to report invalid parameters.
+      return Optional.empty();
+    }
+  }
+
+  private class CachingJsonRpcMethod implements JsonRpcMethod {
+
+    private final JsonRpcMethod delegate;
+
+    private CachingJsonRpcMethod(final JsonRpcMethod delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public String getName() {
+      return delegate.getName();
+    }
+
+    @Override
+    public JsonRpcResponse response(final JsonRpcRequest request) {
+      final long reorgsBefore;
+      synchronized (reorgLock) {
+        reorgsBefore = reorgs;
+      }
+      final Optional<BlockHeader> block = dependentBlock(request);
+      if (!block.isPresent()) {
+        return delegate.response(request);
+      }
+
+      final Hash blockHash = block.get().getHash();
+      final long blockNumber = block.get().getNumber();
+      // Read before the result, so a reorg in between always leaves the entry to be evicted.
+      final boolean canonical = isCanonical(blockchain, blockHash, blockNumber);
+      final String key =
+          request.getMethod() + ':' + blockHash + ':' + Json.encode(request.getParams());
+      final CachedResult cached = cache.getIfPresent(key);
+      if (cached != null) {
+        return new JsonRpcSuccessResponse(request.getId(), cached.result);
+      }
+
+      final JsonRpcResponse response = delegate.response(request);
+      if (response.getType() != JsonRpcResponseType.SUCCESS
+          || ((JsonRpcSuccessResponse) response).getResult() == null) {
+        return response;
+      }
+      // A reorg that isn't observed yet may already have moved the transaction to another block.
+      if (!dependentBlock(request).map(h -> h.getHash().equals(blockHash)).orElse(false)) {
+        return response;
+      }
+      final Object result = ((JsonRpcSuccessResponse) response).getResult();
+      final CachedResult entry =
+          new CachedResult(
+              blockHash, blockNumber, canonical, result, utf8Length(Json.encode(result)));
+      synchronized (reorgLock) {
+        if (reorgs == reorgsBefore) {
+          cache.put(key, entry);
+        }
+      }
+      return response;
+    }
+  }
+
+  private static class CachedResult {
+
+    private final Hash blockHash;
+    private final long blockNumber;
+    private final boolean canonical;
+    private final Object result;
+    private final int encodedLength;
+
+    private CachedResult(
+        final Hash blockHash,
+        final long blockNumber,
+        final boolean canonical,
+        final Object result,
+        final int encodedLength) {
+      this.blockHash = blockHash;
+      this.blockNumber = blockNumber;
+      this.canonical = canonical;
+      this.result = result;
+      this.encodedLength = encodedLength;
+    }
+  }
+}
@@ -26,6 +26,7 @@ import tech.pegasys.pantheon.ethereum.core.MutableWorldState;
 import tech.pegasys.pantheon.ethereum.core.Transaction;
 import tech.pegasys.pantheon.ethereum.core.TransactionReceipt;
 import tech.pegasys.pantheon.ethereum.core.Wei;
+import tech.pegasys.pantheon.ethereum.db.LogsBloomIndex;
 import tech.pegasys.pantheon.ethereum.db.WorldStateArchive;
 import tech.pegasys.pantheon.ethereum.jsonrpc.internal.filter.LogsQuery;
 import tech.pegasys.pantheon.util.bytes.BytesValue;
@@ -42,10 +43,25 @@ public class BlockchainQueries {
 
   private final WorldStateArchive worldStateArchive;
   private final Blockchain blockchain;
+  private final Optional<LogsBloomIndex> logsBloomIndex;
 
   public BlockchainQueries(final Blockchain blockchain, final WorldStateArchive worldStateArchive) {
+    this(blockchain, worldStateArchive, Optional.empty());
+  }
+
+  /**
+   * @param blockchain The blockchain to query.
+   * @param worldStateArchive The world states of the blockchain's blocks.
+   * @param logsBloomIndex The index used to find the blocks that could hold logs matching a query,
+   *     or empty to check the logs bloom of every block's header.
+   */
+  public BlockchainQueries(
+      final Blockchain blockchain,
+      final WorldStateArchive worldStateArchive,
+      final Optional<LogsBloomIndex> logsBloomIndex) {
     this.blockchain = blockchain;
     this.worldStateArchive = worldStateArchive;
+    this.logsBloomIndex = logsBloomIndex;
   }
 
   public Blockchain getBlockchain() {
@@ -536,8 +552,15 @@ public class BlockchainQueries {
     if (fromBlockNumber > toBlockNumber || toBlockNumber > headBlockNumber()) {
       return Lists.newArrayList();
     }
+    final List<Long> candidateBlockNumbers =
+        logsBloomIndex.isPresent()
+            ? logsBloomIndex
+                .get()
+                .matchingBlocks(
+                    fromBlockNumber, toBlockNumber, query.getBloomCriteria(), query::couldMatch)
+            : blocksWithMatchingBloom(fromBlockNumber, toBlockNumber, query);
     List<LogWithMetadata> matchingLogs = Lists.newArrayList();
-    for (long blockNumber = fromBlockNumber; blockNumber <= toBlockNumber; blockNumber++) {
+    for (final long blockNumber : candidateBlockNumbers) {
       final Hash blockhash = blockchain.getBlockHashByNumber(blockNumber).get();
       final boolean logHasBeenRemoved = !blockchain.blockIsOnCanonicalChain(blockhash);
       final List<TransactionReceipt> receipts = blockchain.getTxReceipts(blockhash).get();
@@ -556,6 +579,17 @@ public class BlockchainQueries {
     return matchingLogs;
   }
 
+  private List<Long> blocksWithMatchingBloom(
+      final long fromBlockNumber, final long toBlockNumber, final LogsQuery query) {
+    final List<Long> blockNumbers = new ArrayList<>();
+    for (long blockNumber = fromBlockNumber; blockNumber <= toBlockNumber; blockNumber++) {
+      if (query.couldMatch(blockchain.getBlockHeader(blockNumber).get().getLogsBloom())) {
+        blockNumbers.add(blockNumber);
+      }
+    }
+    return blockNumbers;
+  }
+
   public List<LogWithMetadata> matchingLogs(final Hash blockhash, final LogsQuery query) {
     final List<LogWithMetadata> matchingLogs = Lists.newArrayList();
     final List<TransactionReceipt> receipts = blockchain.getTxReceipts(blockhash).get();
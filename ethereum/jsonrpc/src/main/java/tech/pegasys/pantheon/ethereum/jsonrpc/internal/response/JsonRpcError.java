@@ -26,6 +26,9 @@ public enum JsonRpcError {
   INVALID_PARAMS(-32602, "Invalid params"),
   INTERNAL_ERROR(-32603, "Internal error"),
 
+  // Load shedding
+  SERVER_BUSY(-32050, "Server busy, retry later"),
+
   // Filter & Subscription Errors
   FILTER_NOT_FOUND(-32000, "Filter not found"),
   SUBSCRIPTION_NOT_FOUND(-32000, "Subscription not found"),
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.jsonrpc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import tech.pegasys.pantheon.ethereum.jsonrpc.internal.response.JsonRpcSuccessResponse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.Json;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JsonResponseStreamerTest {
+
+  private final HttpServerResponse response = mock(HttpServerResponse.class);
+  private final Buffer written = Buffer.buffer();
+  private boolean chunked;
+
+  @Before
+  public void setUp() {
+    when(response.isChunked()).thenAnswer(invocation -> chunked);
+    doAnswer(
+            invocation -> {
+              chunked = invocation.getArgument(0);
+              return response;
+            })
+        .when(response)
+        .setChunked(anyBoolean());
+    doAnswer(
+            invocation -> {
+              written.appendBuffer(invocation.getArgument(0));
+              return response;
+            })
+        .when(response)
+        .write(any(Buffer.class));
+    doAnswer(
+            invocation -> {
+              written.appendBuffer(invocation.getArgument(0));
+              return null;
+            })
+        .when(response)
+        .end(any(Buffer.class));
+  }
+
+  @Test
+  public void smallResponseIsSentInOnePiece() throws Exception {
+    final JsonRpcSuccessResponse value = new JsonRpcSuccessResponse(1, "0x1");
+
+    JsonResponseStreamer.stream(response, value, false);
+
+    verify(response, never()).setChunked(anyBoolean());
+    verify(response).end(any(Buffer.class));
+    assertThat(written.toString()).isEqualTo(Json.encode(value));
+  }
+
+  @Test
+  public void largeResponseIsSentInChunks() throws Exception {
+    final JsonRpcSuccessResponse value = new JsonRpcSuccessResponse(1, largeResult());
+
+    JsonResponseStreamer.stream(response, value, false);
+
+    assertThat(chunked).isTrue();
+    verify(response).end();
+    assertThat(written.toString()).isEqualTo(Json.encode(value));
+  }
+
+  @Test
+  public void prettyResponseIsIndented() throws Exception {
+    final JsonRpcSuccessResponse value = new JsonRpcSuccessResponse(1, largeResult());
+
+    JsonResponseStreamer.stream(response, value, true);
+
+    assertThat(written.toString()).isEqualTo(Json.encodePrettily(value));
+  }
+
+  @Test
+  public void connectionIsClosedWhenClientStopsReading() {
+    when(response.writeQueueFull()).thenReturn(true);
+    final JsonRpcSuccessResponse value = new JsonRpcSuccessResponse(1, largeResult());
+
+    assertThatThrownBy(() -> JsonResponseStreamer.stream(response, value, false, 200))
+        .isInstanceOf(IOException.class);
+
+    verify(response).close();
+    verify(response, never()).end();
+  }
+
+  @Test
+  public void smallResponseIsWrittenWithoutTheWriteExecutor() {
+    final JsonRpcSuccessResponse value = new JsonRpcSuccessResponse(1, "0x1");
+
+    final CompletableFuture<Void> result =
+        JsonResponseStreamer.stream(
+            response,
+            value,
+            false,
+            write -> {
+              throw new AssertionError("Small response handed to the write executor");
+            });
+
+    assertThat(result).isCompleted();
+    assertThat(written.toString()).isEqualTo(Json.encode(value));
+  }
+
+  @Test
+  public void largeResponseIsStreamedOnTheWriteExecutor() {
+    final JsonRpcSuccessResponse value = new JsonRpcSuccessResponse(1, largeResult());
+    final List<Runnable> writes = new ArrayList<>();
+
+    final CompletableFuture<Void> result =
+        JsonResponseStreamer.stream(response, value, false, writes::add);
+
+    assertThat(result).isNotDone();
+    assertThat(written.length()).isZero();
+    writes.forEach(Runnable::run);
+    assertThat(result).isCompleted();
+    assertThat(chunked).isTrue();
+    assertThat(written.toString()).isEqualTo(Json.encode(value));
+  }
+
+  @Test
+  public void cheapResponsesAreServedWhileReadResponsesWaitForSlowClients() throws Exception {
+    final JsonRpcConfiguration config = JsonRpcConfiguration.createDefault();
+    config.setWorkerThreads(JsonRpcWorkerPool.READ, 1);
+    final JsonRpcScheduler scheduler = new JsonRpcScheduler(config);
+    try {
+      // The client never reads, so the write queue never drains.
+      when(response.writeQueueFull()).thenReturn(true);
+      final JsonRpcSuccessResponse block = new JsonRpcSuccessResponse(1, largeResult());
+      scheduler.execute(
+          "eth_getBlockByNumber",
+          () -> JsonResponseStreamer.stream(response, block, false, scheduler::write));
+      verify(response, timeout(10_000)).write(any(Buffer.class));
+
+      final HttpServerResponse cheapResponse = mock(HttpServerResponse.class);
+      final CountDownLatch served = new CountDownLatch(1);
+      scheduler.execute(
+          "eth_blockNumber",
+          () ->
+              JsonResponseStreamer.stream(
+                      cheapResponse, new JsonRpcSuccessResponse(2, "0x1"), false, scheduler::write)
+                  .thenRun(served::countDown));
+
+      assertThat(served.await(10, TimeUnit.SECONDS)).isTrue();
+      verify(cheapResponse).end(any(Buffer.class));
+      verify(response, never()).end();
+    } finally {
+      scheduler.stop();
+    }
+  }
+
+  private List<String> largeResult() {
+    final List<String> result = new ArrayList<>();
+    for (int i = 0; i < 5_000; i++) {
+      result.add(String.join("", Collections.nCopies(8, Integer.toHexString(i))));
+    }
+    return result;
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.jsonrpc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class JsonRpcSchedulerTest {
+
+  private final CountDownLatch release = new CountDownLatch(1);
+  private JsonRpcScheduler scheduler;
+
+  @After
+  public void tearDown() {
+    release.countDown();
+    scheduler.stop();
+  }
+
+  @Test
+  public void methodsAreAssignedToPools() {
+    scheduler = new JsonRpcScheduler(JsonRpcConfiguration.createDefault());
+
+    assertThat(JsonRpcWorkerPool.forMethod("eth_blockNumber")).isEqualTo(JsonRpcWorkerPool.READ);
+    assertThat(JsonRpcWorkerPool.forMethod("eth_getLogs")).isEqualTo(JsonRpcWorkerPool.QUERY);
+    assertThat(JsonRpcWorkerPool.forMethod("debug_traceTransaction"))
+        .isEqualTo(JsonRpcWorkerPool.TRACE);
+  }
+
+  @Test
+  public void saturatedPoolRejectsRequestsWithoutBlockingOtherPools() throws Exception {
+    final JsonRpcConfiguration config = JsonRpcConfiguration.createDefault();
+    config.setWorkerThreads(JsonRpcWorkerPool.TRACE, 1);
+    config.setWorkerQueueSize(JsonRpcWorkerPool.TRACE, 1);
+    scheduler = new JsonRpcScheduler(config);
+
+    final CountDownLatch started = new CountDownLatch(1);
+    scheduler.execute("debug_traceTransaction", blockUntilReleased(started));
+    assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+    scheduler.execute("debug_traceTransaction", blockUntilReleased(new CountDownLatch(1)));
+
+    assertThatThrownBy(
+            () -> scheduler.execute("debug_traceTransaction", blockUntilReleased(started)))
+        .isInstanceOf(RejectedExecutionException.class);
+
+    final CountDownLatch read = new CountDownLatch(1);
+    scheduler.execute("eth_blockNumber", read::countDown);
+    assertThat(read.await(10, TimeUnit.SECONDS)).isTrue();
+  }
+
+  @Test
+  public void methodAtConcurrencyLimitIsRejectedUntilARequestCompletes() throws Exception {
+    final JsonRpcConfiguration config = JsonRpcConfiguration.createDefault();
+    config.setMethodConcurrencyLimit("eth_getLogs", 1);
+    scheduler = new JsonRpcScheduler(config);
+
+    final CountDownLatch started = new CountDownLatch(1);
+    scheduler.execute("eth_getLogs", blockUntilReleased(started));
+    assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+
+    assertThatThrownBy(() -> scheduler.execute("eth_getLogs", () -> {}))
+        .isInstanceOf(RejectedExecutionException.class);
+
+    final CountDownLatch call = new CountDownLatch(1);
+    scheduler.execute("eth_call", call::countDown);
+    assertThat(call.await(10, TimeUnit.SECONDS)).isTrue();
+
+    release.countDown();
+    final CountDownLatch retried = new CountDownLatch(1);
+    final long deadline = System.currentTimeMillis() + 10_000;
+    while (retried.getCount() > 0 && System.currentTimeMillis() < deadline) {
+      try {
+        scheduler.execute("eth_getLogs", retried::countDown);
+        retried.await(10, TimeUnit.SECONDS);
+      } catch (final RejectedExecutionException e) {
+        Thread.sleep(10);
+      }
+    }
+    assertThat(retried.getCount()).isZero();
+  }
+
+  @Test
+  public void writesAreNotHeldUpBySaturatedRequestPools() throws Exception {
+    final JsonRpcConfiguration config = JsonRpcConfiguration.createDefault();
+    config.setWorkerThreads(JsonRpcWorkerPool.READ, 1);
+    config.setWorkerQueueSize(JsonRpcWorkerPool.READ, 0);
+    scheduler = new JsonRpcScheduler(config);
+
+    final CountDownLatch started = new CountDownLatch(1);
+    scheduler.execute("eth_getBlockByNumber", blockUntilReleased(started));
+    assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+
+    final CountDownLatch written = new CountDownLatch(1);
+    scheduler.write(written::countDown);
+    assertThat(written.await(10, TimeUnit.SECONDS)).isTrue();
+  }
+
+  private Runnable blockUntilReleased(final CountDownLatch started) {
+    return () -> {
+      started.countDown();
+      try {
+        release.await();
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    };
+  }
+}
@@ -26,15 +26,21 @@ import static org.mockito.Mockito.when;
 import tech.pegasys.pantheon.ethereum.chain.BlockAddedEvent;
 import tech.pegasys.pantheon.ethereum.chain.Blockchain;
 import tech.pegasys.pantheon.ethereum.core.Address;
+import tech.pegasys.pantheon.ethereum.core.Block;
 import tech.pegasys.pantheon.ethereum.core.Hash;
+import tech.pegasys.pantheon.ethereum.core.Log;
 import tech.pegasys.pantheon.ethereum.core.TransactionPool;
+import tech.pegasys.pantheon.ethereum.core.TransactionReceipt;
 import tech.pegasys.pantheon.ethereum.jsonrpc.internal.parameters.BlockParameter;
 import tech.pegasys.pantheon.ethereum.jsonrpc.internal.queries.BlockchainQueries;
 import tech.pegasys.pantheon.ethereum.jsonrpc.internal.queries.LogWithMetadata;
 import tech.pegasys.pantheon.ethereum.jsonrpc.internal.results.Quantity;
 import tech.pegasys.pantheon.ethereum.testutil.BlockDataGenerator;
+import tech.pegasys.pantheon.ethereum.testutil.BlockDataGenerator.BlockOptions;
 import tech.pegasys.pantheon.util.bytes.BytesValue;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
@@ -49,6 +55,8 @@ import org.mockito.junit.MockitoJUnitRunner;
 @RunWith(MockitoJUnitRunner.class)
 public class FilterManagerLogFilterTest {
 
+  private final BlockDataGenerator blockDataGenerator = new BlockDataGenerator();
+  private final LogsDispatcher logsDispatcher = new LogsDispatcher();
   private FilterManager filterManager;
 
   @Mock private Blockchain blockchain;
@@ -62,6 +70,7 @@ public class FilterManagerLogFilterTest {
     this.filterManager =
         new FilterManager(
             blockchainQueries, transactionPool, new FilterIdGenerator(), filterRepository);
+    logsDispatcher.addListener(filterManager);
   }
 
   @Test
@@ -76,48 +85,43 @@ public class FilterManagerLogFilterTest {
   }
 
   @Test
-  public void shouldCheckMatchingLogsWhenRecordedNewBlockEvent() {
-    when(blockchainQueries.headBlockNumber()).thenReturn(100L);
-
-    filterManager.installLogFilter(latest(), latest(), logsQuery());
-    recordNewBlockEvent();
+  public void shouldAddLogsOfNewBlockToMatchingFilters() {
+    final String filterId = filterManager.installLogFilter(latest(), latest(), logsQuery());
+    final String otherFilterId =
+        filterManager.installLogFilter(
+            latest(),
+            latest(),
+            new LogsQuery.Builder().address(Address.fromHexString("0x1")).build());
+    final List<LogWithMetadata> logs = recordNewBlockEvent(100L);
 
-    verify(blockchainQueries).matchingLogs(eq(100L), eq(100L), refEq(logsQuery()));
+    assertThat(filterManager.logsChanges(filterId)).isEqualToComparingFieldByFieldRecursively(logs);
+    assertThat(filterManager.logsChanges(otherFilterId)).isEqualTo(Collections.emptyList());
   }
 
   @Test
-  public void shouldUseHeadBlockAsFromBlockNumberWhenCheckingLogsForChanges() {
-    when(blockchainQueries.headBlockNumber()).thenReturn(3L);
+  public void shouldNotAddLogsOfBlocksAfterFilterToBlock() {
+    final String filterId =
+        filterManager.installLogFilter(blockNum(1L), blockNum(10L), logsQuery());
+    final List<LogWithMetadata> logs = recordNewBlockEvent(10L);
+    recordNewBlockEvent(11L);
 
-    filterManager.installLogFilter(blockNum(1L), blockNum(10L), logsQuery());
-    recordNewBlockEvent();
-
-    verify(blockchainQueries).matchingLogs(eq(3L), eq(10L), refEq(logsQuery()));
-  }
-
-  @Test
-  public void shouldReturnLogWhenLogFilterMatches() {
-    final LogWithMetadata log = logWithMetadata();
-    when(blockchainQueries.headBlockNumber()).thenReturn(100L);
-    when(blockchainQueries.matchingLogs(eq(100L), eq(100L), refEq(logsQuery())))
-        .thenReturn(Lists.newArrayList(log));
-
-    final String filterId = filterManager.installLogFilter(latest(), latest(), logsQuery());
-    recordNewBlockEvent();
-
-    final List<LogWithMetadata> retrievedLogs = filterManager.logsChanges(filterId);
-
-    assertThat(retrievedLogs).isEqualToComparingFieldByFieldRecursively(Lists.newArrayList(log));
+    assertThat(filterManager.logsChanges(filterId)).isEqualToComparingFieldByFieldRecursively(logs);
   }
 
   @Test
   public void shouldCheckLogsForEveryLogFilter() {
-    filterManager.installLogFilter(latest(), latest(), logsQuery());
-    filterManager.installLogFilter(latest(), latest(), logsQuery());
-    filterManager.installLogFilter(latest(), latest(), logsQuery());
-    recordNewBlockEvent();
+    final List<String> filterIds =
+        Lists.newArrayList(
+            filterManager.installLogFilter(latest(), latest(), logsQuery()),
+            filterManager.installLogFilter(latest(), latest(), logsQuery()),
+            filterManager.installLogFilter(latest(), latest(), logsQuery()));
+    final List<LogWithMetadata> logs = recordNewBlockEvent(100L);
 
-    verify(blockchainQueries, times(3)).matchingLogs(anyLong(), anyLong(), any());
+    filterIds.forEach(
+        filterId ->
+            assertThat(filterManager.logsChanges(filterId))
+                .isEqualToComparingFieldByFieldRecursively(logs));
+    verify(blockchain).getTxReceipts(any());
   }
 
   @Test
@@ -130,21 +134,40 @@ public class FilterManagerLogFilterTest {
 
   @Test
   public void shouldClearLogsAfterGettingLogChanges() {
-    when(blockchainQueries.matchingLogs(anyLong(), anyLong(), any()))
-        .thenReturn(Lists.newArrayList(logWithMetadata()));
-
     final String filterId = filterManager.installLogFilter(latest(), latest(), logsQuery());
-    recordNewBlockEvent();
-    recordNewBlockEvent();
+    final int logCount = recordNewBlockEvent(100L).size() + recordNewBlockEvent(101L).size();
 
-    assertThat(filterManager.logsChanges(filterId).size()).isEqualTo(2);
+    assertThat(filterManager.logsChanges(filterId).size()).isEqualTo(logCount);
     assertThat(filterManager.logsChanges(filterId).size()).isEqualTo(0);
   }
 
-  private void recordNewBlockEvent() {
-    filterManager.recordBlockEvent(
-        BlockAddedEvent.createForHeadAdvancement(new BlockDataGenerator().block()),
-        blockchainQueries.getBlockchain());
+  private List<LogWithMetadata> recordNewBlockEvent(final long blockNumber) {
+    final Block block = blockDataGenerator.block(BlockOptions.create().setBlockNumber(blockNumber));
+    final List<TransactionReceipt> receipts = blockDataGenerator.receipts(block);
+    when(blockchain.getTxReceipts(block.getHash())).thenReturn(Optional.of(receipts));
+
+    final BlockAddedEvent event = BlockAddedEvent.createForHeadAdvancement(block);
+    filterManager.recordBlockEvent(event, blockchain);
+    logsDispatcher.onBlockAdded(event, blockchain);
+
+    final List<LogWithMetadata> logs = new ArrayList<>();
+    for (int i = 0; i < receipts.size(); i++) {
+      final List<Log> receiptLogs = receipts.get(i).getLogs();
+      for (int logIndex = 0; logIndex < receiptLogs.size(); logIndex++) {
+        logs.add(
+            LogWithMetadata.create(
+                logIndex,
+                blockNumber,
+                block.getHash(),
+                block.getBody().getTransactions().get(i).hash(),
+                i,
+                receiptLogs.get(logIndex).getLogger(),
+                receiptLogs.get(logIndex).getData(),
+                receiptLogs.get(logIndex).getTopics(),
+                false));
+      }
+    }
+    return logs;
   }
 
   @Test
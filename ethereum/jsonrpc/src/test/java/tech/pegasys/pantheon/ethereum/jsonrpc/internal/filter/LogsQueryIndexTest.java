@@ -0,0 +1,104 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.jsonrpc.internal.filter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import tech.pegasys.pantheon.ethereum.core.Address;
+import tech.pegasys.pantheon.ethereum.core.Log;
+import tech.pegasys.pantheon.ethereum.core.LogTopic;
+import tech.pegasys.pantheon.ethereum.jsonrpc.internal.queries.LogWithMetadata;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.junit.Test;
+
+public class LogsQueryIndexTest {
+
+  private final Address address1 =
+      Address.fromHexString("0x1111111111111111111111111111111111111111");
+  private final Address address2 =
+      Address.fromHexString("0x2222222222222222222222222222222222222222");
+  private final LogTopic topic1 =
+      LogTopic.fromHexString("0x1111111111111111111111111111111111111111111111111111111111111111");
+  private final LogTopic topic2 =
+      LogTopic.fromHexString("0x2222222222222222222222222222222222222222222222222222222222222222");
+
+  private final LogsQueryIndex index = new LogsQueryIndex();
+
+  @Test
+  public void emptyIndexMatchesNothing() {
+    assertThat(index.isEmpty()).isTrue();
+    assertThat(index.matchingReceivers(log(address1, topic1))).isEmpty();
+  }
+
+  @Test
+  public void queriesAreMatchedByAddress() {
+    final Consumer<LogWithMetadata> receiver = add(new LogsQuery.Builder().address(address1));
+    final Consumer<LogWithMetadata> duplicateAddressReceiver =
+        add(new LogsQuery.Builder().addresses(address1, address2, address1));
+
+    assertThat(index.matchingReceivers(log(address1)))
+        .containsOnly(receiver, duplicateAddressReceiver);
+    assertThat(index.matchingReceivers(log(address2))).containsExactly(duplicateAddressReceiver);
+  }
+
+  @Test
+  public void queriesWithoutAddressesAreMatchedByTheirFirstConstrainedTopic() {
+    final Consumer<LogWithMetadata> receiver =
+        add(
+            new LogsQuery.Builder()
+                .topics(
+                    Arrays.asList(
+                        Collections.singletonList(null), Arrays.asList(topic1, topic2, topic1))));
+
+    assertThat(index.matchingReceivers(log(address1, topic2, topic1))).containsExactly(receiver);
+    assertThat(index.matchingReceivers(log(address1, topic1, topic2))).containsExactly(receiver);
+    assertThat(index.matchingReceivers(log(address1, topic1))).isEmpty();
+    assertThat(index.matchingReceivers(log(address1, topic1, topic1, topic2)))
+        .containsExactly(receiver);
+  }
+
+  @Test
+  public void indexedCandidatesMustMatchTheWholeQuery() {
+    add(
+        new LogsQuery.Builder()
+            .address(address1)
+            .topics(Collections.singletonList(Collections.singletonList(topic1))));
+
+    assertThat(index.matchingReceivers(log(address1, topic2))).isEmpty();
+  }
+
+  @Test
+  public void wildcardQueriesMatchEveryLog() {
+    final Consumer<LogWithMetadata> receiver = add(new LogsQuery.Builder());
+
+    assertThat(index.matchingReceivers(log(address1))).containsExactly(receiver);
+    assertThat(index.matchingReceivers(log(address2, topic1))).containsExactly(receiver);
+  }
+
+  private Consumer<LogWithMetadata> add(final LogsQuery.Builder query) {
+    final Consumer<LogWithMetadata> receiver = log -> {};
+    index.add(query.build(), receiver);
+    return receiver;
+  }
+
+  private Log log(final Address address, final LogTopic... topics) {
+    final List<LogTopic> logTopics = Arrays.asList(topics);
+    return new Log(address, BytesValue.fromHexString("0x0102"), logTopics);
+  }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.jsonrpc.internal.methods;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import tech.pegasys.pantheon.ethereum.chain.TransactionLocation;
+import tech.pegasys.pantheon.ethereum.core.Block;
+import tech.pegasys.pantheon.ethereum.core.Hash;
+import tech.pegasys.pantheon.ethereum.core.Transaction;
+import tech.pegasys.pantheon.ethereum.db.DefaultMutableBlockchain;
+import tech.pegasys.pantheon.ethereum.db.WorldStateArchive;
+import tech.pegasys.pantheon.ethereum.jsonrpc.internal.JsonRpcRequest;
+import tech.pegasys.pantheon.ethereum.jsonrpc.internal.exception.InvalidJsonRpcParameters;
+import tech.pegasys.pantheon.ethereum.jsonrpc.internal.parameters.JsonRpcParameter;
+import tech.pegasys.pantheon.ethereum.jsonrpc.internal.queries.BlockchainQueries;
+import tech.pegasys.pantheon.ethereum.jsonrpc.internal.response.JsonRpcError;
+import tech.pegasys.pantheon.ethereum.jsonrpc.internal.response.JsonRpcErrorResponse;
+import tech.pegasys.pantheon.ethereum.jsonrpc.internal.response.JsonRpcResponse;
+import tech.pegasys.pantheon.ethereum.jsonrpc.internal.response.JsonRpcSuccessResponse;
+import tech.pegasys.pantheon.ethereum.mainnet.MainnetBlockHashFunction;
+import tech.pegasys.pantheon.ethereum.testutil.BlockDataGenerator;
+import tech.pegasys.pantheon.services.kvstore.InMemoryKeyValueStorage;
+import tech.pegasys.pantheon.util.uint.UInt256;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.vertx.core.json.Json;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JsonRpcResponseCacheTest {
+
+  private final BlockDataGenerator gen = new BlockDataGenerator(1);
+  private final List<Block> chain = gen.blockSequence(5);
+  private final Map<String, JsonRpcMethod> methods = new HashMap<>();
+  private DefaultMutableBlockchain blockchain;
+  private JsonRpcResponseCache cache;
+  private int receiptLookups;
+
+  @Before
+  public void setUp() {
+    blockchain =
+        new DefaultMutableBlockchain(
+            chain.get(0), new InMemoryKeyValueStorage(), MainnetBlockHashFunction::createHash);
+    for (int i = 1; i < chain.size(); i++) {
+      blockchain.appendBlock(chain.get(i), gen.receipts(chain.get(i)));
+    }
+    cache = new JsonRpcResponseCache(blockchain, 1024 * 1024);
+    blockchain.observeBlockAdded(cache);
+
+    methods.put("eth_getTransactionReceipt", new TransactionReceiptStub());
+    methods.put("eth_blockNumber", new TransactionReceiptStub());
+    methods.put(
+        "eth_getLogs",
+        new EthGetLogs(
+            new BlockchainQueries(blockchain, mock(WorldStateArchive.class)),
+            new JsonRpcParameter()));
+    cache.decorate(methods);
+  }
+
+  @Test
+  public void onlyCacheableMethodsAreDecorated() {
+    assertThat(methods.get("eth_getTransactionReceipt"))
+        .isNotInstanceOf(TransactionReceiptStub.class);
+    assertThat(methods.get("eth_blockNumber")).isInstanceOf(TransactionReceiptStub.class);
+  }
+
+  @Test
+  public void repeatedRequestsAreAnsweredFromCache() {
+    final Hash transactionHash = chain.get(3).getBody().getTransactions().get(0).hash();
+
+    final JsonRpcResponse first = receipt(transactionHash);
+    final JsonRpcResponse second = receipt(transactionHash);
+
+    assertThat(receiptLookups).isEqualTo(1);
+    assertThat(Json.encode(second)).isEqualTo(Json.encode(first));
+    assertThat(Json.encode(second)).contains(chain.get(3).getHash().toString());
+    assertThat(cache.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void cachedResultsArePrettyPrintedLikeFreshOnes() {
+    final Hash transactionHash = chain.get(3).getBody().getTransactions().get(0).hash();
+
+    final JsonRpcResponse first = receipt(transactionHash);
+    final JsonRpcResponse second = receipt(transactionHash);
+
+    assertThat(receiptLookups).isEqualTo(1);
+    assertThat(Json.encodePrettily(first)).contains("\n");
+    assertThat(Json.encodePrettily(second)).isEqualTo(Json.encodePrettily(first));
+  }
+
+  @Test
+  public void emptyAndErrorResponsesAreNotCached() {
+    final Hash unknownTransaction = gen.transaction().hash();
+    receipt(unknownTransaction);
+    receipt(unknownTransaction);
+
+    final JsonRpcRequest invalid =
+        new JsonRpcRequest("2.0", "eth_getTransactionReceipt", new Object[] {"invalid"});
+    methods.get("eth_getTransactionReceipt").response(invalid);
+
+    assertThat(receiptLookups).isEqualTo(2);
+    assertThat(cache.size()).isZero();
+  }
+
+  @Test
+  public void reorgEvictsEntriesOfReplacedBlocks() {
+    final Transaction movedTransaction = chain.get(3).getBody().getTransactions().get(0);
+    final Hash stableTransaction = chain.get(1).getBody().getTransactions().get(0).hash();
+    receipt(movedTransaction.hash());
+    receipt(stableTransaction);
+    assertThat(cache.size()).isEqualTo(2);
+
+    final Block fork =
+        gen.block(
+            gen.nextBlockOptions(chain.get(2))
+                .setDifficulty(UInt256.of(1L << 40))
+                .addTransaction(movedTransaction));
+    blockchain.appendBlock(fork, gen.receipts(fork));
+    assertThat(blockchain.getChainHeadHash()).isEqualTo(fork.getHash());
+    assertThat(cache.size()).isEqualTo(1);
+
+    final JsonRpcResponse moved = receipt(movedTransaction.hash());
+    receipt(stableTransaction);
+
+    assertThat(receiptLookups).isEqualTo(3);
+    assertThat(Json.encode(moved)).contains(fork.getHash().toString());
+  }
+
+  @Test
+  public void reorgEvictsLogsOfBlocksThatBecomeCanonical() {
+    final Block fork =
+        gen.block(gen.nextBlockOptions(chain.get(2)).addTransaction(gen.transaction()));
+    blockchain.appendBlock(fork, gen.receipts(fork));
+    assertThat(blockchain.blockIsOnCanonicalChain(fork.getHash())).isFalse();
+
+    final String removed = Json.encode(logs(fork.getHash()));
+    assertThat(removed).contains("\"removed\":true").doesNotContain("\"removed\":false");
+    assertThat(cache.size()).isEqualTo(1);
+
+    final Block forkChild =
+        gen.block(gen.nextBlockOptions(fork).setDifficulty(UInt256.of(1L << 40)));
+    blockchain.appendBlock(forkChild, gen.receipts(forkChild));
+    assertThat(blockchain.blockIsOnCanonicalChain(fork.getHash())).isTrue();
+    assertThat(cache.size()).isZero();
+
+    final String restored = Json.encode(logs(fork.getHash()));
+    assertThat(restored).contains("\"removed\":false").doesNotContain("\"removed\":true");
+  }
+
+  private JsonRpcResponse logs(final Hash blockHash) {
+    return methods
+        .get("eth_getLogs")
+        .response(
+            new JsonRpcRequest(
+                "2.0",
+                "eth_getLogs",
+                new Object[] {Collections.singletonMap("blockhash", blockHash.toString())}));
+  }
+
+  private JsonRpcResponse receipt(final Hash transactionHash) {
+    return methods
+        .get("eth_getTransactionReceipt")
+        .response(
+            new JsonRpcRequest(
+                "2.0", "eth_getTransactionReceipt", new Object[] {transactionHash.toString()}));
+  }
+
+  private class TransactionReceiptStub implements JsonRpcMethod {
+
+    private final JsonRpcParameter parameters = new JsonRpcParameter();
+
+    @Override
+    public String getName() {
+      return "eth_getTransactionReceipt";
+    }
+
+    @Override
+    public JsonRpcResponse response(final JsonRpcRequest request) {
+      final Hash hash;
+      try {
+        hash = parameters.required(request.getParams(), 0, Hash.class);
+      } catch (final InvalidJsonRpcParameters e) {
+        return new JsonRpcErrorResponse(request.getId(), JsonRpcError.INVALID_PARAMS);
+      }
+      receiptLookups++;
+      return new JsonRpcSuccessResponse(
+          request.getId(),
+          blockchain
+              .getTransactionLocation(hash)
+              .map(TransactionLocation::getBlockHash)
+              .map(blockHash -> Collections.singletonMap("blockHash", blockHash.toString()))
+              .orElse(null));
+    }
+  }
+}
@@ -45,7 +45,7 @@ public class SubscriptionBuilderTest {
 
     final Subscription builtSubscription = subscriptionBuilder.build(1L, subscribeRequest);
 
-    assertThat(builtSubscription).isEqualToComparingFieldByField(expectedSubscription);
+    assertThat(builtSubscription).isEqualToComparingFieldByFieldRecursively(expectedSubscription);
   }
 
   @Test
@@ -57,7 +57,7 @@ public class SubscriptionBuilderTest {
 
     final Subscription builtSubscription = subscriptionBuilder.build(1L, subscribeRequest);
 
-    assertThat(builtSubscription).isEqualToComparingFieldByField(expectedSubscription);
+    assertThat(builtSubscription).isEqualToComparingFieldByFieldRecursively(expectedSubscription);
   }
 
   @Test
@@ -69,7 +69,7 @@ public class SubscriptionBuilderTest {
 
     final Subscription builtSubscription = subscriptionBuilder.build(1L, subscribeRequest);
 
-    assertThat(builtSubscription).isEqualToComparingFieldByField(expectedSubscription);
+    assertThat(builtSubscription).isEqualToComparingFieldByFieldRecursively(expectedSubscription);
   }
 
   @Test
@@ -81,7 +81,7 @@ public class SubscriptionBuilderTest {
 
     final Subscription builtSubscription = subscriptionBuilder.build(1L, subscribeRequest);
 
-    assertThat(builtSubscription).isEqualToComparingFieldByField(expectedSubscription);
+    assertThat(builtSubscription).isEqualToComparingFieldByFieldRecursively(expectedSubscription);
   }
 
   @Test
@@ -23,6 +23,7 @@ import static org.mockito.Mockito.when;
 import tech.pegasys.pantheon.crypto.SECP256K1.KeyPair;
 import tech.pegasys.pantheon.ethereum.chain.BlockAddedEvent;
 import tech.pegasys.pantheon.ethereum.chain.Blockchain;
+import tech.pegasys.pantheon.ethereum.chain.TransactionLocation;
 import tech.pegasys.pantheon.ethereum.core.Address;
 import tech.pegasys.pantheon.ethereum.core.Block;
 import tech.pegasys.pantheon.ethereum.core.BlockHeader;
@@ -32,8 +33,8 @@ import tech.pegasys.pantheon.ethereum.core.Log;
 import tech.pegasys.pantheon.ethereum.core.Transaction;
 import tech.pegasys.pantheon.ethereum.core.TransactionReceipt;
 import tech.pegasys.pantheon.ethereum.core.TransactionTestFixture;
+import tech.pegasys.pantheon.ethereum.jsonrpc.internal.filter.LogsDispatcher;
 import tech.pegasys.pantheon.ethereum.jsonrpc.internal.parameters.FilterParameter;
-import tech.pegasys.pantheon.ethereum.jsonrpc.internal.queries.BlockchainQueries;
 import tech.pegasys.pantheon.ethereum.jsonrpc.internal.queries.LogWithMetadata;
 import tech.pegasys.pantheon.ethereum.jsonrpc.internal.queries.TransactionReceiptWithMetadata;
 import tech.pegasys.pantheon.ethereum.jsonrpc.internal.results.LogResult;
@@ -58,16 +59,16 @@ public class LogsSubscriptionServiceTest {
   private final KeyPair keyPair = KeyPair.generate();
   private final BlockHeaderTestFixture blockHeaderTestFixture = new BlockHeaderTestFixture();
   private final TransactionTestFixture txTestFixture = new TransactionTestFixture();
+  private long blockNumber;
 
-  private LogsSubscriptionService logsSubscriptionService;
+  private final LogsDispatcher logsDispatcher = new LogsDispatcher();
 
   @Mock private SubscriptionManager subscriptionManager;
-  @Mock private BlockchainQueries blockchainQueries;
   @Mock private Blockchain blockchain;
 
   @Before
   public void before() {
-    logsSubscriptionService = new LogsSubscriptionService(subscriptionManager, blockchainQueries);
+    logsDispatcher.addListener(new LogsSubscriptionService(subscriptionManager));
   }
 
   @Test
@@ -78,7 +79,7 @@ public class LogsSubscriptionServiceTest {
     final Log log = createLog(address);
     final LogResult expectedLogResult = createLogResult(transaction, log, false);
 
-    logsSubscriptionService.onBlockAdded(createBlockAddedEvent(transaction, null), blockchain);
+    logsDispatcher.onBlockAdded(createBlockAddedEvent(transaction, null), blockchain);
 
     verify(subscriptionManager).sendMessage(eq(subscription.getId()), refEq(expectedLogResult));
   }
@@ -91,7 +92,7 @@ public class LogsSubscriptionServiceTest {
     final Log log = createLog(address);
     final LogResult expectedLogResult = createLogResult(transaction, log, true);
 
-    logsSubscriptionService.onBlockAdded(createBlockAddedEvent(null, transaction), blockchain);
+    logsDispatcher.onBlockAdded(createBlockAddedEvent(null, transaction), blockchain);
 
     verify(subscriptionManager).sendMessage(eq(subscription.getId()), refEq(expectedLogResult));
   }
@@ -104,7 +105,7 @@ public class LogsSubscriptionServiceTest {
     final List<Transaction> addedTransactions = createTransactionsWithLog(log);
     final List<Transaction> removedTransactions = createTransactionsWithLog(log);
 
-    logsSubscriptionService.onBlockAdded(
+    logsDispatcher.onBlockAdded(
         createBlockAddedEvent(addedTransactions, removedTransactions), blockchain);
 
     final int totalOfLogs = addedTransactions.size() + removedTransactions.size();
@@ -120,7 +121,7 @@ public class LogsSubscriptionServiceTest {
     final Log log = createLog(address);
     final LogResult expectedLogResult = createLogResult(transaction, log, false);
 
-    logsSubscriptionService.onBlockAdded(createBlockAddedEvent(transaction, null), blockchain);
+    logsDispatcher.onBlockAdded(createBlockAddedEvent(transaction, null), blockchain);
 
     verify(subscriptionManager, times(subscriptions.size()))
         .sendMessage(any(), refEq(expectedLogResult));
@@ -131,7 +132,7 @@ public class LogsSubscriptionServiceTest {
     final Address address = Address.fromHexString("0x0");
     createSubscription(address);
 
-    logsSubscriptionService.onBlockAdded(
+    logsDispatcher.onBlockAdded(
         createBlockAddedEvent(Collections.emptyList(), Collections.emptyList()), blockchain);
 
     verify(subscriptionManager).subscriptionsOfType(any(), any());
@@ -145,7 +146,7 @@ public class LogsSubscriptionServiceTest {
     final Log log = createLog(Address.fromHexString("0x1"));
     createLogResult(transaction, log, false);
 
-    logsSubscriptionService.onBlockAdded(createBlockAddedEvent(transaction, null), blockchain);
+    logsDispatcher.onBlockAdded(createBlockAddedEvent(transaction, null), blockchain);
 
     verify(subscriptionManager).subscriptionsOfType(any(), any());
     verify(subscriptionManager, times(0)).sendMessage(any(), any());
@@ -190,7 +191,7 @@ public class LogsSubscriptionServiceTest {
 
   private TransactionReceiptWithMetadata createTransactionWithLog(
       final Transaction transaction, final Log log) {
-    final BlockHeader blockHeader = blockHeaderTestFixture.buildHeader();
+    final BlockHeader blockHeader = blockHeaderTestFixture.number(++blockNumber).buildHeader();
     final TransactionReceipt transactionReceipt =
         new TransactionReceipt(Hash.ZERO, 1L, Lists.newArrayList(log));
     final TransactionReceiptWithMetadata transactionReceiptWithMetadata =
@@ -203,8 +204,11 @@ public class LogsSubscriptionServiceTest {
             blockHeader.getHash(),
             blockHeader.getNumber());
 
-    when(blockchainQueries.transactionReceiptByTransactionHash(eq(transaction.hash())))
-        .thenReturn(Optional.of(transactionReceiptWithMetadata));
+    when(blockchain.getTransactionLocation(eq(transaction.hash())))
+        .thenReturn(Optional.of(new TransactionLocation(blockHeader.getHash(), 0)));
+    when(blockchain.getBlockHeader(eq(blockHeader.getHash()))).thenReturn(Optional.of(blockHeader));
+    when(blockchain.getTxReceipts(eq(blockHeader.getHash())))
+        .thenReturn(Optional.of(Lists.newArrayList(transactionReceipt)));
 
     return transactionReceiptWithMetadata;
   }
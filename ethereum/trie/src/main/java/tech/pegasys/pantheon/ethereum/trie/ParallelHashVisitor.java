@@ -0,0 +1,88 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.trie;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Computes the hashes of dirty nodes ahead of a commit or root hash, hashing the dirty children of
+ * the upper branch nodes in parallel. Each node caches its hash, so the walk that follows finds
+ * them already computed.
+ */
+class ParallelHashVisitor<V> implements NodeVisitor<V> {
+
+  // Two levels of branches already give up to 256 subtrees, more than enough to keep every thread
+  // busy. Forking deeper only adds overhead.
+  private static final int MAX_FORK_DEPTH = 2;
+
+  private final int depth;
+
+  private ParallelHashVisitor(final int depth) {
+    this.depth = depth;
+  }
+
+  static <V> void hashDirtyNodes(final Node<V> root, final ForkJoinPool pool) {
+    if (root.isDirty()) {
+      pool.invoke(ForkJoinTask.adapt(() -> root.accept(new ParallelHashVisitor<>(0))));
+    }
+  }
+
+  @Override
+  public void visit(final ExtensionNode<V> extensionNode) {
+    if (!extensionNode.isDirty()) {
+      return;
+    }
+
+    final Node<V> child = extensionNode.getChild();
+    if (child.isDirty()) {
+      child.accept(this);
+    }
+
+    extensionNode.getRlpRef();
+  }
+
+  @Override
+  public void visit(final BranchNode<V> branchNode) {
+    if (!branchNode.isDirty()) {
+      return;
+    }
+
+    if (depth < MAX_FORK_DEPTH) {
+      final ParallelHashVisitor<V> childVisitor = new ParallelHashVisitor<>(depth + 1);
+      final List<ForkJoinTask<?>> tasks = new ArrayList<>();
+      for (byte i = 0; i < BranchNode.RADIX; ++i) {
+        final Node<V> child = branchNode.child(i);
+        if (child.isDirty()) {
+          tasks.add(ForkJoinTask.adapt(() -> child.accept(childVisitor)));
+        }
+      }
+      ForkJoinTask.invokeAll(tasks);
+    }
+
+    // Below the forking depth this hashes the whole subtree on the current thread.
+    branchNode.getRlpRef();
+  }
+
+  @Override
+  public void visit(final LeafNode<V> leafNode) {
+    if (leafNode.isDirty()) {
+      leafNode.getRlpRef();
+    }
+  }
+
+  @Override
+  public void visit(final NullNode<V> nullNode) {}
+}
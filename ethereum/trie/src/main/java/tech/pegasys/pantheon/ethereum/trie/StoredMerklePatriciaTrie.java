@@ -20,7 +20,10 @@ import tech.pegasys.pantheon.util.bytes.BytesValue;
 
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Predicate;
 
 /**
  * A {@link MerklePatriciaTrie} that persists trie nodes to a {@link MerkleStorage} key/value store.
@@ -28,11 +31,17 @@ import java.util.function.Function;
  * @param <V> The type of values stored by this trie.
  */
 public class StoredMerklePatriciaTrie<K extends BytesValue, V> implements MerklePatriciaTrie<K, V> {
+  // With fewer updates since the root was last hashed there are too few dirty nodes for forking to
+  // pay off, as when the root is computed after every transaction.
+  static final int PARALLEL_HASHING_THRESHOLD = 64;
+
   private final GetVisitor<V> getVisitor = new GetVisitor<>();
   private final RemoveVisitor<V> removeVisitor = new RemoveVisitor<>();
   private final StoredNodeFactory<V> nodeFactory;
+  private final Optional<ForkJoinPool> hashingPool;
 
   private Node<V> root;
+  private int updatesSinceHashed = 0;
 
   /**
    * Create a trie.
@@ -62,7 +71,28 @@ public class StoredMerklePatriciaTrie<K extends BytesValue, V> implements Merkle
       final Bytes32 rootHash,
       final Function<V, BytesValue> valueSerializer,
       final Function<BytesValue, V> valueDeserializer) {
+    this(nodeLoader, rootHash, valueSerializer, valueDeserializer, Optional.empty());
+  }
+
+  /**
+   * Create a trie.
+   *
+   * @param nodeLoader The {@link NodeLoader} to retrieve node data from.
+   * @param rootHash The initial root has for the trie, which should be already present in {@code
+   *     storage}.
+   * @param valueSerializer A function for serializing values to bytes.
+   * @param valueDeserializer A function for deserializing values from bytes.
+   * @param hashingPool The pool on which dirty subtrees are hashed in parallel when many keys have
+   *     been updated, or empty to always hash on the calling thread.
+   */
+  public StoredMerklePatriciaTrie(
+      final NodeLoader nodeLoader,
+      final Bytes32 rootHash,
+      final Function<V, BytesValue> valueSerializer,
+      final Function<BytesValue, V> valueDeserializer,
+      final Optional<ForkJoinPool> hashingPool) {
     this.nodeFactory = new StoredNodeFactory<>(nodeLoader, valueSerializer, valueDeserializer);
+    this.hashingPool = hashingPool;
     this.root =
         rootHash.equals(MerklePatriciaTrie.EMPTY_TRIE_ROOT_HASH)
             ? NullNode.instance()
@@ -80,16 +110,19 @@ public class StoredMerklePatriciaTrie<K extends BytesValue, V> implements Merkle
     checkNotNull(key);
     checkNotNull(value);
     this.root = root.accept(new PutVisitor<>(nodeFactory, value), bytesToPath(key));
+    updatesSinceHashed++;
   }
 
   @Override
   public void remove(final K key) {
     checkNotNull(key);
     this.root = root.accept(removeVisitor, bytesToPath(key));
+    updatesSinceHashed++;
   }
 
   @Override
   public void commit(final NodeUpdater nodeUpdater) {
+    hashDirtyNodes();
     final CommitVisitor<V> commitVisitor = new CommitVisitor<>(nodeUpdater);
     root.accept(commitVisitor);
     // Make sure root node was stored
@@ -109,13 +142,55 @@ public class StoredMerklePatriciaTrie<K extends BytesValue, V> implements Merkle
     return StorageEntriesCollector.collectEntries(root, startKeyHash, limit);
   }
 
+  /**
+   * Walks every node reachable from the root of this trie, loading nodes from storage as needed
+   * without keeping them in memory.
+   *
+   * @param storedNodeListener Called with the hash of each node stored under its own hash.
+   *     Returning false skips the subtree below that node.
+   * @param valueListener Called with each value held in the visited nodes.
+   */
+  public void visitStoredNodes(
+      final Predicate<Bytes32> storedNodeListener, final Consumer<V> valueListener) {
+    new StoredNodesVisitor<>(nodeFactory, storedNodeListener, valueListener).visitNode(root);
+  }
+
+  /**
+   * Compares this trie with an earlier version of it held in the same storage, reporting every key
+   * whose value differs between the two. Only the nodes that differ are loaded, so the cost of the
+   * comparison depends on the size of the changes rather than on the size of the tries.
+   *
+   * @param previousRootHash The root of the earlier trie.
+   * @param listener Called with each changed key, its value in the earlier trie and its value in
+   *     this trie. A value is empty if the key is absent from that trie.
+   */
+  public void visitChangesSince(final Bytes32 previousRootHash, final ChangeListener<V> listener) {
+    final Node<V> previousRoot =
+        previousRootHash.equals(MerklePatriciaTrie.EMPTY_TRIE_ROOT_HASH)
+            ? NullNode.instance()
+            : new StoredNode<>(nodeFactory, previousRootHash);
+    new TrieChangesVisitor<>(nodeFactory, listener).compare(previousRoot, root, BytesValue.EMPTY);
+  }
+
   @Override
   public Bytes32 getRootHash() {
+    hashDirtyNodes();
     return root.getHash();
   }
 
+  private void hashDirtyNodes() {
+    if (hashingPool.isPresent() && updatesSinceHashed >= PARALLEL_HASHING_THRESHOLD) {
+      ParallelHashVisitor.hashDirtyNodes(root, hashingPool.get());
+    }
+    updatesSinceHashed = 0;
+  }
+
   @Override
   public String toString() {
     return getClass().getSimpleName() + "[" + getRootHash() + "]";
   }
+
+  public interface ChangeListener<V> {
+    void onChange(Bytes32 keyHash, Optional<V> previousValue, Optional<V> value);
+  }
 }
@@ -21,7 +21,7 @@ import java.util.Optional;
 class StoredNode<V> implements Node<V> {
   private final StoredNodeFactory<V> nodeFactory;
   private final Bytes32 hash;
-  private Node<V> loaded;
+  private volatile Node<V> loaded;
 
   StoredNode(final StoredNodeFactory<V> nodeFactory, final Bytes32 hash) {
     this.nodeFactory = nodeFactory;
@@ -86,11 +86,15 @@ class StoredNode<V> implements Node<V> {
   }
 
   private Node<V> load() {
-    if (loaded == null) {
-      loaded = nodeFactory.retrieve(hash);
+    // Stored nodes may be read concurrently (for instance when executing transactions in
+    // parallel); loading the same node twice is harmless, but it must be safely published.
+    Node<V> node = loaded;
+    if (node == null) {
+      node = nodeFactory.retrieve(hash);
+      loaded = node;
     }
 
-    return loaded;
+    return node;
   }
 
   @Override
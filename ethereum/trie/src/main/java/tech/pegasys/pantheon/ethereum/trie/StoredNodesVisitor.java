@@ -0,0 +1,71 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.trie;
+
+import tech.pegasys.pantheon.util.bytes.Bytes32;
+
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Walks every node reachable from a stored trie root. Stored nodes are loaded afresh rather than
+ * through {@link StoredNode}, which would keep each loaded subtree reachable from the root and so
+ * hold the whole trie in memory by the end of the walk.
+ */
+class StoredNodesVisitor<V> implements NodeVisitor<V> {
+
+  private final StoredNodeFactory<V> nodeFactory;
+  private final Predicate<Bytes32> storedNodeListener;
+  private final Consumer<V> valueListener;
+
+  StoredNodesVisitor(
+      final StoredNodeFactory<V> nodeFactory,
+      final Predicate<Bytes32> storedNodeListener,
+      final Consumer<V> valueListener) {
+    this.nodeFactory = nodeFactory;
+    this.storedNodeListener = storedNodeListener;
+    this.valueListener = valueListener;
+  }
+
+  void visitNode(final Node<V> node) {
+    if (node instanceof StoredNode) {
+      final Bytes32 hash = node.getHash();
+      if (storedNodeListener.test(hash)) {
+        nodeFactory.retrieve(hash).accept(this);
+      }
+    } else {
+      node.accept(this);
+    }
+  }
+
+  @Override
+  public void visit(final ExtensionNode<V> extensionNode) {
+    visitNode(extensionNode.getChild());
+  }
+
+  @Override
+  public void visit(final BranchNode<V> branchNode) {
+    for (byte i = 0; i < BranchNode.RADIX; ++i) {
+      visitNode(branchNode.child(i));
+    }
+    branchNode.getValue().ifPresent(valueListener);
+  }
+
+  @Override
+  public void visit(final LeafNode<V> leafNode) {
+    leafNode.getValue().ifPresent(valueListener);
+  }
+
+  @Override
+  public void visit(final NullNode<V> nullNode) {}
+}
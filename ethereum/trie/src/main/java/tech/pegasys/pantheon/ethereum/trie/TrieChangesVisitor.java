@@ -0,0 +1,141 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.trie;
+
+import tech.pegasys.pantheon.util.bytes.Bytes32;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+
+import java.util.Optional;
+import java.util.function.BiConsumer;
+
+/**
+ * Walks two tries held in the same storage side by side and reports the keys whose values differ.
+ * Subtrees stored under the same hash in both tries are identical and skipped, so the walk only
+ * loads the nodes that differ. As with {@link StoredNodesVisitor}, stored nodes are loaded afresh
+ * so that the walk doesn't hold either trie in memory.
+ */
+class TrieChangesVisitor<V> {
+
+  private final StoredNodeFactory<V> nodeFactory;
+  private final StoredMerklePatriciaTrie.ChangeListener<V> listener;
+
+  TrieChangesVisitor(
+      final StoredNodeFactory<V> nodeFactory,
+      final StoredMerklePatriciaTrie.ChangeListener<V> listener) {
+    this.nodeFactory = nodeFactory;
+    this.listener = listener;
+  }
+
+  void compare(final Node<V> previous, final Node<V> current, final BytesValue path) {
+    if (previous instanceof StoredNode
+        && current instanceof StoredNode
+        && previous.getHash().equals(current.getHash())) {
+      return;
+    }
+    final Node<V> previousNode = load(previous);
+    final Node<V> currentNode = load(current);
+    if (previousNode instanceof NullNode) {
+      visitEntries(currentNode, path, (key, value) -> changed(key, null, value));
+    } else if (currentNode instanceof NullNode) {
+      visitEntries(previousNode, path, (key, value) -> changed(key, value, null));
+    } else if (previousNode instanceof LeafNode) {
+      compareWithLeaf((LeafNode<V>) previousNode, currentNode, path, true);
+    } else if (currentNode instanceof LeafNode) {
+      compareWithLeaf((LeafNode<V>) currentNode, previousNode, path, false);
+    } else {
+      for (byte i = 0; i < BranchNode.RADIX; ++i) {
+        compare(child(previousNode, i), child(currentNode, i), BytesValue.wrap(path, nibble(i)));
+      }
+      final V previousValue = previousNode.getValue().orElse(null);
+      final V currentValue = currentNode.getValue().orElse(null);
+      if (previousValue != null || currentValue != null) {
+        final Bytes32 key = key(BytesValue.wrap(path, nibble(CompactEncoding.LEAF_TERMINATOR)));
+        if (previousValue == null || !previousValue.equals(currentValue)) {
+          changed(key, previousValue, currentValue);
+        }
+      }
+    }
+  }
+
+  private void compareWithLeaf(
+      final LeafNode<V> leaf, final Node<V> other, final BytesValue path, final boolean leafIsOld) {
+    final Bytes32 leafKey = key(BytesValue.wrap(path, leaf.getPath()));
+    final V leafValue = leaf.getValue().orElse(null);
+    final boolean[] leafKeyFound = {false};
+    visitEntries(
+        other,
+        path,
+        (key, value) -> {
+          if (!key.equals(leafKey)) {
+            changed(key, leafIsOld ? null : value, leafIsOld ? value : null);
+            return;
+          }
+          leafKeyFound[0] = true;
+          if (!value.equals(leafValue)) {
+            changed(key, leafIsOld ? leafValue : value, leafIsOld ? value : leafValue);
+          }
+        });
+    if (!leafKeyFound[0]) {
+      changed(leafKey, leafIsOld ? leafValue : null, leafIsOld ? null : leafValue);
+    }
+  }
+
+  private void visitEntries(
+      final Node<V> node, final BytesValue path, final BiConsumer<Bytes32, V> consumer) {
+    final Node<V> loaded = load(node);
+    if (loaded instanceof LeafNode) {
+      loaded
+          .getValue()
+          .ifPresent(value -> consumer.accept(key(BytesValue.wrap(path, loaded.getPath())), value));
+    } else if (loaded instanceof ExtensionNode) {
+      final Node<V> child = ((ExtensionNode<V>) loaded).getChild();
+      visitEntries(child, BytesValue.wrap(path, loaded.getPath()), consumer);
+    } else if (loaded instanceof BranchNode) {
+      final BranchNode<V> branch = (BranchNode<V>) loaded;
+      for (byte i = 0; i < BranchNode.RADIX; ++i) {
+        visitEntries(branch.child(i), BytesValue.wrap(path, nibble(i)), consumer);
+      }
+      branch
+          .getValue()
+          .ifPresent(
+              value ->
+                  consumer.accept(
+                      key(BytesValue.wrap(path, nibble(CompactEncoding.LEAF_TERMINATOR))), value));
+    }
+  }
+
+  /** Returns the subtree of a branch or extension node found under the given nibble. */
+  private Node<V> child(final Node<V> node, final byte index) {
+    if (node instanceof BranchNode) {
+      return ((BranchNode<V>) node).child(index);
+    }
+    final BytesValue path = node.getPath();
+    return path.get(0) == index ? node.replacePath(path.slice(1)) : NullNode.instance();
+  }
+
+  private Node<V> load(final Node<V> node) {
+    return node instanceof StoredNode ? nodeFactory.retrieve(node.getHash()) : node;
+  }
+
+  private void changed(final Bytes32 key, final V previousValue, final V currentValue) {
+    listener.onChange(key, Optional.ofNullable(previousValue), Optional.ofNullable(currentValue));
+  }
+
+  private static BytesValue nibble(final byte value) {
+    return BytesValue.of(value);
+  }
+
+  private static Bytes32 key(final BytesValue path) {
+    return Bytes32.wrap(CompactEncoding.pathToBytes(path), 0);
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.trie;
+
+import tech.pegasys.pantheon.ethereum.rlp.RLP;
+import tech.pegasys.pantheon.ethereum.rlp.RLPException;
+import tech.pegasys.pantheon.ethereum.rlp.RLPInput;
+import tech.pegasys.pantheon.util.bytes.Bytes32;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+
+import java.util.function.Consumer;
+
+/** Decodes single encoded trie nodes without loading any of the nodes they reference. */
+public final class TrieNodeDecoder {
+
+  private TrieNodeDecoder() {}
+
+  /**
+   * Reports what an encoded trie node references. Children shorter than a hash are embedded in
+   * their parent and are decoded in place, so only children stored under their own hash are
+   * reported as such.
+   *
+   * @param node The RLP encoded trie node.
+   * @param childListener Receives the hash of each child stored separately from this node.
+   * @param valueListener Receives each value held by this node or by its embedded children.
+   * @throws MerkleStorageException If the node is not a valid encoded trie node.
+   */
+  public static void visitReferences(
+      final BytesValue node,
+      final Consumer<Bytes32> childListener,
+      final Consumer<BytesValue> valueListener) {
+    try {
+      visitNode(RLP.input(node), childListener, valueListener);
+    } catch (final RLPException | IllegalArgumentException e) {
+      throw new MerkleStorageException("Invalid trie node " + node, e);
+    }
+  }
+
+  private static void visitNode(
+      final RLPInput input,
+      final Consumer<Bytes32> childListener,
+      final Consumer<BytesValue> valueListener) {
+    final int itemCount = input.enterList();
+    if (itemCount == 2) {
+      final BytesValue path = CompactEncoding.decode(input.readBytesValue());
+      if (path.size() > 0 && path.get(path.size() - 1) == CompactEncoding.LEAF_TERMINATOR) {
+        valueListener.accept(input.readBytesValue());
+      } else {
+        visitChild(input, childListener, valueListener);
+      }
+    } else if (itemCount == BranchNode.RADIX + 1) {
+      for (int i = 0; i < BranchNode.RADIX; i++) {
+        visitChild(input, childListener, valueListener);
+      }
+      if (input.nextIsNull()) {
+        input.skipNext();
+      } else {
+        valueListener.accept(input.readBytesValue());
+      }
+    }
+    input.leaveList(true);
+  }
+
+  private static void visitChild(
+      final RLPInput input,
+      final Consumer<Bytes32> childListener,
+      final Consumer<BytesValue> valueListener) {
+    if (input.nextIsNull()) {
+      input.skipNext();
+    } else if (input.nextIsList()) {
+      visitNode(input, childListener, valueListener);
+    } else {
+      childListener.accept(input.readBytes32());
+    }
+  }
+}
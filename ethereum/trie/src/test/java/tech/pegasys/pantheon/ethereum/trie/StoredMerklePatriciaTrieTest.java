@@ -14,6 +14,7 @@ package tech.pegasys.pantheon.ethereum.trie;
 
 import static junit.framework.TestCase.assertFalse;
 import static org.assertj.core.api.Assertions.assertThat;
+import static tech.pegasys.pantheon.crypto.Hash.keccak256;
 
 import tech.pegasys.pantheon.services.kvstore.InMemoryKeyValueStorage;
 import tech.pegasys.pantheon.services.kvstore.KeyValueStorage;
@@ -21,8 +22,16 @@ import tech.pegasys.pantheon.util.bytes.Bytes32;
 import tech.pegasys.pantheon.util.bytes.BytesValue;
 
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -419,4 +428,135 @@ public class StoredMerklePatriciaTrieTest {
 
     newTrie.get(BytesValue.fromHexString("0x0401"));
   }
+
+  @Test
+  public void visitStoredNodesReportsEveryStoredNodeAndValue() {
+    final List<String> values = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      final String value = "value" + i;
+      trie.put(BytesValue.of(i, (i * 3) & 0xff), value);
+      values.add(value);
+    }
+    trie.commit(merkleStorage::put);
+    merkleStorage.commit();
+
+    final StoredMerklePatriciaTrie<BytesValue, String> reloaded =
+        new StoredMerklePatriciaTrie<>(
+            merkleStorage::get, trie.getRootHash(), valueSerializer, valueDeserializer);
+    final Set<Bytes32> visitedNodes = new HashSet<>();
+    final List<String> visitedValues = new ArrayList<>();
+    reloaded.visitStoredNodes(visitedNodes::add, visitedValues::add);
+
+    final Set<Bytes32> storedNodes =
+        keyValueStore.entries().map(e -> Bytes32.wrap(e.getKey(), 0)).collect(Collectors.toSet());
+    assertThat(visitedNodes).contains(trie.getRootHash()).isEqualTo(storedNodes);
+    assertThat(visitedValues).containsExactlyInAnyOrderElementsOf(values);
+  }
+
+  @Test
+  public void visitStoredNodesSkipsSubtreesWhenListenerReturnsFalse() {
+    for (int i = 0; i < 100; i++) {
+      trie.put(BytesValue.of(i, (i * 3) & 0xff), "value" + i);
+    }
+    trie.commit(merkleStorage::put);
+
+    final Set<Bytes32> visitedNodes = new HashSet<>();
+    final List<String> visitedValues = new ArrayList<>();
+    trie.visitStoredNodes(
+        hash -> {
+          visitedNodes.add(hash);
+          return false;
+        },
+        visitedValues::add);
+
+    assertThat(visitedNodes).containsExactly(trie.getRootHash());
+    assertThat(visitedValues).isEmpty();
+  }
+
+  @Test
+  public void visitChangesSinceReportsEachChangedKey() {
+    final List<Bytes32> keys = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      keys.add(keccak256(BytesValue.of(i)));
+      trie.put(keys.get(i), "value" + i);
+    }
+    trie.commit(merkleStorage::put);
+    merkleStorage.commit();
+    final Bytes32 previousRoot = trie.getRootHash();
+
+    final Map<Bytes32, String> expected = new HashMap<>();
+    for (int i = 0; i < 100; i += 7) {
+      trie.remove(keys.get(i));
+      expected.put(keys.get(i), "value" + i + " -> none");
+    }
+    for (int i = 1; i < 100; i += 7) {
+      trie.put(keys.get(i), "updated" + i);
+      expected.put(keys.get(i), "value" + i + " -> updated" + i);
+    }
+    for (int i = 100; i < 120; i++) {
+      final Bytes32 key = keccak256(BytesValue.of(i));
+      trie.put(key, "value" + i);
+      expected.put(key, "none -> value" + i);
+    }
+    // Rewriting a value doesn't change it.
+    trie.put(keys.get(2), "value2");
+
+    final Map<Bytes32, String> changes = new HashMap<>();
+    trie.visitChangesSince(
+        previousRoot,
+        (key, previous, value) ->
+            changes.put(key, previous.orElse("none") + " -> " + value.orElse("none")));
+    assertThat(changes).isEqualTo(expected);
+
+    changes.clear();
+    trie.visitChangesSince(
+        MerklePatriciaTrie.EMPTY_TRIE_ROOT_HASH,
+        (key, previous, value) -> {
+          assertThat(previous).isEmpty();
+          changes.put(key, value.get());
+        });
+    assertThat(changes).hasSize(105);
+    assertThat(changes).containsEntry(keys.get(1), "updated1");
+  }
+
+  @Test
+  public void parallelHashingMatchesSequentialHashing() {
+    final ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      final KeyValueStorage parallelStore = new InMemoryKeyValueStorage();
+      final MerkleStorage parallelStorage = new KeyValueMerkleStorage(parallelStore);
+      final StoredMerklePatriciaTrie<BytesValue, String> parallelTrie =
+          new StoredMerklePatriciaTrie<>(
+              parallelStorage::get,
+              MerklePatriciaTrie.EMPTY_TRIE_ROOT_HASH,
+              valueSerializer,
+              valueDeserializer,
+              Optional.of(pool));
+
+      final int keyCount = StoredMerklePatriciaTrie.PARALLEL_HASHING_THRESHOLD * 20;
+      for (int i = 0; i < keyCount; i++) {
+        final BytesValue key = keccak256(BytesValue.of(i >> 8, i & 0xff));
+        trie.put(key, "value" + i);
+        parallelTrie.put(key, "value" + i);
+      }
+      assertThat(parallelTrie.getRootHash()).isEqualTo(trie.getRootHash());
+
+      trie.commit(merkleStorage::put);
+      merkleStorage.commit();
+      parallelTrie.commit(parallelStorage::put);
+      parallelStorage.commit();
+      assertThat(parallelStore.entries().collect(Collectors.toSet()))
+          .isEqualTo(keyValueStore.entries().collect(Collectors.toSet()));
+
+      // Update a loaded trie, so that dirty nodes sit next to ones still in storage.
+      for (int i = 0; i < keyCount; i += 3) {
+        final BytesValue key = keccak256(BytesValue.of(i >> 8, i & 0xff));
+        trie.remove(key);
+        parallelTrie.remove(key);
+      }
+      assertThat(parallelTrie.getRootHash()).isEqualTo(trie.getRootHash());
+    } finally {
+      pool.shutdownNow();
+    }
+  }
 }
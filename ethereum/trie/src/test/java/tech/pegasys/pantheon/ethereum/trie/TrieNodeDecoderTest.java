@@ -0,0 +1,68 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.trie;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import tech.pegasys.pantheon.services.kvstore.InMemoryKeyValueStorage;
+import tech.pegasys.pantheon.util.bytes.Bytes32;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+public class TrieNodeDecoderTest {
+
+  private final MerkleStorage storage = new KeyValueMerkleStorage(new InMemoryKeyValueStorage());
+
+  @Test
+  public void visitsEveryStoredNodeAndValue() {
+    final StoredMerklePatriciaTrie<BytesValue, BytesValue> trie =
+        new StoredMerklePatriciaTrie<>(storage::get, Function.identity(), Function.identity());
+    final Set<BytesValue> expectedValues = new HashSet<>();
+    for (int i = 0; i < 200; i++) {
+      // Short values keep some leaves small enough to be embedded in their parent.
+      final BytesValue value = i % 2 == 0 ? BytesValue.of(i) : Bytes32.leftPad(BytesValue.of(i));
+      trie.put(BytesValue.of(i / 256, i % 256), value);
+      expectedValues.add(value);
+    }
+    trie.commit(storage::put);
+    storage.commit();
+
+    final Set<BytesValue> values = new HashSet<>();
+    final Deque<Bytes32> remaining = new ArrayDeque<>();
+    remaining.add(trie.getRootHash());
+    int visitedNodes = 0;
+    while (!remaining.isEmpty()) {
+      final BytesValue node = storage.get(remaining.poll()).get();
+      TrieNodeDecoder.visitReferences(node, remaining::add, values::add);
+      visitedNodes++;
+    }
+
+    assertThat(values).isEqualTo(expectedValues);
+    assertThat(visitedNodes).isGreaterThan(1);
+  }
+
+  @Test
+  public void rejectsMalformedNodes() {
+    assertThatThrownBy(
+            () -> TrieNodeDecoder.visitReferences(BytesValue.of(1, 2, 3), hash -> {}, value -> {}))
+        .isInstanceOf(MerkleStorageException.class);
+  }
+}
@@ -23,7 +23,6 @@ import tech.pegasys.pantheon.ethereum.blockcreation.AbstractMiningCoordinator;
 import tech.pegasys.pantheon.ethereum.chain.Blockchain;
 import tech.pegasys.pantheon.ethereum.core.Synchronizer;
 import tech.pegasys.pantheon.ethereum.core.TransactionPool;
-import tech.pegasys.pantheon.ethereum.db.WorldStateArchive;
 import tech.pegasys.pantheon.ethereum.jsonrpc.JsonRpcConfiguration;
 import tech.pegasys.pantheon.ethereum.jsonrpc.JsonRpcHttpService;
 import tech.pegasys.pantheon.ethereum.jsonrpc.JsonRpcMethodsFactory;
@@ -31,7 +30,9 @@ import tech.pegasys.pantheon.ethereum.jsonrpc.RpcApi;
 import tech.pegasys.pantheon.ethereum.jsonrpc.internal.filter.FilterIdGenerator;
 import tech.pegasys.pantheon.ethereum.jsonrpc.internal.filter.FilterManager;
 import tech.pegasys.pantheon.ethereum.jsonrpc.internal.filter.FilterRepository;
+import tech.pegasys.pantheon.ethereum.jsonrpc.internal.filter.LogsDispatcher;
 import tech.pegasys.pantheon.ethereum.jsonrpc.internal.methods.JsonRpcMethod;
+import tech.pegasys.pantheon.ethereum.jsonrpc.internal.methods.JsonRpcResponseCache;
 import tech.pegasys.pantheon.ethereum.jsonrpc.internal.queries.BlockchainQueries;
 import tech.pegasys.pantheon.ethereum.jsonrpc.websocket.WebSocketConfiguration;
 import tech.pegasys.pantheon.ethereum.jsonrpc.websocket.WebSocketRequestHandler;
@@ -142,13 +143,25 @@ public class RunnerBuilder {
     final AbstractMiningCoordinator<?, ?> miningCoordinator =
         pantheonController.getMiningCoordinator();
 
-    final FilterManager filterManager = createFilterManager(vertx, context, transactionPool);
+    final BlockchainQueries blockchainQueries =
+        new BlockchainQueries(
+            context.getBlockchain(),
+            context.getWorldStateArchive(),
+            Optional.of(pantheonController.getLogsBloomIndex()));
+    final FilterManager filterManager =
+        createFilterManager(vertx, blockchainQueries, transactionPool);
+    final LogsDispatcher logsDispatcher = new LogsDispatcher();
+    context.getBlockchain().observeBlockAdded(logsDispatcher);
+    logsDispatcher.addListener(filterManager);
+    final Optional<JsonRpcResponseCache> responseCache =
+        createResponseCache(context.getBlockchain(), jsonRpcConfiguration);
 
     Optional<JsonRpcHttpService> jsonRpcHttpService = Optional.empty();
     if (jsonRpcConfiguration.isEnabled()) {
       final Map<String, JsonRpcMethod> jsonRpcMethods =
           jsonRpcMethods(
               context,
+              blockchainQueries,
               protocolSchedule,
               pantheonController,
               networkRunner,
@@ -157,7 +170,8 @@ public class RunnerBuilder {
               miningCoordinator,
               supportedCapabilities,
               jsonRpcConfiguration.getRpcApis(),
-              filterManager);
+              filterManager,
+              responseCache);
       jsonRpcHttpService =
           Optional.of(new JsonRpcHttpService(vertx, dataDir, jsonRpcConfiguration, jsonRpcMethods));
     }
@@ -167,6 +181,7 @@ public class RunnerBuilder {
       final Map<String, JsonRpcMethod> webSocketsJsonRpcMethods =
           jsonRpcMethods(
               context,
+              blockchainQueries,
               protocolSchedule,
               pantheonController,
               networkRunner,
@@ -175,16 +190,16 @@ public class RunnerBuilder {
               miningCoordinator,
               supportedCapabilities,
               webSocketConfiguration.getRpcApis(),
-              filterManager);
+              filterManager,
+              responseCache);
 
       final SubscriptionManager subscriptionManager =
           createSubscriptionManager(vertx, context.getBlockchain(), transactionPool);
 
-      createLogsSubscriptionService(
-          context.getBlockchain(), context.getWorldStateArchive(), subscriptionManager);
+      createLogsSubscriptionService(logsDispatcher, subscriptionManager);
 
       createNewBlockHeadersSubscriptionService(
-          context.getBlockchain(), context.getWorldStateArchive(), subscriptionManager);
+          context.getBlockchain(), blockchainQueries, subscriptionManager);
 
       createSyncingSubscriptionService(synchronizer, subscriptionManager);
 
@@ -199,19 +214,31 @@ public class RunnerBuilder {
   }
 
   private FilterManager createFilterManager(
-      final Vertx vertx, final ProtocolContext<?> context, final TransactionPool transactionPool) {
+      final Vertx vertx,
+      final BlockchainQueries blockchainQueries,
+      final TransactionPool transactionPool) {
     final FilterManager filterManager =
         new FilterManager(
-            new BlockchainQueries(context.getBlockchain(), context.getWorldStateArchive()),
-            transactionPool,
-            new FilterIdGenerator(),
-            new FilterRepository());
+            blockchainQueries, transactionPool, new FilterIdGenerator(), new FilterRepository());
     vertx.deployVerticle(filterManager);
     return filterManager;
   }
 
+  private Optional<JsonRpcResponseCache> createResponseCache(
+      final Blockchain blockchain, final JsonRpcConfiguration jsonRpcConfiguration) {
+    if (jsonRpcConfiguration.getResponseCacheSize() == 0) {
+      return Optional.empty();
+    }
+    final JsonRpcResponseCache responseCache =
+        new JsonRpcResponseCache(
+            blockchain, jsonRpcConfiguration.getResponseCacheSize() * 1024L * 1024L);
+    blockchain.observeBlockAdded(responseCache);
+    return Optional.of(responseCache);
+  }
+
   private Map<String, JsonRpcMethod> jsonRpcMethods(
       final ProtocolContext<?> context,
+      final BlockchainQueries blockchainQueries,
       final ProtocolSchedule<?> protocolSchedule,
       final PantheonController<?, ?> pantheonController,
       final NetworkRunner networkRunner,
@@ -220,22 +247,22 @@ public class RunnerBuilder {
       final AbstractMiningCoordinator<?, ?> miningCoordinator,
       final Set<Capability> supportedCapabilities,
       final Collection<RpcApi> jsonRpcApis,
-      final FilterManager filterManager) {
+      final FilterManager filterManager,
+      final Optional<JsonRpcResponseCache> responseCache) {
     final Map<String, JsonRpcMethod> methods =
         new JsonRpcMethodsFactory()
             .methods(
                 PantheonInfo.version(),
                 String.valueOf(pantheonController.getGenesisConfig().getChainId()),
                 networkRunner.getNetwork(),
-                context.getBlockchain(),
-                context.getWorldStateArchive(),
+                blockchainQueries,
                 synchronizer,
-                transactionPool,
                 protocolSchedule,
+                filterManager,
+                transactionPool,
                 miningCoordinator,
                 supportedCapabilities,
-                jsonRpcApis,
-                filterManager);
+                jsonRpcApis);
 
     if (context.getConsensusState() instanceof CliqueContext) {
       // This is checked before entering this if branch
@@ -252,6 +279,7 @@ public class RunnerBuilder {
           (ProtocolContext<IbftContext>) context;
       methods.putAll(new IbftJsonRpcMethodsFactory().methods(ibftProtocolContext, jsonRpcApis));
     }
+    responseCache.ifPresent(cache -> cache.decorate(methods));
     return methods;
   }
 
@@ -267,14 +295,11 @@ public class RunnerBuilder {
   }
 
   private LogsSubscriptionService createLogsSubscriptionService(
-      final Blockchain blockchain,
-      final WorldStateArchive worldStateArchive,
-      final SubscriptionManager subscriptionManager) {
+      final LogsDispatcher logsDispatcher, final SubscriptionManager subscriptionManager) {
     final LogsSubscriptionService logsSubscriptionService =
-        new LogsSubscriptionService(
-            subscriptionManager, new BlockchainQueries(blockchain, worldStateArchive));
+        new LogsSubscriptionService(subscriptionManager);
 
-    blockchain.observeBlockAdded(logsSubscriptionService);
+    logsDispatcher.addListener(logsSubscriptionService);
 
     return logsSubscriptionService;
   }
@@ -286,11 +311,10 @@ public class RunnerBuilder {
 
   private NewBlockHeadersSubscriptionService createNewBlockHeadersSubscriptionService(
       final Blockchain blockchain,
-      final WorldStateArchive worldStateArchive,
+      final BlockchainQueries blockchainQueries,
       final SubscriptionManager subscriptionManager) {
     final NewBlockHeadersSubscriptionService newBlockHeadersSubscriptionService =
-        new NewBlockHeadersSubscriptionService(
-            subscriptionManager, new BlockchainQueries(blockchain, worldStateArchive));
+        new NewBlockHeadersSubscriptionService(subscriptionManager, blockchainQueries);
 
     blockchain.observeBlockAdded(newBlockHeadersSubscriptionService);
 
@@ -27,11 +27,14 @@ import tech.pegasys.pantheon.ethereum.eth.sync.SyncMode;
 import tech.pegasys.pantheon.ethereum.eth.sync.SynchronizerConfiguration;
 import tech.pegasys.pantheon.ethereum.eth.sync.SynchronizerConfiguration.Builder;
 import tech.pegasys.pantheon.ethereum.jsonrpc.JsonRpcConfiguration;
+import tech.pegasys.pantheon.ethereum.jsonrpc.JsonRpcWorkerPool;
 import tech.pegasys.pantheon.ethereum.jsonrpc.RpcApi;
 import tech.pegasys.pantheon.ethereum.jsonrpc.RpcApis;
 import tech.pegasys.pantheon.ethereum.jsonrpc.websocket.WebSocketConfiguration;
 import tech.pegasys.pantheon.ethereum.p2p.peers.DefaultPeer;
 import tech.pegasys.pantheon.ethereum.util.InvalidConfigurationException;
+import tech.pegasys.pantheon.ethereum.worldstate.WorldStateConfiguration;
+import tech.pegasys.pantheon.services.kvstore.RocksDbConfiguration;
 import tech.pegasys.pantheon.util.BlockImporter;
 import tech.pegasys.pantheon.util.BlockchainImporter;
 import tech.pegasys.pantheon.util.bytes.BytesValue;
@@ -45,7 +48,9 @@ import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.function.Function;
 import java.util.stream.Stream;
@@ -92,6 +97,7 @@ public class PantheonCommand implements Runnable {
   private static final String MANDATORY_PATH_FORMAT_HELP = "<PATH>";
   private static final String MANDATORY_INTEGER_FORMAT_HELP = "<INTEGER>";
   private static final String MANDATORY_MODE_FORMAT_HELP = "<MODE>";
+  private static final String MANDATORY_BYTES_FORMAT_HELP = "<BYTES>";
 
   private static final Wei DEFAULT_MIN_TRANSACTION_GAS_PRICE = Wei.of(1000);
   private static final BytesValue DEFAULT_EXTRA_DATA = BytesValue.EMPTY;
@@ -202,14 +208,12 @@ public class PantheonCommand implements Runnable {
   )
   private final Integer maxTrailingPeers = Integer.MAX_VALUE;
 
-  // TODO: Re-enable as per NC-1057/NC-1681
-  //  @Option(
-  //    names = {"--sync-mode"},
-  //    paramLabel = MANDATORY_MODE_FORMAT_HELP,
-  //    description =
-  //        "Synchronization mode (Value can be one of ${COMPLETION-CANDIDATES}, default:
-  // ${DEFAULT-VALUE})"
-  //  )
+  @Option(
+    names = {"--sync-mode"},
+    paramLabel = MANDATORY_MODE_FORMAT_HELP,
+    description =
+        "Synchronization mode (Value can be one of ${COMPLETION-CANDIDATES}, default: ${DEFAULT-VALUE})"
+  )
   private final SyncMode syncMode = DEFAULT_SYNC_MODE;
 
   // Boolean option to indicate if the client have to sync against the ottoman test network
@@ -280,6 +284,51 @@ public class PantheonCommand implements Runnable {
   )
   private final Collection<RpcApi> rpcApis = null;
 
+  @Option(
+    names = {"--rpc-pretty-json-enabled"},
+    description = "Set if JSON-RPC responses should be indented (default: ${DEFAULT-VALUE})"
+  )
+  private final Boolean isRpcPrettyJsonEnabled = false;
+
+  @Option(
+    names = {"--rpc-worker-threads"},
+    paramLabel = "<pool>=<count>",
+    split = ",",
+    description =
+        "Comma separated thread counts of the READ, QUERY and TRACE JSON-RPC worker pools "
+            + "(default: READ=8,QUERY=4,TRACE=2)"
+  )
+  private final Map<JsonRpcWorkerPool, Integer> rpcWorkerThreads = new HashMap<>();
+
+  @Option(
+    names = {"--rpc-worker-queue-size"},
+    paramLabel = "<pool>=<size>",
+    split = ",",
+    description =
+        "Comma separated number of requests that may wait for each JSON-RPC worker pool before "
+            + "new ones are rejected (default: READ=1000,QUERY=100,TRACE=10)"
+  )
+  private final Map<JsonRpcWorkerPool, Integer> rpcWorkerQueueSizes = new HashMap<>();
+
+  @Option(
+    names = {"--rpc-method-concurrency"},
+    paramLabel = "<method>=<limit>",
+    split = ",",
+    description =
+        "Comma separated maximum numbers of requests for a JSON-RPC method that may be queued "
+            + "or executing at once (default: none)"
+  )
+  private final Map<String, Integer> rpcMethodConcurrencyLimits = new HashMap<>();
+
+  @Option(
+    names = {"--rpc-response-cache-size"},
+    paramLabel = "<MB>",
+    description =
+        "Maximum size in megabytes of the cache of immutable JSON-RPC results, such as blocks "
+            + "and receipts by hash, or 0 to disable it (default: ${DEFAULT-VALUE})"
+  )
+  private final Integer rpcResponseCacheSize = 0;
+
   @Option(
     names = {"--ws-enabled"},
     description =
@@ -354,6 +403,158 @@ public class PantheonCommand implements Runnable {
   )
   private final BytesValue extraData = DEFAULT_EXTRA_DATA;
 
+  @Option(
+    names = {"--rocksdb-segmented"},
+    description =
+        "Store each kind of data in its own RocksDB column family. Must match the mode the "
+            + "database was created with (default: ${DEFAULT-VALUE})."
+  )
+  private final Boolean isRocksDbSegmented = false;
+
+  @Option(
+    names = {"--parallel-transaction-execution"},
+    description =
+        "Execute the transactions of each imported block in parallel on Ethash networks, "
+            + "re-executing those that conflict with a preceding transaction "
+            + "(default: ${DEFAULT-VALUE})"
+  )
+  private final Boolean isParallelTransactionExecutionEnabled = false;
+
+  @Option(
+    names = {"--rocksdb-cache-capacity"},
+    paramLabel = MANDATORY_BYTES_FORMAT_HELP,
+    description =
+        "Size in bytes of the RocksDB block cache shared by all database reads "
+            + "(default: ${DEFAULT-VALUE})"
+  )
+  private final Long rocksDbCacheCapacity = RocksDbConfiguration.DEFAULT_CACHE_CAPACITY;
+
+  @Option(
+    names = {"--rocksdb-bloom-filter-bits"},
+    paramLabel = MANDATORY_INTEGER_FORMAT_HELP,
+    description =
+        "Bloom filter bits kept per RocksDB key, 0 disables bloom filters "
+            + "(default: ${DEFAULT-VALUE})"
+  )
+  private final Integer rocksDbBloomFilterBitsPerKey =
+      RocksDbConfiguration.DEFAULT_BLOOM_FILTER_BITS_PER_KEY;
+
+  @Option(
+    names = {"--rocksdb-max-open-files"},
+    paramLabel = MANDATORY_INTEGER_FORMAT_HELP,
+    description =
+        "Maximum number of files RocksDB keeps open, -1 keeps every file open "
+            + "(default: ${DEFAULT-VALUE})"
+  )
+  private final Integer rocksDbMaxOpenFiles = RocksDbConfiguration.DEFAULT_MAX_OPEN_FILES;
+
+  @Option(
+    names = {"--rocksdb-max-background-jobs"},
+    paramLabel = MANDATORY_INTEGER_FORMAT_HELP,
+    description =
+        "Maximum number of concurrent RocksDB flushes and compactions "
+            + "(default: number of processors, ${DEFAULT-VALUE} on this machine)"
+  )
+  private final Integer rocksDbMaxBackgroundJobs = RocksDbConfiguration.DEFAULT_MAX_BACKGROUND_JOBS;
+
+  @Option(
+    names = {"--rocksdb-write-buffer-size"},
+    paramLabel = MANDATORY_BYTES_FORMAT_HELP,
+    description =
+        "Size in bytes of a RocksDB memtable before it is flushed to disk "
+            + "(default: ${DEFAULT-VALUE})"
+  )
+  private final Long rocksDbWriteBufferSize = RocksDbConfiguration.DEFAULT_WRITE_BUFFER_SIZE;
+
+  @Option(
+    names = {"--rocksdb-batched-writes"},
+    description =
+        "Commit database changes as plain RocksDB write batches instead of transactions "
+            + "(default: ${DEFAULT-VALUE})"
+  )
+  private final Boolean isRocksDbBatchedWrites = false;
+
+  @Option(
+    names = {"--rocksdb-disable-wal"},
+    description =
+        "Skip the RocksDB write-ahead log and only sync the database at world state checkpoints, "
+            + "which speeds up bulk imports but loses the writes since the last checkpoint on a "
+            + "crash. Requires --rocksdb-batched-writes and can not be combined with "
+            + "--rocksdb-segmented (default: ${DEFAULT-VALUE})"
+  )
+  private final Boolean isRocksDbWalDisabled = false;
+
+  @Option(
+    names = {"--rocksdb-async-writes"},
+    description =
+        "Write blockchain and world state changes to the database on a background thread, so "
+            + "block import does not wait for them (default: ${DEFAULT-VALUE})"
+  )
+  private final Boolean isRocksDbAsyncWrites = false;
+
+  @Option(
+    names = {"--trie-node-cache-size"},
+    paramLabel = MANDATORY_BYTES_FORMAT_HELP,
+    description =
+        "Approximate memory in bytes used to cache world state trie nodes, 0 disables the cache "
+            + "(default: ${DEFAULT-VALUE})"
+  )
+  private final Long trieNodeCacheSize = WorldStateConfiguration.DEFAULT_TRIE_NODE_CACHE_SIZE;
+
+  @Option(
+    names = {"--world-state-write-back-blocks"},
+    paramLabel = MANDATORY_INTEGER_FORMAT_HELP,
+    description =
+        "Number of blocks to hold world state changes in memory before writing the state of the "
+            + "chain head to disk, 0 writes every block (default: ${DEFAULT-VALUE})"
+  )
+  private final Integer worldStateWriteBackBlocks = 0;
+
+  @Option(
+    names = {"--pruning-retained-states"},
+    paramLabel = MANDATORY_INTEGER_FORMAT_HELP,
+    description =
+        "Number of recent chain head states to keep when pruning unreachable world state, "
+            + "0 disables pruning. Requires --rocksdb-segmented (default: ${DEFAULT-VALUE})"
+  )
+  private final Integer pruningRetainedStates = 0;
+
+  @Option(
+    names = {"--pruning-interval"},
+    paramLabel = MANDATORY_INTEGER_FORMAT_HELP,
+    description =
+        "Number of blocks between prunes of unreachable world state (default: ${DEFAULT-VALUE})"
+  )
+  private final Integer pruningInterval = WorldStateConfiguration.DEFAULT_PRUNING_INTERVAL;
+
+  @Option(
+    names = {"--world-state-prefetch-threads"},
+    paramLabel = MANDATORY_INTEGER_FORMAT_HELP,
+    description =
+        "Number of threads reading the accounts a block will touch before it executes, "
+            + "0 disables prefetching (default: ${DEFAULT-VALUE})"
+  )
+  private final Integer worldStatePrefetchThreads = 0;
+
+  @Option(
+    names = {"--world-state-hashing-threads"},
+    paramLabel = MANDATORY_INTEGER_FORMAT_HELP,
+    description =
+        "Number of threads hashing world state trie nodes when a block makes many updates, "
+            + "0 hashes on the importing thread (default: ${DEFAULT-VALUE})"
+  )
+  private final Integer worldStateHashingThreads = 0;
+
+  @Option(
+    names = {"--world-state-snapshot-layers"},
+    paramLabel = MANDATORY_INTEGER_FORMAT_HELP,
+    description =
+        "Number of recent blocks whose changes are kept in a flat world state snapshot for fast "
+            + "state reads, 0 disables the snapshot. An existing database's snapshot is generated "
+            + "in the background (default: ${DEFAULT-VALUE})"
+  )
+  private final Integer worldStateSnapshotLayers = 0;
+
   public PantheonCommand(
       final BlockImporter blockImporter,
       final BlockchainImporter blockchainImporter,
@@ -429,7 +630,10 @@ public class PantheonCommand implements Runnable {
           ethNetworkConfig(),
           syncWithOttoman,
           new MiningParameters(coinbase, minTransactionGasPrice, extraData, isMiningEnabled),
-          isDevMode);
+          isDevMode,
+          rocksDbConfiguration(),
+          worldStateConfiguration(),
+          isParallelTransactionExecutionEnabled);
     } catch (final InvalidConfigurationException e) {
       throw new ExecutionException(new CommandLine(this), e.getMessage());
     } catch (final IOException e) {
@@ -437,6 +641,46 @@ public class PantheonCommand implements Runnable {
     }
   }
 
+  private RocksDbConfiguration rocksDbConfiguration() {
+    try {
+      return RocksDbConfiguration.builder()
+          .segmented(isRocksDbSegmented)
+          .cacheCapacity(rocksDbCacheCapacity)
+          .bloomFilterBitsPerKey(rocksDbBloomFilterBitsPerKey)
+          .maxOpenFiles(rocksDbMaxOpenFiles)
+          .maxBackgroundJobs(rocksDbMaxBackgroundJobs)
+          .writeBufferSize(rocksDbWriteBufferSize)
+          .batchedWrites(isRocksDbBatchedWrites)
+          .walDisabled(isRocksDbWalDisabled)
+          .asyncWrites(isRocksDbAsyncWrites)
+          .build();
+    } catch (final IllegalArgumentException e) {
+      throw new ParameterException(new CommandLine(this), e.getMessage());
+    }
+  }
+
+  private WorldStateConfiguration worldStateConfiguration() {
+    // The pruner removes every unreachable entry keyed by a hash, so world state needs a keyspace
+    // of its own.
+    if (pruningRetainedStates > 0 && !isRocksDbSegmented) {
+      throw new ParameterException(
+          new CommandLine(this), "World state pruning requires --rocksdb-segmented");
+    }
+    try {
+      return WorldStateConfiguration.builder()
+          .trieNodeCacheSize(trieNodeCacheSize)
+          .writeBackBlocks(worldStateWriteBackBlocks)
+          .pruningRetainedStates(pruningRetainedStates)
+          .pruningInterval(pruningInterval)
+          .prefetchThreads(worldStatePrefetchThreads)
+          .hashingThreads(worldStateHashingThreads)
+          .snapshotLayers(worldStateSnapshotLayers)
+          .build();
+    } catch (final IllegalArgumentException e) {
+      throw new ParameterException(new CommandLine(this), e.getMessage());
+    }
+  }
+
   private JsonRpcConfiguration jsonRpcConfiguration() {
     final JsonRpcConfiguration jsonRpcConfiguration = JsonRpcConfiguration.createDefault();
     jsonRpcConfiguration.setEnabled(isJsonRpcEnabled);
@@ -444,6 +688,15 @@ public class PantheonCommand implements Runnable {
     jsonRpcConfiguration.setPort(rpcHostAndPort.getPort());
     jsonRpcConfiguration.setCorsAllowedDomains(rpcCorsAllowedOrigins.getDomains());
     jsonRpcConfiguration.setRpcApis(rpcApis);
+    jsonRpcConfiguration.setPrettyJsonEnabled(isRpcPrettyJsonEnabled);
+    try {
+      rpcWorkerThreads.forEach(jsonRpcConfiguration::setWorkerThreads);
+      rpcWorkerQueueSizes.forEach(jsonRpcConfiguration::setWorkerQueueSize);
+      rpcMethodConcurrencyLimits.forEach(jsonRpcConfiguration::setMethodConcurrencyLimit);
+      jsonRpcConfiguration.setResponseCacheSize(rpcResponseCacheSize);
+    } catch (final IllegalArgumentException e) {
+      throw new ParameterException(new CommandLine(this), e.getMessage());
+    }
     return jsonRpcConfiguration;
   }
 
@@ -14,6 +14,7 @@ package tech.pegasys.pantheon.cli;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static tech.pegasys.pantheon.controller.KeyPairUtil.loadKeyPair;
+import static tech.pegasys.pantheon.controller.PantheonController.DATABASE_PATH;
 
 import tech.pegasys.pantheon.controller.MainnetPantheonController;
 import tech.pegasys.pantheon.controller.PantheonController;
@@ -21,6 +22,10 @@ import tech.pegasys.pantheon.crypto.SECP256K1.KeyPair;
 import tech.pegasys.pantheon.ethereum.chain.GenesisConfig;
 import tech.pegasys.pantheon.ethereum.core.MiningParameters;
 import tech.pegasys.pantheon.ethereum.eth.sync.SynchronizerConfiguration;
+import tech.pegasys.pantheon.ethereum.storage.RocksDbStorageProvider;
+import tech.pegasys.pantheon.ethereum.storage.StorageProvider;
+import tech.pegasys.pantheon.ethereum.worldstate.WorldStateConfiguration;
+import tech.pegasys.pantheon.services.kvstore.RocksDbConfiguration;
 
 import java.io.IOException;
 import java.nio.file.Path;
@@ -35,14 +40,20 @@ public class PantheonControllerBuilder {
       final EthNetworkConfig ethNetworkConfig,
       final boolean syncWithOttoman,
       final MiningParameters miningParameters,
-      final boolean isDevMode)
+      final boolean isDevMode,
+      final RocksDbConfiguration rocksDbConfiguration,
+      final WorldStateConfiguration worldStateConfiguration,
+      final boolean parallelTransactionExecution)
       throws IOException {
     // instantiate a controller with mainnet config if no genesis file is defined
     // otherwise use the indicated genesis file
     final KeyPair nodeKeys = loadKeyPair(homePath);
+    final StorageProvider storageProvider =
+        RocksDbStorageProvider.create(
+            homePath.resolve(DATABASE_PATH), rocksDbConfiguration, worldStateConfiguration);
     if (isDevMode) {
       return MainnetPantheonController.init(
-          homePath,
+          storageProvider,
           GenesisConfig.development(),
           synchronizerConfiguration,
           miningParameters,
@@ -53,11 +64,12 @@ public class PantheonControllerBuilder {
       return PantheonController.fromConfig(
           synchronizerConfiguration,
           genesisConfig,
-          homePath,
+          storageProvider,
           syncWithOttoman,
           ethNetworkConfig.getNetworkId(),
           miningParameters,
-          nodeKeys);
+          nodeKeys,
+          parallelTransactionExecution);
     }
   }
 }
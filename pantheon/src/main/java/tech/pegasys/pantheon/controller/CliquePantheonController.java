@@ -35,6 +35,7 @@ import tech.pegasys.pantheon.ethereum.core.Synchronizer;
 import tech.pegasys.pantheon.ethereum.core.TransactionPool;
 import tech.pegasys.pantheon.ethereum.core.Util;
 import tech.pegasys.pantheon.ethereum.db.DefaultMutableBlockchain;
+import tech.pegasys.pantheon.ethereum.db.LogsBloomIndex;
 import tech.pegasys.pantheon.ethereum.db.WorldStateArchive;
 import tech.pegasys.pantheon.ethereum.eth.EthProtocol;
 import tech.pegasys.pantheon.ethereum.eth.manager.EthProtocolManager;
@@ -45,15 +46,13 @@ import tech.pegasys.pantheon.ethereum.eth.sync.state.SyncState;
 import tech.pegasys.pantheon.ethereum.eth.transactions.TransactionPoolFactory;
 import tech.pegasys.pantheon.ethereum.mainnet.ProtocolSchedule;
 import tech.pegasys.pantheon.ethereum.mainnet.ScheduleBasedBlockHashFunction;
+import tech.pegasys.pantheon.ethereum.mainnet.WorldStateRecovery;
 import tech.pegasys.pantheon.ethereum.p2p.api.ProtocolManager;
 import tech.pegasys.pantheon.ethereum.p2p.config.SubProtocolConfiguration;
-import tech.pegasys.pantheon.ethereum.worldstate.KeyValueStorageWorldStateStorage;
-import tech.pegasys.pantheon.services.kvstore.RocksDbKeyValueStorage;
+import tech.pegasys.pantheon.ethereum.storage.StorageProvider;
 import tech.pegasys.pantheon.util.time.SystemClock;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -71,6 +70,7 @@ public class CliquePantheonController
   private final ProtocolManager ethProtocolManager;
   private final KeyPair keyPair;
   private final TransactionPool transactionPool;
+  private final LogsBloomIndex logsBloomIndex;
   private final Runnable closer;
 
   private static final long EPOCH_LENGTH_DEFAULT = 30_000L;
@@ -84,6 +84,7 @@ public class CliquePantheonController
       final Synchronizer synchronizer,
       final KeyPair keyPair,
       final TransactionPool transactionPool,
+      final LogsBloomIndex logsBloomIndex,
       final CliqueMiningCoordinator miningCoordinator,
       final Runnable closer) {
 
@@ -93,12 +94,13 @@ public class CliquePantheonController
     this.synchronizer = synchronizer;
     this.keyPair = keyPair;
     this.transactionPool = transactionPool;
+    this.logsBloomIndex = logsBloomIndex;
     this.closer = closer;
     this.miningCoordinator = miningCoordinator;
   }
 
   public static PantheonController<CliqueContext, CliqueBlockMiner> init(
-      final Path home,
+      final StorageProvider storageProvider,
       final GenesisConfig<CliqueContext> genesisConfig,
       final SynchronizerConfiguration taintedSyncConfig,
       final MiningParameters miningParams,
@@ -111,17 +113,17 @@ public class CliquePantheonController
         cliqueConfig.getLong("period", SECONDS_BETWEEN_BLOCKS_DEFAULT);
 
     final EpochManager epochManger = new EpochManager(blocksPerEpoch);
-    final RocksDbKeyValueStorage kv =
-        RocksDbKeyValueStorage.create(Files.createDirectories(home.resolve(DATABASE_PATH)));
     final ProtocolSchedule<CliqueContext> protocolSchedule = genesisConfig.getProtocolSchedule();
     final BlockHashFunction blockHashFunction =
         ScheduleBasedBlockHashFunction.create(protocolSchedule);
-    final MutableBlockchain blockchain =
-        new DefaultMutableBlockchain(genesisConfig.getBlock(), kv, blockHashFunction);
-    final KeyValueStorageWorldStateStorage worldStateStorage =
-        new KeyValueStorageWorldStateStorage(kv);
-    final WorldStateArchive worldStateArchive = new WorldStateArchive(worldStateStorage);
+    // The genesis state is written first so that it is known when the genesis block becomes the
+    // chain head.
+    final WorldStateArchive worldStateArchive = storageProvider.createWorldStateArchive();
     genesisConfig.writeStateTo(worldStateArchive.getMutable(Hash.EMPTY_TRIE_HASH));
+    final MutableBlockchain blockchain =
+        new DefaultMutableBlockchain(
+            genesisConfig.getBlock(), storageProvider.createBlockchainStorage(blockHashFunction));
+    final LogsBloomIndex logsBloomIndex = storageProvider.createLogsBloomIndex(blockchain);
 
     final ProtocolContext<CliqueContext> protocolContext =
         new ProtocolContext<>(
@@ -133,11 +135,18 @@ public class CliquePantheonController
                 new VoteProposer(),
                 epochManger));
 
-    final SynchronizerConfiguration syncConfig = taintedSyncConfig.validated(blockchain);
+    // Fast sync storage only exists from the start of a fast sync until it completes.
+    final boolean fastSyncInProgress = storageProvider.fastSyncStorageExists();
+    final SynchronizerConfiguration syncConfig =
+        taintedSyncConfig.validated(blockchain, fastSyncInProgress);
+    if (!fastSyncInProgress) {
+      WorldStateRecovery.recoverChainHeadWorldState(protocolSchedule, protocolContext);
+    }
     final boolean fastSyncEnabled = syncConfig.syncMode().equals(SyncMode.FAST);
     final EthProtocolManager ethProtocolManager =
         new EthProtocolManager(
             protocolContext.getBlockchain(),
+            protocolContext.getWorldStateArchive(),
             genesisConfig.getChainId(),
             fastSyncEnabled,
             networkId);
@@ -150,7 +159,8 @@ public class CliquePantheonController
             protocolSchedule,
             protocolContext,
             ethProtocolManager.ethContext(),
-            syncState);
+            syncState,
+            storageProvider);
 
     final TransactionPool transactionPool =
         TransactionPoolFactory.createTransactionPool(
@@ -185,6 +195,7 @@ public class CliquePantheonController
         synchronizer,
         nodeKeys,
         transactionPool,
+        logsBloomIndex,
         miningCoordinator,
         () -> {
           miningCoordinator.disable();
@@ -194,7 +205,7 @@ public class CliquePantheonController
           } catch (final InterruptedException e) {
             LOG.error("Failed to shutdown miner executor");
           }
-          kv.close();
+          storageProvider.close();
         });
   }
 
@@ -228,6 +239,11 @@ public class CliquePantheonController
     return transactionPool;
   }
 
+  @Override
+  public LogsBloomIndex getLogsBloomIndex() {
+    return logsBloomIndex;
+  }
+
   @Override
   public AbstractMiningCoordinator<CliqueContext, CliqueBlockMiner> getMiningCoordinator() {
     return miningCoordinator;
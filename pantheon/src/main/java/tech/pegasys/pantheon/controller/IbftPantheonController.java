@@ -40,6 +40,7 @@ import tech.pegasys.pantheon.ethereum.core.Hash;
 import tech.pegasys.pantheon.ethereum.core.Synchronizer;
 import tech.pegasys.pantheon.ethereum.core.TransactionPool;
 import tech.pegasys.pantheon.ethereum.db.DefaultMutableBlockchain;
+import tech.pegasys.pantheon.ethereum.db.LogsBloomIndex;
 import tech.pegasys.pantheon.ethereum.db.WorldStateArchive;
 import tech.pegasys.pantheon.ethereum.eth.EthProtocol;
 import tech.pegasys.pantheon.ethereum.eth.manager.EthProtocolManager;
@@ -50,15 +51,13 @@ import tech.pegasys.pantheon.ethereum.eth.sync.state.SyncState;
 import tech.pegasys.pantheon.ethereum.eth.transactions.TransactionPoolFactory;
 import tech.pegasys.pantheon.ethereum.mainnet.ProtocolSchedule;
 import tech.pegasys.pantheon.ethereum.mainnet.ScheduleBasedBlockHashFunction;
+import tech.pegasys.pantheon.ethereum.mainnet.WorldStateRecovery;
 import tech.pegasys.pantheon.ethereum.p2p.api.ProtocolManager;
 import tech.pegasys.pantheon.ethereum.p2p.config.SubProtocolConfiguration;
 import tech.pegasys.pantheon.ethereum.p2p.wire.SubProtocol;
-import tech.pegasys.pantheon.ethereum.worldstate.KeyValueStorageWorldStateStorage;
-import tech.pegasys.pantheon.services.kvstore.RocksDbKeyValueStorage;
+import tech.pegasys.pantheon.ethereum.storage.StorageProvider;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -79,6 +78,7 @@ public class IbftPantheonController implements PantheonController<IbftContext, I
   private final IbftProtocolManager ibftProtocolManager;
   private final KeyPair keyPair;
   private final TransactionPool transactionPool;
+  private final LogsBloomIndex logsBloomIndex;
   private final IbftProcessor ibftProcessor;
   private final Runnable closer;
 
@@ -91,6 +91,7 @@ public class IbftPantheonController implements PantheonController<IbftContext, I
       final Synchronizer synchronizer,
       final KeyPair keyPair,
       final TransactionPool transactionPool,
+      final LogsBloomIndex logsBloomIndex,
       final IbftProcessor ibftProcessor,
       final Runnable closer) {
 
@@ -102,12 +103,13 @@ public class IbftPantheonController implements PantheonController<IbftContext, I
     this.synchronizer = synchronizer;
     this.keyPair = keyPair;
     this.transactionPool = transactionPool;
+    this.logsBloomIndex = logsBloomIndex;
     this.ibftProcessor = ibftProcessor;
     this.closer = closer;
   }
 
   public static PantheonController<IbftContext, IbftBlockMiner> init(
-      final Path home,
+      final StorageProvider storageProvider,
       final GenesisConfig<IbftContext> genesisConfig,
       final SynchronizerConfiguration taintedSyncConfig,
       final boolean ottomanTestnetOperation,
@@ -115,17 +117,17 @@ public class IbftPantheonController implements PantheonController<IbftContext, I
       final int networkId,
       final KeyPair nodeKeys)
       throws IOException {
-    final RocksDbKeyValueStorage kv =
-        RocksDbKeyValueStorage.create(Files.createDirectories(home.resolve(DATABASE_PATH)));
     final ProtocolSchedule<IbftContext> protocolSchedule = genesisConfig.getProtocolSchedule();
     final BlockHashFunction blockHashFunction =
         ScheduleBasedBlockHashFunction.create(protocolSchedule);
-    final MutableBlockchain blockchain =
-        new DefaultMutableBlockchain(genesisConfig.getBlock(), kv, blockHashFunction);
-    final KeyValueStorageWorldStateStorage worldStateStorage =
-        new KeyValueStorageWorldStateStorage(kv);
-    final WorldStateArchive worldStateArchive = new WorldStateArchive(worldStateStorage);
+    // The genesis state is written first so that it is known when the genesis block becomes the
+    // chain head.
+    final WorldStateArchive worldStateArchive = storageProvider.createWorldStateArchive();
     genesisConfig.writeStateTo(worldStateArchive.getMutable(Hash.EMPTY_TRIE_HASH));
+    final MutableBlockchain blockchain =
+        new DefaultMutableBlockchain(
+            genesisConfig.getBlock(), storageProvider.createBlockchainStorage(blockHashFunction));
+    final LogsBloomIndex logsBloomIndex = storageProvider.createLogsBloomIndex(blockchain);
 
     final EpochManager epochManager =
         new EpochManager(IbftProtocolSchedule.getEpochLength(Optional.of(ibftConfig)));
@@ -139,7 +141,13 @@ public class IbftPantheonController implements PantheonController<IbftContext, I
         new ProtocolContext<>(
             blockchain, worldStateArchive, new IbftContext(voteTally, voteProposer));
 
-    final SynchronizerConfiguration syncConfig = taintedSyncConfig.validated(blockchain);
+    // Fast sync storage only exists from the start of a fast sync until it completes.
+    final boolean fastSyncInProgress = storageProvider.fastSyncStorageExists();
+    final SynchronizerConfiguration syncConfig =
+        taintedSyncConfig.validated(blockchain, fastSyncInProgress);
+    if (!fastSyncInProgress) {
+      WorldStateRecovery.recoverChainHeadWorldState(protocolSchedule, protocolContext);
+    }
     final boolean fastSyncEnabled = syncConfig.syncMode().equals(SyncMode.FAST);
     final EthProtocolManager ethProtocolManager;
     final SubProtocol ethSubProtocol;
@@ -148,11 +156,20 @@ public class IbftPantheonController implements PantheonController<IbftContext, I
       ethSubProtocol = Istanbul64Protocol.get();
       ethProtocolManager =
           new Istanbul64ProtocolManager(
-              protocolContext.getBlockchain(), networkId, fastSyncEnabled, 1);
+              protocolContext.getBlockchain(),
+              protocolContext.getWorldStateArchive(),
+              networkId,
+              fastSyncEnabled,
+              1);
     } else {
       ethSubProtocol = EthProtocol.get();
       ethProtocolManager =
-          new EthProtocolManager(protocolContext.getBlockchain(), networkId, fastSyncEnabled, 1);
+          new EthProtocolManager(
+              protocolContext.getBlockchain(),
+              protocolContext.getWorldStateArchive(),
+              networkId,
+              fastSyncEnabled,
+              1);
     }
     final SyncState syncState =
         new SyncState(
@@ -163,7 +180,8 @@ public class IbftPantheonController implements PantheonController<IbftContext, I
             protocolSchedule,
             protocolContext,
             ethProtocolManager.ethContext(),
-            syncState);
+            syncState,
+            storageProvider);
 
     final IbftEventQueue ibftEventQueue = new IbftEventQueue();
 
@@ -187,7 +205,7 @@ public class IbftPantheonController implements PantheonController<IbftContext, I
           } catch (final InterruptedException e) {
             LOG.error("Failed to shutdown ibft processor executor");
           }
-          kv.close();
+          storageProvider.close();
         };
 
     final TransactionPool transactionPool =
@@ -206,6 +224,7 @@ public class IbftPantheonController implements PantheonController<IbftContext, I
         synchronizer,
         nodeKeys,
         transactionPool,
+        logsBloomIndex,
         ibftProcessor,
         closer);
   }
@@ -242,6 +261,11 @@ public class IbftPantheonController implements PantheonController<IbftContext, I
     return transactionPool;
   }
 
+  @Override
+  public LogsBloomIndex getLogsBloomIndex() {
+    return logsBloomIndex;
+  }
+
   @Override
   public AbstractMiningCoordinator<IbftContext, IbftBlockMiner> getMiningCoordinator() {
     return null;
@@ -28,6 +28,7 @@ import tech.pegasys.pantheon.ethereum.core.MiningParameters;
 import tech.pegasys.pantheon.ethereum.core.Synchronizer;
 import tech.pegasys.pantheon.ethereum.core.TransactionPool;
 import tech.pegasys.pantheon.ethereum.db.DefaultMutableBlockchain;
+import tech.pegasys.pantheon.ethereum.db.LogsBloomIndex;
 import tech.pegasys.pantheon.ethereum.db.WorldStateArchive;
 import tech.pegasys.pantheon.ethereum.eth.EthProtocol;
 import tech.pegasys.pantheon.ethereum.eth.manager.EthProtocolManager;
@@ -39,15 +40,17 @@ import tech.pegasys.pantheon.ethereum.eth.transactions.TransactionPoolFactory;
 import tech.pegasys.pantheon.ethereum.mainnet.MainnetBlockHeaderValidator;
 import tech.pegasys.pantheon.ethereum.mainnet.ProtocolSchedule;
 import tech.pegasys.pantheon.ethereum.mainnet.ScheduleBasedBlockHashFunction;
+import tech.pegasys.pantheon.ethereum.mainnet.WorldStateRecovery;
 import tech.pegasys.pantheon.ethereum.p2p.api.ProtocolManager;
 import tech.pegasys.pantheon.ethereum.p2p.config.SubProtocolConfiguration;
-import tech.pegasys.pantheon.ethereum.worldstate.KeyValueStorageWorldStateStorage;
-import tech.pegasys.pantheon.services.kvstore.RocksDbKeyValueStorage;
+import tech.pegasys.pantheon.ethereum.storage.RocksDbStorageProvider;
+import tech.pegasys.pantheon.ethereum.storage.StorageProvider;
+import tech.pegasys.pantheon.services.kvstore.RocksDbConfiguration;
 import tech.pegasys.pantheon.util.time.SystemClock;
 
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -67,6 +70,7 @@ public class MainnetPantheonController implements PantheonController<Void, EthHa
   private final Synchronizer synchronizer;
 
   private final TransactionPool transactionPool;
+  private final LogsBloomIndex logsBloomIndex;
   private final EthHashMiningCoordinator miningCoordinator;
   private final Runnable close;
 
@@ -77,6 +81,7 @@ public class MainnetPantheonController implements PantheonController<Void, EthHa
       final Synchronizer synchronizer,
       final KeyPair keyPair,
       final TransactionPool transactionPool,
+      final LogsBloomIndex logsBloomIndex,
       final EthHashMiningCoordinator miningCoordinator,
       final Runnable close) {
     this.genesisConfig = genesisConfig;
@@ -85,6 +90,7 @@ public class MainnetPantheonController implements PantheonController<Void, EthHa
     this.synchronizer = synchronizer;
     this.keyPair = keyPair;
     this.transactionPool = transactionPool;
+    this.logsBloomIndex = logsBloomIndex;
     this.miningCoordinator = miningCoordinator;
     this.close = close;
   }
@@ -94,7 +100,8 @@ public class MainnetPantheonController implements PantheonController<Void, EthHa
     final MiningParameters miningParams = new MiningParameters(null, null, null, false);
     final KeyPair nodeKeys = loadKeyPair(home);
     return init(
-        home,
+        RocksDbStorageProvider.create(
+            home.resolve(DATABASE_PATH), RocksDbConfiguration.builder().build()),
         GenesisConfig.mainnet(),
         SynchronizerConfiguration.builder().build(),
         miningParams,
@@ -102,31 +109,61 @@ public class MainnetPantheonController implements PantheonController<Void, EthHa
   }
 
   public static PantheonController<Void, EthHashBlockMiner> init(
-      final Path home,
+      final StorageProvider storageProvider,
       final GenesisConfig<Void> genesisConfig,
       final SynchronizerConfiguration taintedSyncConfig,
       final MiningParameters miningParams,
       final KeyPair nodeKeys)
       throws IOException {
-    final RocksDbKeyValueStorage kv =
-        RocksDbKeyValueStorage.create(Files.createDirectories(home.resolve(DATABASE_PATH)));
+    return init(
+        storageProvider,
+        genesisConfig,
+        taintedSyncConfig,
+        miningParams,
+        nodeKeys,
+        Optional.empty());
+  }
+
+  /**
+   * Creates a controller for an Ethash network whose protocol schedule executes transactions in
+   * parallel on the given executor, if any. The controller takes ownership of the executor, and
+   * shuts it down when closed.
+   */
+  public static PantheonController<Void, EthHashBlockMiner> init(
+      final StorageProvider storageProvider,
+      final GenesisConfig<Void> genesisConfig,
+      final SynchronizerConfiguration taintedSyncConfig,
+      final MiningParameters miningParams,
+      final KeyPair nodeKeys,
+      final Optional<ExecutorService> transactionExecutor)
+      throws IOException {
     final ProtocolSchedule<Void> protocolSchedule = genesisConfig.getProtocolSchedule();
     final BlockHashFunction blockHashFunction =
         ScheduleBasedBlockHashFunction.create(protocolSchedule);
-    final MutableBlockchain blockchain =
-        new DefaultMutableBlockchain(genesisConfig.getBlock(), kv, blockHashFunction);
-    final WorldStateArchive worldStateArchive =
-        new WorldStateArchive(new KeyValueStorageWorldStateStorage(kv));
+    // The genesis state is written first so that it is known when the genesis block becomes the
+    // chain head.
+    final WorldStateArchive worldStateArchive = storageProvider.createWorldStateArchive();
     genesisConfig.writeStateTo(worldStateArchive.getMutable(Hash.EMPTY_TRIE_HASH));
+    final MutableBlockchain blockchain =
+        new DefaultMutableBlockchain(
+            genesisConfig.getBlock(), storageProvider.createBlockchainStorage(blockHashFunction));
+    final LogsBloomIndex logsBloomIndex = storageProvider.createLogsBloomIndex(blockchain);
 
     final ProtocolContext<Void> protocolContext =
         new ProtocolContext<>(blockchain, worldStateArchive, null);
 
-    final SynchronizerConfiguration syncConfig = taintedSyncConfig.validated(blockchain);
+    // Fast sync storage only exists from the start of a fast sync until it completes.
+    final boolean fastSyncInProgress = storageProvider.fastSyncStorageExists();
+    final SynchronizerConfiguration syncConfig =
+        taintedSyncConfig.validated(blockchain, fastSyncInProgress);
+    if (!fastSyncInProgress) {
+      WorldStateRecovery.recoverChainHeadWorldState(protocolSchedule, protocolContext);
+    }
     final boolean fastSyncEnabled = syncConfig.syncMode().equals(SyncMode.FAST);
     final EthProtocolManager ethProtocolManager =
         new EthProtocolManager(
             protocolContext.getBlockchain(),
+            protocolContext.getWorldStateArchive(),
             genesisConfig.getChainId(),
             fastSyncEnabled,
             syncConfig.downloaderParallelism());
@@ -139,7 +176,8 @@ public class MainnetPantheonController implements PantheonController<Void, EthHa
             protocolSchedule,
             protocolContext,
             ethProtocolManager.ethContext(),
-            syncState);
+            syncState,
+            storageProvider);
 
     final TransactionPool transactionPool =
         TransactionPoolFactory.createTransactionPool(
@@ -172,6 +210,7 @@ public class MainnetPantheonController implements PantheonController<Void, EthHa
         synchronizer,
         nodeKeys,
         transactionPool,
+        logsBloomIndex,
         miningCoordinator,
         () -> {
           miningCoordinator.disable();
@@ -181,7 +220,8 @@ public class MainnetPantheonController implements PantheonController<Void, EthHa
           } catch (final InterruptedException e) {
             LOG.error("Failed to shutdown miner executor");
           }
-          kv.close();
+          transactionExecutor.ifPresent(ExecutorService::shutdownNow);
+          storageProvider.close();
         });
   }
 
@@ -215,6 +255,11 @@ public class MainnetPantheonController implements PantheonController<Void, EthHa
     return transactionPool;
   }
 
+  @Override
+  public LogsBloomIndex getLogsBloomIndex() {
+    return logsBloomIndex;
+  }
+
   @Override
   public EthHashMiningCoordinator getMiningCoordinator() {
     return miningCoordinator;
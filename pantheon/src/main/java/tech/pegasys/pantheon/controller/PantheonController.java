@@ -23,15 +23,21 @@ import tech.pegasys.pantheon.ethereum.chain.GenesisConfig;
 import tech.pegasys.pantheon.ethereum.core.MiningParameters;
 import tech.pegasys.pantheon.ethereum.core.Synchronizer;
 import tech.pegasys.pantheon.ethereum.core.TransactionPool;
+import tech.pegasys.pantheon.ethereum.db.LogsBloomIndex;
 import tech.pegasys.pantheon.ethereum.eth.sync.SynchronizerConfiguration;
 import tech.pegasys.pantheon.ethereum.mainnet.MainnetProtocolSchedule;
 import tech.pegasys.pantheon.ethereum.mainnet.ProtocolSchedule;
 import tech.pegasys.pantheon.ethereum.p2p.config.SubProtocolConfiguration;
+import tech.pegasys.pantheon.ethereum.storage.StorageProvider;
 
 import java.io.Closeable;
 import java.io.IOException;
-import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.vertx.core.json.JsonObject;
 
 public interface PantheonController<C, M extends BlockMiner<C, ? extends AbstractBlockCreator<C>>>
@@ -42,26 +48,42 @@ public interface PantheonController<C, M extends BlockMiner<C, ? extends Abstrac
   static PantheonController<?, ?> fromConfig(
       final SynchronizerConfiguration syncConfig,
       final String configContents,
-      final Path pantheonHome,
+      final StorageProvider storageProvider,
       final boolean ottomanTestnetOperation,
       final int networkId,
       final MiningParameters miningParameters,
-      final KeyPair nodeKeys)
+      final KeyPair nodeKeys,
+      final boolean parallelTransactionExecution)
       throws IOException {
 
     final JsonObject config = new JsonObject(configContents);
     final JsonObject configOptions = config.getJsonObject("config");
 
     if (configOptions.containsKey("ethash")) {
+      // Owned by the controller, which shuts it down when closed.
+      final Optional<ExecutorService> transactionExecutor =
+          parallelTransactionExecution
+              ? Optional.of(
+                  Executors.newFixedThreadPool(
+                      Runtime.getRuntime().availableProcessors(),
+                      new ThreadFactoryBuilder()
+                          .setNameFormat("TransactionExecution-%d")
+                          .setDaemon(true)
+                          .build()))
+              : Optional.empty();
       return MainnetPantheonController.init(
-          pantheonHome,
-          GenesisConfig.fromConfig(config, MainnetProtocolSchedule.fromConfig(configOptions)),
+          storageProvider,
+          GenesisConfig.fromConfig(
+              config,
+              MainnetProtocolSchedule.fromConfig(
+                  configOptions, transactionExecutor.map(Executor.class::cast))),
           syncConfig,
           miningParameters,
-          nodeKeys);
+          nodeKeys,
+          transactionExecutor);
     } else if (configOptions.containsKey("ibft")) {
       return IbftPantheonController.init(
-          pantheonHome,
+          storageProvider,
           GenesisConfig.fromConfig(config, IbftProtocolSchedule.create(configOptions)),
           syncConfig,
           ottomanTestnetOperation,
@@ -70,7 +92,7 @@ public interface PantheonController<C, M extends BlockMiner<C, ? extends Abstrac
           nodeKeys);
     } else if (configOptions.containsKey("clique")) {
       return CliquePantheonController.init(
-          pantheonHome,
+          storageProvider,
           GenesisConfig.fromConfig(config, CliqueProtocolSchedule.create(configOptions, nodeKeys)),
           syncConfig,
           miningParameters,
@@ -98,5 +120,7 @@ public interface PantheonController<C, M extends BlockMiner<C, ? extends Abstrac
 
   TransactionPool getTransactionPool();
 
+  LogsBloomIndex getLogsBloomIndex();
+
   AbstractMiningCoordinator<C, M> getMiningCoordinator();
 }
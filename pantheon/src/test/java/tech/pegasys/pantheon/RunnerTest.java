@@ -14,6 +14,7 @@ package tech.pegasys.pantheon;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static tech.pegasys.pantheon.controller.KeyPairUtil.loadKeyPair;
+import static tech.pegasys.pantheon.controller.PantheonController.DATABASE_PATH;
 
 import tech.pegasys.pantheon.controller.MainnetPantheonController;
 import tech.pegasys.pantheon.controller.PantheonController;
@@ -33,6 +34,8 @@ import tech.pegasys.pantheon.ethereum.mainnet.HeaderValidationMode;
 import tech.pegasys.pantheon.ethereum.mainnet.ProtocolSchedule;
 import tech.pegasys.pantheon.ethereum.mainnet.ProtocolSpec;
 import tech.pegasys.pantheon.ethereum.p2p.peers.DefaultPeer;
+import tech.pegasys.pantheon.ethereum.storage.RocksDbStorageProvider;
+import tech.pegasys.pantheon.services.kvstore.RocksDbConfiguration;
 import tech.pegasys.pantheon.util.uint.UInt256;
 
 import java.net.InetAddress;
@@ -84,16 +87,15 @@ public final class RunnerTest {
     final SynchronizerConfiguration fastSyncConfig =
         SynchronizerConfiguration.builder()
             .syncMode(mode)
-            // TODO: Disable switch from fast to full sync via configuration for now, set pivot to
-            // realistic value when world state persistence is added.
-            //        .fastSyncPivotDistance(blockCount / 2).build();
-            .fastSyncPivotDistance(0)
+            .fastSyncPivotDistance(blockCount / 2)
+            .fastSyncMinimumPeerCount(1)
             .build();
 
     // Setup state with block data
     try (final PantheonController<Void, EthHashBlockMiner> controller =
         MainnetPantheonController.init(
-            dbAhead,
+            RocksDbStorageProvider.create(
+                dbAhead.resolve(DATABASE_PATH), RocksDbConfiguration.builder().build()),
             GenesisConfig.mainnet(),
             fastSyncConfig,
             new MiningParametersTestBuilder().enabled(false).build(),
@@ -104,7 +106,8 @@ public final class RunnerTest {
     // Setup Runner with blocks
     final PantheonController<Void, EthHashBlockMiner> controllerAhead =
         MainnetPantheonController.init(
-            dbAhead,
+            RocksDbStorageProvider.create(
+                dbAhead.resolve(DATABASE_PATH), RocksDbConfiguration.builder().build()),
             GenesisConfig.mainnet(),
             fastSyncConfig,
             new MiningParametersTestBuilder().enabled(false).build(),
@@ -137,7 +140,9 @@ public final class RunnerTest {
       final KeyPair behindDbNodeKeys = loadKeyPair(dbBehind);
       final PantheonController<Void, EthHashBlockMiner> controllerBehind =
           MainnetPantheonController.init(
-              temp.newFolder().toPath(),
+              RocksDbStorageProvider.create(
+                  temp.newFolder().toPath().resolve(DATABASE_PATH),
+                  RocksDbConfiguration.builder().build()),
               GenesisConfig.mainnet(),
               fastSyncConfig,
               new MiningParametersTestBuilder().enabled(false).build(),
@@ -75,7 +75,7 @@ public abstract class CommandTestAbstract {
     // doReturn used because of generic PantheonController
     Mockito.doReturn(mockController)
         .when(mockControllerBuilder)
-        .build(any(), any(), any(), anyBoolean(), any(), anyBoolean());
+        .build(any(), any(), any(), anyBoolean(), any(), anyBoolean(), any(), any(), anyBoolean());
 
     when(mockSyncConfBuilder.build()).thenReturn(mockSyncConf);
   }
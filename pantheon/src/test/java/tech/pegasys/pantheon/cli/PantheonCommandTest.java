@@ -15,6 +15,7 @@ package tech.pegasys.pantheon.cli;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.anyInt;
@@ -35,8 +36,11 @@ import tech.pegasys.pantheon.ethereum.core.MiningParameters;
 import tech.pegasys.pantheon.ethereum.core.Wei;
 import tech.pegasys.pantheon.ethereum.eth.sync.SyncMode;
 import tech.pegasys.pantheon.ethereum.jsonrpc.JsonRpcConfiguration;
+import tech.pegasys.pantheon.ethereum.jsonrpc.JsonRpcWorkerPool;
 import tech.pegasys.pantheon.ethereum.jsonrpc.RpcApis;
 import tech.pegasys.pantheon.ethereum.jsonrpc.websocket.WebSocketConfiguration;
+import tech.pegasys.pantheon.ethereum.worldstate.WorldStateConfiguration;
+import tech.pegasys.pantheon.services.kvstore.RocksDbConfiguration;
 import tech.pegasys.pantheon.util.bytes.BytesValue;
 
 import java.io.File;
@@ -53,7 +57,6 @@ import java.util.Optional;
 import com.google.common.collect.Lists;
 import com.google.common.io.Resources;
 import org.junit.Before;
-import org.junit.Ignore;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -142,7 +145,16 @@ public class PantheonCommandTest extends CommandTestAbstract {
     final ArgumentCaptor<EthNetworkConfig> networkArg =
         ArgumentCaptor.forClass(EthNetworkConfig.class);
     verify(mockControllerBuilder)
-        .build(any(), isNotNull(), networkArg.capture(), eq(false), miningArg.capture(), eq(false));
+        .build(
+            any(),
+            isNotNull(),
+            networkArg.capture(),
+            eq(false),
+            miningArg.capture(),
+            eq(false),
+            any(),
+            any(),
+            anyBoolean());
 
     verify(mockSyncConfBuilder).syncMode(ArgumentMatchers.eq(SyncMode.FULL));
 
@@ -280,10 +292,12 @@ public class PantheonCommandTest extends CommandTestAbstract {
             eq(networkConfig),
             eq(false),
             any(),
+            anyBoolean(),
+            any(),
+            any(),
             anyBoolean());
 
-    // TODO: Re-enable as per NC-1057/NC-1681
-    // verify(mockSyncConfBuilder).syncMode(ArgumentMatchers.eq(SyncMode.FAST));
+    verify(mockSyncConfBuilder).syncMode(ArgumentMatchers.eq(SyncMode.FAST));
 
     assertThat(commandErrorOutput.toString()).isEmpty();
 
@@ -317,10 +331,10 @@ public class PantheonCommandTest extends CommandTestAbstract {
             eq(webSocketConfiguration),
             any());
 
-    verify(mockControllerBuilder).build(any(), any(), any(), eq(false), any(), eq(false));
+    verify(mockControllerBuilder)
+        .build(any(), any(), any(), eq(false), any(), eq(false), any(), any(), anyBoolean());
 
-    // TODO: Re-enable as per NC-1057/NC-1681
-    // verify(mockSyncConfBuilder).syncMode(ArgumentMatchers.eq(SyncMode.FULL));
+    verify(mockSyncConfBuilder).syncMode(ArgumentMatchers.eq(SyncMode.FULL));
 
     assertThat(commandErrorOutput.toString()).isEmpty();
 
@@ -335,7 +349,16 @@ public class PantheonCommandTest extends CommandTestAbstract {
     parseCommand("--datadir", path.toString());
 
     verify(mockControllerBuilder)
-        .build(any(), pathArgumentCaptor.capture(), any(), eq(false), any(), anyBoolean());
+        .build(
+            any(),
+            pathArgumentCaptor.capture(),
+            any(),
+            eq(false),
+            any(),
+            anyBoolean(),
+            any(),
+            any(),
+            anyBoolean());
 
     assertThat(pathArgumentCaptor.getValue()).isEqualByComparingTo(path);
 
@@ -352,7 +375,16 @@ public class PantheonCommandTest extends CommandTestAbstract {
     parseCommand("--genesis", path.toString());
 
     verify(mockControllerBuilder)
-        .build(any(), any(), networkArg.capture(), anyBoolean(), any(), anyBoolean());
+        .build(
+            any(),
+            any(),
+            networkArg.capture(),
+            anyBoolean(),
+            any(),
+            anyBoolean(),
+            any(),
+            any(),
+            anyBoolean());
 
     assertThat(networkArg.getValue().getGenesisConfig()).isEqualTo(path.toUri());
 
@@ -459,7 +491,6 @@ public class PantheonCommandTest extends CommandTestAbstract {
     assertThat(commandErrorOutput.toString()).isEmpty();
   }
 
-  @Ignore
   @Test
   public void syncModeOptionMustBeUsed() {
 
@@ -528,6 +559,99 @@ public class PantheonCommandTest extends CommandTestAbstract {
     assertThat(commandErrorOutput.toString()).isEmpty();
   }
 
+  @Test
+  public void jsonRpcPrettyJsonEnabledPropertyMustBeUsed() {
+    parseCommand("--rpc-pretty-json-enabled");
+
+    verify(mockRunnerBuilder)
+        .build(
+            any(),
+            any(),
+            anyBoolean(),
+            any(),
+            anyString(),
+            anyInt(),
+            anyInt(),
+            jsonRpcConfigArgumentCaptor.capture(),
+            any(),
+            any());
+
+    assertThat(jsonRpcConfigArgumentCaptor.getValue().isPrettyJsonEnabled()).isTrue();
+
+    assertThat(commandOutput.toString()).isEmpty();
+    assertThat(commandErrorOutput.toString()).isEmpty();
+  }
+
+  @Test
+  public void jsonRpcWorkerPoolPropertiesMustBeUsed() {
+    parseCommand(
+        "--rpc-worker-threads",
+        "READ=16,TRACE=1",
+        "--rpc-worker-queue-size",
+        "QUERY=5",
+        "--rpc-method-concurrency",
+        "debug_traceTransaction=2,eth_getLogs=3");
+
+    verify(mockRunnerBuilder)
+        .build(
+            any(),
+            any(),
+            anyBoolean(),
+            any(),
+            anyString(),
+            anyInt(),
+            anyInt(),
+            jsonRpcConfigArgumentCaptor.capture(),
+            any(),
+            any());
+
+    final JsonRpcConfiguration config = jsonRpcConfigArgumentCaptor.getValue();
+    assertThat(config.getWorkerThreads(JsonRpcWorkerPool.READ)).isEqualTo(16);
+    assertThat(config.getWorkerThreads(JsonRpcWorkerPool.QUERY))
+        .isEqualTo(JsonRpcWorkerPool.QUERY.getDefaultThreads());
+    assertThat(config.getWorkerThreads(JsonRpcWorkerPool.TRACE)).isEqualTo(1);
+    assertThat(config.getWorkerQueueSize(JsonRpcWorkerPool.QUERY)).isEqualTo(5);
+    assertThat(config.getMethodConcurrencyLimits())
+        .containsOnly(entry("debug_traceTransaction", 2), entry("eth_getLogs", 3));
+
+    assertThat(commandOutput.toString()).isEmpty();
+    assertThat(commandErrorOutput.toString()).isEmpty();
+  }
+
+  @Test
+  public void jsonRpcWorkerThreadsMustBePositive() {
+    parseCommand("--rpc-worker-threads", "READ=0");
+
+    verifyZeroInteractions(mockRunnerBuilder);
+
+    assertThat(commandOutput.toString()).isEmpty();
+    assertThat(commandErrorOutput.toString())
+        .startsWith("JSON-RPC worker pool READ must have at least one thread");
+  }
+
+  @Test
+  public void jsonRpcResponseCacheSizePropertyMustBeUsed() {
+    parseCommand("--rpc-response-cache-size", "64");
+
+    verify(mockRunnerBuilder)
+        .build(
+            any(),
+            any(),
+            anyBoolean(),
+            any(),
+            anyString(),
+            anyInt(),
+            anyInt(),
+            jsonRpcConfigArgumentCaptor.capture(),
+            any(),
+            any());
+
+    assertThat(jsonRpcConfigArgumentCaptor.getValue().getResponseCacheSize()).isEqualTo(64);
+
+    assertThat(commandOutput.toString()).isEmpty();
+    assertThat(commandErrorOutput.toString()).isEmpty();
+  }
+
   @Test
   public void rpcApisPropertyMustBeUsed() {
     parseCommand("--rpc-api", "ETH,NET");
@@ -841,7 +965,16 @@ public class PantheonCommandTest extends CommandTestAbstract {
         ArgumentCaptor.forClass(MiningParameters.class);
 
     verify(mockControllerBuilder)
-        .build(any(), any(), any(), anyBoolean(), miningArg.capture(), anyBoolean());
+        .build(
+            any(),
+            any(),
+            any(),
+            anyBoolean(),
+            miningArg.capture(),
+            anyBoolean(),
+            any(),
+            any(),
+            anyBoolean());
     assertThat(commandOutput.toString()).isEmpty();
     assertThat(commandErrorOutput.toString()).isEmpty();
     assertThat(miningArg.getValue().isMiningEnabled()).isTrue();
@@ -863,7 +996,16 @@ public class PantheonCommandTest extends CommandTestAbstract {
         ArgumentCaptor.forClass(MiningParameters.class);
 
     verify(mockControllerBuilder)
-        .build(any(), any(), any(), anyBoolean(), miningArg.capture(), anyBoolean());
+        .build(
+            any(),
+            any(),
+            any(),
+            anyBoolean(),
+            miningArg.capture(),
+            anyBoolean(),
+            any(),
+            any(),
+            anyBoolean());
     assertThat(commandOutput.toString()).isEmpty();
     assertThat(commandErrorOutput.toString()).isEmpty();
     assertThat(miningArg.getValue().getCoinbase()).isEqualTo(Optional.of(requestedCoinbase));
@@ -875,11 +1017,235 @@ public class PantheonCommandTest extends CommandTestAbstract {
   @Test
   public void devModeOptionMustBeUsed() throws Exception {
     parseCommand("--dev-mode");
-    verify(mockControllerBuilder).build(any(), any(), any(), anyBoolean(), any(), eq(true));
+    verify(mockControllerBuilder)
+        .build(any(), any(), any(), anyBoolean(), any(), eq(true), any(), any(), anyBoolean());
     assertThat(commandOutput.toString()).isEmpty();
     assertThat(commandErrorOutput.toString()).isEmpty();
   }
 
+  @Test
+  public void parallelTransactionExecutionIsDisabledByDefault() throws Exception {
+    parseCommand();
+    verify(mockControllerBuilder)
+        .build(any(), any(), any(), anyBoolean(), any(), anyBoolean(), any(), any(), eq(false));
+    assertThat(commandOutput.toString()).isEmpty();
+    assertThat(commandErrorOutput.toString()).isEmpty();
+  }
+
+  @Test
+  public void parallelTransactionExecutionOptionMustBeUsed() throws Exception {
+    parseCommand("--parallel-transaction-execution");
+    verify(mockControllerBuilder)
+        .build(any(), any(), any(), anyBoolean(), any(), anyBoolean(), any(), any(), eq(true));
+    assertThat(commandOutput.toString()).isEmpty();
+    assertThat(commandErrorOutput.toString()).isEmpty();
+  }
+
+  @Test
+  public void rocksDbSegmentedOptionMustBeUsed() throws Exception {
+    parseCommand("--rocksdb-segmented");
+
+    final ArgumentCaptor<RocksDbConfiguration> rocksDbArg =
+        ArgumentCaptor.forClass(RocksDbConfiguration.class);
+    verify(mockControllerBuilder)
+        .build(
+            any(),
+            any(),
+            any(),
+            anyBoolean(),
+            any(),
+            anyBoolean(),
+            rocksDbArg.capture(),
+            any(),
+            anyBoolean());
+    assertThat(commandOutput.toString()).isEmpty();
+    assertThat(commandErrorOutput.toString()).isEmpty();
+    assertThat(rocksDbArg.getValue().isSegmented()).isTrue();
+  }
+
+  @Test
+  public void rocksDbTuningOptionsMustBeUsed() throws Exception {
+    parseCommand(
+        "--rocksdb-cache-capacity",
+        "1073741824",
+        "--rocksdb-bloom-filter-bits",
+        "0",
+        "--rocksdb-max-open-files",
+        "-1",
+        "--rocksdb-max-background-jobs",
+        "3",
+        "--rocksdb-write-buffer-size",
+        "33554432");
+
+    final ArgumentCaptor<RocksDbConfiguration> rocksDbArg =
+        ArgumentCaptor.forClass(RocksDbConfiguration.class);
+    verify(mockControllerBuilder)
+        .build(
+            any(),
+            any(),
+            any(),
+            anyBoolean(),
+            any(),
+            anyBoolean(),
+            rocksDbArg.capture(),
+            any(),
+            anyBoolean());
+    assertThat(commandOutput.toString()).isEmpty();
+    assertThat(commandErrorOutput.toString()).isEmpty();
+    final RocksDbConfiguration rocksDbConfiguration = rocksDbArg.getValue();
+    assertThat(rocksDbConfiguration.isSegmented()).isFalse();
+    assertThat(rocksDbConfiguration.cacheCapacity()).isEqualTo(1073741824L);
+    assertThat(rocksDbConfiguration.bloomFilterBitsPerKey()).isEqualTo(0);
+    assertThat(rocksDbConfiguration.maxOpenFiles()).isEqualTo(-1);
+    assertThat(rocksDbConfiguration.maxBackgroundJobs()).isEqualTo(3);
+    assertThat(rocksDbConfiguration.writeBufferSize()).isEqualTo(33554432L);
+    assertThat(rocksDbConfiguration.isBatchedWrites()).isFalse();
+    assertThat(rocksDbConfiguration.isWalDisabled()).isFalse();
+    assertThat(rocksDbConfiguration.isAsyncWrites()).isFalse();
+  }
+
+  @Test
+  public void rocksDbWriteOptionsMustBeUsed() throws Exception {
+    parseCommand("--rocksdb-batched-writes", "--rocksdb-disable-wal", "--rocksdb-async-writes");
+
+    final ArgumentCaptor<RocksDbConfiguration> rocksDbArg =
+        ArgumentCaptor.forClass(RocksDbConfiguration.class);
+    verify(mockControllerBuilder)
+        .build(
+            any(),
+            any(),
+            any(),
+            anyBoolean(),
+            any(),
+            anyBoolean(),
+            rocksDbArg.capture(),
+            any(),
+            anyBoolean());
+    assertThat(commandOutput.toString()).isEmpty();
+    assertThat(commandErrorOutput.toString()).isEmpty();
+    assertThat(rocksDbArg.getValue().isBatchedWrites()).isTrue();
+    assertThat(rocksDbArg.getValue().isWalDisabled()).isTrue();
+    assertThat(rocksDbArg.getValue().isAsyncWrites()).isTrue();
+  }
+
+  @Test
+  public void rocksDbDisableWalRequiresBatchedWrites() throws Exception {
+    parseCommand("--rocksdb-disable-wal");
+
+    verifyZeroInteractions(mockControllerBuilder);
+    assertThat(commandOutput.toString()).isEmpty();
+    assertThat(commandErrorOutput.toString())
+        .contains("The write-ahead log can only be disabled for batched writes");
+  }
+
+  @Test
+  public void rocksDbDisableWalCanNotBeSegmented() throws Exception {
+    parseCommand("--rocksdb-segmented", "--rocksdb-batched-writes", "--rocksdb-disable-wal");
+
+    verifyZeroInteractions(mockControllerBuilder);
+    assertThat(commandOutput.toString()).isEmpty();
+    assertThat(commandErrorOutput.toString())
+        .contains("The write-ahead log can not be disabled for a segmented database");
+  }
+
+  @Test
+  public void trieNodeCacheSizeOptionMustBeUsed() throws Exception {
+    parseCommand("--trie-node-cache-size", "1048576");
+
+    final ArgumentCaptor<WorldStateConfiguration> worldStateArg =
+        ArgumentCaptor.forClass(WorldStateConfiguration.class);
+    verify(mockControllerBuilder)
+        .build(
+            any(), any(), any(), anyBoolean(), any(), anyBoolean(), any(), worldStateArg.capture(),
+            anyBoolean());
+    assertThat(commandOutput.toString()).isEmpty();
+    assertThat(commandErrorOutput.toString()).isEmpty();
+    assertThat(worldStateArg.getValue().trieNodeCacheSize()).isEqualTo(1048576L);
+    assertThat(worldStateArg.getValue().writeBackBlocks()).isEqualTo(0);
+  }
+
+  @Test
+  public void worldStateWriteBackBlocksOptionMustBeUsed() throws Exception {
+    parseCommand("--world-state-write-back-blocks", "64");
+
+    final ArgumentCaptor<WorldStateConfiguration> worldStateArg =
+        ArgumentCaptor.forClass(WorldStateConfiguration.class);
+    verify(mockControllerBuilder)
+        .build(
+            any(), any(), any(), anyBoolean(), any(), anyBoolean(), any(), worldStateArg.capture(),
+            anyBoolean());
+    assertThat(commandOutput.toString()).isEmpty();
+    assertThat(commandErrorOutput.toString()).isEmpty();
+    assertThat(worldStateArg.getValue().writeBackBlocks()).isEqualTo(64);
+  }
+
+  @Test
+  public void pruningOptionsMustBeUsed() throws Exception {
+    parseCommand(
+        "--rocksdb-segmented", "--pruning-retained-states", "128", "--pruning-interval", "500");
+
+    final ArgumentCaptor<WorldStateConfiguration> worldStateArg =
+        ArgumentCaptor.forClass(WorldStateConfiguration.class);
+    verify(mockControllerBuilder)
+        .build(
+            any(), any(), any(), anyBoolean(), any(), anyBoolean(), any(), worldStateArg.capture(),
+            anyBoolean());
+    assertThat(commandOutput.toString()).isEmpty();
+    assertThat(commandErrorOutput.toString()).isEmpty();
+    assertThat(worldStateArg.getValue().pruningRetainedStates()).isEqualTo(128);
+    assertThat(worldStateArg.getValue().pruningInterval()).isEqualTo(500);
+  }
+
+  @Test
+  public void pruningRequiresSegmentedStorage() throws Exception {
+    parseCommand("--pruning-retained-states", "128");
+
+    verifyZeroInteractions(mockControllerBuilder);
+    assertThat(commandOutput.toString()).isEmpty();
+    assertThat(commandErrorOutput.toString())
+        .contains("World state pruning requires --rocksdb-segmented");
+  }
+
+  @Test
+  public void pruningIntervalMustBePositive() throws Exception {
+    parseCommand("--pruning-interval", "0");
+
+    verifyZeroInteractions(mockControllerBuilder);
+    assertThat(commandOutput.toString()).isEmpty();
+    assertThat(commandErrorOutput.toString()).contains("Pruning interval must be positive");
+  }
+
+  @Test
+  public void worldStateThreadOptionsMustBeUsed() throws Exception {
+    parseCommand("--world-state-prefetch-threads", "4", "--world-state-hashing-threads", "8");
+
+    final ArgumentCaptor<WorldStateConfiguration> worldStateArg =
+        ArgumentCaptor.forClass(WorldStateConfiguration.class);
+    verify(mockControllerBuilder)
+        .build(
+            any(), any(), any(), anyBoolean(), any(), anyBoolean(), any(), worldStateArg.capture(),
+            anyBoolean());
+    assertThat(commandOutput.toString()).isEmpty();
+    assertThat(commandErrorOutput.toString()).isEmpty();
+    assertThat(worldStateArg.getValue().prefetchThreads()).isEqualTo(4);
+    assertThat(worldStateArg.getValue().hashingThreads()).isEqualTo(8);
+  }
+
+  @Test
+  public void worldStateSnapshotLayersMustBeUsed() throws Exception {
+    parseCommand("--world-state-snapshot-layers", "64");
+
+    final ArgumentCaptor<WorldStateConfiguration> worldStateArg =
+        ArgumentCaptor.forClass(WorldStateConfiguration.class);
+    verify(mockControllerBuilder)
+        .build(
+            any(), any(), any(), anyBoolean(), any(), anyBoolean(), any(), worldStateArg.capture(),
+            anyBoolean());
+    assertThat(commandOutput.toString()).isEmpty();
+    assertThat(commandErrorOutput.toString()).isEmpty();
+    assertThat(worldStateArg.getValue().snapshotLayers()).isEqualTo(64);
+  }
+
   @Test
   public void rinkebyValuesAreUsed() throws Exception {
     parseCommand("--rinkeby");
@@ -887,7 +1253,16 @@ public class PantheonCommandTest extends CommandTestAbstract {
     final ArgumentCaptor<EthNetworkConfig> networkArg =
         ArgumentCaptor.forClass(EthNetworkConfig.class);
     verify(mockControllerBuilder)
-        .build(any(), any(), networkArg.capture(), anyBoolean(), any(), anyBoolean());
+        .build(
+            any(),
+            any(),
+            networkArg.capture(),
+            anyBoolean(),
+            any(),
+            anyBoolean(),
+            any(),
+            any(),
+            anyBoolean());
     assertThat(commandOutput.toString()).isEmpty();
     assertThat(commandErrorOutput.toString()).isEmpty();
     assertThat(networkArg.getValue()).isEqualTo(EthNetworkConfig.rinkeby());
@@ -909,7 +1284,16 @@ public class PantheonCommandTest extends CommandTestAbstract {
     final ArgumentCaptor<EthNetworkConfig> networkArg =
         ArgumentCaptor.forClass(EthNetworkConfig.class);
     verify(mockControllerBuilder)
-        .build(any(), any(), networkArg.capture(), anyBoolean(), any(), anyBoolean());
+        .build(
+            any(),
+            any(),
+            networkArg.capture(),
+            anyBoolean(),
+            any(),
+            anyBoolean(),
+            any(),
+            any(),
+            anyBoolean());
     assertThat(commandOutput.toString()).isEmpty();
     assertThat(commandErrorOutput.toString()).isEmpty();
     assertThat(networkArg.getValue().getGenesisConfig()).isEqualTo(path.toUri());
@@ -14,12 +14,15 @@ package tech.pegasys.pantheon.util;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.assertj.core.api.Assertions.assertThat;
+import static tech.pegasys.pantheon.controller.PantheonController.DATABASE_PATH;
 
 import tech.pegasys.pantheon.controller.MainnetPantheonController;
 import tech.pegasys.pantheon.controller.PantheonController;
 import tech.pegasys.pantheon.crypto.SECP256K1.KeyPair;
 import tech.pegasys.pantheon.ethereum.core.MiningParametersTestBuilder;
 import tech.pegasys.pantheon.ethereum.eth.sync.SynchronizerConfiguration;
+import tech.pegasys.pantheon.ethereum.storage.RocksDbStorageProvider;
+import tech.pegasys.pantheon.services.kvstore.RocksDbConfiguration;
 import tech.pegasys.pantheon.testutil.BlockTestUtil;
 import tech.pegasys.pantheon.util.uint.UInt256;
 
@@ -71,11 +74,13 @@ public final class BlockImporterTest {
         PantheonController.fromConfig(
             SynchronizerConfiguration.builder().build(),
             config,
-            target,
+            RocksDbStorageProvider.create(
+                target.resolve(DATABASE_PATH), RocksDbConfiguration.builder().build()),
             false,
             10,
             new MiningParametersTestBuilder().enabled(false).build(),
-            KeyPair.generate());
+            KeyPair.generate(),
+            false);
     final BlockImporter.ImportResult result = blockImporter.importBlockchain(source, controller);
 
     assertThat(result.count).isEqualTo(959);
@@ -14,6 +14,7 @@ package tech.pegasys.pantheon.util;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static tech.pegasys.pantheon.controller.KeyPairUtil.loadKeyPair;
+import static tech.pegasys.pantheon.controller.PantheonController.DATABASE_PATH;
 
 import tech.pegasys.pantheon.controller.MainnetPantheonController;
 import tech.pegasys.pantheon.controller.PantheonController;
@@ -25,6 +26,8 @@ import tech.pegasys.pantheon.ethereum.core.MiningParametersTestBuilder;
 import tech.pegasys.pantheon.ethereum.eth.sync.SynchronizerConfiguration;
 import tech.pegasys.pantheon.ethereum.mainnet.MainnetProtocolSchedule;
 import tech.pegasys.pantheon.ethereum.mainnet.ProtocolSchedule;
+import tech.pegasys.pantheon.ethereum.storage.RocksDbStorageProvider;
+import tech.pegasys.pantheon.services.kvstore.RocksDbConfiguration;
 import tech.pegasys.pantheon.util.uint.UInt256;
 
 import java.io.File;
@@ -68,7 +71,8 @@ public final class BlockchainImporterTest {
     final GenesisConfig<Void> genesisConfig = GenesisConfig.fromJson(genesisJson, protocolSchedule);
     final PantheonController<Void, EthHashBlockMiner> ctrl =
         MainnetPantheonController.init(
-            target,
+            RocksDbStorageProvider.create(
+                target.resolve(DATABASE_PATH), RocksDbConfiguration.builder().build()),
             genesisConfig,
             SynchronizerConfiguration.builder().build(),
             miningParams,
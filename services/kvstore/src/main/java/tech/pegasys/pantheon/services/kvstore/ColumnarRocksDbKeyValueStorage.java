@@ -0,0 +1,371 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.services.kvstore;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import tech.pegasys.pantheon.services.kvstore.KeyValueStorage.AbstractTransaction;
+import tech.pegasys.pantheon.services.kvstore.KeyValueStorage.StorageException;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+
+import java.io.Closeable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.rocksdb.BlockBasedTableConfig;
+import org.rocksdb.BloomFilter;
+import org.rocksdb.ColumnFamilyDescriptor;
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.ColumnFamilyOptions;
+import org.rocksdb.CompactionStyle;
+import org.rocksdb.CompressionType;
+import org.rocksdb.DBOptions;
+import org.rocksdb.LRUCache;
+import org.rocksdb.Options;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.RocksIterator;
+import org.rocksdb.RocksObject;
+import org.rocksdb.TransactionDB;
+import org.rocksdb.TransactionDBOptions;
+import org.rocksdb.WriteOptions;
+
+/**
+ * A RocksDB database split into independent segments, each stored in its own column family. Every
+ * segment has its own memtable, block cache and compaction settings so that keyspaces with very
+ * different access patterns do not compete with each other.
+ */
+public class ColumnarRocksDbKeyValueStorage implements Closeable {
+
+  private static final Logger LOG = LogManager.getLogger();
+
+  private final RocksDbConfiguration configuration;
+  private final DBOptions options;
+  private final Optional<TransactionDBOptions> txOptions;
+  private final Optional<TransactionDB> transactionDb;
+  private final RocksDB db;
+  private final WriteOptions writeOptions;
+  private final List<ColumnFamilyHandle> columnFamilyHandles = new ArrayList<>();
+  private final List<RocksObject> columnFamilyResources = new ArrayList<>();
+  private final Map<RocksDbSegment, KeyValueStorage> segments = new HashMap<>();
+  private final AtomicBoolean closed = new AtomicBoolean(false);
+
+  static {
+    RocksDB.loadLibrary();
+  }
+
+  public static ColumnarRocksDbKeyValueStorage create(
+      final Path storageDirectory, final Collection<RocksDbSegment> segments)
+      throws StorageException {
+    return create(storageDirectory, segments, RocksDbConfiguration.builder().build());
+  }
+
+  public static ColumnarRocksDbKeyValueStorage create(
+      final Path storageDirectory,
+      final Collection<RocksDbSegment> segments,
+      final RocksDbConfiguration configuration)
+      throws StorageException {
+    return new ColumnarRocksDbKeyValueStorage(storageDirectory, segments, configuration);
+  }
+
+  private ColumnarRocksDbKeyValueStorage(
+      final Path storageDirectory,
+      final Collection<RocksDbSegment> segments,
+      final RocksDbConfiguration configuration) {
+    checkArgument(!segments.isEmpty(), "At least one segment is required");
+    this.configuration = configuration;
+    try {
+      checkExistingLayout(storageDirectory);
+      options =
+          new DBOptions()
+              .setCreateIfMissing(true)
+              .setCreateMissingColumnFamilies(true)
+              .setMaxOpenFiles(configuration.maxOpenFiles())
+              .setMaxBackgroundJobs(configuration.maxBackgroundJobs());
+      writeOptions = new WriteOptions();
+
+      final List<ColumnFamilyDescriptor> descriptors = new ArrayList<>();
+      final ColumnFamilyOptions defaultOptions = new ColumnFamilyOptions();
+      columnFamilyResources.add(defaultOptions);
+      descriptors.add(new ColumnFamilyDescriptor(RocksDB.DEFAULT_COLUMN_FAMILY, defaultOptions));
+      final List<RocksDbSegment> orderedSegments = new ArrayList<>(segments);
+      for (final RocksDbSegment segment : orderedSegments) {
+        descriptors.add(
+            new ColumnFamilyDescriptor(
+                segment.getName().getBytes(UTF_8), columnFamilyOptions(segment)));
+      }
+
+      if (configuration.isBatchedWrites()) {
+        txOptions = Optional.empty();
+        transactionDb = Optional.empty();
+        db = RocksDB.open(options, storageDirectory.toString(), descriptors, columnFamilyHandles);
+      } else {
+        txOptions = Optional.of(new TransactionDBOptions());
+        transactionDb =
+            Optional.of(
+                TransactionDB.open(
+                    options,
+                    txOptions.get(),
+                    storageDirectory.toString(),
+                    descriptors,
+                    columnFamilyHandles));
+        db = transactionDb.get();
+      }
+      for (int i = 0; i < orderedSegments.size(); i++) {
+        // Handles are returned in descriptor order, and the default column family comes first.
+        this.segments.put(
+            orderedSegments.get(i), new SegmentKeyValueStorage(columnFamilyHandles.get(i + 1)));
+      }
+    } catch (final RocksDBException e) {
+      throw new StorageException(e);
+    }
+  }
+
+  /**
+   * Returns a view of a single segment. Transactions started from the view only modify that
+   * segment.
+   *
+   * @param segment The segment to access, which must have been supplied on creation.
+   * @return The storage backed by the segment's column family.
+   */
+  public KeyValueStorage getSegment(final RocksDbSegment segment) {
+    final KeyValueStorage storage = segments.get(segment);
+    checkArgument(storage != null, "Unknown segment %s", segment);
+    return storage;
+  }
+
+  @Override
+  public void close() {
+    if (closed.compareAndSet(false, true)) {
+      columnFamilyHandles.forEach(ColumnFamilyHandle::close);
+      db.close();
+      txOptions.ifPresent(TransactionDBOptions::close);
+      writeOptions.close();
+      options.close();
+      columnFamilyResources.forEach(RocksObject::close);
+    }
+  }
+
+  private ColumnFamilyOptions columnFamilyOptions(final RocksDbSegment segment) {
+    // Each segment gets its own slice of the configured capacity so a bulk scan of one segment
+    // can not evict the working set of another.
+    final LRUCache cache =
+        new LRUCache((long) (configuration.cacheCapacity() * segment.getCacheShare()));
+    columnFamilyResources.add(cache);
+    final BlockBasedTableConfig tableConfig = new BlockBasedTableConfig().setBlockCache(cache);
+    final ColumnFamilyOptions columnFamilyOptions =
+        new ColumnFamilyOptions().setWriteBufferSize(configuration.writeBufferSize());
+    columnFamilyResources.add(columnFamilyOptions);
+
+    switch (segment.getProfile()) {
+      case POINT_LOOKUP:
+        if (configuration.bloomFilterBitsPerKey() > 0) {
+          final BloomFilter bloomFilter =
+              new BloomFilter(configuration.bloomFilterBitsPerKey(), false);
+          columnFamilyResources.add(bloomFilter);
+          tableConfig.setFilter(bloomFilter).setWholeKeyFiltering(true);
+        }
+        tableConfig.setCacheIndexAndFilterBlocks(true).setPinL0FilterAndIndexBlocksInCache(true);
+        columnFamilyOptions
+            .setCompactionStyle(CompactionStyle.LEVEL)
+            .setLevelCompactionDynamicLevelBytes(true)
+            .setCompressionType(CompressionType.NO_COMPRESSION);
+        break;
+      case APPEND_MOSTLY:
+        columnFamilyOptions
+            .setCompactionStyle(CompactionStyle.UNIVERSAL)
+            .setCompressionType(CompressionType.LZ4_COMPRESSION);
+        break;
+      default:
+        throw new IllegalArgumentException("Unsupported segment profile " + segment.getProfile());
+    }
+
+    return columnFamilyOptions.setTableFormatConfig(tableConfig);
+  }
+
+  private static void checkExistingLayout(final Path storageDirectory) throws RocksDBException {
+    if (!Files.exists(storageDirectory.resolve("CURRENT"))) {
+      return;
+    }
+    try (final Options listOptions = new Options()) {
+      final List<byte[]> existing =
+          RocksDB.listColumnFamilies(listOptions, storageDirectory.toString());
+      if (existing.size() <= 1) {
+        throw new StorageException(
+            "Database at "
+                + storageDirectory
+                + " was created without column families and cannot be opened as segmented storage");
+      }
+    }
+  }
+
+  private void throwIfClosed() {
+    if (closed.get()) {
+      LOG.error("Attempting to use a closed ColumnarRocksDbKeyValueStorage");
+      throw new IllegalStateException("Storage has been closed");
+    }
+  }
+
+  private class SegmentKeyValueStorage implements KeyValueStorage {
+
+    private final ColumnFamilyHandle handle;
+
+    SegmentKeyValueStorage(final ColumnFamilyHandle handle) {
+      this.handle = handle;
+    }
+
+    @Override
+    public Optional<BytesValue> get(final BytesValue key) throws StorageException {
+      throwIfClosed();
+      try {
+        return Optional.ofNullable(db.get(handle, key.extractArray())).map(BytesValue::wrap);
+      } catch (final RocksDBException e) {
+        throw new StorageException(e);
+      }
+    }
+
+    @Override
+    public Map<BytesValue, BytesValue> getAll(final Collection<? extends BytesValue> keys)
+        throws StorageException {
+      throwIfClosed();
+      final List<BytesValue> keyList = new ArrayList<>(keys);
+      final List<byte[]> rawKeys = new ArrayList<>(keyList.size());
+      keyList.forEach(key -> rawKeys.add(key.extractArray()));
+      try {
+        // The result is keyed by the identity of the arrays passed in, so look values up by them.
+        final Map<byte[], byte[]> rawValues =
+            db.multiGet(Collections.nCopies(rawKeys.size(), handle), rawKeys);
+        final Map<BytesValue, BytesValue> values = new HashMap<>();
+        for (int i = 0; i < rawKeys.size(); i++) {
+          final byte[] value = rawValues.get(rawKeys.get(i));
+          if (value != null) {
+            values.put(keyList.get(i), BytesValue.wrap(value));
+          }
+        }
+        return values;
+      } catch (final RocksDBException e) {
+        throw new StorageException(e);
+      }
+    }
+
+    @Override
+    public void put(final BytesValue key, final BytesValue value) throws StorageException {
+      throwIfClosed();
+      try {
+        db.put(handle, writeOptions, key.extractArray(), value.extractArray());
+      } catch (final RocksDBException e) {
+        throw new StorageException(e);
+      }
+    }
+
+    @Override
+    public void remove(final BytesValue key) throws StorageException {
+      throwIfClosed();
+      try {
+        db.delete(handle, writeOptions, key.extractArray());
+      } catch (final RocksDBException e) {
+        throw new StorageException(e);
+      }
+    }
+
+    @Override
+    public Transaction getStartTransaction() throws StorageException {
+      throwIfClosed();
+      if (!transactionDb.isPresent()) {
+        return new RocksDbWriteBatchTransaction(db, handle, writeOptions);
+      }
+      final WriteOptions options = new WriteOptions();
+      return new SegmentTransaction(handle, transactionDb.get().beginTransaction(options), options);
+    }
+
+    @Override
+    public Stream<Entry> entries() {
+      throwIfClosed();
+      final RocksIterator rocksIt = db.newIterator(handle);
+      rocksIt.seekToFirst();
+      return new RocksDbEntryIterator(rocksIt).toStream();
+    }
+  }
+
+  private static class SegmentTransaction extends AbstractTransaction {
+    private final ColumnFamilyHandle handle;
+    private final org.rocksdb.Transaction innerTx;
+    private final WriteOptions options;
+
+    SegmentTransaction(
+        final ColumnFamilyHandle handle,
+        final org.rocksdb.Transaction innerTx,
+        final WriteOptions options) {
+      this.handle = handle;
+      this.innerTx = innerTx;
+      this.options = options;
+    }
+
+    @Override
+    protected void doPut(final BytesValue key, final BytesValue value) {
+      try {
+        innerTx.put(handle, key.extractArray(), value.extractArray());
+      } catch (final RocksDBException e) {
+        throw new StorageException(e);
+      }
+    }
+
+    @Override
+    protected void doRemove(final BytesValue key) {
+      try {
+        innerTx.delete(handle, key.extractArray());
+      } catch (final RocksDBException e) {
+        throw new StorageException(e);
+      }
+    }
+
+    @Override
+    protected void doCommit() throws StorageException {
+      try {
+        innerTx.commit();
+      } catch (final RocksDBException e) {
+        throw new StorageException(e);
+      } finally {
+        close();
+      }
+    }
+
+    @Override
+    protected void doRollback() {
+      try {
+        innerTx.rollback();
+      } catch (final RocksDBException e) {
+        throw new StorageException(e);
+      } finally {
+        close();
+      }
+    }
+
+    private void close() {
+      innerTx.close();
+      options.close();
+    }
+  }
+}
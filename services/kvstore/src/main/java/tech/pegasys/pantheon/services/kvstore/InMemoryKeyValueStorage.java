@@ -14,6 +14,7 @@ package tech.pegasys.pantheon.services.kvstore;
 
 import tech.pegasys.pantheon.util.bytes.BytesValue;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -41,6 +42,24 @@ public class InMemoryKeyValueStorage implements KeyValueStorage {
     }
   }
 
+  @Override
+  public Map<BytesValue, BytesValue> getAll(final Collection<? extends BytesValue> keys) {
+    final Lock lock = rwLock.readLock();
+    try {
+      lock.lock();
+      final Map<BytesValue, BytesValue> values = new HashMap<>();
+      for (final BytesValue key : keys) {
+        final BytesValue value = hashValueStore.get(key);
+        if (value != null) {
+          values.put(key, value);
+        }
+      }
+      return values;
+    } finally {
+      lock.unlock();
+    }
+  }
+
   @Override
   public void put(final BytesValue key, final BytesValue value) {
     final Lock lock = rwLock.writeLock();
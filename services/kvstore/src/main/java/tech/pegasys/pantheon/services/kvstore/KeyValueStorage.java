@@ -16,6 +16,8 @@ import static com.google.common.base.Preconditions.checkState;
 
 import tech.pegasys.pantheon.util.bytes.BytesValue;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.stream.Stream;
@@ -29,6 +31,15 @@ public interface KeyValueStorage {
    */
   Optional<BytesValue> get(BytesValue key) throws StorageException;
 
+  /**
+   * Looks up several keys in one call, which is considerably cheaper than a {@link #get} per key
+   * for storage that has to go to disk.
+   *
+   * @param keys Indices into persistent data repository.
+   * @return The values persisted at the given keys. Keys with no value are absent from the map.
+   */
+  Map<BytesValue, BytesValue> getAll(Collection<? extends BytesValue> keys) throws StorageException;
+
   /**
    * @param key Index into persistent data repository.
    * @param value The value persisted at the key index.
@@ -56,6 +67,12 @@ public interface KeyValueStorage {
    */
   Stream<Entry> entries();
 
+  /**
+   * Makes every change committed so far survive a crash. Storage that persists each change as it
+   * is committed has nothing to do.
+   */
+  default void sync() throws StorageException {}
+
   class Entry {
     private final BytesValue key;
     private final BytesValue value;
@@ -100,6 +117,10 @@ public interface KeyValueStorage {
     public StorageException(final Throwable t) {
       super(t);
     }
+
+    public StorageException(final String message) {
+      super(message);
+    }
   }
 
   /**
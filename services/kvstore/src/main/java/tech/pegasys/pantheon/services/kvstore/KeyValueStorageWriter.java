@@ -0,0 +1,131 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.services.kvstore;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import tech.pegasys.pantheon.services.kvstore.KeyValueStorage.StorageException;
+
+import java.io.Closeable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A single background thread that applies the writes of one or more {@link
+ * WriteBehindKeyValueStorage}s in the order they were committed.
+ *
+ * <p>Storages that share a writer share that order, so after a crash each of them holds the same
+ * prefix of the committed writes. Once a write fails no further writes are applied and every later
+ * commit fails, leaving the stored data at the last successful write.
+ */
+public class KeyValueStorageWriter implements Closeable {
+
+  private static final Logger LOG = LogManager.getLogger();
+
+  public static final int DEFAULT_MAX_PENDING_WRITES = 64;
+
+  private final ExecutorService executor;
+  private final Semaphore pendingWrites;
+  private volatile RuntimeException failure;
+
+  public KeyValueStorageWriter() {
+    this(DEFAULT_MAX_PENDING_WRITES);
+  }
+
+  /**
+   * @param maxPendingWrites The number of committed transactions that may be waiting to be written
+   *     before further commits block.
+   */
+  public KeyValueStorageWriter(final int maxPendingWrites) {
+    checkArgument(maxPendingWrites > 0, "Max pending writes must be positive");
+    this.pendingWrites = new Semaphore(maxPendingWrites);
+    this.executor =
+        Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder()
+                .setNameFormat(KeyValueStorageWriter.class.getSimpleName())
+                .setDaemon(true)
+                .build());
+  }
+
+  /** Blocks until every write submitted before this call has been applied. */
+  public void awaitWrites() {
+    try {
+      executor.submit(() -> {}).get();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new StorageException(e);
+    } catch (final ExecutionException | RejectedExecutionException e) {
+      throw new StorageException(e);
+    }
+    checkFailure();
+  }
+
+  /** Applies all pending writes and stops the writer thread. */
+  @Override
+  public void close() {
+    executor.shutdown();
+    try {
+      if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+        LOG.warn("Timed out waiting for pending storage writes to complete");
+      }
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    checkFailure();
+  }
+
+  /**
+   * Waits for room to queue another write. Must be followed by exactly one call to {@link
+   * #execute(Runnable)}.
+   */
+  void reserve() {
+    checkFailure();
+    pendingWrites.acquireUninterruptibly();
+  }
+
+  void execute(final Runnable write) {
+    try {
+      executor.execute(() -> apply(write));
+    } catch (final RejectedExecutionException e) {
+      pendingWrites.release();
+      throw new StorageException(e);
+    }
+  }
+
+  private void apply(final Runnable write) {
+    try {
+      if (failure == null) {
+        write.run();
+      }
+    } catch (final RuntimeException e) {
+      LOG.error("Storage write failed, no further writes will be applied", e);
+      failure = e;
+    } finally {
+      pendingWrites.release();
+    }
+  }
+
+  private void checkFailure() {
+    if (failure != null) {
+      throw new StorageException(failure);
+    }
+  }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.services.kvstore;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.base.MoreObjects;
+
+/** Tuning options applied when a RocksDB database is opened. */
+public class RocksDbConfiguration {
+
+  public static final long DEFAULT_CACHE_CAPACITY = 2L * 1024 * 1024 * 1024;
+  public static final int DEFAULT_BLOOM_FILTER_BITS_PER_KEY = 10;
+  public static final int DEFAULT_MAX_OPEN_FILES = 1024;
+  public static final int DEFAULT_MAX_BACKGROUND_JOBS =
+      Math.max(2, Math.min(16, Runtime.getRuntime().availableProcessors()));
+  public static final long DEFAULT_WRITE_BUFFER_SIZE = 128L * 1024 * 1024;
+
+  private final boolean segmented;
+  private final long cacheCapacity;
+  private final int bloomFilterBitsPerKey;
+  private final int maxOpenFiles;
+  private final int maxBackgroundJobs;
+  private final long writeBufferSize;
+  private final boolean batchedWrites;
+  private final boolean walDisabled;
+  private final boolean asyncWrites;
+
+  private RocksDbConfiguration(
+      final boolean segmented,
+      final long cacheCapacity,
+      final int bloomFilterBitsPerKey,
+      final int maxOpenFiles,
+      final int maxBackgroundJobs,
+      final long writeBufferSize,
+      final boolean batchedWrites,
+      final boolean walDisabled,
+      final boolean asyncWrites) {
+    this.segmented = segmented;
+    this.cacheCapacity = cacheCapacity;
+    this.bloomFilterBitsPerKey = bloomFilterBitsPerKey;
+    this.maxOpenFiles = maxOpenFiles;
+    this.maxBackgroundJobs = maxBackgroundJobs;
+    this.writeBufferSize = writeBufferSize;
+    this.batchedWrites = batchedWrites;
+    this.walDisabled = walDisabled;
+    this.asyncWrites = asyncWrites;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Whether blockchain and world state data are kept in separate column families. A database must
+   * always be reopened in the mode it was created with.
+   *
+   * @return true if the database is split into column families.
+   */
+  public boolean isSegmented() {
+    return segmented;
+  }
+
+  /**
+   * The size in bytes of the LRU block cache shared by all reads from the database.
+   *
+   * @return the block cache capacity in bytes.
+   */
+  public long cacheCapacity() {
+    return cacheCapacity;
+  }
+
+  /**
+   * The number of bloom filter bits kept per key, or zero if bloom filters are disabled.
+   *
+   * @return the bloom filter bits per key.
+   */
+  public int bloomFilterBitsPerKey() {
+    return bloomFilterBitsPerKey;
+  }
+
+  /**
+   * The number of table files RocksDB may keep open, or -1 to keep every file open.
+   *
+   * @return the maximum number of open files.
+   */
+  public int maxOpenFiles() {
+    return maxOpenFiles;
+  }
+
+  /**
+   * The number of concurrent flushes and compactions RocksDB may run in the background.
+   *
+   * @return the maximum number of background jobs.
+   */
+  public int maxBackgroundJobs() {
+    return maxBackgroundJobs;
+  }
+
+  /**
+   * The size in bytes of a single memtable before it is flushed to disk.
+   *
+   * @return the write buffer size in bytes.
+   */
+  public long writeBufferSize() {
+    return writeBufferSize;
+  }
+
+  /**
+   * Whether the database is opened without transaction support, committing changes as plain write
+   * batches. Batches take no locks, so this is only safe while there is a single writer.
+   *
+   * @return true if transactions are committed as write batches.
+   */
+  public boolean isBatchedWrites() {
+    return batchedWrites;
+  }
+
+  /**
+   * Whether writes skip the write-ahead log. Data is only made durable when memtables are flushed,
+   * so anything written since the last flush is lost if the process dies. Intended for bulk imports
+   * that can be restarted. Not supported for segmented databases, whose column families are flushed
+   * independently and could be left at different points by a crash.
+   *
+   * @return true if the write-ahead log is disabled.
+   */
+  public boolean isWalDisabled() {
+    return walDisabled;
+  }
+
+  /**
+   * Whether blockchain and world state changes are written to the database by a background thread,
+   * so that importing a block does not wait for the previous block's writes. Changes are readable
+   * from memory until they are written. Anything not yet written is lost if the process dies, but
+   * the database always holds a consistent prefix of the committed changes.
+   *
+   * @return true if changes are written asynchronously.
+   */
+  public boolean isAsyncWrites() {
+    return asyncWrites;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("segmented", segmented)
+        .add("cacheCapacity", cacheCapacity)
+        .add("bloomFilterBitsPerKey", bloomFilterBitsPerKey)
+        .add("maxOpenFiles", maxOpenFiles)
+        .add("maxBackgroundJobs", maxBackgroundJobs)
+        .add("writeBufferSize", writeBufferSize)
+        .add("batchedWrites", batchedWrites)
+        .add("walDisabled", walDisabled)
+        .add("asyncWrites", asyncWrites)
+        .toString();
+  }
+
+  public static class Builder {
+    private boolean segmented = false;
+    private long cacheCapacity = DEFAULT_CACHE_CAPACITY;
+    private int bloomFilterBitsPerKey = DEFAULT_BLOOM_FILTER_BITS_PER_KEY;
+    private int maxOpenFiles = DEFAULT_MAX_OPEN_FILES;
+    private int maxBackgroundJobs = DEFAULT_MAX_BACKGROUND_JOBS;
+    private long writeBufferSize = DEFAULT_WRITE_BUFFER_SIZE;
+    private boolean batchedWrites = false;
+    private boolean walDisabled = false;
+    private boolean asyncWrites = false;
+
+    public Builder segmented(final boolean segmented) {
+      this.segmented = segmented;
+      return this;
+    }
+
+    public Builder cacheCapacity(final long cacheCapacity) {
+      this.cacheCapacity = cacheCapacity;
+      return this;
+    }
+
+    public Builder bloomFilterBitsPerKey(final int bloomFilterBitsPerKey) {
+      this.bloomFilterBitsPerKey = bloomFilterBitsPerKey;
+      return this;
+    }
+
+    public Builder maxOpenFiles(final int maxOpenFiles) {
+      this.maxOpenFiles = maxOpenFiles;
+      return this;
+    }
+
+    public Builder maxBackgroundJobs(final int maxBackgroundJobs) {
+      this.maxBackgroundJobs = maxBackgroundJobs;
+      return this;
+    }
+
+    public Builder writeBufferSize(final long writeBufferSize) {
+      this.writeBufferSize = writeBufferSize;
+      return this;
+    }
+
+    public Builder batchedWrites(final boolean batchedWrites) {
+      this.batchedWrites = batchedWrites;
+      return this;
+    }
+
+    public Builder walDisabled(final boolean walDisabled) {
+      this.walDisabled = walDisabled;
+      return this;
+    }
+
+    public Builder asyncWrites(final boolean asyncWrites) {
+      this.asyncWrites = asyncWrites;
+      return this;
+    }
+
+    public RocksDbConfiguration build() {
+      checkArgument(cacheCapacity > 0, "Cache capacity must be positive");
+      checkArgument(bloomFilterBitsPerKey >= 0, "Bloom filter bits per key must not be negative");
+      checkArgument(
+          maxOpenFiles > 0 || maxOpenFiles == -1, "Max open files must be positive or -1");
+      checkArgument(maxBackgroundJobs > 0, "Max background jobs must be positive");
+      checkArgument(writeBufferSize > 0, "Write buffer size must be positive");
+      checkArgument(
+          batchedWrites || !walDisabled,
+          "The write-ahead log can only be disabled for batched writes");
+      checkArgument(
+          !(segmented && walDisabled),
+          "The write-ahead log can not be disabled for a segmented database");
+      return new RocksDbConfiguration(
+          segmented,
+          cacheCapacity,
+          bloomFilterBitsPerKey,
+          maxOpenFiles,
+          maxBackgroundJobs,
+          writeBufferSize,
+          batchedWrites,
+          walDisabled,
+          asyncWrites);
+    }
+  }
+}
@@ -16,17 +16,21 @@ import tech.pegasys.pantheon.util.bytes.BytesValue;
 
 import java.io.Closeable;
 import java.nio.file.Path;
-import java.util.Iterator;
-import java.util.NoSuchElementException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.Spliterator;
-import java.util.Spliterators;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Stream;
-import java.util.stream.StreamSupport;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.rocksdb.BlockBasedTableConfig;
+import org.rocksdb.BloomFilter;
+import org.rocksdb.FlushOptions;
+import org.rocksdb.LRUCache;
 import org.rocksdb.Options;
 import org.rocksdb.RocksDB;
 import org.rocksdb.RocksDBException;
@@ -40,8 +44,13 @@ public class RocksDbKeyValueStorage implements KeyValueStorage, Closeable {
   private static final Logger LOG = LogManager.getLogger();
 
   private final Options options;
-  private final TransactionDBOptions txOptions;
-  private final TransactionDB db;
+  private final LRUCache cache;
+  private final Optional<BloomFilter> bloomFilter;
+  private final Optional<TransactionDBOptions> txOptions;
+  private final Optional<TransactionDB> transactionDb;
+  private final RocksDB db;
+  private final WriteOptions writeOptions;
+  private final boolean walDisabled;
   private final AtomicBoolean closed = new AtomicBoolean(false);
 
   static {
@@ -49,14 +58,50 @@ public class RocksDbKeyValueStorage implements KeyValueStorage, Closeable {
   }
 
   public static RocksDbKeyValueStorage create(final Path storageDirectory) throws StorageException {
-    return new RocksDbKeyValueStorage(storageDirectory);
+    return create(storageDirectory, RocksDbConfiguration.builder().build());
   }
 
-  private RocksDbKeyValueStorage(final Path storageDirectory) {
+  public static RocksDbKeyValueStorage create(
+      final Path storageDirectory, final RocksDbConfiguration configuration)
+      throws StorageException {
+    return new RocksDbKeyValueStorage(storageDirectory, configuration);
+  }
+
+  private RocksDbKeyValueStorage(
+      final Path storageDirectory, final RocksDbConfiguration configuration) {
     try {
-      options = new Options().setCreateIfMissing(true);
-      txOptions = new TransactionDBOptions();
-      db = TransactionDB.open(options, txOptions, storageDirectory.toString());
+      cache = new LRUCache(configuration.cacheCapacity());
+      final BlockBasedTableConfig tableConfig =
+          new BlockBasedTableConfig()
+              .setBlockCache(cache)
+              .setWholeKeyFiltering(true)
+              .setCacheIndexAndFilterBlocks(true)
+              .setPinL0FilterAndIndexBlocksInCache(true);
+      // Trie nodes are looked up by hash, so a whole-key filter lets most misses skip the disk.
+      bloomFilter =
+          configuration.bloomFilterBitsPerKey() > 0
+              ? Optional.of(new BloomFilter(configuration.bloomFilterBitsPerKey(), false))
+              : Optional.empty();
+      bloomFilter.ifPresent(tableConfig::setFilter);
+      options =
+          new Options()
+              .setCreateIfMissing(true)
+              .setMaxOpenFiles(configuration.maxOpenFiles())
+              .setMaxBackgroundJobs(configuration.maxBackgroundJobs())
+              .setWriteBufferSize(configuration.writeBufferSize())
+              .setTableFormatConfig(tableConfig);
+      walDisabled = configuration.isWalDisabled();
+      writeOptions = new WriteOptions().setDisableWAL(walDisabled);
+      if (configuration.isBatchedWrites()) {
+        txOptions = Optional.empty();
+        transactionDb = Optional.empty();
+        db = RocksDB.open(options, storageDirectory.toString());
+      } else {
+        txOptions = Optional.of(new TransactionDBOptions());
+        transactionDb =
+            Optional.of(TransactionDB.open(options, txOptions.get(), storageDirectory.toString()));
+        db = transactionDb.get();
+      }
     } catch (final RocksDBException e) {
       throw new StorageException(e);
     }
@@ -72,11 +117,34 @@ public class RocksDbKeyValueStorage implements KeyValueStorage, Closeable {
     }
   }
 
+  @Override
+  public Map<BytesValue, BytesValue> getAll(final Collection<? extends BytesValue> keys)
+      throws StorageException {
+    throwIfClosed();
+    final List<BytesValue> keyList = new ArrayList<>(keys);
+    final List<byte[]> rawKeys = new ArrayList<>(keyList.size());
+    keyList.forEach(key -> rawKeys.add(key.extractArray()));
+    try {
+      // The result is keyed by the identity of the arrays passed in, so look values up by them.
+      final Map<byte[], byte[]> rawValues = db.multiGet(rawKeys);
+      final Map<BytesValue, BytesValue> values = new HashMap<>();
+      for (int i = 0; i < rawKeys.size(); i++) {
+        final byte[] value = rawValues.get(rawKeys.get(i));
+        if (value != null) {
+          values.put(keyList.get(i), BytesValue.wrap(value));
+        }
+      }
+      return values;
+    } catch (final RocksDBException e) {
+      throw new StorageException(e);
+    }
+  }
+
   @Override
   public void put(final BytesValue key, final BytesValue value) throws StorageException {
     throwIfClosed();
     try {
-      db.put(key.extractArray(), value.extractArray());
+      db.put(writeOptions, key.extractArray(), value.extractArray());
     } catch (final RocksDBException e) {
       throw new StorageException(e);
     }
@@ -86,7 +154,7 @@ public class RocksDbKeyValueStorage implements KeyValueStorage, Closeable {
   public void remove(final BytesValue key) throws StorageException {
     throwIfClosed();
     try {
-      db.delete(key.extractArray());
+      db.delete(writeOptions, key.extractArray());
     } catch (final RocksDBException e) {
       throw new StorageException(e);
     }
@@ -95,8 +163,11 @@ public class RocksDbKeyValueStorage implements KeyValueStorage, Closeable {
   @Override
   public Transaction getStartTransaction() throws StorageException {
     throwIfClosed();
+    if (!transactionDb.isPresent()) {
+      return new RocksDbWriteBatchTransaction(db, db.getDefaultColumnFamily(), writeOptions);
+    }
     final WriteOptions options = new WriteOptions();
-    return new RocksDbTransaction(db.beginTransaction(options), options);
+    return new RocksDbTransaction(transactionDb.get().beginTransaction(options), options);
   }
 
   @Override
@@ -107,12 +178,45 @@ public class RocksDbKeyValueStorage implements KeyValueStorage, Closeable {
     return new RocksDbEntryIterator(rocksIt).toStream();
   }
 
+  /**
+   * Without a write-ahead log, changes only survive a crash once the memtables holding them have
+   * been flushed, so this waits for a flush. With the log there is nothing to do.
+   */
+  @Override
+  public void sync() throws StorageException {
+    throwIfClosed();
+    if (walDisabled) {
+      try {
+        flushMemTables();
+      } catch (final RocksDBException e) {
+        throw new StorageException(e);
+      }
+    }
+  }
+
   @Override
   public void close() {
     if (closed.compareAndSet(false, true)) {
-      txOptions.close();
+      if (walDisabled) {
+        try {
+          flushMemTables();
+        } catch (final RocksDBException e) {
+          LOG.error("Failed to flush RocksDB memtables on close", e);
+        }
+      }
+      txOptions.ifPresent(TransactionDBOptions::close);
       options.close();
       db.close();
+      writeOptions.close();
+      bloomFilter.ifPresent(BloomFilter::close);
+      cache.close();
+    }
+  }
+
+  private void flushMemTables() throws RocksDBException {
+    // Without a write-ahead log anything still in the memtables would be lost on restart.
+    try (final FlushOptions flushOptions = new FlushOptions().setWaitForFlush(true)) {
+      db.flush(flushOptions);
     }
   }
 
@@ -123,61 +227,6 @@ public class RocksDbKeyValueStorage implements KeyValueStorage, Closeable {
     }
   }
 
-  /**
-   * Iterates over rocksDB key-value entries. Reads from a db snapshot implicitly taken when the
-   * RocksIterator passed to the constructor was created.
-   *
-   * <p>Implements {@link AutoCloseable} and can be used with try-with-resources construct. When
-   * transformed to a stream (see {@link #toStream}), iterator is automatically closed when the
-   * stream is closed.
-   */
-  private static class RocksDbEntryIterator implements Iterator<Entry>, AutoCloseable {
-    private final RocksIterator rocksIt;
-    private volatile boolean closed = false;
-
-    RocksDbEntryIterator(final RocksIterator rocksIt) {
-      this.rocksIt = rocksIt;
-    }
-
-    @Override
-    public boolean hasNext() {
-      return rocksIt.isValid();
-    }
-
-    @Override
-    public Entry next() {
-      if (closed) {
-        throw new IllegalStateException("Attempt to read from a closed RocksDbEntryIterator.");
-      }
-      try {
-        rocksIt.status();
-      } catch (final RocksDBException e) {
-        LOG.error("RocksDbEntryIterator encountered a problem while iterating.", e);
-      }
-      if (!hasNext()) {
-        throw new NoSuchElementException();
-      }
-      final Entry entry =
-          Entry.create(BytesValue.wrap(rocksIt.key()), BytesValue.wrap(rocksIt.value()));
-      rocksIt.next();
-      return entry;
-    }
-
-    public Stream<Entry> toStream() {
-      final Spliterator<Entry> split =
-          Spliterators.spliteratorUnknownSize(
-              this, Spliterator.IMMUTABLE | Spliterator.DISTINCT | Spliterator.NONNULL);
-
-      return StreamSupport.stream(split, false).onClose(this::close);
-    }
-
-    @Override
-    public void close() {
-      rocksIt.close();
-      closed = true;
-    }
-  }
-
   private static class RocksDbTransaction extends AbstractTransaction {
     private final org.rocksdb.Transaction innerTx;
     private final WriteOptions options;
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.services.kvstore;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Objects;
+
+/**
+ * Describes a logical keyspace stored in its own RocksDB column family, along with how that column
+ * family should be tuned.
+ */
+public class RocksDbSegment {
+
+  /** The access pattern a segment is tuned for. */
+  public enum Profile {
+    /**
+     * Randomly keyed data that is mostly read by exact key, such as trie nodes. Uses bloom filters
+     * and levelled compaction, and skips compression as the values are mostly hashes.
+     */
+    POINT_LOOKUP,
+    /**
+     * Data that is written once and rarely rewritten, such as block headers, bodies and receipts.
+     * Uses universal compaction to keep write amplification low and compresses values.
+     */
+    APPEND_MOSTLY
+  }
+
+  private final String name;
+  private final Profile profile;
+  private final double cacheShare;
+
+  private RocksDbSegment(final String name, final Profile profile, final double cacheShare) {
+    checkArgument(!name.isEmpty(), "Segment name must not be empty");
+    checkArgument(
+        cacheShare > 0 && cacheShare <= 1,
+        "Cache share must be in the range (0, 1]: %s",
+        cacheShare);
+    this.name = name;
+    this.profile = profile;
+    this.cacheShare = cacheShare;
+  }
+
+  /**
+   * @param name The name of the column family backing this segment.
+   * @param profile The access pattern the column family is tuned for.
+   * @param cacheShare The fraction of the total block cache allocated to this segment.
+   * @return The segment descriptor.
+   */
+  public static RocksDbSegment create(
+      final String name, final Profile profile, final double cacheShare) {
+    return new RocksDbSegment(name, profile, cacheShare);
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public Profile getProfile() {
+    return profile;
+  }
+
+  public double getCacheShare() {
+    return cacheShare;
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    if (obj == this) {
+      return true;
+    }
+    if (!(obj instanceof RocksDbSegment)) {
+      return false;
+    }
+    final RocksDbSegment other = (RocksDbSegment) obj;
+    return Objects.equals(name, other.name)
+        && profile == other.profile
+        && cacheShare == other.cacheShare;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(name, profile, cacheShare);
+  }
+
+  @Override
+  public String toString() {
+    return "RocksDbSegment{" + "name=" + name + ", profile=" + profile + "}";
+  }
+}
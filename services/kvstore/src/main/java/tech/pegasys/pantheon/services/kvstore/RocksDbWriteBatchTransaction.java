@@ -0,0 +1,76 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.services.kvstore;
+
+import tech.pegasys.pantheon.services.kvstore.KeyValueStorage.AbstractTransaction;
+import tech.pegasys.pantheon.services.kvstore.KeyValueStorage.StorageException;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.WriteBatch;
+import org.rocksdb.WriteOptions;
+
+/**
+ * A transaction that buffers its changes in a {@link WriteBatch} and applies them atomically on
+ * commit. Unlike a {@link org.rocksdb.Transaction} it takes no locks and does no conflict
+ * detection, so it is only suitable when there is a single writer for the affected keys.
+ */
+class RocksDbWriteBatchTransaction extends AbstractTransaction {
+  private final RocksDB db;
+  private final ColumnFamilyHandle handle;
+  private final WriteOptions options;
+  private final WriteBatch batch = new WriteBatch();
+
+  RocksDbWriteBatchTransaction(
+      final RocksDB db, final ColumnFamilyHandle handle, final WriteOptions options) {
+    this.db = db;
+    this.handle = handle;
+    this.options = options;
+  }
+
+  @Override
+  protected void doPut(final BytesValue key, final BytesValue value) {
+    try {
+      batch.put(handle, key.extractArray(), value.extractArray());
+    } catch (final RocksDBException e) {
+      throw new StorageException(e);
+    }
+  }
+
+  @Override
+  protected void doRemove(final BytesValue key) {
+    try {
+      batch.delete(handle, key.extractArray());
+    } catch (final RocksDBException e) {
+      throw new StorageException(e);
+    }
+  }
+
+  @Override
+  protected void doCommit() throws StorageException {
+    try {
+      db.write(options, batch);
+    } catch (final RocksDBException e) {
+      throw new StorageException(e);
+    } finally {
+      batch.close();
+    }
+  }
+
+  @Override
+  protected void doRollback() {
+    batch.close();
+  }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.services.kvstore;
+
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * A {@link KeyValueStorage} whose transactions return as soon as their changes are visible in
+ * memory, leaving a {@link KeyValueStorageWriter} to apply them to the underlying storage in the
+ * background.
+ *
+ * <p>Reads see every committed change, whether or not it has been written yet. The changes of a
+ * transaction become visible to readers all at once, as they would in the underlying storage.
+ */
+public class WriteBehindKeyValueStorage implements KeyValueStorage {
+
+  private final KeyValueStorage storage;
+  private final KeyValueStorageWriter writer;
+  private final Map<BytesValue, PendingValue> pendingValues = new ConcurrentHashMap<>();
+  private final ReadWriteLock rwLock = new ReentrantReadWriteLock();
+
+  public WriteBehindKeyValueStorage(
+      final KeyValueStorage storage, final KeyValueStorageWriter writer) {
+    this.storage = storage;
+    this.writer = writer;
+  }
+
+  @Override
+  public Optional<BytesValue> get(final BytesValue key) throws StorageException {
+    final PendingValue pending;
+    final Lock lock = rwLock.readLock();
+    try {
+      lock.lock();
+      pending = pendingValues.get(key);
+    } finally {
+      lock.unlock();
+    }
+    // Pending values are only dropped once they are in storage, so a miss can read through.
+    return pending != null ? pending.value : storage.get(key);
+  }
+
+  @Override
+  public Map<BytesValue, BytesValue> getAll(final Collection<? extends BytesValue> keys)
+      throws StorageException {
+    final Map<BytesValue, BytesValue> values = new HashMap<>();
+    final List<BytesValue> remaining = new ArrayList<>();
+    final Lock lock = rwLock.readLock();
+    try {
+      lock.lock();
+      for (final BytesValue key : keys) {
+        final PendingValue pending = pendingValues.get(key);
+        if (pending == null) {
+          remaining.add(key);
+        } else {
+          pending.value.ifPresent(value -> values.put(key, value));
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+    if (!remaining.isEmpty()) {
+      values.putAll(storage.getAll(remaining));
+    }
+    return values;
+  }
+
+  @Override
+  public void put(final BytesValue key, final BytesValue value) throws StorageException {
+    final Transaction transaction = getStartTransaction();
+    transaction.put(key, value);
+    transaction.commit();
+  }
+
+  @Override
+  public void remove(final BytesValue key) throws StorageException {
+    final Transaction transaction = getStartTransaction();
+    transaction.remove(key);
+    transaction.commit();
+  }
+
+  @Override
+  public Transaction getStartTransaction() throws StorageException {
+    return new WriteBehindTransaction();
+  }
+
+  /**
+   * Waits for pending writes to reach the underlying storage before streaming its entries.
+   *
+   * @return A stream of the contained key-value pairs.
+   */
+  @Override
+  public Stream<Entry> entries() {
+    writer.awaitWrites();
+    return storage.entries();
+  }
+
+  /** Waits for pending writes to reach the underlying storage before syncing it. */
+  @Override
+  public void sync() throws StorageException {
+    writer.awaitWrites();
+    storage.sync();
+  }
+
+  /** @return The number of keys with changes not yet applied to the underlying storage. */
+  public int pendingKeyCount() {
+    return pendingValues.size();
+  }
+
+  private void write(final Map<BytesValue, PendingValue> changes) {
+    final Transaction transaction = storage.getStartTransaction();
+    changes.forEach(
+        (key, pending) -> {
+          if (pending.value.isPresent()) {
+            transaction.put(key, pending.value.get());
+          } else {
+            transaction.remove(key);
+          }
+        });
+    transaction.commit();
+    dropPending(changes);
+  }
+
+  private void dropPending(final Map<BytesValue, PendingValue> changes) {
+    // A value committed to the same key since is left in place to wait for its own write.
+    changes.forEach((key, pending) -> pendingValues.remove(key, pending));
+  }
+
+  private static class PendingValue {
+    private final Optional<BytesValue> value;
+
+    PendingValue(final Optional<BytesValue> value) {
+      this.value = value;
+    }
+  }
+
+  private class WriteBehindTransaction extends AbstractTransaction {
+
+    private Map<BytesValue, PendingValue> changes = new HashMap<>();
+
+    @Override
+    protected void doPut(final BytesValue key, final BytesValue value) {
+      changes.put(key, new PendingValue(Optional.of(value)));
+    }
+
+    @Override
+    protected void doRemove(final BytesValue key) {
+      changes.put(key, new PendingValue(Optional.empty()));
+    }
+
+    @Override
+    protected void doCommit() throws StorageException {
+      final Map<BytesValue, PendingValue> committed = changes;
+      changes = null;
+      if (committed.isEmpty()) {
+        return;
+      }
+      writer.reserve();
+      // Publishing and queueing under one lock keeps the write order the same as the order in
+      // which readers saw the changes.
+      final Lock lock = rwLock.writeLock();
+      try {
+        lock.lock();
+        pendingValues.putAll(committed);
+        writer.execute(() -> write(committed));
+      } catch (final StorageException e) {
+        dropPending(committed);
+        throw e;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    @Override
+    protected void doRollback() {
+      changes = null;
+    }
+  }
+}
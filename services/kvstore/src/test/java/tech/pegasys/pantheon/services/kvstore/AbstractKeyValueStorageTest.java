@@ -24,7 +24,9 @@ import tech.pegasys.pantheon.util.bytes.BytesValues;
 import java.io.Closeable;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CountDownLatch;
 import java.util.function.Function;
@@ -61,6 +63,25 @@ public abstract class AbstractKeyValueStorageTest {
         Optional.of(BytesValue.fromHexString("0DEF")), store.get(BytesValue.fromHexString("0F")));
   }
 
+  @Test
+  public void getAll() throws Exception {
+    final KeyValueStorage store = createStore();
+    store.put(BytesValue.fromHexString("01"), BytesValue.fromHexString("0ABC"));
+    store.put(BytesValue.fromHexString("02"), BytesValue.fromHexString("0DEF"));
+    store.put(BytesValue.fromHexString("03"), BytesValue.fromHexString("0123"));
+
+    final Map<BytesValue, BytesValue> expected = new HashMap<>();
+    expected.put(BytesValue.fromHexString("01"), BytesValue.fromHexString("0ABC"));
+    expected.put(BytesValue.fromHexString("03"), BytesValue.fromHexString("0123"));
+    assertEquals(
+        expected,
+        store.getAll(
+            Arrays.asList(
+                BytesValue.fromHexString("01"),
+                BytesValue.fromHexString("04"),
+                BytesValue.fromHexString("03"))));
+  }
+
   @Test
   public void removeExisting() throws Exception {
     final KeyValueStorage store = createStore();
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.services.kvstore;
+
+import static org.junit.Assert.assertEquals;
+
+import tech.pegasys.pantheon.services.kvstore.KeyValueStorage.Transaction;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+
+import java.nio.file.Path;
+import java.util.Optional;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BatchedRocksDbKeyValueStorageTest extends AbstractKeyValueStorageTest {
+
+  private static final RocksDbConfiguration CONFIGURATION =
+      RocksDbConfiguration.builder().batchedWrites(true).walDisabled(true).build();
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  @Override
+  protected KeyValueStorage createStore() throws Exception {
+    return RocksDbKeyValueStorage.create(folder.newFolder().toPath(), CONFIGURATION);
+  }
+
+  @Test
+  public void committedDataSurvivesReopeningWithoutWriteAheadLog() throws Exception {
+    final Path directory = folder.newFolder().toPath();
+    final RocksDbKeyValueStorage store = RocksDbKeyValueStorage.create(directory, CONFIGURATION);
+    final Transaction tx = store.getStartTransaction();
+    tx.put(BytesValue.fromHexString("0001"), BytesValue.fromHexString("0FFF"));
+    tx.commit();
+    store.close();
+
+    final RocksDbKeyValueStorage reopened =
+        RocksDbKeyValueStorage.create(directory, RocksDbConfiguration.builder().build());
+    assertEquals(
+        Optional.of(BytesValue.fromHexString("0FFF")),
+        reopened.get(BytesValue.fromHexString("0001")));
+    reopened.close();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void writeAheadLogCanOnlyBeDisabledForBatchedWrites() {
+    RocksDbConfiguration.builder().walDisabled(true).build();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void writeAheadLogCanNotBeDisabledForSegmentedDatabases() {
+    RocksDbConfiguration.builder().segmented(true).batchedWrites(true).walDisabled(true).build();
+  }
+}
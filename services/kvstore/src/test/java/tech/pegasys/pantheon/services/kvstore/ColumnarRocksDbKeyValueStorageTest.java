@@ -0,0 +1,88 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.services.kvstore;
+
+import static org.junit.Assert.assertEquals;
+
+import tech.pegasys.pantheon.services.kvstore.KeyValueStorage.StorageException;
+import tech.pegasys.pantheon.services.kvstore.RocksDbSegment.Profile;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ColumnarRocksDbKeyValueStorageTest extends AbstractKeyValueStorageTest {
+
+  private static final RocksDbSegment FIRST =
+      RocksDbSegment.create("first", Profile.POINT_LOOKUP, 0.5);
+  private static final RocksDbSegment SECOND =
+      RocksDbSegment.create("second", Profile.APPEND_MOSTLY, 0.5);
+  private static final List<RocksDbSegment> SEGMENTS = Arrays.asList(FIRST, SECOND);
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  @Override
+  protected KeyValueStorage createStore() throws Exception {
+    return ColumnarRocksDbKeyValueStorage.create(folder.newFolder().toPath(), SEGMENTS)
+        .getSegment(FIRST);
+  }
+
+  @Test
+  public void segmentsAreIndependent() throws Exception {
+    final ColumnarRocksDbKeyValueStorage storage =
+        ColumnarRocksDbKeyValueStorage.create(folder.newFolder().toPath(), SEGMENTS);
+    final KeyValueStorage first = storage.getSegment(FIRST);
+    final KeyValueStorage second = storage.getSegment(SECOND);
+
+    final KeyValueStorage.Transaction tx = first.getStartTransaction();
+    tx.put(BytesValue.fromHexString("0001"), BytesValue.fromHexString("0FFF"));
+    tx.commit();
+
+    assertEquals(
+        Optional.of(BytesValue.fromHexString("0FFF")), first.get(BytesValue.fromHexString("0001")));
+    assertEquals(Optional.empty(), second.get(BytesValue.fromHexString("0001")));
+    assertEquals(0, second.entries().count());
+    storage.close();
+  }
+
+  @Test
+  public void segmentDataSurvivesReopening() throws Exception {
+    final Path directory = folder.newFolder().toPath();
+    final ColumnarRocksDbKeyValueStorage storage =
+        ColumnarRocksDbKeyValueStorage.create(directory, SEGMENTS);
+    storage.getSegment(SECOND).put(BytesValue.fromHexString("01"), BytesValue.fromHexString("02"));
+    storage.close();
+
+    final ColumnarRocksDbKeyValueStorage reopened =
+        ColumnarRocksDbKeyValueStorage.create(directory, SEGMENTS);
+    assertEquals(
+        Optional.of(BytesValue.fromHexString("02")),
+        reopened.getSegment(SECOND).get(BytesValue.fromHexString("01")));
+    assertEquals(Optional.empty(), reopened.getSegment(FIRST).get(BytesValue.fromHexString("01")));
+    reopened.close();
+  }
+
+  @Test(expected = StorageException.class)
+  public void refusesToOpenDatabaseWithoutColumnFamilies() throws Exception {
+    final Path directory = folder.newFolder().toPath();
+    RocksDbKeyValueStorage.create(directory).close();
+
+    ColumnarRocksDbKeyValueStorage.create(directory, SEGMENTS);
+  }
+}
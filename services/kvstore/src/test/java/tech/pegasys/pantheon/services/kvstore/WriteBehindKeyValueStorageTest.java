@@ -0,0 +1,156 @@
+/*
+ * Copyright 2018 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.services.kvstore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import tech.pegasys.pantheon.services.kvstore.KeyValueStorage.StorageException;
+import tech.pegasys.pantheon.services.kvstore.KeyValueStorage.Transaction;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class WriteBehindKeyValueStorageTest extends AbstractKeyValueStorageTest {
+
+  private final KeyValueStorageWriter writer = new KeyValueStorageWriter();
+
+  @After
+  public void tearDown() {
+    writer.close();
+  }
+
+  @Override
+  protected KeyValueStorage createStore() throws Exception {
+    return new WriteBehindKeyValueStorage(new InMemoryKeyValueStorage(), writer);
+  }
+
+  @Test
+  public void committedChangesAreReadableBeforeTheyAreWritten() {
+    final InMemoryKeyValueStorage underlying = new InMemoryKeyValueStorage();
+    underlying.put(BytesValue.of(2), BytesValue.of(2));
+    final WriteBehindKeyValueStorage store = new WriteBehindKeyValueStorage(underlying, writer);
+    final CountDownLatch release = blockWriter(writer);
+
+    final Transaction tx = store.getStartTransaction();
+    tx.put(BytesValue.of(1), BytesValue.of(1));
+    tx.remove(BytesValue.of(2));
+    tx.commit();
+
+    assertEquals(Optional.of(BytesValue.of(1)), store.get(BytesValue.of(1)));
+    assertEquals(Optional.empty(), store.get(BytesValue.of(2)));
+    assertEquals(1, store.getAll(Arrays.asList(BytesValue.of(1), BytesValue.of(2))).size());
+    assertEquals(Optional.empty(), underlying.get(BytesValue.of(1)));
+    assertEquals(Optional.of(BytesValue.of(2)), underlying.get(BytesValue.of(2)));
+    assertEquals(2, store.pendingKeyCount());
+
+    release.countDown();
+    writer.awaitWrites();
+
+    assertEquals(Optional.of(BytesValue.of(1)), underlying.get(BytesValue.of(1)));
+    assertEquals(Optional.empty(), underlying.get(BytesValue.of(2)));
+    assertEquals(0, store.pendingKeyCount());
+  }
+
+  @Test
+  public void laterChangeToTheSameKeyStaysPendingUntilItIsWritten() {
+    final InMemoryKeyValueStorage underlying = new InMemoryKeyValueStorage();
+    final WriteBehindKeyValueStorage store = new WriteBehindKeyValueStorage(underlying, writer);
+    store.put(BytesValue.of(1), BytesValue.of(1));
+    final CountDownLatch release = blockWriter(writer);
+    store.put(BytesValue.of(1), BytesValue.of(2));
+
+    assertEquals(Optional.of(BytesValue.of(2)), store.get(BytesValue.of(1)));
+
+    release.countDown();
+    writer.awaitWrites();
+    assertEquals(Optional.of(BytesValue.of(2)), underlying.get(BytesValue.of(1)));
+  }
+
+  @Test
+  public void writesAreAppliedInCommitOrderAcrossStorages() {
+    final InMemoryKeyValueStorage underlying = new InMemoryKeyValueStorage();
+    final WriteBehindKeyValueStorage first = new WriteBehindKeyValueStorage(underlying, writer);
+    final WriteBehindKeyValueStorage second = new WriteBehindKeyValueStorage(underlying, writer);
+
+    for (int i = 0; i < 100; i++) {
+      (i % 2 == 0 ? first : second).put(BytesValue.of(1), BytesValue.of(i));
+    }
+    writer.awaitWrites();
+
+    assertEquals(Optional.of(BytesValue.of(99)), underlying.get(BytesValue.of(1)));
+  }
+
+  @Test
+  public void failedWriteStopsLaterWritesAndFailsLaterCommits() {
+    final KeyValueStorageWriter failingWriter = new KeyValueStorageWriter();
+    final InMemoryKeyValueStorage underlying = new InMemoryKeyValueStorage();
+    final KeyValueStorage failing =
+        new InMemoryKeyValueStorage() {
+          @Override
+          public Transaction getStartTransaction() {
+            throw new StorageException("Disk full");
+          }
+        };
+    final WriteBehindKeyValueStorage failingStore =
+        new WriteBehindKeyValueStorage(failing, failingWriter);
+    final WriteBehindKeyValueStorage store =
+        new WriteBehindKeyValueStorage(underlying, failingWriter);
+    final CountDownLatch release = blockWriter(failingWriter);
+
+    failingStore.put(BytesValue.of(1), BytesValue.of(1));
+    store.put(BytesValue.of(2), BytesValue.of(2));
+    release.countDown();
+
+    try {
+      failingWriter.awaitWrites();
+      fail("Expected the failed write to be reported");
+    } catch (final StorageException e) {
+      // expected
+    }
+    assertFalse(underlying.get(BytesValue.of(2)).isPresent());
+    assertEquals(Optional.of(BytesValue.of(1)), failingStore.get(BytesValue.of(1)));
+    try {
+      store.put(BytesValue.of(3), BytesValue.of(3));
+      fail("Expected commits after a failed write to be rejected");
+    } catch (final StorageException e) {
+      // expected
+    }
+    try {
+      failingWriter.close();
+      fail("Expected the failed write to be reported on close");
+    } catch (final StorageException e) {
+      // expected
+    }
+  }
+
+  private CountDownLatch blockWriter(final KeyValueStorageWriter writer) {
+    final CountDownLatch release = new CountDownLatch(1);
+    writer.reserve();
+    writer.execute(
+        () -> {
+          try {
+            release.await();
+          } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        });
+    return release;
+  }
+}